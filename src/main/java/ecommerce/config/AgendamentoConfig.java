@@ -0,0 +1,10 @@
+package ecommerce.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/** Habilita as tarefas {@code @Scheduled} da aplicação, como a varredura de reservas expiradas. */
+@Configuration
+@EnableScheduling
+public class AgendamentoConfig {
+}
@@ -0,0 +1,77 @@
+package ecommerce.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Executor dedicado às etapas da finalização de compra que rodam em paralelo (hoje, a
+ * reserva dos itens no estoque). Tem número de threads e fila limitados;
+ * com a fila cheia, a tarefa roda na própria thread da requisição, o que equivale ao
+ * fluxo sequencial em vez de rejeitar a compra. Com
+ * {@code ecommerce.threads.virtuais.habilitado=true}, cada etapa roda em uma thread virtual
+ * e quem limita as chamadas simultâneas ao estoque é o bulkhead da {@link ResilienciaConfig}.
+ */
+@Configuration
+public class CheckoutExecutorConfig {
+
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService executorCheckout(@Value("${ecommerce.checkout.executor.threads:16}") int threads,
+			@Value("${ecommerce.checkout.executor.fila:1000}") int fila,
+			@Value("${ecommerce.threads.virtuais.habilitado:false}") boolean threadsVirtuais) {
+		if (threadsVirtuais) {
+			return ThreadsVirtuais.novoExecutorPorTarefa("checkout-");
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(fila), new CustomizableThreadFactory("checkout-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Acesso ao banco da finalização de compra assíncrona: leitura do carrinho e gravações da
+	 * compensação e da outbox. O JPA bloqueia, então fica nestas poucas threads e não nas que
+	 * completam as chamadas HTTP. Com a fila cheia a compra é rejeitada em vez de acumular.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ThreadPoolExecutor executorJpaCheckout(@Value("${ecommerce.checkout.async.jpa.threads:8}") int threads,
+			@Value("${ecommerce.checkout.async.jpa.fila:10000}") int fila) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(fila), new CustomizableThreadFactory("checkout-jpa-"),
+				new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Liberação das reservas de estoque da finalização assíncrona, para que a chamada ao estoque
+	 * não ocupe as threads que completam as chamadas HTTP. Com a fila cheia a liberação é
+	 * descartada e a reserva expira sozinha no estoque.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ThreadPoolExecutor executorLiberacaoReserva(@Value("${ecommerce.checkout.async.liberacao.threads:4}") int threads,
+			@Value("${ecommerce.checkout.async.liberacao.fila:10000}") int fila) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(fila), new CustomizableThreadFactory("liberacao-reserva-"),
+				new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	// Cancelamentos da fila de compensação; fora do caminho da requisição
+	@Bean(destroyMethod = "shutdown")
+	public ThreadPoolExecutor executorCompensacao(@Value("${ecommerce.compensacao.threads:4}") int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), new CustomizableThreadFactory("compensacao-"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+}
@@ -0,0 +1,15 @@
+package ecommerce.config;
+
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Clientes HTTP do estoque e do pagamento ({@code ecommerce.external.http}). O pool de
+ * conexões do Apache HttpClient 5 e a compressão são configurados em
+ * {@code spring.cloud.openfeign.*}; os clientes só são usados com
+ * {@code ecommerce.estoque.modo=http} e {@code ecommerce.pagamento.modo=http}.
+ */
+@Configuration
+@EnableFeignClients(basePackages = "ecommerce.external.http")
+public class FeignConfig {
+}
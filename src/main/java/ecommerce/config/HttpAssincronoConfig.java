@@ -0,0 +1,28 @@
+package ecommerce.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ecommerce.external.http.JsonHttpAssincrono;
+
+/**
+ * Cliente HTTP não bloqueante das versões assíncronas do estoque e do pagamento, criado só
+ * quando um dos dois é chamado por HTTP.
+ */
+@Configuration
+@ConditionalOnExpression("'${ecommerce.estoque.modo:simulado}' == 'http' or '${ecommerce.pagamento.modo:simulado}' == 'http'")
+public class HttpAssincronoConfig {
+
+	@Bean(destroyMethod = "close")
+	public JsonHttpAssincrono jsonHttpAssincrono(ObjectMapper objectMapper,
+			@Value("${ecommerce.http.assincrono.threads:4}") int threads,
+			@Value("${ecommerce.http.assincrono.tempo-conexao:1s}") Duration tempoConexao) {
+		return new JsonHttpAssincrono(objectMapper, threads, tempoConexao);
+	}
+}
@@ -0,0 +1,31 @@
+package ecommerce.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import ecommerce.service.GravacaoJfr;
+
+/**
+ * Liga a {@link GravacaoJfr} contínua junto com a aplicação. Desligada com
+ * {@code ecommerce.jfr.habilitado=false}; os eventos de checkout continuam disponíveis para
+ * gravações iniciadas por fora, com {@code jcmd <pid> JFR.start}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ecommerce.jfr.habilitado", havingValue = "true", matchIfMissing = true)
+public class JfrConfig {
+
+	@Bean(initMethod = "iniciar", destroyMethod = "close")
+	public GravacaoJfr gravacaoJfr(@Value("${ecommerce.jfr.perfil:default}") String perfil,
+			@Value("${ecommerce.jfr.limiar:1ms}") Duration limiar,
+			@Value("${ecommerce.jfr.idade-maxima:30m}") Duration idadeMaxima,
+			@Value("${ecommerce.jfr.tamanho-maximo:256MB}") DataSize tamanhoMaximo,
+			@Value("${ecommerce.jfr.diretorio:${java.io.tmpdir}/ecommerce-jfr}") Path diretorio) {
+		return new GravacaoJfr(perfil, limiar, idadeMaxima, tamanhoMaximo.toBytes(), diretorio);
+	}
+}
@@ -0,0 +1,55 @@
+package ecommerce.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.lote.AgrupadorPagamentos;
+import ecommerce.external.resiliencia.PagamentoResiliente;
+import ecommerce.external.resiliencia.Resiliencia;
+import ecommerce.service.CompensacaoService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Coloca o {@link AgrupadorPagamentos} na frente do {@link IPagamentoExternal} configurado,
+ * para que as autorizações de compras concorrentes sigam em lotes. Ativado com
+ * {@code ecommerce.pagamento.lote.habilitado=true}. Os lotes passam pela {@link Resiliencia}
+ * do pagamento antes de chegar ao provedor, então quem chama precisa esperar mais que o tempo
+ * limite do envio; pagamentos autorizados depois que quem chamou desistiu são cancelados pela
+ * fila de compensação.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ecommerce.pagamento.lote.habilitado", havingValue = "true")
+public class PagamentoEmLoteConfig {
+
+	// O parâmetro recebe a implementação original: o Spring não injeta um bean nele mesmo
+	@Bean(destroyMethod = "close")
+	@Primary
+	public AgrupadorPagamentos agrupadorPagamentos(IPagamentoExternal pagamentoExternal,
+			@Qualifier("resilienciaPagamento") Resiliencia resiliencia, MeterRegistry meterRegistry,
+			@Value("${ecommerce.pagamento.lote.tamanho-maximo:50}") int tamanhoMaximo,
+			@Value("${ecommerce.pagamento.lote.espera-maxima:2ms}") Duration esperaMaxima,
+			@Value("${ecommerce.pagamento.lote.tempo-limite:6s}") Duration tempoLimite,
+			@Value("${ecommerce.pagamento.lote.envios-simultaneos:4}") int enviosSimultaneos,
+			@Value("${ecommerce.pagamento.lote.fila:10000}") int fila,
+			ObjectProvider<CompensacaoService> compensacaoService) {
+		Duration tempoEnvio = resiliencia.getTempoLimite();
+		if (!tempoEnvio.isZero() && tempoLimite.compareTo(esperaMaxima.plus(tempoEnvio)) <= 0) {
+			throw new IllegalStateException("ecommerce.pagamento.lote.tempo-limite (" + tempoLimite
+					+ ") deve ser maior que a espera máxima do lote mais ecommerce.resiliencia.pagamento.tempo-limite ("
+					+ esperaMaxima.plus(tempoEnvio) + ").");
+		}
+		// O CompensacaoService usa o pagamento principal, que é este agrupador: buscado só no uso
+		return new AgrupadorPagamentos(new PagamentoResiliente(pagamentoExternal, resiliencia,
+				ResilienciaConfig.cancelarSemResposta(compensacaoService)), meterRegistry,
+				tamanhoMaximo, esperaMaxima, tempoLimite, enviosSimultaneos, fila,
+				(clienteId, transacaoId) -> compensacaoService.getObject().enfileirarCancelamento(clienteId, transacaoId));
+	}
+}
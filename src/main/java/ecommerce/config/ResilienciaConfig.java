@@ -0,0 +1,110 @@
+package ecommerce.config;
+
+import java.time.Duration;
+import java.util.function.BiConsumer;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.resiliencia.EstoqueResiliente;
+import ecommerce.external.resiliencia.PagamentoResiliente;
+import ecommerce.external.resiliencia.Resiliencia;
+import ecommerce.service.CompensacaoService;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Coloca uma {@link Resiliencia} na frente do estoque e do pagamento configurados, com os
+ * parâmetros em {@code ecommerce.resiliencia.estoque.*} e {@code ecommerce.resiliencia.pagamento.*}.
+ */
+@Configuration
+public class ResilienciaConfig {
+
+	private static final String PREFIXO = "ecommerce.resiliencia.";
+
+	@Bean
+	public CircuitBreakerRegistry circuitBreakerRegistry(MeterRegistry meterRegistry) {
+		CircuitBreakerRegistry registry = CircuitBreakerRegistry.ofDefaults();
+		TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+		return registry;
+	}
+
+	@Bean
+	public BulkheadRegistry bulkheadRegistry(MeterRegistry meterRegistry) {
+		BulkheadRegistry registry = BulkheadRegistry.ofDefaults();
+		TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+		return registry;
+	}
+
+	@Bean(destroyMethod = "close")
+	public Resiliencia resilienciaEstoque(Environment environment, CircuitBreakerRegistry circuitBreakerRegistry,
+			BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry) {
+		return criar("estoque", environment, circuitBreakerRegistry, bulkheadRegistry, meterRegistry);
+	}
+
+	@Bean(destroyMethod = "close")
+	public Resiliencia resilienciaPagamento(Environment environment, CircuitBreakerRegistry circuitBreakerRegistry,
+			BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry) {
+		return criar("pagamento", environment, circuitBreakerRegistry, bulkheadRegistry, meterRegistry);
+	}
+
+	// O parâmetro recebe a implementação original: o Spring não injeta um bean nele mesmo
+	@Bean
+	@Primary
+	public EstoqueResiliente estoqueResiliente(IEstoqueExternal estoqueExternal,
+			@Qualifier("resilienciaEstoque") Resiliencia resiliencia) {
+		return new EstoqueResiliente(estoqueExternal, resiliencia);
+	}
+
+	// Com o pagamento em lote, o agrupador é o bean principal e já envolve esta proteção
+	@Bean
+	@Primary
+	@ConditionalOnProperty(name = "ecommerce.pagamento.lote.habilitado", havingValue = "false", matchIfMissing = true)
+	public PagamentoResiliente pagamentoResiliente(IPagamentoExternal pagamentoExternal,
+			@Qualifier("resilienciaPagamento") Resiliencia resiliencia,
+			ObjectProvider<CompensacaoService> compensacaoService) {
+		return new PagamentoResiliente(pagamentoExternal, resiliencia, cancelarSemResposta(compensacaoService));
+	}
+
+	// O CompensacaoService usa o pagamento principal, que é este decorador: buscado só no uso
+	static BiConsumer<Long, String> cancelarSemResposta(ObjectProvider<CompensacaoService> compensacaoService) {
+		return (clienteId, solicitacaoId) -> compensacaoService.getObject()
+				.enfileirarCancelamentoDaSolicitacao(clienteId, solicitacaoId);
+	}
+
+	private static Resiliencia criar(String dependencia, Environment environment,
+			CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+			MeterRegistry meterRegistry) {
+		String prefixo = PREFIXO + dependencia + ".";
+		CircuitBreakerConfig circuito = CircuitBreakerConfig.custom()
+				.slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+				.slidingWindowSize(environment.getProperty(prefixo + "janela", Integer.class, 50))
+				.minimumNumberOfCalls(environment.getProperty(prefixo + "chamadas-minimas", Integer.class, 20))
+				.failureRateThreshold(environment.getProperty(prefixo + "taxa-falhas", Float.class, 50f))
+				.waitDurationInOpenState(environment.getProperty(prefixo + "espera-aberto", Duration.class,
+						Duration.ofSeconds(10)))
+				.permittedNumberOfCallsInHalfOpenState(
+						environment.getProperty(prefixo + "chamadas-meio-aberto", Integer.class, 5))
+				.build();
+		BulkheadConfig bulkhead = BulkheadConfig.custom()
+				.maxConcurrentCalls(environment.getProperty(prefixo + "chamadas-simultaneas", Integer.class, 64))
+				.maxWaitDuration(Duration.ZERO)
+				.build();
+		return new Resiliencia(dependencia, circuitBreakerRegistry.circuitBreaker(dependencia, circuito),
+				bulkheadRegistry.bulkhead(dependencia, bulkhead),
+				environment.getProperty(prefixo + "tempo-limite", Duration.class, Duration.ofSeconds(2)),
+				meterRegistry, environment.getProperty("ecommerce.threads.virtuais.habilitado", Boolean.class, false));
+	}
+}
@@ -0,0 +1,33 @@
+package ecommerce.config;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ecommerce.external.local.ServidorStubHttp;
+
+/**
+ * Sobe o {@link ServidorStubHttp} junto com a aplicação, para usar os clientes HTTP do
+ * estoque e do pagamento sem os serviços reais. Ativado com {@code ecommerce.stub.habilitado=true};
+ * as URLs {@code ecommerce.estoque.url} e {@code ecommerce.pagamento.url} devem apontar para
+ * {@code ecommerce.stub.porta}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ecommerce.stub.habilitado", havingValue = "true")
+public class StubExternoConfig {
+
+	@Bean(initMethod = "iniciar", destroyMethod = "close")
+	public ServidorStubHttp servidorStubHttp(ObjectMapper objectMapper,
+			@Value("${ecommerce.stub.porta:8089}") int porta,
+			@Value("${ecommerce.stub.latencia:0ms}") Duration latencia,
+			@Value("${ecommerce.stub.threads:64}") int threads,
+			@Value("${ecommerce.stub.limiar-gzip:1024}") int limiarGzip) throws IOException {
+		return new ServidorStubHttp(objectMapper, porta, latencia, threads, limiarGzip);
+	}
+}
@@ -0,0 +1,36 @@
+package ecommerce.config;
+
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Roda as requisições do Tomcat, o {@code executorCheckout} e as chamadas com tempo limite em
+ * threads virtuais com {@code ecommerce.threads.virtuais.habilitado=true}; exige o perfil {@code java21}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ecommerce.threads.virtuais.habilitado", havingValue = "true")
+public class ThreadsVirtuaisConfig {
+
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService executorThreadsVirtuais() {
+		return ThreadsVirtuais.novoExecutorPorTarefa();
+	}
+
+	@Bean
+	public TomcatProtocolHandlerCustomizer<?> executorVirtualTomcat(ExecutorService executorThreadsVirtuais) {
+		return protocolHandler -> protocolHandler.setExecutor(executorThreadsVirtuais);
+	}
+
+	// Tarefas assíncronas do Spring MVC (retornos CompletableFuture, @Async) também em threads virtuais
+	@Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+	public AsyncTaskExecutor applicationTaskExecutor(ExecutorService executorThreadsVirtuais) {
+		return new TaskExecutorAdapter(executorThreadsVirtuais);
+	}
+}
@@ -0,0 +1,62 @@
+package ecommerce.controller;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import ecommerce.dto.CarrinhoDTO;
+import ecommerce.dto.TotaisCarrinhoDTO;
+import ecommerce.service.CarrinhoDeComprasService;
+
+/**
+ * Alteração dos itens de um carrinho. Cada resposta de sucesso traz os totais do carrinho
+ * depois da alteração. Conflitos com alterações simultâneas do mesmo carrinho são refeitos pelo
+ * {@link CarrinhoDeComprasService}; se persistirem depois das tentativas, a resposta é 409.
+ */
+@RestController
+@RequestMapping("/carrinhos")
+public class CarrinhoController {
+
+	private final CarrinhoDeComprasService carrinhoService;
+
+	@Autowired
+	public CarrinhoController(CarrinhoDeComprasService carrinhoService) {
+		this.carrinhoService = carrinhoService;
+	}
+
+	@PostMapping("/{carrinhoId}/itens")
+	public ResponseEntity<CarrinhoDTO> adicionarItem(@PathVariable Long carrinhoId, @RequestParam Long clienteId,
+			@RequestParam Long produtoId, @RequestParam long quantidade) {
+		return responder(() -> carrinhoService.adicionarItem(carrinhoId, clienteId, produtoId, quantidade));
+	}
+
+	@PutMapping("/{carrinhoId}/itens/{produtoId}")
+	public ResponseEntity<CarrinhoDTO> atualizarQuantidade(@PathVariable Long carrinhoId, @PathVariable Long produtoId,
+			@RequestParam Long clienteId, @RequestParam long quantidade) {
+		return responder(() -> carrinhoService.atualizarQuantidade(carrinhoId, clienteId, produtoId, quantidade));
+	}
+
+	@DeleteMapping("/{carrinhoId}/itens/{produtoId}")
+	public ResponseEntity<CarrinhoDTO> removerItem(@PathVariable Long carrinhoId, @PathVariable Long produtoId,
+			@RequestParam Long clienteId) {
+		return responder(() -> carrinhoService.removerItem(carrinhoId, clienteId, produtoId));
+	}
+
+	private static ResponseEntity<CarrinhoDTO> responder(Supplier<TotaisCarrinhoDTO> alteracao) {
+		try {
+			return ResponseEntity.ok(new CarrinhoDTO(true, alteracao.get(), "Carrinho atualizado."));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CarrinhoDTO(false, null, e.getMessage()));
+		} catch (OptimisticLockingFailureException e) {
+			return ResponseEntity.status(HttpStatus.CONFLICT)
+					.body(new CarrinhoDTO(false, null, "Carrinho alterado ao mesmo tempo por outra requisição; tente novamente."));
+		} catch (Exception e) {
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(new CarrinhoDTO(false, null, "Erro ao atualizar carrinho."));
+		}
+	}
+}
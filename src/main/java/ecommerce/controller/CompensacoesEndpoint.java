@@ -0,0 +1,27 @@
+package ecommerce.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.SituacaoCompensacoesDTO;
+import ecommerce.service.CompensacaoService;
+
+// GET /actuator/compensacoes: tamanho da fila de cancelamentos e idade da entrada mais antiga
+@Component
+@Endpoint(id = "compensacoes")
+public class CompensacoesEndpoint {
+
+	private final CompensacaoService compensacaoService;
+
+	@Autowired
+	public CompensacoesEndpoint(CompensacaoService compensacaoService) {
+		this.compensacaoService = compensacaoService;
+	}
+
+	@ReadOperation
+	public SituacaoCompensacoesDTO situacao() {
+		return compensacaoService.situacao();
+	}
+}
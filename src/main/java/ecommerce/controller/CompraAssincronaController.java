@@ -0,0 +1,55 @@
+package ecommerce.controller;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.service.CompraAssincronaService;
+
+/**
+ * Variante não bloqueante de {@code POST /finalizar}, com as mesmas respostas do
+ * {@link CompraController}; não aceita {@code Idempotency-Key}.
+ */
+@RestController
+@RequestMapping("/")
+public class CompraAssincronaController {
+
+	private final CompraAssincronaService compraAssincronaService;
+
+	@Autowired
+	public CompraAssincronaController(CompraAssincronaService compraAssincronaService) {
+		this.compraAssincronaService = compraAssincronaService;
+	}
+
+	@PostMapping("/finalizar/async")
+	public CompletableFuture<ResponseEntity<CompraDTO>> finalizarCompra(@RequestParam Long carrinhoId,
+			@RequestParam Long clienteId,
+			@RequestHeader(name = "Idempotency-Key", required = false) String chaveIdempotencia) {
+		if (carrinhoId == null || clienteId == null) {
+			return CompletableFuture.completedFuture(
+					CompraController.respostaDeErro(new IllegalArgumentException("Parâmetros inválidos.")));
+		}
+		if (chaveIdempotencia != null) {
+			return CompletableFuture.completedFuture(CompraController.respostaDeErro(new IllegalArgumentException(
+					"Idempotency-Key não é aceita em /finalizar/async; use /finalizar.")));
+		}
+		return compraAssincronaService.finalizarCompra(carrinhoId, clienteId).handle((resultado, erro) -> {
+			if (erro == null) {
+				CompraDTO compraDTO = resultado.compra();
+				return ResponseEntity.status(compraDTO.sucesso() ? HttpStatus.OK : HttpStatus.CONFLICT).body(compraDTO);
+			}
+			Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+			if (causa instanceof RejectedExecutionException) {
+				return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+						.body(new CompraDTO(false, null, "Muitas compras em andamento; tente novamente."));
+			}
+			return CompraController.respostaDeErro(causa);
+		});
+	}
+}
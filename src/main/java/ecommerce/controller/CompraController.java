@@ -1,39 +1,71 @@
 package ecommerce.controller;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import ecommerce.dto.CompraDTO;
+import ecommerce.dto.PedidoCheckoutDTO;
+import ecommerce.external.resiliencia.DependenciaIndisponivelException;
 import ecommerce.service.CompraService;
+import ecommerce.service.IdempotenciaService;
 
 @RestController
 @RequestMapping("/")
 public class CompraController {
 
 	private final CompraService compraService;
+	private final IdempotenciaService idempotenciaService;
 
 	@Autowired
-	public CompraController(CompraService compraService) {
+	public CompraController(CompraService compraService, IdempotenciaService idempotenciaService) {
 		this.compraService = compraService;
+		this.idempotenciaService = idempotenciaService;
 	}
 
 	@PostMapping("/finalizar")
-	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId) {
+	public ResponseEntity<CompraDTO> finalizarCompra(@RequestParam Long carrinhoId, @RequestParam Long clienteId,
+			@RequestHeader(name = "Idempotency-Key", required = false) String chaveIdempotencia) {
 		try {
 			if (carrinhoId == null || clienteId == null) {
 				throw new IllegalArgumentException("Parâmetros inválidos.");
 			}
-			CompraDTO compraDTO = compraService.finalizarCompra(carrinhoId, clienteId);
-			return ResponseEntity.ok(compraDTO);
-		} catch (IllegalArgumentException e) {
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CompraDTO(false, null, e.getMessage()));
-		} catch (IllegalStateException e) {
-			return ResponseEntity.status(HttpStatus.CONFLICT).body(new CompraDTO(false, null, e.getMessage()));
+			CompraDTO compraDTO = chaveIdempotencia == null
+					? compraService.finalizarCompra(carrinhoId, clienteId).compra()
+					: idempotenciaService.executar(chaveIdempotencia, carrinhoId, clienteId,
+							() -> compraService.finalizarCompra(carrinhoId, clienteId).compra());
+			// Recusas de negócio (sem estoque, pagamento recusado, falha na baixa) chegam como resultado
+			return ResponseEntity.status(compraDTO.sucesso() ? HttpStatus.OK : HttpStatus.CONFLICT).body(compraDTO);
+		} catch (Exception e) {
+			return respostaDeErro(e);
+		}
+	}
+
+	/** Respostas de erro da finalização individual, compartilhadas com o {@link CompraAssincronaController}. */
+	static ResponseEntity<CompraDTO> respostaDeErro(Throwable erro) {
+		if (erro instanceof IllegalArgumentException) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new CompraDTO(false, null, erro.getMessage()));
+		} else if (erro instanceof IllegalStateException) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(new CompraDTO(false, null, erro.getMessage()));
+		} else if (erro instanceof DependenciaIndisponivelException) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new CompraDTO(false, null, erro.getMessage()));
+		}
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+				.body(new CompraDTO(false, null, "Erro ao processar compra."));
+	}
+
+	@PostMapping("/finalizar/lote")
+	public ResponseEntity<List<CompraDTO>> finalizarCompraEmLote(@RequestBody List<PedidoCheckoutDTO> pedidos) {
+		if (pedidos == null || pedidos.isEmpty()) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+		}
+		try {
+			return ResponseEntity.ok(compraService.finalizarCompraEmLote(pedidos));
 		} catch (Exception e) {
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-					.body(new CompraDTO(false, null, "Erro ao processar compra."));
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
 		}
 	}
 }
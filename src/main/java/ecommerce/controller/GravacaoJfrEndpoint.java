@@ -0,0 +1,36 @@
+package ecommerce.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import ecommerce.dto.DespejoJfrDTO;
+import ecommerce.dto.SituacaoGravacaoJfrDTO;
+import ecommerce.service.GravacaoJfr;
+
+// GET /actuator/jfr: situação da gravação contínua; POST /actuator/jfr: grava o conteúdo atual em arquivo
+@Component
+@Endpoint(id = "jfr")
+@ConditionalOnProperty(name = "ecommerce.jfr.habilitado", havingValue = "true", matchIfMissing = true)
+public class GravacaoJfrEndpoint {
+
+	private final GravacaoJfr gravacaoJfr;
+
+	@Autowired
+	public GravacaoJfrEndpoint(GravacaoJfr gravacaoJfr) {
+		this.gravacaoJfr = gravacaoJfr;
+	}
+
+	@ReadOperation
+	public SituacaoGravacaoJfrDTO situacao() {
+		return gravacaoJfr.situacao();
+	}
+
+	@WriteOperation
+	public DespejoJfrDTO despejar() {
+		return gravacaoJfr.despejar();
+	}
+}
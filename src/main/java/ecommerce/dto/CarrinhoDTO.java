@@ -0,0 +1,4 @@
+package ecommerce.dto;
+
+public record CarrinhoDTO(Boolean sucesso, TotaisCarrinhoDTO totais, String mensagem) {
+}
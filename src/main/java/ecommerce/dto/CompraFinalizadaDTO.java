@@ -0,0 +1,8 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public record CompraFinalizadaDTO(Long carrinhoId, Long clienteId, Long transacaoPagamentoId, BigDecimal custoTotal,
+		Instant finalizadaEm) {
+}
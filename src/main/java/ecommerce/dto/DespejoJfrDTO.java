@@ -0,0 +1,4 @@
+package ecommerce.dto;
+
+public record DespejoJfrDTO(String arquivo, Long bytes) {
+}
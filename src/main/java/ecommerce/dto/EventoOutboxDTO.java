@@ -0,0 +1,6 @@
+package ecommerce.dto;
+
+import java.time.Instant;
+
+public record EventoOutboxDTO(Long id, String tipo, String payload, Instant criadoEm) {
+}
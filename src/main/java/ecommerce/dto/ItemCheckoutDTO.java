@@ -0,0 +1,4 @@
+package ecommerce.dto;
+
+public record ItemCheckoutDTO(Long produtoId, Long quantidade, Long versaoCarrinho) {
+}
@@ -0,0 +1,4 @@
+package ecommerce.dto;
+
+public record ItemCheckoutLoteDTO(Long carrinhoId, Long clienteId, Long produtoId, Long quantidade, Long versaoCarrinho) {
+}
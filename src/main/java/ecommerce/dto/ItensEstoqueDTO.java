@@ -0,0 +1,6 @@
+package ecommerce.dto;
+
+import java.util.List;
+
+public record ItensEstoqueDTO(List<Long> produtosIds, List<Long> produtosQuantidades) {
+}
@@ -0,0 +1,4 @@
+package ecommerce.dto;
+
+public record PedidoCheckoutDTO(Long carrinhoId, Long clienteId) {
+}
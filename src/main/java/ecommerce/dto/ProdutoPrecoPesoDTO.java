@@ -0,0 +1,13 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+import ecommerce.service.MotorPrecificacao;
+
+/** Preço e peso de um produto para o checkout, com o preço já convertido em centavos. */
+public record ProdutoPrecoPesoDTO(Long produtoId, BigDecimal preco, Integer peso, Long precoCentavos) {
+
+	public ProdutoPrecoPesoDTO(Long produtoId, BigDecimal preco, Integer peso) {
+		this(produtoId, preco, peso, preco == null ? null : MotorPrecificacao.centavos(preco));
+	}
+}
@@ -0,0 +1,8 @@
+package ecommerce.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public record ReservaEstoqueDTO(String reservaId, Boolean reservado, List<Long> idsProdutosIndisponiveis,
+								List<Long> produtosIds, List<Long> produtosQuantidades, Instant expiraEm) {
+}
@@ -0,0 +1,4 @@
+package ecommerce.dto;
+
+public record SituacaoCompensacoesDTO(Long profundidade, Long idadeMaisAntigaMs) {
+}
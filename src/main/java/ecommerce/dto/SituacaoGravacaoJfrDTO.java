@@ -0,0 +1,7 @@
+package ecommerce.dto;
+
+import java.time.Instant;
+
+public record SituacaoGravacaoJfrDTO(String nome, String estado, Instant inicio, Long idadeMaximaS,
+									 Long tamanhoMaximoBytes) {
+}
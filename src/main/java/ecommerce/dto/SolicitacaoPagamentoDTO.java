@@ -0,0 +1,8 @@
+package ecommerce.dto;
+
+public record SolicitacaoPagamentoDTO(Long clienteId, Double custoTotal, String solicitacaoId) {
+
+	public SolicitacaoPagamentoDTO(Long clienteId, Double custoTotal) {
+		this(clienteId, custoTotal, null);
+	}
+}
@@ -0,0 +1,7 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/** Totais desnormalizados de um carrinho: subtotal, peso em kg e número de itens. */
+public record TotaisCarrinhoDTO(BigDecimal subtotal, long pesoTotal, int quantidadeItens) {
+}
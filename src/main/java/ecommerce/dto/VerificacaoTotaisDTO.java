@@ -0,0 +1,13 @@
+package ecommerce.dto;
+
+import java.math.BigDecimal;
+
+/** Totais gravados de um carrinho lado a lado com os recalculados a partir dos itens. */
+public record VerificacaoTotaisDTO(Long carrinhoId, BigDecimal subtotal, Long pesoTotal, Integer quantidadeItens,
+                                   BigDecimal subtotalItens, Long pesoItens, Long quantidadeItensReal) {
+
+    public boolean divergente() {
+        return subtotal.compareTo(subtotalItens) != 0 || !pesoTotal.equals(pesoItens)
+                || quantidadeItens.longValue() != quantidadeItensReal;
+    }
+}
@@ -1,10 +1,13 @@
 package ecommerce.entity;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
+import ecommerce.service.MotorPrecificacao;
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -12,6 +15,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Version;
 
 @Entity
 public class CarrinhoDeCompras {
@@ -30,6 +34,22 @@ public class CarrinhoDeCompras {
 
     private LocalDate data;
 
+    // Controle otimista: cada alteração do carrinho ou dos itens avança a versão, e uma
+    // gravação feita sobre uma versão antiga falha em vez de sobrescrever a outra
+    @Version
+    private long versao;
+
+    // Totais desnormalizados dos itens, mantidos pelas operações abaixo na mesma transação;
+    // permitem precificar o carrinho sem ler os itens
+    @Column(nullable = false)
+    private BigDecimal subtotal = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private long pesoTotal;
+
+    @Column(nullable = false)
+    private int quantidadeItens;
+
     public CarrinhoDeCompras() {}
 
     public CarrinhoDeCompras(Long id, Cliente cliente, List<ItemCompra> itens, LocalDate data) {
@@ -37,6 +57,77 @@ public class CarrinhoDeCompras {
         this.cliente = cliente;
         this.itens = itens;
         this.data = data;
+        recalcularTotais();
+    }
+
+    /** Item do produto no carrinho, ou {@code null} se o produto não estiver nele. */
+    public ItemCompra buscarItem(Long produtoId) {
+        for (ItemCompra item : itens) {
+            if (item.getProduto() != null && produtoId.equals(item.getProduto().getId())) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /** Adiciona o produto ou, se ele já estiver no carrinho, soma à quantidade do item. */
+    public ItemCompra adicionarItem(Produto produto, long quantidade) {
+        ItemCompra item = buscarItem(produto.getId());
+        if (item == null) {
+            item = new ItemCompra(null, produto, quantidade);
+            itens.add(item);
+            quantidadeItens++;
+        } else {
+            item.setQuantidade(Math.addExact(item.getQuantidade(), quantidade));
+        }
+        somarAosTotais(produto, quantidade);
+        return item;
+    }
+
+    public void atualizarQuantidade(ItemCompra item, long quantidade) {
+        somarAosTotais(item.getProduto(), Math.subtractExact(quantidade, item.getQuantidade()));
+        item.setQuantidade(quantidade);
+    }
+
+    public void removerItem(ItemCompra item) {
+        if (itens.remove(item)) {
+            somarAosTotais(item.getProduto(), -item.getQuantidade());
+            quantidadeItens--;
+        }
+    }
+
+    /**
+     * Recalcula os totais a partir de todos os itens. Usado quando a lista de itens é trocada
+     * inteira; itens sem preço, peso ou quantidade não contam.
+     */
+    public void recalcularTotais() {
+        BigDecimal novoSubtotal = BigDecimal.ZERO;
+        long novoPeso = 0L;
+        int novaQuantidade = 0;
+        if (itens != null) {
+            for (ItemCompra item : itens) {
+                novaQuantidade++;
+                Produto produto = item.getProduto();
+                if (produto == null || item.getQuantidade() == null) {
+                    continue;
+                }
+                if (produto.getPreco() != null) {
+                    novoSubtotal = novoSubtotal.add(MotorPrecificacao.precoUnitario(produto.getPreco())
+                            .multiply(BigDecimal.valueOf(item.getQuantidade())));
+                }
+                if (produto.getPeso() != null) {
+                    novoPeso = Math.addExact(novoPeso, Math.multiplyExact((long) produto.getPeso(), item.getQuantidade()));
+                }
+            }
+        }
+        this.subtotal = novoSubtotal;
+        this.pesoTotal = novoPeso;
+        this.quantidadeItens = novaQuantidade;
+    }
+
+    private void somarAosTotais(Produto produto, long quantidade) {
+        subtotal = subtotal.add(MotorPrecificacao.precoUnitario(produto.getPreco()).multiply(BigDecimal.valueOf(quantidade)));
+        pesoTotal = Math.addExact(pesoTotal, Math.multiplyExact((long) produto.getPeso(), quantidade));
     }
 
     // Getters e Setters
@@ -62,6 +153,7 @@ public class CarrinhoDeCompras {
 
     public void setItens(List<ItemCompra> itens) {
         this.itens = itens;
+        recalcularTotais();
     }
 
     public LocalDate getData() {
@@ -71,4 +163,20 @@ public class CarrinhoDeCompras {
     public void setData(LocalDate data) {
         this.data = data;
     }
+
+    public long getVersao() {
+        return versao;
+    }
+
+    public BigDecimal getSubtotal() {
+        return subtotal;
+    }
+
+    public long getPesoTotal() {
+        return pesoTotal;
+    }
+
+    public int getQuantidadeItens() {
+        return quantidadeItens;
+    }
 }
@@ -0,0 +1,86 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// Resultado de uma finalização de compra guardado pela chave de idempotência enviada pelo cliente
+@Entity
+@Table(indexes = @Index(name = "idx_idempotencia_expira_em", columnList = "expiraEm"))
+public class ChaveIdempotencia {
+
+    public static final int TAMANHO_CHAVE = 255;
+    private static final int TAMANHO_MENSAGEM = 500;
+
+    @Id
+    @Column(length = TAMANHO_CHAVE)
+    private String chave;
+
+    private Long carrinhoId;
+
+    private Long clienteId;
+
+    private Boolean sucesso;
+
+    private Long transacaoPagamentoId;
+
+    @Column(length = TAMANHO_MENSAGEM)
+    private String mensagem;
+
+    // Nome da exceção quando a finalização falhou com erro de negócio; nulo em caso de resposta
+    private String erro;
+
+    private Instant expiraEm;
+
+    public ChaveIdempotencia() {}
+
+    public ChaveIdempotencia(String chave, Long carrinhoId, Long clienteId, Boolean sucesso,
+                             Long transacaoPagamentoId, String mensagem, String erro, Instant expiraEm) {
+        this.chave = chave;
+        this.carrinhoId = carrinhoId;
+        this.clienteId = clienteId;
+        this.sucesso = sucesso;
+        this.transacaoPagamentoId = transacaoPagamentoId;
+        this.mensagem = mensagem != null && mensagem.length() > TAMANHO_MENSAGEM
+                ? mensagem.substring(0, TAMANHO_MENSAGEM) : mensagem;
+        this.erro = erro;
+        this.expiraEm = expiraEm;
+    }
+
+    // Getters
+    public String getChave() {
+        return chave;
+    }
+
+    public Long getCarrinhoId() {
+        return carrinhoId;
+    }
+
+    public Long getClienteId() {
+        return clienteId;
+    }
+
+    public Boolean getSucesso() {
+        return sucesso;
+    }
+
+    public Long getTransacaoPagamentoId() {
+        return transacaoPagamentoId;
+    }
+
+    public String getMensagem() {
+        return mensagem;
+    }
+
+    public String getErro() {
+        return erro;
+    }
+
+    public Instant getExpiraEm() {
+        return expiraEm;
+    }
+}
@@ -0,0 +1,99 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+// Cancelamento de pagamento ainda não confirmado pelo provedor, tentado de novo até dar certo.
+// Sem transacaoId, a autorização ficou sem resposta e é cancelada pelo id da solicitação
+@Entity
+@Table(indexes = @Index(name = "idx_compensacao_proxima_tentativa", columnList = "proximaTentativa"))
+public class CompensacaoPendente {
+
+    private static final int TAMANHO_ERRO = 500;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long clienteId;
+
+    private Long transacaoId;
+
+    @Column(length = 36)
+    private String solicitacaoId;
+
+    private Integer tentativas;
+
+    private Instant criadaEm;
+
+    private Instant proximaTentativa;
+
+    @Column(length = TAMANHO_ERRO)
+    private String ultimoErro;
+
+    public CompensacaoPendente() {}
+
+    public CompensacaoPendente(Long clienteId, Long transacaoId, Instant criadaEm) {
+        this.clienteId = clienteId;
+        this.transacaoId = transacaoId;
+        this.tentativas = 0;
+        this.criadaEm = criadaEm;
+        this.proximaTentativa = criadaEm;
+    }
+
+    public static CompensacaoPendente daSolicitacao(Long clienteId, String solicitacaoId, Instant criadaEm) {
+        CompensacaoPendente pendente = new CompensacaoPendente(clienteId, null, criadaEm);
+        pendente.solicitacaoId = solicitacaoId;
+        return pendente;
+    }
+
+    public void registrarFalha(String erro, Instant proximaTentativa) {
+        this.tentativas++;
+        this.proximaTentativa = proximaTentativa;
+        this.ultimoErro = erro != null && erro.length() > TAMANHO_ERRO ? erro.substring(0, TAMANHO_ERRO) : erro;
+    }
+
+    // Getters e Setters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getClienteId() {
+        return clienteId;
+    }
+
+    public Long getTransacaoId() {
+        return transacaoId;
+    }
+
+    public String getSolicitacaoId() {
+        return solicitacaoId;
+    }
+
+    public Integer getTentativas() {
+        return tentativas;
+    }
+
+    public Instant getCriadaEm() {
+        return criadaEm;
+    }
+
+    public Instant getProximaTentativa() {
+        return proximaTentativa;
+    }
+
+    public void setProximaTentativa(Instant proximaTentativa) {
+        this.proximaTentativa = proximaTentativa;
+    }
+
+    public String getUltimoErro() {
+        return ultimoErro;
+    }
+}
@@ -0,0 +1,63 @@
+package ecommerce.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+
+// Evento gravado na mesma transação da compra e entregue depois pelo RelayOutbox
+@Entity
+public class EventoOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String tipo;
+
+    @Column(length = 4000)
+    private String payload;
+
+    private Instant criadoEm;
+
+    // Relay que pegou o evento para entrega e até quando a reivindicação vale
+    private String reivindicadoPor;
+
+    private Instant reivindicadoAte;
+
+    public EventoOutbox() {}
+
+    public EventoOutbox(String tipo, String payload, Instant criadoEm) {
+        this.tipo = tipo;
+        this.payload = payload;
+        this.criadoEm = criadoEm;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public Instant getCriadoEm() {
+        return criadoEm;
+    }
+
+    public String getReivindicadoPor() {
+        return reivindicadoPor;
+    }
+
+    public Instant getReivindicadoAte() {
+        return reivindicadoAte;
+    }
+}
@@ -2,7 +2,10 @@ package ecommerce.entity;
 
 import java.math.BigDecimal;
 
+import ecommerce.service.ProdutoCacheListener;
+import ecommerce.service.ProdutoCarrinhosListener;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
@@ -10,6 +13,8 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 
 @Entity
+// Invalida o cache de preço e peso do catálogo e recalcula os totais dos carrinhos com o produto
+@EntityListeners({ProdutoCacheListener.class, ProdutoCarrinhosListener.class})
 public class Produto {
 
     @Id
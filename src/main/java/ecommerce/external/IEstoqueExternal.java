@@ -1,9 +1,13 @@
 package ecommerce.external;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ItensEstoqueDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
 
 public interface IEstoqueExternal {
 
@@ -11,4 +15,66 @@ public interface IEstoqueExternal {
 
 	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades);
 
+	/**
+	 * Verifica e separa os itens em uma única chamada; a reserva deve ser confirmada ou liberada.
+	 * A implementação padrão só verifica a disponibilidade, e a confirmação dá a baixa.
+	 */
+	public default ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		DisponibilidadeDTO disponibilidade = verificarDisponibilidade(produtosIds, produtosQuantidades);
+		return new ReservaEstoqueDTO(null, disponibilidade.disponivel(), disponibilidade.idsProdutosIndisponiveis(),
+				produtosIds, produtosQuantidades, null);
+	}
+
+	/**
+	 * Reserva os itens de vários pedidos em uma única chamada; cada posição da resposta é a
+	 * reserva do pedido na mesma posição.
+	 */
+	public default List<ReservaEstoqueDTO> reservarEmLote(List<ItensEstoqueDTO> pedidos) {
+		List<ReservaEstoqueDTO> reservas = new ArrayList<>(pedidos.size());
+		try {
+			for (ItensEstoqueDTO itens : pedidos) {
+				reservas.add(reservar(itens.produtosIds(), itens.produtosQuantidades()));
+			}
+		} catch (RuntimeException e) {
+			for (ReservaEstoqueDTO reserva : reservas) {
+				if (reserva.reservado()) {
+					liberarReserva(reserva);
+				}
+			}
+			throw e;
+		}
+		return reservas;
+	}
+
+	/** Efetiva a baixa dos itens reservados; falha se a reserva já expirou ou foi liberada. */
+	public default EstoqueBaixaDTO confirmarReserva(ReservaEstoqueDTO reserva) {
+		return darBaixa(reserva.produtosIds(), reserva.produtosQuantidades());
+	}
+
+	/** Devolve ao estoque os itens de uma reserva não confirmada. */
+	public default void liberarReserva(ReservaEstoqueDTO reserva) {
+	}
+
+	/**
+	 * Versão assíncrona de {@link #reservar}. A implementação padrão faz a chamada síncrona na
+	 * thread de quem chamou; implementações com I/O não bloqueante devolvem o futuro sem esperar.
+	 */
+	public default CompletableFuture<ReservaEstoqueDTO> reservarAsync(List<Long> produtosIds,
+			List<Long> produtosQuantidades) {
+		try {
+			return CompletableFuture.completedFuture(reservar(produtosIds, produtosQuantidades));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/** Versão assíncrona de {@link #confirmarReserva}, com a mesma implementação padrão de {@link #reservarAsync}. */
+	public default CompletableFuture<EstoqueBaixaDTO> confirmarReservaAsync(ReservaEstoqueDTO reserva) {
+		try {
+			return CompletableFuture.completedFuture(confirmarReserva(reserva));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
 }
@@ -1,10 +1,61 @@
 package ecommerce.external;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
 
 public interface IPagamentoExternal {
 
 	PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal);
 
 	void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId);
+
+	/**
+	 * Autoriza com o {@code solicitacaoId} da solicitação, que o provedor usa para não autorizar
+	 * duas vezes o mesmo pedido e para localizar a autorização em {@link #cancelarSolicitacao}. A
+	 * implementação padrão ignora o id.
+	 */
+	default PagamentoDTO autorizarPagamento(SolicitacaoPagamentoDTO solicitacao) {
+		return autorizarPagamento(solicitacao.clienteId(), solicitacao.custoTotal());
+	}
+
+	default CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(SolicitacaoPagamentoDTO solicitacao) {
+		return autorizarPagamentoAsync(solicitacao.clienteId(), solicitacao.custoTotal());
+	}
+
+	/**
+	 * Cancela a autorização feita para a solicitação, se o provedor chegou a fazê-la; usado quando
+	 * a autorização ficou sem resposta. A implementação padrão não faz nada: sem o id, não há
+	 * autorização a localizar.
+	 */
+	default void cancelarSolicitacao(Long clienteId, String solicitacaoId) {
+	}
+
+	/**
+	 * Versão assíncrona de {@link #autorizarPagamento}. A implementação padrão faz a chamada
+	 * síncrona na thread de quem chamou; implementações com I/O não bloqueante devolvem o futuro
+	 * sem esperar a resposta do provedor.
+	 */
+	default CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(Long clienteId, Double custoTotal) {
+		try {
+			return CompletableFuture.completedFuture(autorizarPagamento(clienteId, custoTotal));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Autoriza vários pagamentos em uma única chamada; a resposta tem um {@link PagamentoDTO}
+	 * por solicitação, na mesma ordem. A implementação padrão autoriza um a um.
+	 */
+	default List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+		List<PagamentoDTO> pagamentos = new ArrayList<>(solicitacoes.size());
+		for (SolicitacaoPagamentoDTO solicitacao : solicitacoes) {
+			pagamentos.add(autorizarPagamento(solicitacao));
+		}
+		return pagamentos;
+	}
 }
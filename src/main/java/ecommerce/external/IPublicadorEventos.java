@@ -0,0 +1,15 @@
+package ecommerce.external;
+
+import java.util.List;
+
+import ecommerce.dto.EventoOutboxDTO;
+
+public interface IPublicadorEventos {
+
+	/**
+	 * Entrega um lote de eventos, em ordem de id. Uma exceção faz o lote inteiro ser entregue
+	 * de novo mais tarde, então os consumidores devem ignorar ids já recebidos.
+	 */
+	public void publicar(List<EventoOutboxDTO> eventos);
+
+}
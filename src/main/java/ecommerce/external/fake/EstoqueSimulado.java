@@ -2,6 +2,7 @@ package ecommerce.external.fake;
 
 import java.util.List;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import ecommerce.dto.DisponibilidadeDTO;
@@ -9,6 +10,7 @@ import ecommerce.dto.EstoqueBaixaDTO;
 import ecommerce.external.IEstoqueExternal;
 
 @Service
+@ConditionalOnProperty(name = "ecommerce.estoque.modo", havingValue = "simulado", matchIfMissing = true)
 public class EstoqueSimulado implements IEstoqueExternal {
     @Override
     public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
@@ -1,11 +1,13 @@
 package ecommerce.external.fake;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import ecommerce.dto.PagamentoDTO;
 import ecommerce.external.IPagamentoExternal;
 
 @Service
+@ConditionalOnProperty(name = "ecommerce.pagamento.modo", havingValue = "simulado", matchIfMissing = true)
 public class PagamentoSimulado implements IPagamentoExternal{
     @Override
     public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
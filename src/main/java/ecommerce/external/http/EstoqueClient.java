@@ -0,0 +1,35 @@
+package ecommerce.external.http;
+
+import java.util.List;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ItensEstoqueDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+
+@FeignClient(name = "estoque", url = "${ecommerce.estoque.url}")
+public interface EstoqueClient {
+
+	@PostMapping("/estoque/disponibilidade")
+	DisponibilidadeDTO verificarDisponibilidade(@RequestBody ItensEstoqueDTO itens);
+
+	@PostMapping("/estoque/baixa")
+	EstoqueBaixaDTO darBaixa(@RequestBody ItensEstoqueDTO itens);
+
+	@PostMapping("/estoque/reservas")
+	ReservaEstoqueDTO reservar(@RequestBody ItensEstoqueDTO itens);
+
+	@PostMapping("/estoque/reservas/lote")
+	List<ReservaEstoqueDTO> reservarEmLote(@RequestBody List<ItensEstoqueDTO> pedidos);
+
+	@PostMapping("/estoque/reservas/{reservaId}/confirmacao")
+	EstoqueBaixaDTO confirmarReserva(@PathVariable("reservaId") String reservaId, @RequestBody ItensEstoqueDTO itens);
+
+	@PostMapping("/estoque/reservas/{reservaId}/liberacao")
+	void liberarReserva(@PathVariable("reservaId") String reservaId, @RequestBody ItensEstoqueDTO itens);
+}
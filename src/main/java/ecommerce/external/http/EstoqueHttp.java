@@ -0,0 +1,96 @@
+package ecommerce.external.http;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ItensEstoqueDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.IEstoqueExternal;
+
+/**
+ * Estoque remoto, chamado por HTTP com o {@link EstoqueClient}; as versões assíncronas vão pelo
+ * {@link JsonHttpAssincrono}, abortadas ao fim de {@code ecommerce.resiliencia.estoque.tempo-limite}.
+ * Reservas são separadas, confirmadas e liberadas pelo serviço remoto, pelo id da reserva.
+ * Ativado com {@code ecommerce.estoque.modo=http}.
+ */
+@Service
+@ConditionalOnProperty(name = "ecommerce.estoque.modo", havingValue = "http")
+public class EstoqueHttp implements IEstoqueExternal {
+
+	private final EstoqueClient client;
+	private final JsonHttpAssincrono httpAssincrono;
+	private final String url;
+	private final Duration tempoResposta;
+
+	@Autowired
+	public EstoqueHttp(EstoqueClient client, JsonHttpAssincrono httpAssincrono,
+			@Value("${ecommerce.estoque.url}") String url,
+			@Value("${ecommerce.resiliencia.estoque.tempo-limite:2s}") Duration tempoResposta) {
+		this.client = client;
+		this.httpAssincrono = httpAssincrono;
+		this.url = url;
+		this.tempoResposta = tempoResposta;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return client.darBaixa(new ItensEstoqueDTO(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return client.verificarDisponibilidade(new ItensEstoqueDTO(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return client.reservar(new ItensEstoqueDTO(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public List<ReservaEstoqueDTO> reservarEmLote(List<ItensEstoqueDTO> pedidos) {
+		return client.reservarEmLote(pedidos);
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(ReservaEstoqueDTO reserva) {
+		if (reserva.reservaId() == null) {
+			return new EstoqueBaixaDTO(false);
+		}
+		return client.confirmarReserva(reserva.reservaId(), itens(reserva));
+	}
+
+	@Override
+	public void liberarReserva(ReservaEstoqueDTO reserva) {
+		if (reserva.reservaId() != null) {
+			client.liberarReserva(reserva.reservaId(), itens(reserva));
+		}
+	}
+
+	@Override
+	public CompletableFuture<ReservaEstoqueDTO> reservarAsync(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return httpAssincrono.post(url + "/estoque/reservas", new ItensEstoqueDTO(produtosIds, produtosQuantidades),
+				ReservaEstoqueDTO.class, tempoResposta);
+	}
+
+	@Override
+	public CompletableFuture<EstoqueBaixaDTO> confirmarReservaAsync(ReservaEstoqueDTO reserva) {
+		if (reserva.reservaId() == null) {
+			return CompletableFuture.completedFuture(new EstoqueBaixaDTO(false));
+		}
+		return httpAssincrono.post(url + "/estoque/reservas/" + reserva.reservaId() + "/confirmacao", itens(reserva),
+				EstoqueBaixaDTO.class, tempoResposta);
+	}
+
+	private static ItensEstoqueDTO itens(ReservaEstoqueDTO reserva) {
+		return new ItensEstoqueDTO(reserva.produtosIds(), reserva.produtosQuantidades());
+	}
+}
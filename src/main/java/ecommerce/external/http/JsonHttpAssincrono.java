@@ -0,0 +1,75 @@
+package ecommerce.external.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Chamadas JSON por HTTP sem bloquear quem chama, com o {@link HttpClient} do JDK. Respostas fora
+ * da faixa 2xx completam o futuro com {@link UncheckedIOException}.
+ */
+public class JsonHttpAssincrono implements AutoCloseable {
+
+	private static final String JSON = "application/json";
+
+	private final ObjectMapper objectMapper;
+	private final ExecutorService executor;
+	private final HttpClient httpClient;
+
+	public JsonHttpAssincrono(ObjectMapper objectMapper, int threads, Duration tempoConexao) {
+		this.objectMapper = objectMapper;
+		this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("http-assincrono-"));
+		this.httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(tempoConexao)
+				.executor(executor)
+				.build();
+	}
+
+	public <T> CompletableFuture<T> post(String url, Object corpo, Class<T> tipoResposta, Duration tempoResposta) {
+		HttpRequest requisicao;
+		try {
+			HttpRequest.Builder construtor = HttpRequest.newBuilder(URI.create(url))
+					.header("Content-Type", JSON)
+					.header("Accept", JSON)
+					.POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(corpo)));
+			if (!tempoResposta.isZero() && !tempoResposta.isNegative()) {
+				construtor.timeout(tempoResposta);
+			}
+			requisicao = construtor.build();
+		} catch (JsonProcessingException e) {
+			return CompletableFuture.failedFuture(new IllegalArgumentException("Corpo da requisição inválido.", e));
+		}
+		return httpClient.sendAsync(requisicao, HttpResponse.BodyHandlers.ofByteArray())
+				.thenApply(resposta -> ler(requisicao, resposta, tipoResposta));
+	}
+
+	private <T> T ler(HttpRequest requisicao, HttpResponse<byte[]> resposta, Class<T> tipoResposta) {
+		if (resposta.statusCode() / 100 != 2) {
+			throw new UncheckedIOException(new IOException(
+					"HTTP " + resposta.statusCode() + " em POST " + requisicao.uri()));
+		}
+		try {
+			return objectMapper.readValue(resposta.body(), tipoResposta);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,29 @@
+package ecommerce.external.http;
+
+import java.util.List;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+
+@FeignClient(name = "pagamento", url = "${ecommerce.pagamento.url}")
+public interface PagamentoClient {
+
+	@PostMapping("/pagamentos/autorizacoes")
+	PagamentoDTO autorizar(@RequestBody SolicitacaoPagamentoDTO solicitacao);
+
+	@PostMapping("/pagamentos/autorizacoes/lote")
+	List<PagamentoDTO> autorizarEmLote(@RequestBody List<SolicitacaoPagamentoDTO> solicitacoes);
+
+	@PostMapping("/pagamentos/{transacaoId}/cancelamento")
+	void cancelar(@PathVariable("transacaoId") Long transacaoId, @RequestParam("clienteId") Long clienteId);
+
+	@PostMapping("/pagamentos/solicitacoes/{solicitacaoId}/cancelamento")
+	void cancelarSolicitacao(@PathVariable("solicitacaoId") String solicitacaoId,
+			@RequestParam("clienteId") Long clienteId);
+}
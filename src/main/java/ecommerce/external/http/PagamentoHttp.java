@@ -0,0 +1,75 @@
+package ecommerce.external.http;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * Provedor de pagamento remoto, chamado por HTTP com o {@link PagamentoClient}. A autorização
+ * em lote vai em uma única requisição, e a autorização assíncrona vai pelo {@link JsonHttpAssincrono},
+ * abortada ao fim de {@code ecommerce.resiliencia.pagamento.tempo-limite}. O id da solicitação
+ * segue no corpo da autorização. Ativado com {@code ecommerce.pagamento.modo=http}.
+ */
+@Service
+@ConditionalOnProperty(name = "ecommerce.pagamento.modo", havingValue = "http")
+public class PagamentoHttp implements IPagamentoExternal {
+
+	private final PagamentoClient client;
+	private final JsonHttpAssincrono httpAssincrono;
+	private final String url;
+	private final Duration tempoResposta;
+
+	@Autowired
+	public PagamentoHttp(PagamentoClient client, JsonHttpAssincrono httpAssincrono,
+			@Value("${ecommerce.pagamento.url}") String url,
+			@Value("${ecommerce.resiliencia.pagamento.tempo-limite:2s}") Duration tempoResposta) {
+		this.client = client;
+		this.httpAssincrono = httpAssincrono;
+		this.url = url;
+		this.tempoResposta = tempoResposta;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+		return autorizarPagamento(new SolicitacaoPagamentoDTO(clienteId, custoTotal));
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(SolicitacaoPagamentoDTO solicitacao) {
+		return client.autorizar(solicitacao);
+	}
+
+	@Override
+	public CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(Long clienteId, Double custoTotal) {
+		return autorizarPagamentoAsync(new SolicitacaoPagamentoDTO(clienteId, custoTotal));
+	}
+
+	@Override
+	public CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(SolicitacaoPagamentoDTO solicitacao) {
+		return httpAssincrono.post(url + "/pagamentos/autorizacoes", solicitacao, PagamentoDTO.class, tempoResposta);
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+		client.cancelar(pagamentoTransacaoId, clienteId);
+	}
+
+	@Override
+	public void cancelarSolicitacao(Long clienteId, String solicitacaoId) {
+		client.cancelarSolicitacao(solicitacaoId, clienteId);
+	}
+
+	@Override
+	public List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+		return client.autorizarEmLote(solicitacoes);
+	}
+}
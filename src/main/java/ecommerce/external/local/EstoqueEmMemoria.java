@@ -0,0 +1,272 @@
+package ecommerce.external.local;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.IEstoqueExternal;
+
+/**
+ * Estoque mantido no próprio processo, indexado pelo id do produto, para testes de carga
+ * locais e para produtos cujo estoque é controlado pela loja.
+ */
+@Service
+@ConditionalOnProperty(name = "ecommerce.estoque.modo", havingValue = "memoria")
+public class EstoqueEmMemoria implements IEstoqueExternal {
+
+	// 8 longs = 64 bytes, o tamanho de uma linha de cache
+	private static final int ESPACAMENTO = 8;
+
+	private final int capacidade;
+	private final AtomicLongArray saldos;
+
+	private final Duration ttlReserva;
+	private final Map<String, Reserva> reservas = new ConcurrentHashMap<>();
+	private final AtomicLong sequenciaReservas = new AtomicLong();
+
+	public EstoqueEmMemoria(@Value("${ecommerce.estoque.memoria.capacidade:100000}") int capacidade,
+							@Value("${ecommerce.estoque.memoria.quantidade-inicial:0}") long quantidadeInicial,
+							@Value("${ecommerce.estoque.memoria.reserva-ttl:30s}") Duration ttlReserva) {
+		if (capacidade <= 0) {
+			throw new IllegalArgumentException("Capacidade do estoque deve ser positiva.");
+		}
+		if (quantidadeInicial < 0) {
+			throw new IllegalArgumentException("Quantidade inicial do estoque não pode ser negativa.");
+		}
+		if (ttlReserva.isNegative() || ttlReserva.isZero()) {
+			throw new IllegalArgumentException("Prazo da reserva deve ser positivo.");
+		}
+		this.capacidade = capacidade;
+		this.ttlReserva = ttlReserva;
+		this.saldos = new AtomicLongArray(Math.multiplyExact(capacidade, ESPACAMENTO));
+		if (quantidadeInicial > 0) {
+			for (int i = 0; i < capacidade; i++) {
+				saldos.set(i * ESPACAMENTO, quantidadeInicial);
+			}
+		}
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		Demanda demanda = Demanda.de(produtosIds, produtosQuantidades, capacidade);
+		return new EstoqueBaixaDTO(demanda.foraDaFaixa.isEmpty() && retirarTodos(demanda));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return indisponiveis(Demanda.de(produtosIds, produtosQuantidades, capacidade));
+	}
+
+	@Override
+	public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		Demanda demanda = Demanda.de(produtosIds, produtosQuantidades, capacidade);
+		if (!demanda.foraDaFaixa.isEmpty() || !retirarTodos(demanda)) {
+			// Saldo lido depois da tentativa: os ids informados são os que faltam neste instante
+			DisponibilidadeDTO disponibilidade = indisponiveis(demanda);
+			return new ReservaEstoqueDTO(null, false, disponibilidade.idsProdutosIndisponiveis(),
+					produtosIds, produtosQuantidades, null);
+		}
+
+		String reservaId = Long.toString(sequenciaReservas.incrementAndGet());
+		Instant expiraEm = Instant.now().plus(ttlReserva);
+		reservas.put(reservaId, new Reserva(demanda, System.nanoTime() + ttlReserva.toNanos()));
+		return new ReservaEstoqueDTO(reservaId, true, List.of(), produtosIds, produtosQuantidades, expiraEm);
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(ReservaEstoqueDTO reserva) {
+		Reserva guardada = reserva.reservaId() == null ? null : reservas.remove(reserva.reservaId());
+		if (guardada == null) {
+			return new EstoqueBaixaDTO(false);
+		}
+		if (guardada.expirada(System.nanoTime())) {
+			devolver(guardada.demanda, guardada.demanda.tamanho);
+			return new EstoqueBaixaDTO(false);
+		}
+		return new EstoqueBaixaDTO(true);
+	}
+
+	@Override
+	public void liberarReserva(ReservaEstoqueDTO reserva) {
+		Reserva guardada = reserva.reservaId() == null ? null : reservas.remove(reserva.reservaId());
+		if (guardada != null) {
+			devolver(guardada.demanda, guardada.demanda.tamanho);
+		}
+	}
+
+	/** Devolve ao saldo as reservas vencidas. */
+	@Scheduled(fixedDelayString = "${ecommerce.estoque.memoria.varredura-ms:1000}")
+	public void liberarExpiradas() {
+		long agora = System.nanoTime();
+		for (Map.Entry<String, Reserva> entrada : reservas.entrySet()) {
+			Reserva reserva = entrada.getValue();
+			// remove(chave, valor) garante que confirmação e varredura não devolvam a mesma reserva
+			if (reserva.expirada(agora) && reservas.remove(entrada.getKey(), reserva)) {
+				devolver(reserva.demanda, reserva.demanda.tamanho);
+			}
+		}
+	}
+
+	public int reservasAtivas() {
+		return reservas.size();
+	}
+
+	public long saldo(long produtoId) {
+		return saldos.get(posicaoValidada(produtoId));
+	}
+
+	public void definirSaldo(long produtoId, long quantidade) {
+		if (quantidade < 0) {
+			throw new IllegalArgumentException("Saldo não pode ser negativo.");
+		}
+		saldos.set(posicaoValidada(produtoId), quantidade);
+	}
+
+	public void repor(long produtoId, long quantidade) {
+		if (quantidade < 0) {
+			throw new IllegalArgumentException("Quantidade reposta não pode ser negativa.");
+		}
+		saldos.getAndUpdate(posicaoValidada(produtoId), atual -> Math.addExact(atual, quantidade));
+	}
+
+	private boolean retirarTodos(Demanda demanda) {
+		for (int i = 0; i < demanda.tamanho; i++) {
+			if (!retirar(posicao(demanda.ids[i]), demanda.quantidades[i])) {
+				devolver(demanda, i);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void devolver(Demanda demanda, int itens) {
+		for (int i = 0; i < itens; i++) {
+			saldos.getAndAdd(posicao(demanda.ids[i]), demanda.quantidades[i]);
+		}
+	}
+
+	private boolean retirar(int posicao, long quantidade) {
+		long atual;
+		do {
+			atual = saldos.get(posicao);
+			if (atual < quantidade) {
+				return false;
+			}
+		} while (!saldos.compareAndSet(posicao, atual, atual - quantidade));
+		return true;
+	}
+
+	private DisponibilidadeDTO indisponiveis(Demanda demanda) {
+		List<Long> indisponiveis = new ArrayList<>(demanda.foraDaFaixa);
+		for (int i = 0; i < demanda.tamanho; i++) {
+			if (saldos.get(posicao(demanda.ids[i])) < demanda.quantidades[i]) {
+				indisponiveis.add(demanda.ids[i]);
+			}
+		}
+		return new DisponibilidadeDTO(indisponiveis.isEmpty(), indisponiveis);
+	}
+
+	private int posicaoValidada(long produtoId) {
+		if (produtoId < 0 || produtoId >= capacidade) {
+			throw new IllegalArgumentException("Produto fora da capacidade do estoque: " + produtoId);
+		}
+		return posicao(produtoId);
+	}
+
+	private static int posicao(long produtoId) {
+		return (int) produtoId * ESPACAMENTO;
+	}
+
+	private static final class Reserva {
+
+		private final Demanda demanda;
+		private final long expiraEmNanos;
+
+		private Reserva(Demanda demanda, long expiraEmNanos) {
+			this.demanda = demanda;
+			this.expiraEmNanos = expiraEmNanos;
+		}
+
+		boolean expirada(long agoraNanos) {
+			return agoraNanos - expiraEmNanos >= 0;
+		}
+	}
+
+	/**
+	 * Itens de um pedido ordenados por id, com as quantidades de ids repetidos somadas.
+	 * Ids fora da capacidade do estoque ficam separados e são sempre indisponíveis.
+	 */
+	private static final class Demanda {
+
+		private final long[] ids;
+		private final long[] quantidades;
+		private final int tamanho;
+		private final List<Long> foraDaFaixa;
+
+		private Demanda(long[] ids, long[] quantidades, int tamanho, List<Long> foraDaFaixa) {
+			this.ids = ids;
+			this.quantidades = quantidades;
+			this.tamanho = tamanho;
+			this.foraDaFaixa = foraDaFaixa;
+		}
+
+		static Demanda de(List<Long> produtosIds, List<Long> produtosQuantidades, int capacidade) {
+			if (produtosIds == null || produtosQuantidades == null || produtosIds.size() != produtosQuantidades.size()) {
+				throw new IllegalArgumentException("Listas de produtos e quantidades inconsistentes.");
+			}
+			int total = produtosIds.size();
+			// id na metade alta e posição na lista na metade baixa: ordenar agrupa os ids repetidos
+			long[] chaves = new long[total];
+			int validos = 0;
+			List<Long> foraDaFaixa = new ArrayList<>(0);
+			for (int i = 0; i < total; i++) {
+				Long id = produtosIds.get(i);
+				Long quantidade = produtosQuantidades.get(i);
+				if (id == null) {
+					throw new IllegalArgumentException("Produto sem ID no pedido de estoque.");
+				}
+				if (quantidade == null || quantidade < 0) {
+					throw new IllegalArgumentException("Quantidade inválida para o produto: " + id);
+				}
+				if (id < 0 || id >= capacidade) {
+					if (!foraDaFaixa.contains(id)) {
+						foraDaFaixa.add(id);
+					}
+					continue;
+				}
+				chaves[validos++] = (id << 32) | i;
+			}
+			Arrays.sort(chaves, 0, validos);
+
+			long[] ids = new long[validos];
+			long[] quantidades = new long[validos];
+			int tamanho = 0;
+			for (int k = 0; k < validos; k++) {
+				long id = chaves[k] >>> 32;
+				long quantidade = produtosQuantidades.get((int) chaves[k]);
+				if (tamanho > 0 && ids[tamanho - 1] == id) {
+					quantidades[tamanho - 1] = Math.addExact(quantidades[tamanho - 1], quantidade);
+				} else {
+					ids[tamanho] = id;
+					quantidades[tamanho] = quantidade;
+					tamanho++;
+				}
+			}
+			return new Demanda(ids, quantidades, tamanho, foraDaFaixa);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package ecommerce.external.local;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.EventoOutboxDTO;
+import ecommerce.external.IPublicadorEventos;
+
+/**
+ * Publicador para execução local sem broker: registra os eventos no log e os descarta, sem
+ * guardar nada em memória. O conteúdo de cada evento só aparece com o nível DEBUG.
+ */
+@Service
+@ConditionalOnProperty(name = "ecommerce.outbox.publicador", havingValue = "log", matchIfMissing = true)
+public class PublicadorEventosLog implements IPublicadorEventos {
+
+	private static final Logger log = LoggerFactory.getLogger(PublicadorEventosLog.class);
+
+	@Override
+	public void publicar(List<EventoOutboxDTO> eventos) {
+		if (eventos.isEmpty()) {
+			return;
+		}
+		log.info("{} eventos publicados e descartados (ids {} a {})", eventos.size(), eventos.get(0).id(),
+				eventos.get(eventos.size() - 1).id());
+		if (log.isDebugEnabled()) {
+			for (EventoOutboxDTO evento : eventos) {
+				log.debug("Evento {} {}: {}", evento.id(), evento.tipo(), evento.payload());
+			}
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package ecommerce.external.local;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ItensEstoqueDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+
+/**
+ * Servidor HTTP local que responde como as APIs de estoque e de pagamento, para testes de vazão
+ * do caminho de rede sem depender de serviços externos. Cada requisição espera {@code latencia}.
+ */
+public class ServidorStubHttp implements AutoCloseable {
+
+	private static final String JSON = "application/json";
+
+	private final ObjectMapper objectMapper;
+	private final long latenciaNanos;
+	private final int limiarGzip;
+	private final HttpServer servidor;
+	private final ExecutorService executor;
+
+	private final AtomicLong proximaTransacao = new AtomicLong(1);
+	private final AtomicLong proximaReserva = new AtomicLong(1);
+	private final Set<String> reservas = ConcurrentHashMap.newKeySet();
+	private final AtomicLong requisicoes = new AtomicLong();
+	private final AtomicLong respostasComprimidas = new AtomicLong();
+	private final Set<String> conexoes = ConcurrentHashMap.newKeySet();
+
+	public ServidorStubHttp(ObjectMapper objectMapper, int porta, Duration latencia, int threads, int limiarGzip)
+			throws IOException {
+		if (latencia.isNegative() || threads <= 0) {
+			throw new IllegalArgumentException("Latência não pode ser negativa e o número de threads deve ser positivo.");
+		}
+		this.objectMapper = objectMapper;
+		this.latenciaNanos = latencia.toNanos();
+		this.limiarGzip = limiarGzip;
+		// Sem TCP_NODELAY, o servidor do JDK espera o ACK atrasado do cliente entre o cabeçalho
+		// e o corpo da resposta, o que soma uns 40 ms a cada requisição em conexão reaproveitada
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		this.servidor = HttpServer.create(new InetSocketAddress("localhost", porta), 0);
+		this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("stub-http-"));
+		this.servidor.setExecutor(executor);
+		this.servidor.createContext("/", this::atender);
+	}
+
+	public void iniciar() {
+		servidor.start();
+	}
+
+	/** Porta em que o servidor escuta; útil quando criado com porta 0. */
+	public int porta() {
+		return servidor.getAddress().getPort();
+	}
+
+	public long requisicoes() {
+		return requisicoes.get();
+	}
+
+	public long respostasComprimidas() {
+		return respostasComprimidas.get();
+	}
+
+	public int reservasAtivas() {
+		return reservas.size();
+	}
+
+	/** Conexões TCP distintas que já fizeram requisições. */
+	public int conexoes() {
+		return conexoes.size();
+	}
+
+	@Override
+	public void close() {
+		servidor.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void atender(HttpExchange troca) throws IOException {
+		try (troca) {
+			requisicoes.incrementAndGet();
+			conexoes.add(troca.getRemoteAddress().toString());
+			if (!"POST".equals(troca.getRequestMethod())) {
+				troca.sendResponseHeaders(405, -1);
+				return;
+			}
+			aguardarLatencia();
+
+			String caminho = troca.getRequestURI().getPath();
+			if (caminho.equals("/estoque/disponibilidade")) {
+				ler(troca, ItensEstoqueDTO.class);
+				responder(troca, new DisponibilidadeDTO(true, Collections.emptyList()));
+			} else if (caminho.equals("/estoque/baixa")) {
+				ler(troca, ItensEstoqueDTO.class);
+				responder(troca, new EstoqueBaixaDTO(true));
+			} else if (caminho.equals("/estoque/reservas")) {
+				responder(troca, reservar(ler(troca, ItensEstoqueDTO.class)));
+			} else if (caminho.equals("/estoque/reservas/lote")) {
+				List<ItensEstoqueDTO> pedidos = objectMapper.readValue(corpo(troca),
+						new TypeReference<List<ItensEstoqueDTO>>() {
+						});
+				List<ReservaEstoqueDTO> concedidas = new ArrayList<>(pedidos.size());
+				for (ItensEstoqueDTO itens : pedidos) {
+					concedidas.add(reservar(itens));
+				}
+				responder(troca, concedidas);
+			} else if (caminho.startsWith("/estoque/reservas/") && caminho.endsWith("/confirmacao")) {
+				corpo(troca).close();
+				responder(troca, new EstoqueBaixaDTO(reservas.remove(reservaId(caminho))));
+			} else if (caminho.startsWith("/estoque/reservas/") && caminho.endsWith("/liberacao")) {
+				corpo(troca).close();
+				reservas.remove(reservaId(caminho));
+				troca.sendResponseHeaders(204, -1);
+			} else if (caminho.equals("/pagamentos/autorizacoes")) {
+				ler(troca, SolicitacaoPagamentoDTO.class);
+				responder(troca, new PagamentoDTO(true, proximaTransacao.getAndIncrement()));
+			} else if (caminho.equals("/pagamentos/autorizacoes/lote")) {
+				List<SolicitacaoPagamentoDTO> solicitacoes = objectMapper.readValue(corpo(troca),
+						new TypeReference<List<SolicitacaoPagamentoDTO>>() {
+						});
+				List<PagamentoDTO> pagamentos = new ArrayList<>(solicitacoes.size());
+				for (int i = 0; i < solicitacoes.size(); i++) {
+					pagamentos.add(new PagamentoDTO(true, proximaTransacao.getAndIncrement()));
+				}
+				responder(troca, pagamentos);
+			} else if (caminho.startsWith("/pagamentos/") && caminho.endsWith("/cancelamento")) {
+				corpo(troca).close();
+				troca.sendResponseHeaders(204, -1);
+			} else {
+				troca.sendResponseHeaders(404, -1);
+			}
+		}
+	}
+
+	private ReservaEstoqueDTO reservar(ItensEstoqueDTO itens) {
+		String reservaId = Long.toString(proximaReserva.getAndIncrement());
+		reservas.add(reservaId);
+		return new ReservaEstoqueDTO(reservaId, true, Collections.emptyList(), itens.produtosIds(),
+				itens.produtosQuantidades(), null);
+	}
+
+	// /estoque/reservas/{reservaId}/confirmacao ou /liberacao
+	private static String reservaId(String caminho) {
+		return caminho.substring("/estoque/reservas/".length(), caminho.lastIndexOf('/'));
+	}
+
+	private void aguardarLatencia() {
+		if (latenciaNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(latenciaNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private <T> T ler(HttpExchange troca, Class<T> tipo) throws IOException {
+		try (InputStream corpo = corpo(troca)) {
+			return objectMapper.readValue(corpo, tipo);
+		}
+	}
+
+	private static InputStream corpo(HttpExchange troca) throws IOException {
+		String codificacao = troca.getRequestHeaders().getFirst("Content-Encoding");
+		InputStream corpo = troca.getRequestBody();
+		return codificacao != null && codificacao.contains("gzip") ? new GZIPInputStream(corpo) : corpo;
+	}
+
+	private void responder(HttpExchange troca, Object resposta) throws IOException {
+		byte[] corpo = objectMapper.writeValueAsBytes(resposta);
+		String aceita = troca.getRequestHeaders().getFirst("Accept-Encoding");
+		if (corpo.length >= limiarGzip && aceita != null && aceita.contains("gzip")) {
+			ByteArrayOutputStream comprimido = new ByteArrayOutputStream(corpo.length / 4);
+			try (GZIPOutputStream gzip = new GZIPOutputStream(comprimido)) {
+				gzip.write(corpo);
+			}
+			corpo = comprimido.toByteArray();
+			troca.getResponseHeaders().set("Content-Encoding", "gzip");
+			respostasComprimidas.incrementAndGet();
+		}
+		troca.getResponseHeaders().set("Content-Type", JSON);
+		troca.sendResponseHeaders(200, corpo.length);
+		try (OutputStream saida = troca.getResponseBody()) {
+			saida.write(corpo);
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package ecommerce.external.lote;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.resiliencia.DependenciaIndisponivelException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Decorador de {@link IPagamentoExternal} que junta autorizações concorrentes em lotes de até
+ * {@code tamanhoMaximo} pedidos ou {@code esperaMaxima} de espera.
+ */
+public class AgrupadorPagamentos implements IPagamentoExternal, AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(AgrupadorPagamentos.class);
+
+	private final IPagamentoExternal pagamentoExternal;
+	private final BiConsumer<Long, Long> cancelarAtrasado;
+	private final int tamanhoMaximo;
+	private final long esperaMaximaNanos;
+	private final long tempoLimiteNanos;
+
+	private final BlockingQueue<Pedido> fila;
+	private final ThreadPoolExecutor envios;
+	private final Thread despachante;
+	private volatile boolean ativo = true;
+
+	private final DistributionSummary preenchimento;
+	private final Timer espera;
+
+	public AgrupadorPagamentos(IPagamentoExternal pagamentoExternal, MeterRegistry meterRegistry, int tamanhoMaximo,
+							   Duration esperaMaxima, Duration tempoLimite, int enviosSimultaneos, int capacidadeFila,
+							   BiConsumer<Long, Long> cancelarAtrasado) {
+		if (tamanhoMaximo <= 0 || enviosSimultaneos <= 0 || capacidadeFila <= 0) {
+			throw new IllegalArgumentException("Tamanho do lote, envios simultâneos e fila devem ser positivos.");
+		}
+		if (esperaMaxima.isNegative()) {
+			throw new IllegalArgumentException("Espera máxima do lote não pode ser negativa.");
+		}
+		if (tempoLimite.isNegative() || tempoLimite.isZero()) {
+			throw new IllegalArgumentException("Tempo limite do lote deve ser positivo.");
+		}
+		this.pagamentoExternal = pagamentoExternal;
+		this.cancelarAtrasado = cancelarAtrasado;
+		this.tamanhoMaximo = tamanhoMaximo;
+		this.esperaMaximaNanos = esperaMaxima.toNanos();
+		this.tempoLimiteNanos = tempoLimite.toNanos();
+		this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+		// Com o pool ocupado, o despachante envia; depois do encerramento, o envio é recusado
+		this.envios = new ThreadPoolExecutor(enviosSimultaneos, enviosSimultaneos, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(enviosSimultaneos), new CustomizableThreadFactory("pagamento-lote-"),
+				(envio, executor) -> {
+					if (executor.isShutdown()) {
+						throw new RejectedExecutionException("Agrupador de pagamentos encerrado.");
+					}
+					envio.run();
+				});
+		this.envios.allowCoreThreadTimeOut(true);
+
+		this.preenchimento = DistributionSummary.builder("pagamento.lote.preenchimento")
+				.description("Tamanho do lote de autorizações dividido pelo tamanho máximo")
+				.register(meterRegistry);
+		this.espera = Timer.builder("pagamento.lote.espera")
+				.description("Tempo entre a chegada da autorização e o envio do seu lote")
+				.publishPercentiles(0.5, 0.99)
+				.register(meterRegistry);
+
+		this.despachante = new CustomizableThreadFactory("pagamento-despachante-").newThread(this::despachar);
+		this.despachante.setDaemon(true);
+		this.despachante.start();
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+		Pedido pedido = new Pedido(new SolicitacaoPagamentoDTO(clienteId, custoTotal), System.nanoTime());
+		if (!enfileirar(pedido)) {
+			return pagamentoExternal.autorizarPagamento(clienteId, custoTotal);
+		}
+		return aguardar(pedido);
+	}
+
+	// O pedido entra no próximo lote e o futuro completa quando o lote volta, sem thread esperando
+	@Override
+	public CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(Long clienteId, Double custoTotal) {
+		Pedido pedido = new Pedido(new SolicitacaoPagamentoDTO(clienteId, custoTotal), System.nanoTime());
+		if (!enfileirar(pedido)) {
+			return pagamentoExternal.autorizarPagamentoAsync(clienteId, custoTotal);
+		}
+		return pedido.resposta.copy().orTimeout(tempoLimiteNanos, TimeUnit.NANOSECONDS)
+				.exceptionallyCompose(erro -> {
+					if (erro instanceof TimeoutException) {
+						abandonar(pedido);
+						return CompletableFuture.failedFuture(tempoEsgotado(erro));
+					}
+					return CompletableFuture.failedFuture(erro);
+				});
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+		pagamentoExternal.cancelarPagamento(clienteId, pagamentoTransacaoId);
+	}
+
+	// Um lote já formado pelo chamador não passa pela fila
+	@Override
+	public List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+		return pagamentoExternal.autorizarPagamentosEmLote(solicitacoes);
+	}
+
+	@Override
+	public void close() {
+		ativo = false;
+		despachante.interrupt();
+		try {
+			despachante.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		envios.shutdown();
+
+		// Pedidos que entraram na fila enquanto o despachante terminava
+		List<Pedido> restantes = new ArrayList<>();
+		fila.drainTo(restantes);
+		for (Pedido pedido : restantes) {
+			pedido.resposta.completeExceptionally(new IllegalStateException("Agrupador de pagamentos encerrado."));
+		}
+	}
+
+	// Falso se o pedido deve ser autorizado direto: fila cheia ou agrupador encerrado. Um pedido
+	// que entrou enquanto close() esvaziava a fila é retirado de volta
+	private boolean enfileirar(Pedido pedido) {
+		if (!ativo || !fila.offer(pedido)) {
+			return false;
+		}
+		return ativo || !fila.remove(pedido);
+	}
+
+	private void despachar() {
+		List<Pedido> lote = new ArrayList<>(tamanhoMaximo);
+		while (ativo) {
+			try {
+				lote.add(fila.take());
+				long prazo = System.nanoTime() + esperaMaximaNanos;
+				while (lote.size() < tamanhoMaximo) {
+					fila.drainTo(lote, tamanhoMaximo - lote.size());
+					long restante = prazo - System.nanoTime();
+					if (lote.size() == tamanhoMaximo || restante <= 0) {
+						break;
+					}
+					Pedido proximo = fila.poll(restante, TimeUnit.NANOSECONDS);
+					if (proximo == null) {
+						break;
+					}
+					lote.add(proximo);
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+			enviar(List.copyOf(lote));
+			lote.clear();
+		}
+
+		// Encerrando: o que ficou na fila é autorizado sem esperar novos pedidos
+		fila.drainTo(lote);
+		if (!lote.isEmpty()) {
+			enviar(List.copyOf(lote));
+		}
+	}
+
+	private void enviar(List<Pedido> lote) {
+		long agora = System.nanoTime();
+		preenchimento.record((double) lote.size() / tamanhoMaximo);
+		List<SolicitacaoPagamentoDTO> solicitacoes = new ArrayList<>(lote.size());
+		for (Pedido pedido : lote) {
+			espera.record(agora - pedido.chegadaNanos, TimeUnit.NANOSECONDS);
+			solicitacoes.add(pedido.solicitacao);
+		}
+
+		try {
+			envios.execute(() -> {
+				try {
+					List<PagamentoDTO> pagamentos = pagamentoExternal.autorizarPagamentosEmLote(solicitacoes);
+					if (pagamentos == null || pagamentos.size() != lote.size()) {
+						throw new IllegalStateException("Resposta do lote de pagamentos não corresponde às solicitações.");
+					}
+					for (int i = 0; i < lote.size(); i++) {
+						lote.get(i).resposta.complete(pagamentos.get(i));
+					}
+				} catch (RuntimeException e) {
+					for (Pedido pedido : lote) {
+						pedido.resposta.completeExceptionally(e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			for (Pedido pedido : lote) {
+				pedido.resposta.completeExceptionally(new IllegalStateException("Agrupador de pagamentos encerrado.", e));
+			}
+		}
+	}
+
+	// Repassa ao chamador a exceção original do envio do lote
+	private PagamentoDTO aguardar(Pedido pedido) {
+		try {
+			return pedido.resposta.get(tempoLimiteNanos, TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			abandonar(pedido);
+			throw tempoEsgotado(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException causa) {
+				throw causa;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			abandonar(pedido);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Autorização de pagamento interrompida.", e);
+		}
+	}
+
+	// Quem chamou já desistiu: um pagamento autorizado depois disso não pode ficar cobrado
+	private void abandonar(Pedido pedido) {
+		pedido.resposta.thenAccept(pagamento -> {
+			if (Boolean.TRUE.equals(pagamento.autorizado())) {
+				try {
+					cancelarAtrasado.accept(pedido.solicitacao.clienteId(), pagamento.transacaoId());
+				} catch (RuntimeException e) {
+					log.error("Pagamento {} autorizado depois do tempo limite e não cancelado", pagamento.transacaoId(), e);
+				}
+			}
+		});
+	}
+
+	private DependenciaIndisponivelException tempoEsgotado(Throwable causa) {
+		return new DependenciaIndisponivelException("pagamento",
+				"tempo limite de " + TimeUnit.NANOSECONDS.toMillis(tempoLimiteNanos) + " ms do lote excedido", causa);
+	}
+
+	private static final class Pedido {
+
+		private final SolicitacaoPagamentoDTO solicitacao;
+		private final long chegadaNanos;
+		private final CompletableFuture<PagamentoDTO> resposta = new CompletableFuture<>();
+
+		private Pedido(SolicitacaoPagamentoDTO solicitacao, long chegadaNanos) {
+			this.solicitacao = solicitacao;
+			this.chegadaNanos = chegadaNanos;
+		}
+	}
+}
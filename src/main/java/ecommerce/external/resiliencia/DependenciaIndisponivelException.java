@@ -0,0 +1,19 @@
+package ecommerce.external.resiliencia;
+
+/**
+ * A chamada a um serviço externo foi recusada sem chegar a ele (circuito aberto ou limite de
+ * chamadas simultâneas atingido) ou passou do tempo limite.
+ */
+public class DependenciaIndisponivelException extends RuntimeException {
+
+	private final String dependencia;
+
+	public DependenciaIndisponivelException(String dependencia, String motivo, Throwable causa) {
+		super("Serviço de " + dependencia + " indisponível: " + motivo + ".", causa);
+		this.dependencia = dependencia;
+	}
+
+	public String getDependencia() {
+		return dependencia;
+	}
+}
@@ -0,0 +1,72 @@
+package ecommerce.external.resiliencia;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ItensEstoqueDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.IEstoqueExternal;
+
+/** Decorador de {@link IEstoqueExternal} que passa cada chamada pela {@link Resiliencia} do estoque. */
+public class EstoqueResiliente implements IEstoqueExternal {
+
+	private static final Logger log = LoggerFactory.getLogger(EstoqueResiliente.class);
+
+	private final IEstoqueExternal estoqueExternal;
+	private final Resiliencia resiliencia;
+
+	public EstoqueResiliente(IEstoqueExternal estoqueExternal, Resiliencia resiliencia) {
+		this.estoqueExternal = estoqueExternal;
+		this.resiliencia = resiliencia;
+	}
+
+	@Override
+	public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return resiliencia.executar(() -> estoqueExternal.darBaixa(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return resiliencia.executar(() -> estoqueExternal.verificarDisponibilidade(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public ReservaEstoqueDTO reservar(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return resiliencia.executar(() -> estoqueExternal.reservar(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public List<ReservaEstoqueDTO> reservarEmLote(List<ItensEstoqueDTO> pedidos) {
+		return resiliencia.executar(() -> estoqueExternal.reservarEmLote(pedidos));
+	}
+
+	@Override
+	public EstoqueBaixaDTO confirmarReserva(ReservaEstoqueDTO reserva) {
+		return resiliencia.executar(() -> estoqueExternal.confirmarReserva(reserva));
+	}
+
+	@Override
+	public CompletableFuture<ReservaEstoqueDTO> reservarAsync(List<Long> produtosIds, List<Long> produtosQuantidades) {
+		return resiliencia.executarAsync(() -> estoqueExternal.reservarAsync(produtosIds, produtosQuantidades));
+	}
+
+	@Override
+	public CompletableFuture<EstoqueBaixaDTO> confirmarReservaAsync(ReservaEstoqueDTO reserva) {
+		return resiliencia.executarAsync(() -> estoqueExternal.confirmarReservaAsync(reserva));
+	}
+
+	@Override
+	public void liberarReserva(ReservaEstoqueDTO reserva) {
+		try {
+			resiliencia.executar(() -> estoqueExternal.liberarReserva(reserva));
+		} catch (RuntimeException e) {
+			// A reserva não liberada expira sozinha; a falha original da compra é que deve subir
+			log.warn("Reserva {} não liberada; fica para expirar no estoque", reserva.reservaId(), e);
+		}
+	}
+}
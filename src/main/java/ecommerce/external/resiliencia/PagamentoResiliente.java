@@ -0,0 +1,112 @@
+package ecommerce.external.resiliencia;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+import ecommerce.external.IPagamentoExternal;
+
+/**
+ * Decorador de {@link IPagamentoExternal} que passa cada chamada pela {@link Resiliencia} do
+ * pagamento. Autorizações sem resposta no tempo limite vão para {@code cancelarSemResposta}.
+ */
+public class PagamentoResiliente implements IPagamentoExternal {
+
+	private final IPagamentoExternal pagamentoExternal;
+	private final Resiliencia resiliencia;
+	private final BiConsumer<Long, String> cancelarSemResposta;
+
+	public PagamentoResiliente(IPagamentoExternal pagamentoExternal, Resiliencia resiliencia,
+							   BiConsumer<Long, String> cancelarSemResposta) {
+		this.pagamentoExternal = pagamentoExternal;
+		this.resiliencia = resiliencia;
+		this.cancelarSemResposta = cancelarSemResposta;
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+		return autorizarPagamento(new SolicitacaoPagamentoDTO(clienteId, custoTotal));
+	}
+
+	@Override
+	public PagamentoDTO autorizarPagamento(SolicitacaoPagamentoDTO solicitacao) {
+		SolicitacaoPagamentoDTO identificada = identificar(solicitacao);
+		try {
+			return resiliencia.executar(() -> pagamentoExternal.autorizarPagamento(identificada));
+		} catch (RuntimeException e) {
+			cancelarSeSemResposta(e, List.of(identificada));
+			throw e;
+		}
+	}
+
+	@Override
+	public CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(Long clienteId, Double custoTotal) {
+		return autorizarPagamentoAsync(new SolicitacaoPagamentoDTO(clienteId, custoTotal));
+	}
+
+	@Override
+	public CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(SolicitacaoPagamentoDTO solicitacao) {
+		SolicitacaoPagamentoDTO identificada = identificar(solicitacao);
+		return resiliencia.executarAsync(() -> pagamentoExternal.autorizarPagamentoAsync(identificada))
+				.whenComplete((pagamento, erro) -> {
+					if (erro != null) {
+						cancelarSeSemResposta(erro, List.of(identificada));
+					}
+				});
+	}
+
+	@Override
+	public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+		resiliencia.executar(() -> pagamentoExternal.cancelarPagamento(clienteId, pagamentoTransacaoId));
+	}
+
+	@Override
+	public void cancelarSolicitacao(Long clienteId, String solicitacaoId) {
+		resiliencia.executar(() -> pagamentoExternal.cancelarSolicitacao(clienteId, solicitacaoId));
+	}
+
+	@Override
+	public List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+		List<SolicitacaoPagamentoDTO> identificadas = new ArrayList<>(solicitacoes.size());
+		for (SolicitacaoPagamentoDTO solicitacao : solicitacoes) {
+			identificadas.add(identificar(solicitacao));
+		}
+		try {
+			return resiliencia.executar(() -> pagamentoExternal.autorizarPagamentosEmLote(identificadas));
+		} catch (RuntimeException e) {
+			cancelarSeSemResposta(e, identificadas);
+			throw e;
+		}
+	}
+
+	private void cancelarSeSemResposta(Throwable erro, List<SolicitacaoPagamentoDTO> solicitacoes) {
+		if (semResposta(erro)) {
+			for (SolicitacaoPagamentoDTO solicitacao : solicitacoes) {
+				cancelarSemResposta.accept(solicitacao.clienteId(), solicitacao.solicitacaoId());
+			}
+		}
+	}
+
+	// Tempo limite da resiliência ou do próprio cliente HTTP: a requisição pode ter chegado ao provedor
+	private static boolean semResposta(Throwable erro) {
+		for (Throwable causa = erro; causa != null; causa = causa.getCause()) {
+			if (causa instanceof TimeoutException || causa instanceof HttpTimeoutException
+					|| causa instanceof SocketTimeoutException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static SolicitacaoPagamentoDTO identificar(SolicitacaoPagamentoDTO solicitacao) {
+		return solicitacao.solicitacaoId() != null ? solicitacao : new SolicitacaoPagamentoDTO(solicitacao.clienteId(),
+				solicitacao.custoTotal(), UUID.randomUUID().toString());
+	}
+}
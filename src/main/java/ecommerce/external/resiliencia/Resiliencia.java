@@ -0,0 +1,255 @@
+package ecommerce.external.resiliencia;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import ecommerce.config.ThreadsVirtuais;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Proteção das chamadas a um serviço externo: circuit breaker com janela deslizante de taxa
+ * de falhas, bulkhead por semáforo e tempo limite por chamada.
+ */
+public class Resiliencia implements AutoCloseable {
+
+	private final String dependencia;
+	private final CircuitBreaker circuitBreaker;
+	private final Bulkhead bulkhead;
+	private final long tempoLimiteNanos;
+	private final ExecutorService executor;
+
+	private final Counter rejeicoesCircuitoAberto;
+	private final Counter rejeicoesBulkheadCheio;
+	private final Counter rejeicoesTempoLimite;
+
+	public Resiliencia(String dependencia, CircuitBreaker circuitBreaker, Bulkhead bulkhead, Duration tempoLimite,
+					   MeterRegistry meterRegistry) {
+		this(dependencia, circuitBreaker, bulkhead, tempoLimite, meterRegistry, false);
+	}
+
+	/**
+	 * Com {@code threadsVirtuais}, as chamadas com tempo limite rodam cada uma em uma thread
+	 * virtual (exige o perfil {@code java21}); o bulkhead continua limitando quantas ficam em andamento.
+	 */
+	public Resiliencia(String dependencia, CircuitBreaker circuitBreaker, Bulkhead bulkhead, Duration tempoLimite,
+					   MeterRegistry meterRegistry, boolean threadsVirtuais) {
+		if (tempoLimite.isNegative()) {
+			throw new IllegalArgumentException("Tempo limite não pode ser negativo.");
+		}
+		this.dependencia = dependencia;
+		this.circuitBreaker = circuitBreaker;
+		this.bulkhead = bulkhead;
+		this.tempoLimiteNanos = tempoLimite.toNanos();
+		if (tempoLimiteNanos == 0) {
+			this.executor = null;
+		} else if (threadsVirtuais) {
+			this.executor = ThreadsVirtuais.novoExecutorPorTarefa(dependencia + "-");
+		} else {
+			this.executor = executorLimitado(dependencia, bulkhead);
+		}
+
+		this.rejeicoesCircuitoAberto = rejeicoes(meterRegistry, "circuito_aberto");
+		this.rejeicoesBulkheadCheio = rejeicoes(meterRegistry, "bulkhead_cheio");
+		this.rejeicoesTempoLimite = rejeicoes(meterRegistry, "tempo_limite");
+		circuitBreaker.getEventPublisher().onStateTransition(evento -> Counter.builder("resiliencia.transicoes")
+				.description("Mudanças de estado do circuit breaker")
+				.tag("dependencia", dependencia)
+				.tag("de", evento.getStateTransition().getFromState().name())
+				.tag("para", evento.getStateTransition().getToState().name())
+				.register(meterRegistry)
+				.increment());
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public Bulkhead getBulkhead() {
+		return bulkhead;
+	}
+
+	public Duration getTempoLimite() {
+		return Duration.ofNanos(tempoLimiteNanos);
+	}
+
+	public void executar(Runnable chamada) {
+		executar(() -> {
+			chamada.run();
+			return null;
+		});
+	}
+
+	public <T> T executar(Supplier<T> chamada) {
+		if (!circuitBreaker.tryAcquirePermission()) {
+			rejeicoesCircuitoAberto.increment();
+			throw new DependenciaIndisponivelException(dependencia, "circuito aberto", null);
+		}
+		if (!bulkhead.tryAcquirePermission()) {
+			circuitBreaker.releasePermission();
+			rejeicoesBulkheadCheio.increment();
+			throw new DependenciaIndisponivelException(dependencia, "limite de chamadas simultâneas atingido", null);
+		}
+		return executor == null ? executarNaThreadAtual(chamada) : executarComTempoLimite(chamada);
+	}
+
+	public <T> CompletableFuture<T> executarAsync(Supplier<CompletableFuture<T>> chamada) {
+		if (!circuitBreaker.tryAcquirePermission()) {
+			rejeicoesCircuitoAberto.increment();
+			return CompletableFuture.failedFuture(new DependenciaIndisponivelException(dependencia, "circuito aberto", null));
+		}
+		if (!bulkhead.tryAcquirePermission()) {
+			circuitBreaker.releasePermission();
+			rejeicoesBulkheadCheio.increment();
+			return CompletableFuture.failedFuture(
+					new DependenciaIndisponivelException(dependencia, "limite de chamadas simultâneas atingido", null));
+		}
+
+		long inicio = System.nanoTime();
+		CompletableFuture<T> origem;
+		try {
+			origem = chamada.get();
+		} catch (RuntimeException | Error e) {
+			bulkhead.onComplete();
+			circuitBreaker.onError(System.nanoTime() - inicio, TimeUnit.NANOSECONDS, e);
+			return CompletableFuture.failedFuture(e);
+		}
+		// A permissão só volta quando a chamada de fato termina, mesmo que quem chamou já tenha
+		// desistido pelo tempo limite
+		origem.whenComplete((resultado, erro) -> bulkhead.onComplete());
+		// Cópia: o tempo limite não deve completar o futuro de quem implementa a chamada
+		CompletableFuture<T> futuro = origem.copy();
+		if (tempoLimiteNanos > 0) {
+			futuro.orTimeout(tempoLimiteNanos, TimeUnit.NANOSECONDS);
+		}
+		return futuro.handle((resultado, erro) -> {
+			long duracao = System.nanoTime() - inicio;
+			if (erro == null) {
+				circuitBreaker.onSuccess(duracao, TimeUnit.NANOSECONDS);
+				return resultado;
+			}
+			Throwable causa = erro instanceof CompletionException && erro.getCause() != null ? erro.getCause() : erro;
+			circuitBreaker.onError(duracao, TimeUnit.NANOSECONDS, causa);
+			if (causa instanceof TimeoutException) {
+				rejeicoesTempoLimite.increment();
+				throw new DependenciaIndisponivelException(dependencia,
+						"tempo limite de " + TimeUnit.NANOSECONDS.toMillis(tempoLimiteNanos) + " ms excedido", causa);
+			}
+			throw causa instanceof RuntimeException runtime ? runtime : new CompletionException(causa);
+		});
+	}
+
+	private <T> T executarNaThreadAtual(Supplier<T> chamada) {
+		long inicio = System.nanoTime();
+		T resultado;
+		try {
+			resultado = chamada.get();
+		} catch (RuntimeException | Error e) {
+			circuitBreaker.onError(System.nanoTime() - inicio, TimeUnit.NANOSECONDS, e);
+			throw e;
+		} finally {
+			bulkhead.onComplete();
+		}
+		circuitBreaker.onSuccess(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+		return resultado;
+	}
+
+	private <T> T executarComTempoLimite(Supplier<T> chamada) {
+		// A permissão do bulkhead é devolvida uma única vez: pela tarefa quando termina, ou
+		// aqui se a tarefa for cancelada antes de começar
+		AtomicBoolean iniciada = new AtomicBoolean();
+		AtomicBoolean devolvida = new AtomicBoolean();
+		Runnable devolver = () -> {
+			if (devolvida.compareAndSet(false, true)) {
+				bulkhead.onComplete();
+			}
+		};
+
+		long inicio = System.nanoTime();
+		Future<T> futuro;
+		try {
+			futuro = executor.submit(() -> {
+				iniciada.set(true);
+				try {
+					return chamada.get();
+				} finally {
+					devolver.run();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			devolver.run();
+			circuitBreaker.releasePermission();
+			throw new DependenciaIndisponivelException(dependencia, "executor encerrado", e);
+		}
+
+		try {
+			T resultado = futuro.get(tempoLimiteNanos, TimeUnit.NANOSECONDS);
+			circuitBreaker.onSuccess(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+			return resultado;
+		} catch (TimeoutException e) {
+			futuro.cancel(true);
+			if (!iniciada.get()) {
+				devolver.run();
+			}
+			circuitBreaker.onError(System.nanoTime() - inicio, TimeUnit.NANOSECONDS, e);
+			rejeicoesTempoLimite.increment();
+			throw new DependenciaIndisponivelException(dependencia,
+					"tempo limite de " + TimeUnit.NANOSECONDS.toMillis(tempoLimiteNanos) + " ms excedido", e);
+		} catch (ExecutionException e) {
+			Throwable causa = e.getCause();
+			circuitBreaker.onError(System.nanoTime() - inicio, TimeUnit.NANOSECONDS, causa);
+			if (causa instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			if (causa instanceof Error erro) {
+				throw erro;
+			}
+			throw new IllegalStateException(causa);
+		} catch (InterruptedException e) {
+			futuro.cancel(true);
+			circuitBreaker.releasePermission();
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Chamada ao serviço de " + dependencia + " interrompida.", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	// Uma thread por permissão do bulkhead. A tarefa devolve a permissão pouco antes de liberar a
+	// thread, então uma chamada nova pode esperar esse instante na fila em vez de ser recusada
+	private static ExecutorService executorLimitado(String dependencia, Bulkhead bulkhead) {
+		int threads = bulkhead.getBulkheadConfig().getMaxConcurrentCalls();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), new CustomizableThreadFactory(dependencia + "-"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private Counter rejeicoes(MeterRegistry meterRegistry, String motivo) {
+		return Counter.builder("resiliencia.rejeicoes")
+				.description("Chamadas recusadas sem resposta do serviço externo")
+				.tag("dependencia", dependencia)
+				.tag("motivo", motivo)
+				.register(meterRegistry);
+	}
+}
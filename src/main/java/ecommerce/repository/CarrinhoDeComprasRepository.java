@@ -1,10 +1,22 @@
 package ecommerce.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import ecommerce.dto.ItemCheckoutDTO;
+import ecommerce.dto.ItemCheckoutLoteDTO;
+import ecommerce.dto.TotaisCarrinhoDTO;
+import ecommerce.dto.VerificacaoTotaisDTO;
 import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
 
@@ -12,4 +24,60 @@ import ecommerce.entity.Cliente;
 public interface CarrinhoDeComprasRepository extends JpaRepository<CarrinhoDeCompras, Long> {
 
     Optional<CarrinhoDeCompras> findByIdAndCliente(Long id, Cliente cliente);
+
+    // Carrinho com itens e produtos para as alterações de itens, que atualizam os totais em memória
+    @EntityGraph(attributePaths = {"itens", "itens.produto"})
+    Optional<CarrinhoDeCompras> findComItensByIdAndClienteId(Long id, Long clienteId);
+
+    // Projeção somente leitura da finalização da compra: uma linha por item, sem entidades gerenciadas.
+    // O left join devolve uma linha com os campos do item nulos quando o carrinho existe mas está vazio.
+    // Preço, peso e tipo do cliente vêm dos caches, por isso produto e cliente não entram na consulta.
+    // A versão do carrinho vai em cada linha para o checkout confirmar, antes do pagamento, que ele não mudou.
+    @Query("select new ecommerce.dto.ItemCheckoutDTO(i.produto.id, i.quantidade, c.versao) "
+            + "from CarrinhoDeCompras c left join c.itens i "
+            + "where c.id = :carrinhoId and c.cliente.id = :clienteId")
+    List<ItemCheckoutDTO> findItensCheckout(@Param("carrinhoId") Long carrinhoId, @Param("clienteId") Long clienteId);
+
+    // Mesma projeção para vários carrinhos de uma vez; o dono de cada carrinho é conferido em memória
+    @Query("select new ecommerce.dto.ItemCheckoutLoteDTO(c.id, c.cliente.id, i.produto.id, i.quantidade, c.versao) "
+            + "from CarrinhoDeCompras c left join c.itens i "
+            + "where c.id in :carrinhosIds")
+    List<ItemCheckoutLoteDTO> findItensCheckoutEmLote(@Param("carrinhosIds") Collection<Long> carrinhosIds);
+
+    // Só a linha do carrinho: os totais desnormalizados dispensam a leitura dos itens
+    @Query("select new ecommerce.dto.TotaisCarrinhoDTO(c.subtotal, c.pesoTotal, c.quantidadeItens) "
+            + "from CarrinhoDeCompras c where c.id = :carrinhoId and c.cliente.id = :clienteId")
+    Optional<TotaisCarrinhoDTO> findTotais(@Param("carrinhoId") Long carrinhoId, @Param("clienteId") Long clienteId);
+
+    // Totais gravados e recalculados dos itens, por faixa de ids, para a verificação de divergências
+    @Query("select new ecommerce.dto.VerificacaoTotaisDTO(c.id, c.subtotal, c.pesoTotal, c.quantidadeItens, "
+            + "coalesce(sum(p.preco * i.quantidade), 0), coalesce(sum(p.peso * i.quantidade), 0), count(i)) "
+            + "from CarrinhoDeCompras c left join c.itens i left join i.produto p "
+            + "where c.id > :aPartirDe group by c.id, c.subtotal, c.pesoTotal, c.quantidadeItens order by c.id")
+    List<VerificacaoTotaisDTO> findVerificacaoTotais(@Param("aPartirDe") Long aPartirDe, Pageable pagina);
+
+    // Recalcula os totais a partir dos itens no próprio update, sem janela entre a leitura e a escrita;
+    // avança a versão para que uma alteração concorrente feita sobre os totais antigos falhe
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update CarrinhoDeCompras c set "
+            + "c.subtotal = coalesce((select sum(i.produto.preco * i.quantidade) from CarrinhoDeCompras c2 join c2.itens i where c2.id = c.id), 0), "
+            + "c.pesoTotal = coalesce((select sum(i.produto.peso * i.quantidade) from CarrinhoDeCompras c2 join c2.itens i where c2.id = c.id), 0), "
+            + "c.quantidadeItens = (select count(i) from CarrinhoDeCompras c2 join c2.itens i where c2.id = c.id), "
+            + "c.versao = c.versao + 1 "
+            + "where c.id in :ids")
+    int recalcularTotais(@Param("ids") Collection<Long> ids);
+
+    // Só a versão, sem travar a linha: o checkout confere antes do pagamento se o carrinho mudou
+    @Query("select c.versao from CarrinhoDeCompras c where c.id = :carrinhoId")
+    Optional<Long> findVersao(@Param("carrinhoId") Long carrinhoId);
+
+    // Avança a versão só se o carrinho ainda estiver na versão informada; devolve 0 se ele mudou
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update CarrinhoDeCompras c set c.versao = c.versao + 1 where c.id = :carrinhoId and c.versao = :versao")
+    int avancarVersao(@Param("carrinhoId") Long carrinhoId, @Param("versao") long versao);
+
+    @Query("select distinct c.id from CarrinhoDeCompras c join c.itens i where i.produto.id = :produtoId")
+    List<Long> findIdsComProduto(@Param("produtoId") Long produtoId);
 }
@@ -0,0 +1,21 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import ecommerce.entity.ChaveIdempotencia;
+
+@Repository
+public interface ChaveIdempotenciaRepository extends JpaRepository<ChaveIdempotencia, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from ChaveIdempotencia c where c.expiraEm < :agora")
+    int removerExpiradas(@Param("agora") Instant agora);
+}
@@ -1,10 +1,19 @@
 package ecommerce.repository;
 
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
 
 @Repository
 public interface ClienteRepository extends JpaRepository<Cliente, Long> {
-}
\ No newline at end of file
+
+    // Somente o tipo, usado para preencher o cache de tipos de cliente
+    @Query("select c.tipo from Cliente c where c.id = :id")
+    Optional<TipoCliente> findTipoById(@Param("id") Long id);
+}
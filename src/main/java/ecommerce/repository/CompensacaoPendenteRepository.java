@@ -0,0 +1,21 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import ecommerce.entity.CompensacaoPendente;
+
+@Repository
+public interface CompensacaoPendenteRepository extends JpaRepository<CompensacaoPendente, Long> {
+
+    List<CompensacaoPendente> findByProximaTentativaLessThanEqualOrderByProximaTentativaAsc(Instant agora, Pageable pagina);
+
+    @Query("select min(c.criadaEm) from CompensacaoPendente c")
+    Optional<Instant> findCriadaEmMaisAntiga();
+}
@@ -0,0 +1,35 @@
+package ecommerce.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import ecommerce.entity.EventoOutbox;
+
+@Repository
+public interface EventoOutboxRepository extends JpaRepository<EventoOutbox, Long> {
+
+    // Candidatos à entrega: nunca reivindicados ou com a reivindicação vencida
+    @Query("select e.id from EventoOutbox e "
+            + "where e.reivindicadoAte is null or e.reivindicadoAte < :agora order by e.id")
+    List<Long> findIdsDisponiveis(@Param("agora") Instant agora, Pageable pagina);
+
+    // O H2 não tem SKIP LOCKED: a reivindicação é um update condicional, e só as linhas que
+    // ainda estavam livres passam para este relay
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EventoOutbox e set e.reivindicadoPor = :relay, e.reivindicadoAte = :ate "
+            + "where e.id in :ids and (e.reivindicadoAte is null or e.reivindicadoAte < :agora)")
+    int reivindicar(@Param("ids") Collection<Long> ids, @Param("relay") String relay, @Param("ate") Instant ate,
+                    @Param("agora") Instant agora);
+
+    List<EventoOutbox> findByReivindicadoPorAndIdInOrderById(String relay, Collection<Long> ids);
+}
@@ -1,10 +1,20 @@
 package ecommerce.repository;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import ecommerce.dto.ProdutoPrecoPesoDTO;
 import ecommerce.entity.Produto;
 
 @Repository
 public interface ProdutoRepository extends JpaRepository<Produto, Long> {
+
+    // Somente preço e peso, usados pelo cache do catálogo
+    @Query("select new ecommerce.dto.ProdutoPrecoPesoDTO(p.id, p.preco, p.peso) from Produto p where p.id in :ids")
+    List<ProdutoPrecoPesoDTO> findPrecoPesoByIdIn(@Param("ids") Collection<Long> ids);
 }
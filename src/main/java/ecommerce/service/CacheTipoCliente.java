@@ -0,0 +1,209 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Cache próximo de id do cliente para {@link TipoCliente}: endereçamento aberto sobre
+ * {@code long[]}, com leitura otimista do {@link StampedLock}.
+ */
+@Component
+public class CacheTipoCliente {
+
+	private static final TipoCliente[] TIPOS = TipoCliente.values();
+	private static final byte VAZIO = 0;
+	private static final int FAIXAS_GERACAO = 1024;
+
+	private final int tamanhoMaximo;
+	private final int mascara;
+	private final long[] chaves;
+	// Ordinal do tipo + 1; VAZIO marca posição livre
+	private final byte[] valores;
+	// System.nanoTime() em que cada entrada deixa de valer
+	private final long[] expiraEm;
+	private final long ttlNanos;
+	private final AtomicLongArray geracoes = new AtomicLongArray(FAIXAS_GERACAO);
+	private final StampedLock lock = new StampedLock();
+
+	private int tamanho;
+	private int cursorRemocao;
+
+	public CacheTipoCliente(@Value("${ecommerce.cliente.cache.tamanho-maximo:10000}") int tamanhoMaximo,
+							@Value("${ecommerce.cliente.cache.ttl:5m}") Duration ttl) {
+		if (tamanhoMaximo <= 0) {
+			throw new IllegalArgumentException("Tamanho máximo do cache deve ser positivo.");
+		}
+		if (ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException("Validade do cache deve ser positiva.");
+		}
+		this.tamanhoMaximo = tamanhoMaximo;
+		this.ttlNanos = ttl.toNanos();
+		// Fator de carga de no máximo 50% para manter as sondagens curtas
+		int capacidade = Integer.highestOneBit(tamanhoMaximo * 2 - 1) << 1;
+		this.mascara = capacidade - 1;
+		this.chaves = new long[capacidade];
+		this.valores = new byte[capacidade];
+		this.expiraEm = new long[capacidade];
+	}
+
+	/** Devolve o tipo em cache ou {@code null} se o cliente não estiver no cache ou a entrada venceu. */
+	public TipoCliente obter(long clienteId) {
+		long selo = lock.tryOptimisticRead();
+		int posicao = procurar(clienteId);
+		byte valor = posicao < 0 ? VAZIO : valores[posicao];
+		long validade = posicao < 0 ? 0 : expiraEm[posicao];
+		if (!lock.validate(selo)) {
+			selo = lock.readLock();
+			try {
+				posicao = procurar(clienteId);
+				valor = posicao < 0 ? VAZIO : valores[posicao];
+				validade = posicao < 0 ? 0 : expiraEm[posicao];
+			} finally {
+				lock.unlockRead(selo);
+			}
+		}
+		if (valor == VAZIO || validade - System.nanoTime() <= 0) {
+			return null;
+		}
+		return TIPOS[valor - 1];
+	}
+
+	/** Geração atual do cliente; muda a cada {@link #invalidar} dele (ou de outro da mesma faixa). */
+	public long geracao(long clienteId) {
+		return geracoes.get(faixa(clienteId));
+	}
+
+	public void guardar(long clienteId, TipoCliente tipo) {
+		long selo = lock.writeLock();
+		try {
+			gravar(clienteId, tipo);
+		} finally {
+			lock.unlockWrite(selo);
+		}
+	}
+
+	/**
+	 * Guarda o tipo só se o cliente não foi invalidado desde que {@code geracao} foi lida com
+	 * {@link #geracao}; devolve {@code false} se o tipo foi descartado.
+	 */
+	public boolean guardar(long clienteId, TipoCliente tipo, long geracao) {
+		long selo = lock.writeLock();
+		try {
+			if (geracoes.get(faixa(clienteId)) != geracao) {
+				return false;
+			}
+			gravar(clienteId, tipo);
+			return true;
+		} finally {
+			lock.unlockWrite(selo);
+		}
+	}
+
+	public void invalidar(long clienteId) {
+		long selo = lock.writeLock();
+		try {
+			geracoes.incrementAndGet(faixa(clienteId));
+			int posicao = posicaoDe(clienteId);
+			if (valores[posicao] != VAZIO) {
+				remover(posicao);
+			}
+		} finally {
+			lock.unlockWrite(selo);
+		}
+	}
+
+	public int tamanho() {
+		long selo = lock.readLock();
+		try {
+			return tamanho;
+		} finally {
+			lock.unlockRead(selo);
+		}
+	}
+
+	// Exige a trava de escrita
+	private void gravar(long clienteId, TipoCliente tipo) {
+		byte valor = (byte) (tipo.ordinal() + 1);
+		long validade = System.nanoTime() + ttlNanos;
+		int posicao = posicaoDe(clienteId);
+		if (valores[posicao] != VAZIO) {
+			valores[posicao] = valor;
+			expiraEm[posicao] = validade;
+			return;
+		}
+		if (tamanho == tamanhoMaximo) {
+			removerProximaEntrada();
+			posicao = posicaoDe(clienteId);
+		}
+		chaves[posicao] = clienteId;
+		valores[posicao] = valor;
+		expiraEm[posicao] = validade;
+		tamanho++;
+	}
+
+	// Posição da chave ou -1. Pode ler um estado intermediário durante uma escrita; o chamador valida o selo
+	private int procurar(long clienteId) {
+		int posicao = hash(clienteId) & mascara;
+		for (int sondagens = 0; sondagens <= mascara; sondagens++) {
+			if (valores[posicao] == VAZIO) {
+				return -1;
+			}
+			if (chaves[posicao] == clienteId) {
+				return posicao;
+			}
+			posicao = (posicao + 1) & mascara;
+		}
+		return -1;
+	}
+
+	/** Posição da chave, ou a posição livre onde ela seria inserida. */
+	private int posicaoDe(long clienteId) {
+		int posicao = hash(clienteId) & mascara;
+		while (valores[posicao] != VAZIO && chaves[posicao] != clienteId) {
+			posicao = (posicao + 1) & mascara;
+		}
+		return posicao;
+	}
+
+	private void removerProximaEntrada() {
+		while (valores[cursorRemocao] == VAZIO) {
+			cursorRemocao = (cursorRemocao + 1) & mascara;
+		}
+		remover(cursorRemocao);
+		cursorRemocao = (cursorRemocao + 1) & mascara;
+	}
+
+	/** Remoção com deslocamento para trás, sem lápides, mantendo as cadeias de sondagem. */
+	private void remover(int posicao) {
+		int livre = posicao;
+		int atual = (posicao + 1) & mascara;
+		while (valores[atual] != VAZIO) {
+			int ideal = hash(chaves[atual]) & mascara;
+			// Move a entrada se a posição livre está entre a posição ideal dela e a atual
+			if (((atual - ideal) & mascara) >= ((atual - livre) & mascara)) {
+				chaves[livre] = chaves[atual];
+				valores[livre] = valores[atual];
+				expiraEm[livre] = expiraEm[atual];
+				livre = atual;
+			}
+			atual = (atual + 1) & mascara;
+		}
+		valores[livre] = VAZIO;
+		tamanho--;
+	}
+
+	private static int faixa(long clienteId) {
+		return hash(clienteId) & (FAIXAS_GERACAO - 1);
+	}
+
+	private static int hash(long chave) {
+		long h = chave * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -1,22 +1,224 @@
 package ecommerce.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
+import ecommerce.dto.ItemCheckoutDTO;
+import ecommerce.dto.ItemCheckoutLoteDTO;
+import ecommerce.dto.ProdutoPrecoPesoDTO;
+import ecommerce.dto.TotaisCarrinhoDTO;
 import ecommerce.entity.CarrinhoDeCompras;
-import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
 import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ProdutoRepository;
+import jakarta.transaction.Transactional;
 
+/**
+ * Leitura dos carrinhos para a finalização de compra e alteração dos itens. Alterações que se
+ * cruzam no mesmo carrinho são refeitas até {@code ecommerce.carrinho.tentativas} vezes.
+ */
 @Service
 public class CarrinhoDeComprasService {
 	private final CarrinhoDeComprasRepository repository;
+	private final CatalogoProdutoService catalogo;
+	private final ProdutoRepository produtoRepository;
+	private final TransactionOperations transacao;
+	private final int tentativas;
+
+	// Ids por update ao recalcular os carrinhos de um produto alterado
+	private static final int LOTE_RECALCULO = 1000;
 	
 	@Autowired
-	public CarrinhoDeComprasService(CarrinhoDeComprasRepository repository) {
+	public CarrinhoDeComprasService(CarrinhoDeComprasRepository repository, CatalogoProdutoService catalogo,
+									ProdutoRepository produtoRepository, TransactionOperations transacao,
+									@Value("${ecommerce.carrinho.tentativas:3}") int tentativas) {
+		if (tentativas <= 0) {
+			throw new IllegalArgumentException("Tentativas de alteração do carrinho devem ser positivas.");
+		}
 		this.repository = repository;
+		this.catalogo = catalogo;
+		this.produtoRepository = produtoRepository;
+		this.transacao = transacao;
+		this.tentativas = tentativas;
+	}
+
+	public CartSnapshot buscarParaCheckout(Long carrinhoId, Long clienteId) {
+		List<ItemCheckoutDTO> itens = repository.findItensCheckout(carrinhoId, clienteId);
+		if (itens.isEmpty()) {
+			throw new IllegalArgumentException("Carrinho não encontrado.");
+		}
+
+		Set<Long> produtosIds = new HashSet<>();
+		for (ItemCheckoutDTO item : itens) {
+			if (item.produtoId() != null) {
+				produtosIds.add(item.produtoId());
+			}
+		}
+		Map<Long, ProdutoPrecoPesoDTO> produtos = produtosIds.isEmpty() ? Map.of()
+				: catalogo.buscarPrecosEPesos(produtosIds);
+		return CartSnapshot.de(itens, produtos);
+	}
+
+	/**
+	 * Monta os retratos de vários carrinhos com uma consulta de itens e uma busca no catálogo.
+	 * Carrinhos inexistentes, de outro cliente ou com itens inválidos ficam de fora do mapa e
+	 * são repassados a {@code aoFalhar}, sem interromper os demais.
+	 */
+	public Map<Long, CartSnapshot> buscarParaCheckoutEmLote(Map<Long, Long> clientePorCarrinho,
+															  BiConsumer<Long, RuntimeException> aoFalhar) {
+		Map<Long, List<ItemCheckoutDTO>> itensPorCarrinho = new HashMap<>();
+		Set<Long> produtosIds = new HashSet<>();
+		for (ItemCheckoutLoteDTO linha : repository.findItensCheckoutEmLote(clientePorCarrinho.keySet())) {
+			if (!linha.clienteId().equals(clientePorCarrinho.get(linha.carrinhoId()))) {
+				continue;
+			}
+			itensPorCarrinho.computeIfAbsent(linha.carrinhoId(), id -> new ArrayList<>())
+					.add(new ItemCheckoutDTO(linha.produtoId(), linha.quantidade(), linha.versaoCarrinho()));
+			if (linha.produtoId() != null) {
+				produtosIds.add(linha.produtoId());
+			}
+		}
+
+		Map<Long, ProdutoPrecoPesoDTO> produtos = produtosIds.isEmpty() ? Map.of()
+				: catalogo.buscarPrecosEPesos(produtosIds);
+		Map<Long, CartSnapshot> snapshots = new LinkedHashMap<>();
+		for (Long carrinhoId : clientePorCarrinho.keySet()) {
+			List<ItemCheckoutDTO> itens = itensPorCarrinho.get(carrinhoId);
+			if (itens == null) {
+				aoFalhar.accept(carrinhoId, new IllegalArgumentException("Carrinho não encontrado."));
+				continue;
+			}
+			try {
+				snapshots.put(carrinhoId, CartSnapshot.de(itens, produtos));
+			} catch (RuntimeException e) {
+				aoFalhar.accept(carrinhoId, e);
+			}
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Adiciona o produto ao carrinho ou soma a quantidade ao item que já o contém. Os totais do
+	 * carrinho são atualizados na mesma transação; devolve os novos totais.
+	 */
+	public TotaisCarrinhoDTO adicionarItem(Long carrinhoId, Long clienteId, Long produtoId, long quantidade) {
+		if (quantidade <= 0) {
+			throw new IllegalArgumentException("Quantidade deve ser positiva.");
+		}
+		return alterar(carrinhoId, clienteId, carrinho -> {
+			Produto produto = produtoRepository.findById(produtoId)
+					.orElseThrow(() -> new IllegalArgumentException("Produto não encontrado."));
+			if (produto.getPreco() == null || produto.getPeso() == null) {
+				throw new IllegalArgumentException("Produto sem preço ou peso.");
+			}
+			carrinho.adicionarItem(produto, quantidade);
+		});
+	}
+
+	/** Troca a quantidade do item do produto; quantidade zero remove o item. */
+	public TotaisCarrinhoDTO atualizarQuantidade(Long carrinhoId, Long clienteId, Long produtoId, long quantidade) {
+		if (quantidade < 0) {
+			throw new IllegalArgumentException("Quantidade não pode ser negativa.");
+		}
+		return alterar(carrinhoId, clienteId, carrinho -> {
+			ItemCompra item = buscarItem(carrinho, produtoId);
+			if (quantidade == 0) {
+				carrinho.removerItem(item);
+			} else {
+				carrinho.atualizarQuantidade(item, quantidade);
+			}
+		});
+	}
+
+	public TotaisCarrinhoDTO removerItem(Long carrinhoId, Long clienteId, Long produtoId) {
+		return alterar(carrinhoId, clienteId, carrinho -> carrinho.removerItem(buscarItem(carrinho, produtoId)));
+	}
+
+	/**
+	 * Confere, na finalização da compra, se o carrinho ainda está na versão lida com os itens.
+	 * Só lê a versão, sem travar a linha. Devolve {@code true} se o carrinho mudou desde então;
+	 * sem versão conhecida, não há o que conferir.
+	 */
+	public boolean carrinhoAlteradoDesde(Long carrinhoId, Long versao) {
+		return versao != null && !versao.equals(repository.findVersao(carrinhoId).orElse(null));
+	}
+
+	/**
+	 * Avança a versão do carrinho se ele ainda estiver na versão lida com os itens, de modo que
+	 * uma alteração que o leu antes não grave por cima da compra. A finalização chama depois do
+	 * pagamento autorizado; devolve {@code false} se o carrinho mudou desde a leitura.
+	 */
+	public boolean avancarVersao(Long carrinhoId, Long versao) {
+		return versao == null || repository.avancarVersao(carrinhoId, versao) == 1;
+	}
+
+	/** Totais gravados do carrinho, lidos sem carregar os itens. */
+	public TotaisCarrinhoDTO buscarTotais(Long carrinhoId, Long clienteId) {
+		return repository.findTotais(carrinhoId, clienteId)
+				.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
+	}
+
+	/**
+	 * Recalcula, a partir dos itens, os totais dos carrinhos que contêm o produto. Roda em
+	 * transação própria porque é chamado depois do commit da alteração do produto.
+	 */
+	@Transactional(Transactional.TxType.REQUIRES_NEW)
+	public int recalcularTotaisComProduto(Long produtoId) {
+		List<Long> ids = repository.findIdsComProduto(produtoId);
+		int recalculados = 0;
+		for (int inicio = 0; inicio < ids.size(); inicio += LOTE_RECALCULO) {
+			recalculados += repository.recalcularTotais(ids.subList(inicio, Math.min(ids.size(), inicio + LOTE_RECALCULO)));
+		}
+		return recalculados;
+	}
+
+	/** Recalcula os totais dos carrinhos informados a partir dos itens; devolve quantos foram gravados. */
+	public int recalcularTotais(Collection<Long> carrinhosIds) {
+		return repository.recalcularTotais(carrinhosIds);
+	}
+
+	// Cada tentativa relê o carrinho em uma transação nova; o conflito aparece no commit
+	private TotaisCarrinhoDTO alterar(Long carrinhoId, Long clienteId, Consumer<CarrinhoDeCompras> alteracao) {
+		for (int tentativa = 1; ; tentativa++) {
+			try {
+				return transacao.execute(status -> {
+					CarrinhoDeCompras carrinho = repository.findComItensByIdAndClienteId(carrinhoId, clienteId)
+							.orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
+					alteracao.accept(carrinho);
+					return totais(carrinho);
+				});
+			} catch (OptimisticLockingFailureException e) {
+				if (tentativa >= tentativas) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	private static ItemCompra buscarItem(CarrinhoDeCompras carrinho, Long produtoId) {
+		ItemCompra item = carrinho.buscarItem(produtoId);
+		if (item == null) {
+			throw new IllegalArgumentException("Produto não está no carrinho.");
+		}
+		return item;
 	}
 
-	public CarrinhoDeCompras buscarPorCarrinhoIdEClienteId(Long carrinhoId, Cliente cliente) {
-		return repository.findByIdAndCliente(carrinhoId, cliente).orElseThrow(() -> new IllegalArgumentException("Carrinho não encontrado."));
+	private static TotaisCarrinhoDTO totais(CarrinhoDeCompras carrinho) {
+		return new TotaisCarrinhoDTO(carrinho.getSubtotal(), carrinho.getPesoTotal(), carrinho.getQuantidadeItens());
 	}
 }
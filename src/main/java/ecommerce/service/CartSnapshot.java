@@ -0,0 +1,164 @@
+package ecommerce.service;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import ecommerce.dto.ItemCheckoutDTO;
+import ecommerce.dto.ProdutoPrecoPesoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+
+/**
+ * Retrato imutável dos itens de um carrinho no momento da compra, montado em uma única
+ * passada. Guarda ids e quantidades em arrays primitivos, o subtotal dos itens em centavos e
+ * o peso total, e alimenta as chamadas de estoque, a precificação e o pagamento. A versão do
+ * carrinho lida junto com os itens permite confirmar, antes do pagamento, que ele não mudou.
+ */
+public final class CartSnapshot {
+
+	private final long[] produtosIds;
+	private final long[] produtosQuantidades;
+	private final long subtotalCentavos;
+	private final long pesoTotal;
+	private final Long versaoCarrinho;
+
+	private CartSnapshot(long[] produtosIds, long[] produtosQuantidades, long subtotalCentavos, long pesoTotal,
+			Long versaoCarrinho) {
+		this.produtosIds = produtosIds;
+		this.produtosQuantidades = produtosQuantidades;
+		this.subtotalCentavos = subtotalCentavos;
+		this.pesoTotal = pesoTotal;
+		this.versaoCarrinho = versaoCarrinho;
+	}
+
+	public static CartSnapshot de(CarrinhoDeCompras carrinho) {
+		List<ItemCompra> itens = carrinho.getItens();
+		int tamanho = itens.size();
+		long[] ids = new long[tamanho];
+		long[] quantidades = new long[tamanho];
+		long subtotalCentavos = 0L;
+		long pesoTotal = 0L;
+
+		for (int i = 0; i < tamanho; i++) {
+			ItemCompra item = itens.get(i);
+			Produto produto = item.getProduto();
+			if (produto.getId() == null) {
+				throw new IllegalArgumentException("Produto sem ID no carrinho.");
+			}
+			if (item.getQuantidade() == null) {
+				throw new IllegalArgumentException("Item sem quantidade no carrinho.");
+			}
+			long quantidade = item.getQuantidade();
+			ids[i] = produto.getId();
+			quantidades[i] = quantidade;
+			subtotalCentavos = Math.addExact(subtotalCentavos,
+					Math.multiplyExact(MotorPrecificacao.centavos(produto.getPreco()), quantidade));
+			pesoTotal = Math.addExact(pesoTotal, Math.multiplyExact((long) produto.getPeso(), quantidade));
+		}
+
+		return new CartSnapshot(ids, quantidades, subtotalCentavos, pesoTotal, carrinho.getVersao());
+	}
+
+	/**
+	 * Monta o retrato a partir das linhas da projeção de checkout e do preço e peso de cada
+	 * produto. Um carrinho vazio chega como uma única linha sem item, que é ignorada.
+	 */
+	public static CartSnapshot de(List<ItemCheckoutDTO> linhas, Map<Long, ProdutoPrecoPesoDTO> produtos) {
+		int tamanho = linhas.size();
+		long[] ids = new long[tamanho];
+		long[] quantidades = new long[tamanho];
+		long subtotalCentavos = 0L;
+		long pesoTotal = 0L;
+		int itens = 0;
+
+		for (int i = 0; i < tamanho; i++) {
+			ItemCheckoutDTO linha = linhas.get(i);
+			if (linha.quantidade() == null && linha.produtoId() == null) {
+				continue;
+			}
+			if (linha.produtoId() == null) {
+				throw new IllegalArgumentException("Produto sem ID no carrinho.");
+			}
+			if (linha.quantidade() == null) {
+				throw new IllegalArgumentException("Item sem quantidade no carrinho.");
+			}
+			ProdutoPrecoPesoDTO produto = produtos.get(linha.produtoId());
+			if (produto == null) {
+				throw new IllegalArgumentException("Produto não encontrado: " + linha.produtoId());
+			}
+			long quantidade = linha.quantidade();
+			ids[itens] = linha.produtoId();
+			quantidades[itens] = quantidade;
+			subtotalCentavos = Math.addExact(subtotalCentavos, Math.multiplyExact(produto.precoCentavos(), quantidade));
+			pesoTotal = Math.addExact(pesoTotal, Math.multiplyExact((long) produto.peso(), quantidade));
+			itens++;
+		}
+
+		if (itens < tamanho) {
+			ids = Arrays.copyOf(ids, itens);
+			quantidades = Arrays.copyOf(quantidades, itens);
+		}
+		return new CartSnapshot(ids, quantidades, subtotalCentavos, pesoTotal,
+				tamanho == 0 ? null : linhas.get(0).versaoCarrinho());
+	}
+
+	public int tamanho() {
+		return produtosIds.length;
+	}
+
+	public long produtoId(int indice) {
+		return produtosIds[indice];
+	}
+
+	public long quantidade(int indice) {
+		return produtosQuantidades[indice];
+	}
+
+	/** Soma de preço x quantidade dos itens em centavos, sem descontos nem frete. */
+	public long getSubtotalCentavos() {
+		return subtotalCentavos;
+	}
+
+	/** Soma de peso x quantidade dos itens, em kg. */
+	public long getPesoTotal() {
+		return pesoTotal;
+	}
+
+	/** Versão do carrinho quando os itens foram lidos, ou {@code null} se ela não for conhecida. */
+	public Long getVersaoCarrinho() {
+		return versaoCarrinho;
+	}
+
+	/** Visão somente leitura dos ids para as APIs externas; não copia o array. */
+	public List<Long> produtosIds() {
+		return new VisaoLongArray(produtosIds);
+	}
+
+	/** Visão somente leitura das quantidades para as APIs externas; não copia o array. */
+	public List<Long> produtosQuantidades() {
+		return new VisaoLongArray(produtosQuantidades);
+	}
+
+	private static final class VisaoLongArray extends AbstractList<Long> implements RandomAccess {
+
+		private final long[] valores;
+
+		VisaoLongArray(long[] valores) {
+			this.valores = valores;
+		}
+
+		@Override
+		public Long get(int indice) {
+			return valores[indice];
+		}
+
+		@Override
+		public int size() {
+			return valores.length;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import ecommerce.dto.ProdutoPrecoPesoDTO;
+import ecommerce.repository.ProdutoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cache em memória de preço e peso dos produtos, na frente do {@link ProdutoRepository},
+ * invalidado pelo {@link ProdutoCacheListener}.
+ */
+@Service
+public class CatalogoProdutoService {
+
+	static final String NOME_CACHE = "catalogoProdutos";
+
+	private final ProdutoRepository repository;
+	private final Cache<Long, ProdutoPrecoPesoDTO> cache;
+
+	@Autowired
+	public CatalogoProdutoService(ProdutoRepository repository, MeterRegistry meterRegistry,
+			@Value("${ecommerce.catalogo.cache.tamanho-maximo:10000}") long tamanhoMaximo,
+			@Value("${ecommerce.catalogo.cache.ttl:10m}") Duration ttl) {
+		this.repository = repository;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, NOME_CACHE);
+	}
+
+	/**
+	 * Devolve preço e peso dos produtos informados. Os que não estão no cache são
+	 * carregados em uma única consulta.
+	 */
+	public Map<Long, ProdutoPrecoPesoDTO> buscarPrecosEPesos(Collection<Long> produtosIds) {
+		return cache.getAll(produtosIds, this::carregar);
+	}
+
+	public void invalidar(Long produtoId) {
+		cache.invalidate(produtoId);
+	}
+
+	private Map<Long, ProdutoPrecoPesoDTO> carregar(Set<? extends Long> produtosIds) {
+		Map<Long, ProdutoPrecoPesoDTO> carregados = new HashMap<>();
+		for (ProdutoPrecoPesoDTO produto : repository.findPrecoPesoByIdIn(Set.copyOf(produtosIds))) {
+			carregados.put(produto.produtoId(), produto);
+		}
+		return carregados;
+	}
+}
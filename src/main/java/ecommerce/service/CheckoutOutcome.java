@@ -0,0 +1,79 @@
+package ecommerce.service;
+
+import java.util.List;
+
+import ecommerce.dto.CompraDTO;
+
+/**
+ * Resultado de negócio da finalização de compra. Falta de estoque, pagamento recusado, carrinho
+ * alterado e falha na baixa são respostas esperadas, principalmente em promoções, e voltam como valor em vez de
+ * exceção, sem o custo de montar a pilha de chamadas a cada compra recusada. Exceções ficam para
+ * entradas inválidas e falhas de infraestrutura.
+ */
+public sealed interface CheckoutOutcome {
+
+	/** Corpo da resposta HTTP correspondente ao resultado. */
+	CompraDTO compra();
+
+	default boolean sucesso() {
+		return this instanceof Sucesso;
+	}
+
+	record Sucesso(Long transacaoPagamentoId) implements CheckoutOutcome {
+
+		@Override
+		public CompraDTO compra() {
+			return new CompraDTO(true, transacaoPagamentoId, "Compra finalizada com sucesso.");
+		}
+	}
+
+	/** Itens sem estoque; {@code idsIndisponiveis} vem vazio quando o estoque não informa quais são. */
+	record SemEstoque(List<Long> idsIndisponiveis) implements CheckoutOutcome {
+
+		private static final CompraDTO COMPRA = new CompraDTO(false, null, "Itens fora de estoque.");
+
+		public SemEstoque {
+			idsIndisponiveis = idsIndisponiveis == null ? List.of() : List.copyOf(idsIndisponiveis);
+		}
+
+		@Override
+		public CompraDTO compra() {
+			return COMPRA;
+		}
+	}
+
+	record PagamentoRecusado() implements CheckoutOutcome {
+
+		private static final CompraDTO COMPRA = new CompraDTO(false, null, "Pagamento não autorizado.");
+
+		@Override
+		public CompraDTO compra() {
+			return COMPRA;
+		}
+	}
+
+	/**
+	 * O carrinho foi alterado depois de lido e precificado; nada foi cobrado e a reserva foi
+	 * liberada. O cliente pode finalizar de novo com o carrinho atual.
+	 */
+	record CarrinhoAlterado() implements CheckoutOutcome {
+
+		private static final CompraDTO COMPRA = new CompraDTO(false, null, "Carrinho alterado durante a finalização.");
+
+		@Override
+		public CompraDTO compra() {
+			return COMPRA;
+		}
+	}
+
+	/** A baixa no estoque falhou depois do pagamento autorizado, que segue para cancelamento. */
+	record FalhaBaixa(Long transacaoPagamentoId) implements CheckoutOutcome {
+
+		private static final CompraDTO COMPRA = new CompraDTO(false, null, "Erro ao dar baixa no estoque.");
+
+		@Override
+		public CompraDTO compra() {
+			return COMPRA;
+		}
+	}
+}
@@ -3,6 +3,8 @@ package ecommerce.service;
 import ecommerce.entity.TipoCliente;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import ecommerce.entity.Cliente;
 import ecommerce.repository.ClienteRepository;
@@ -11,10 +13,12 @@ import ecommerce.repository.ClienteRepository;
 public class ClienteService {
 	
 	private final ClienteRepository repository;
+	private final CacheTipoCliente cacheTipo;
 	
 	@Autowired
-	public ClienteService(ClienteRepository repository) {
+	public ClienteService(ClienteRepository repository, CacheTipoCliente cacheTipo) {
 		this.repository = repository;
+		this.cacheTipo = cacheTipo;
 	}
 
 	public Cliente buscarPorId(Long clienteId) {
@@ -22,14 +26,50 @@ public class ClienteService {
 	}
 
 
+	// Também usado para atualizar um cliente existente, por isso invalida o tipo em cache.
+	// Invalida de novo após o commit: uma leitura feita antes dele pode ter guardado o tipo antigo
 	public Cliente criarCliente (Cliente cliente) {
-		return repository.save(cliente);
+		Cliente salvo = repository.save(cliente);
+		Long clienteId = salvo.getId();
+		if (clienteId != null) {
+			cacheTipo.invalidar(clienteId);
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCommit() {
+						cacheTipo.invalidar(clienteId);
+					}
+				});
+			}
+		}
+		return salvo;
 	}
 
 	public TipoCliente verificarTipo(Cliente cliente) {
 	 return cliente.getTipo();
 	}
 
+	// Tipo do cliente sem carregar a entidade, consultando primeiro o cache
+	public TipoCliente buscarTipo(Long clienteId) {
+		TipoCliente tipo = cacheTipo.obter(clienteId);
+		if (tipo == null) {
+			// Geração lida antes do banco: se o cliente for invalidado no meio, o tipo lido não é guardado
+			long geracao = cacheTipo.geracao(clienteId);
+			tipo = repository.findTipoById(clienteId).orElseGet(() -> tipoPadrao(clienteId));
+			cacheTipo.guardar(clienteId, tipo, geracao);
+		}
+		return tipo;
+	}
+
+	// A consulta do tipo não distingue cliente inexistente de cliente sem tipo. Sem tipo, ele paga
+	// o frete cheio, como no cálculo original, que é o mesmo do BRONZE
+	private TipoCliente tipoPadrao(Long clienteId) {
+		if (!repository.existsById(clienteId)) {
+			throw new IllegalArgumentException("Cliente não encontrado");
+		}
+		return TipoCliente.BRONZE;
+	}
+
 
 
 }
@@ -0,0 +1,158 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ecommerce.dto.SituacaoCompensacoesDTO;
+import ecommerce.entity.CompensacaoPendente;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CompensacaoPendenteRepository;
+import jakarta.transaction.Transactional;
+
+/**
+ * Fila durável de cancelamentos de pagamento, gravada no banco e processada por uma tarefa
+ * agendada, com espera exponencial entre as tentativas.
+ */
+@Service
+public class CompensacaoService {
+
+	private static final Logger log = LoggerFactory.getLogger(CompensacaoService.class);
+
+	private static final int EXPOENTE_MAXIMO = 30;
+
+	private final CompensacaoPendenteRepository repository;
+	private final IPagamentoExternal pagamentoExternal;
+	private final Executor executorCompensacao;
+
+	private final Duration atrasoInicial;
+	private final Duration atrasoMaximo;
+	private final int tamanhoLote;
+
+	@Autowired
+	public CompensacaoService(CompensacaoPendenteRepository repository, IPagamentoExternal pagamentoExternal,
+							  @Qualifier("executorCompensacao") Executor executorCompensacao,
+							  @Value("${ecommerce.compensacao.atraso-inicial:1s}") Duration atrasoInicial,
+							  @Value("${ecommerce.compensacao.atraso-maximo:5m}") Duration atrasoMaximo,
+							  @Value("${ecommerce.compensacao.lote:100}") int tamanhoLote) {
+		this.repository = repository;
+		this.pagamentoExternal = pagamentoExternal;
+		this.executorCompensacao = executorCompensacao;
+		this.atrasoInicial = atrasoInicial;
+		this.atrasoMaximo = atrasoMaximo;
+		this.tamanhoLote = tamanhoLote;
+	}
+
+	// Na transação de quem chama: o cancelamento é confirmado junto com o resultado da compra
+	@Transactional
+	public void enfileirarCancelamento(Long clienteId, Long transacaoId) {
+		repository.save(new CompensacaoPendente(clienteId, transacaoId, Instant.now()));
+	}
+
+	/**
+	 * Chamado logo depois do pagamento autorizado: se a transação em andamento não for
+	 * confirmada, por uma exceção depois do pagamento ou por falha no commit, o cancelamento
+	 * é enfileirado em uma transação própria. Sem transação em andamento não faz nada.
+	 */
+	public void cancelarSeDesfeita(Long clienteId, Long transacaoId) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status != STATUS_COMMITTED) {
+					enfileirarEmOutraThread(new CompensacaoPendente(clienteId, transacaoId, Instant.now()));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Enfileira o cancelamento de uma autorização que passou do tempo limite, pelo id da
+	 * solicitação. Gravado fora da transação de quem chama, que vai ser desfeita com a falha.
+	 */
+	public void enfileirarCancelamentoDaSolicitacao(Long clienteId, String solicitacaoId) {
+		enfileirarEmOutraThread(CompensacaoPendente.daSolicitacao(clienteId, solicitacaoId, Instant.now()));
+	}
+
+	@Scheduled(fixedDelayString = "${ecommerce.compensacao.intervalo-ms:500}")
+	public void processarPendentes() {
+		List<CompensacaoPendente> pendentes = repository
+				.findByProximaTentativaLessThanEqualOrderByProximaTentativaAsc(Instant.now(), PageRequest.of(0, tamanhoLote));
+		if (pendentes.isEmpty()) {
+			return;
+		}
+		CompletableFuture<?>[] execucoes = new CompletableFuture<?>[pendentes.size()];
+		for (int i = 0; i < pendentes.size(); i++) {
+			CompensacaoPendente pendente = pendentes.get(i);
+			execucoes[i] = CompletableFuture.runAsync(() -> executar(pendente), executorCompensacao);
+		}
+		CompletableFuture.allOf(execucoes).join();
+	}
+
+	public SituacaoCompensacoesDTO situacao() {
+		long profundidade = repository.count();
+		Long idadeMaisAntigaMs = repository.findCriadaEmMaisAntiga()
+				.map(criadaEm -> Duration.between(criadaEm, Instant.now()).toMillis())
+				.orElse(null);
+		return new SituacaoCompensacoesDTO(profundidade, idadeMaisAntigaMs);
+	}
+
+	/** Atraso antes da tentativa seguinte, depois de {@code tentativas} falhas. */
+	public Duration atrasoApos(int tentativas) {
+		int expoente = Math.min(Math.max(tentativas - 1, 0), EXPOENTE_MAXIMO);
+		Duration atraso = atrasoInicial.multipliedBy(1L << expoente);
+		return atraso.compareTo(atrasoMaximo) > 0 ? atrasoMaximo : atraso;
+	}
+
+	// Em outra thread: a conexão da compra só é devolvida ao pool depois do afterCompletion
+	private void enfileirarEmOutraThread(CompensacaoPendente pendente) {
+		try {
+			executorCompensacao.execute(() -> {
+				try {
+					repository.save(pendente);
+				} catch (RuntimeException e) {
+					log.error("Cancelamento do pagamento {} do cliente {} não enfileirado", identificacao(pendente),
+							pendente.getClienteId(), e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			log.error("Cancelamento do pagamento {} do cliente {} não enfileirado", identificacao(pendente),
+					pendente.getClienteId(), e);
+		}
+	}
+
+	private void executar(CompensacaoPendente pendente) {
+		try {
+			if (pendente.getTransacaoId() != null) {
+				pagamentoExternal.cancelarPagamento(pendente.getClienteId(), pendente.getTransacaoId());
+			} else {
+				pagamentoExternal.cancelarSolicitacao(pendente.getClienteId(), pendente.getSolicitacaoId());
+			}
+		} catch (RuntimeException e) {
+			pendente.registrarFalha(e.getMessage(), Instant.now().plus(atrasoApos(pendente.getTentativas() + 1)));
+			repository.save(pendente);
+			return;
+		}
+		repository.delete(pendente);
+	}
+
+	private static Object identificacao(CompensacaoPendente pendente) {
+		return pendente.getTransacaoId() != null ? pendente.getTransacaoId() : pendente.getSolicitacaoId();
+	}
+}
@@ -0,0 +1,265 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Finalização de compra sem thread parada esperando o estoque ou o pagamento; o acesso ao banco
+ * roda no executor limitado {@code executorJpaCheckout}.
+ */
+@Service
+public class CompraAssincronaService {
+
+	private static final Logger log = LoggerFactory.getLogger(CompraAssincronaService.class);
+
+	private final CarrinhoDeComprasService carrinhoService;
+	private final ClienteService clienteService;
+
+	private final IEstoqueExternal estoqueExternal;
+	private final IPagamentoExternal pagamentoExternal;
+
+	private final MotorPrecificacao motorPrecificacao;
+	private final CompensacaoService compensacaoService;
+	private final OutboxService outboxService;
+	private final MetricasCheckout metricas;
+	private final Executor executorJpa;
+	private final Executor executorLiberacao;
+	private final TransactionOperations transacao;
+
+	@Autowired
+	public CompraAssincronaService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
+								   IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+								   MotorPrecificacao motorPrecificacao, CompensacaoService compensacaoService,
+								   OutboxService outboxService, MetricasCheckout metricas,
+								   @Qualifier("executorJpaCheckout") Executor executorJpa,
+								   @Qualifier("executorLiberacaoReserva") Executor executorLiberacao,
+								   TransactionOperations transacao) {
+		this.carrinhoService = carrinhoService;
+		this.clienteService = clienteService;
+
+		this.estoqueExternal = estoqueExternal;
+		this.pagamentoExternal = pagamentoExternal;
+
+		this.motorPrecificacao = motorPrecificacao;
+		this.compensacaoService = compensacaoService;
+		this.outboxService = outboxService;
+		this.metricas = metricas;
+		this.executorJpa = executorJpa;
+		this.executorLiberacao = executorLiberacao;
+		this.transacao = transacao;
+	}
+
+	/**
+	 * Versão assíncrona de {@link CompraService#finalizarCompra}. Recusas de negócio completam o
+	 * futuro com um {@link CheckoutOutcome}; parâmetros inválidos e falhas de infraestrutura o
+	 * completam com a exceção.
+	 */
+	public CompletableFuture<CheckoutOutcome> finalizarCompra(Long carrinhoId, Long clienteId) {
+		CompletableFuture<Pedido> pedido;
+		try {
+			pedido = CompletableFuture.supplyAsync(() -> transacao.execute(status -> new Pedido(
+					metricas.tipoCliente.record(() -> clienteService.buscarTipo(clienteId)),
+					metricas.carrinho.record(() -> carrinhoService.buscarParaCheckout(carrinhoId, clienteId)))),
+					executorJpa);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		return pedido.thenCompose(p -> reservarEPrecificar(carrinhoId, clienteId, p));
+	}
+
+	private CompletableFuture<CheckoutOutcome> reservarEPrecificar(Long carrinhoId, Long clienteId, Pedido pedido) {
+		CartSnapshot snapshot = pedido.snapshot();
+		CompletableFuture<ReservaEstoqueDTO> reservaFutura = medir(metricas.reserva,
+				() -> estoqueExternal.reservarAsync(snapshot.produtosIds(), snapshot.produtosQuantidades()));
+
+		// A precificação roda enquanto o estoque responde
+		BigDecimal custoTotal;
+		try {
+			custoTotal = metricas.precificacao.record(
+					() -> motorPrecificacao.calcularCustoTotal(snapshot, pedido.tipoCliente()));
+		} catch (RuntimeException e) {
+			reservaFutura.thenAccept(this::liberarSeReservada);
+			return CompletableFuture.failedFuture(e);
+		}
+
+		return reservaFutura.thenCompose(reserva -> reserva.reservado()
+				? confirmarVersao(carrinhoId, clienteId, pedido.tipoCliente(), snapshot, reserva, custoTotal)
+				: CompletableFuture.completedFuture(metricas.registrar(
+						new CheckoutOutcome.SemEstoque(reserva.idsProdutosIndisponiveis()), pedido.tipoCliente())));
+	}
+
+	// Só cobra o preço calculado se o carrinho ainda for o que foi precificado
+	private CompletableFuture<CheckoutOutcome> confirmarVersao(Long carrinhoId, Long clienteId, TipoCliente tipoCliente,
+			CartSnapshot snapshot, ReservaEstoqueDTO reserva, BigDecimal custoTotal) {
+		return gravar(() -> transacao.execute(
+				status -> carrinhoService.carrinhoAlteradoDesde(carrinhoId, snapshot.getVersaoCarrinho())))
+				.whenComplete((alterado, erro) -> {
+					if (erro != null || alterado) {
+						liberar(reserva);
+					}
+				})
+				.thenCompose(alterado -> alterado
+						? CompletableFuture.completedFuture(
+								metricas.registrar(new CheckoutOutcome.CarrinhoAlterado(), tipoCliente))
+						: autorizar(carrinhoId, clienteId, tipoCliente, snapshot, reserva, custoTotal));
+	}
+
+	private CompletableFuture<CheckoutOutcome> autorizar(Long carrinhoId, Long clienteId, TipoCliente tipoCliente,
+			CartSnapshot snapshot, ReservaEstoqueDTO reserva, BigDecimal custoTotal) {
+		return medir(metricas.pagamento,
+				() -> pagamentoExternal.autorizarPagamentoAsync(clienteId, custoTotal.doubleValue()))
+				.whenComplete((pagamento, erro) -> {
+					if (erro != null || !pagamento.autorizado()) {
+						liberar(reserva);
+					}
+				})
+				.thenCompose(pagamento -> pagamento.autorizado()
+						? conferirAntesDaBaixa(carrinhoId, clienteId, tipoCliente, snapshot, reserva, pagamento, custoTotal)
+						: CompletableFuture.completedFuture(
+								metricas.registrar(new CheckoutOutcome.PagamentoRecusado(), tipoCliente)));
+	}
+
+	// Nova leitura da versão antes de confirmar a reserva: um carrinho alterado durante o
+	// pagamento libera os itens em vez de baixá-los e cancela o pagamento
+	private CompletableFuture<CheckoutOutcome> conferirAntesDaBaixa(Long carrinhoId, Long clienteId,
+			TipoCliente tipoCliente, CartSnapshot snapshot, ReservaEstoqueDTO reserva, PagamentoDTO pagamento,
+			BigDecimal custoTotal) {
+		return gravar(() -> {
+			boolean alterado;
+			try {
+				alterado = transacao.execute(
+						status -> carrinhoService.carrinhoAlteradoDesde(carrinhoId, snapshot.getVersaoCarrinho()));
+			} catch (RuntimeException e) {
+				compensacaoService.enfileirarCancelamento(clienteId, pagamento.transacaoId());
+				throw e;
+			}
+			if (alterado) {
+				compensacaoService.enfileirarCancelamento(clienteId, pagamento.transacaoId());
+			}
+			return alterado;
+		})
+				.whenComplete((alterado, erro) -> {
+					if (erro != null || alterado) {
+						liberar(reserva);
+					}
+				})
+				.thenCompose(alterado -> alterado
+						? CompletableFuture.completedFuture(
+								metricas.registrar(new CheckoutOutcome.CarrinhoAlterado(), tipoCliente))
+						: baixar(carrinhoId, clienteId, tipoCliente, snapshot, reserva, pagamento, custoTotal));
+	}
+
+	private CompletableFuture<CheckoutOutcome> baixar(Long carrinhoId, Long clienteId, TipoCliente tipoCliente,
+			CartSnapshot snapshot, ReservaEstoqueDTO reserva, PagamentoDTO pagamento, BigDecimal custoTotal) {
+		return medir(metricas.baixa, () -> estoqueExternal.confirmarReservaAsync(reserva))
+				.exceptionallyCompose(erro -> {
+					if (tempoEsgotado(erro)) {
+						// Sem resposta a baixa pode ter acontecido: o pagamento fica e a reserva vai para conciliação
+						log.warn("Confirmação da reserva {} sem resposta; compra {} mantida para conciliação com o estoque",
+								reserva.reservaId(), pagamento.transacaoId(), erro);
+						metricas.baixasIndefinidas.increment();
+						return CompletableFuture.completedFuture(new EstoqueBaixaDTO(true));
+					}
+					return gravar(() -> {
+						// Estoque fora do ar depois do pagamento autorizado: o pagamento também é desfeito
+						compensacaoService.enfileirarCancelamento(clienteId, pagamento.transacaoId());
+						metricas.registrar(MetricasCheckout.Resultado.FALHA_BAIXA, tipoCliente);
+						return null;
+					}).thenCompose(ignorado -> CompletableFuture.failedFuture(erro));
+				})
+				.thenCompose(baixa -> gravar(() -> {
+					if (!baixa.sucesso()) {
+						compensacaoService.enfileirarCancelamento(clienteId, pagamento.transacaoId());
+						return metricas.registrar(new CheckoutOutcome.FalhaBaixa(pagamento.transacaoId()), tipoCliente);
+					}
+					return concluir(carrinhoId, clienteId, tipoCliente, snapshot, pagamento, custoTotal);
+				}));
+	}
+
+	// Avanço da versão e outbox na mesma transação, como em CompraService#finalizarCompra: se ela
+	// for desfeita, o pagamento é cancelado pela fila de compensação
+	private CheckoutOutcome concluir(Long carrinhoId, Long clienteId, TipoCliente tipoCliente, CartSnapshot snapshot,
+			PagamentoDTO pagamento, BigDecimal custoTotal) {
+		return transacao.execute(status -> {
+			compensacaoService.cancelarSeDesfeita(clienteId, pagamento.transacaoId());
+			if (!carrinhoService.avancarVersao(carrinhoId, snapshot.getVersaoCarrinho())) {
+				compensacaoService.enfileirarCancelamento(clienteId, pagamento.transacaoId());
+				return metricas.registrar(new CheckoutOutcome.CarrinhoAlterado(), tipoCliente);
+			}
+			metricas.outbox.record(() -> outboxService.registrarCompraFinalizada(carrinhoId, clienteId,
+					pagamento.transacaoId(), custoTotal));
+			return metricas.registrar(new CheckoutOutcome.Sucesso(pagamento.transacaoId()), tipoCliente);
+		});
+	}
+
+	// Com o estoque reservado a gravação não pode ser perdida: com a fila cheia, roda aqui
+	private <T> CompletableFuture<T> gravar(Supplier<T> tarefa) {
+		try {
+			return CompletableFuture.supplyAsync(tarefa, executorJpa);
+		} catch (RejectedExecutionException e) {
+			try {
+				return CompletableFuture.completedFuture(tarefa.get());
+			} catch (RuntimeException erro) {
+				return CompletableFuture.failedFuture(erro);
+			}
+		}
+	}
+
+	private void liberarSeReservada(ReservaEstoqueDTO reserva) {
+		if (reserva.reservado()) {
+			liberar(reserva);
+		}
+	}
+
+	// Sem esperar a resposta: uma falha na liberação só é registrada e não muda o resultado da
+	// compra; a reserva não liberada expira sozinha no estoque
+	private void liberar(ReservaEstoqueDTO reserva) {
+		try {
+			CompletableFuture.runAsync(() -> estoqueExternal.liberarReserva(reserva), executorLiberacao)
+					.exceptionally(erro -> {
+						log.warn("Reserva {} não liberada; fica para expirar no estoque", reserva.reservaId(), erro);
+						return null;
+					});
+		} catch (RejectedExecutionException e) {
+			log.warn("Liberação da reserva {} descartada com a fila cheia; fica para expirar no estoque",
+					reserva.reservaId());
+		}
+	}
+
+	private static boolean tempoEsgotado(Throwable erro) {
+		for (Throwable causa = erro; causa != null; causa = causa.getCause()) {
+			if (causa instanceof TimeoutException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static <T> CompletableFuture<T> medir(Timer timer, Supplier<CompletableFuture<T>> etapa) {
+		long inicio = System.nanoTime();
+		return etapa.get().whenComplete((resultado, erro) -> timer.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS));
+	}
+
+	private record Pedido(TipoCliente tipoCliente, CartSnapshot snapshot) {
+	}
+}
@@ -1,22 +1,40 @@
 package ecommerce.service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 
 import ecommerce.dto.CompraDTO;
-import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ItensEstoqueDTO;
 import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.PedidoCheckoutDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+import ecommerce.dto.TotaisCarrinhoDTO;
 import ecommerce.entity.CarrinhoDeCompras;
-import ecommerce.entity.Cliente;
-import ecommerce.entity.ItemCompra;
 import ecommerce.entity.TipoCliente;
 import ecommerce.external.IEstoqueExternal;
 import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.resiliencia.DependenciaIndisponivelException;
+import ecommerce.service.EventosCheckout.AutorizarPagamento;
+import ecommerce.service.EventosCheckout.BaixarEstoque;
+import ecommerce.service.EventosCheckout.CarregarCarrinho;
+import ecommerce.service.EventosCheckout.Etapa;
+import ecommerce.service.EventosCheckout.Precificar;
+import ecommerce.service.EventosCheckout.ReservarEstoque;
 import jakarta.transaction.Transactional;
 
 @Service
@@ -28,95 +46,342 @@ public class CompraService {
 	private final IEstoqueExternal estoqueExternal;
 	private final IPagamentoExternal pagamentoExternal;
 
+	private final MotorPrecificacao motorPrecificacao;
+	private final CompensacaoService compensacaoService;
+	private final OutboxService outboxService;
+	private final MetricasCheckout metricas;
+	private final Executor executorCheckout;
+	private final TransactionOperations transacao;
+
 	@Autowired
 	public CompraService(CarrinhoDeComprasService carrinhoService, ClienteService clienteService,
-						 IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal) {
+						 IEstoqueExternal estoqueExternal, IPagamentoExternal pagamentoExternal,
+						 MotorPrecificacao motorPrecificacao, CompensacaoService compensacaoService,
+						 OutboxService outboxService, MetricasCheckout metricas,
+						 @Qualifier("executorCheckout") Executor executorCheckout,
+						 TransactionOperations transacao) {
 		this.carrinhoService = carrinhoService;
 		this.clienteService = clienteService;
 
 		this.estoqueExternal = estoqueExternal;
 		this.pagamentoExternal = pagamentoExternal;
+
+		this.motorPrecificacao = motorPrecificacao;
+		this.compensacaoService = compensacaoService;
+		this.outboxService = outboxService;
+		this.metricas = metricas;
+		this.executorCheckout = executorCheckout;
+		this.transacao = transacao;
 	}
 
+	/**
+	 * Finaliza a compra de um carrinho. Recusas de negócio voltam como {@link CheckoutOutcome}; se a
+	 * transação for desfeita depois do pagamento autorizado, ele é cancelado pela fila de compensação.
+	 */
 	@Transactional
-	public CompraDTO finalizarCompra(Long carrinhoId, Long clienteId) {
-		Cliente cliente = clienteService.buscarPorId(clienteId);
-		CarrinhoDeCompras carrinho = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+	public CheckoutOutcome finalizarCompra(Long carrinhoId, Long clienteId) {
+		TipoCliente tipoCliente = metricas.tipoCliente.record(() -> clienteService.buscarTipo(clienteId));
+		CartSnapshot snapshot;
+		try (Etapa evento = Etapa.iniciar(new CarregarCarrinho(), carrinhoId, 0)) {
+			snapshot = metricas.carrinho.record(() -> carrinhoService.buscarParaCheckout(carrinhoId, clienteId));
+			evento.concluir(snapshot.tamanho(), EventosCheckout.SUCESSO);
+		}
+		List<Long> produtosIds = snapshot.produtosIds();
+		List<Long> produtosQtds = snapshot.produtosQuantidades();
+		int itens = snapshot.tamanho();
 
-		List<Long> produtosIds = carrinho.getItens().stream().map(i -> i.getProduto().getId())
-				.collect(Collectors.toList());
-		List<Long> produtosQtds = carrinho.getItens().stream().map(i -> i.getQuantidade()).collect(Collectors.toList());
+		// A reserva no estoque roda em paralelo com a precificação, que é só CPU
+		CompletableFuture<ReservaEstoqueDTO> reservaFutura = CompletableFuture.supplyAsync(() -> {
+			try (Etapa evento = Etapa.iniciar(new ReservarEstoque(), carrinhoId, itens)) {
+				ReservaEstoqueDTO reservaDTO = metricas.reserva.record(
+						() -> estoqueExternal.reservar(produtosIds, produtosQtds));
+				evento.concluir(reservaDTO.reservado() ? EventosCheckout.SUCESSO : EventosCheckout.SEM_ESTOQUE);
+				return reservaDTO;
+			}
+		}, executorCheckout);
 
-		DisponibilidadeDTO disponibilidade = estoqueExternal.verificarDisponibilidade(produtosIds, produtosQtds);
+		BigDecimal custoTotal;
+		try (Etapa evento = Etapa.iniciar(new Precificar(), carrinhoId, itens)) {
+			custoTotal = metricas.precificacao.record(() -> motorPrecificacao.calcularCustoTotal(snapshot, tipoCliente));
+			evento.concluir(EventosCheckout.SUCESSO);
+		} catch (RuntimeException e) {
+			// Falha rápida: não espera o estoque; a reserva é liberada quando a resposta chegar
+			reservaFutura.thenAccept(this::liberarSeReservada);
+			throw e;
+		}
 
-		if (!disponibilidade.disponivel()) {
-			throw new IllegalStateException("Itens fora de estoque.");
+		// O pagamento só é autorizado depois que o estoque separa os itens
+		ReservaEstoqueDTO reserva = aguardar(reservaFutura);
+
+		if (!reserva.reservado()) {
+			return metricas.registrar(new CheckoutOutcome.SemEstoque(reserva.idsProdutosIndisponiveis()), tipoCliente);
 		}
 
-		BigDecimal custoTotal = calcularCustoTotal(carrinho);
+		// Só cobra o preço calculado se o carrinho ainda for o que foi precificado
+		boolean alterado;
+		try {
+			alterado = carrinhoService.carrinhoAlteradoDesde(carrinhoId, snapshot.getVersaoCarrinho());
+		} catch (RuntimeException e) {
+			estoqueExternal.liberarReserva(reserva);
+			throw e;
+		}
+		if (alterado) {
+			estoqueExternal.liberarReserva(reserva);
+			return metricas.registrar(new CheckoutOutcome.CarrinhoAlterado(), tipoCliente);
+		}
 
-		PagamentoDTO pagamento = pagamentoExternal.autorizarPagamento(cliente.getId(), custoTotal.doubleValue());
+		PagamentoDTO pagamento;
+		try (Etapa evento = Etapa.iniciar(new AutorizarPagamento(), carrinhoId, itens)) {
+			pagamento = metricas.pagamento.record(
+					() -> pagamentoExternal.autorizarPagamento(clienteId, custoTotal.doubleValue()));
+			evento.concluir(pagamento.autorizado() ? EventosCheckout.SUCESSO : EventosCheckout.RECUSADO);
+		} catch (RuntimeException e) {
+			estoqueExternal.liberarReserva(reserva);
+			throw e;
+		}
 
 		if (!pagamento.autorizado()) {
-			throw new IllegalStateException("Pagamento não autorizado.");
+			estoqueExternal.liberarReserva(reserva);
+			return metricas.registrar(new CheckoutOutcome.PagamentoRecusado(), tipoCliente);
+		}
+		compensacaoService.cancelarSeDesfeita(clienteId, pagamento.transacaoId());
+
+		boolean confirmado;
+		try {
+			confirmado = avancarVersao(carrinhoId, clienteId, snapshot, pagamento);
+		} catch (RuntimeException e) {
+			estoqueExternal.liberarReserva(reserva);
+			throw e;
+		}
+		if (!confirmado) {
+			// Alterado entre a conferência e o pagamento: nada fica cobrado nem reservado
+			estoqueExternal.liberarReserva(reserva);
+			return metricas.registrar(new CheckoutOutcome.CarrinhoAlterado(), tipoCliente);
 		}
 
-		EstoqueBaixaDTO baixaDTO = estoqueExternal.darBaixa(produtosIds, produtosQtds);
+		EstoqueBaixaDTO baixaDTO;
+		try (Etapa evento = Etapa.iniciar(new BaixarEstoque(), carrinhoId, itens)) {
+			baixaDTO = metricas.baixa.record(() -> estoqueExternal.confirmarReserva(reserva));
+			evento.concluir(baixaDTO.sucesso() ? EventosCheckout.SUCESSO : EventosCheckout.FALHA);
+		} catch (RuntimeException e) {
+			// Estoque fora do ar depois do pagamento autorizado: o rollback cancela o pagamento
+			metricas.registrar(MetricasCheckout.Resultado.FALHA_BAIXA, tipoCliente);
+			throw e;
+		}
 
 		if (!baixaDTO.sucesso()) {
-			pagamentoExternal.cancelarPagamento(cliente.getId(), pagamento.transacaoId());
-			throw new IllegalStateException("Erro ao dar baixa no estoque.");
+			// O cancelamento segue pela fila de compensação, sem esperar o provedor de pagamento
+			compensacaoService.enfileirarCancelamento(clienteId, pagamento.transacaoId());
+			return metricas.registrar(new CheckoutOutcome.FalhaBaixa(pagamento.transacaoId()), tipoCliente);
 		}
 
-		CompraDTO compraDTO = new CompraDTO(true, pagamento.transacaoId(), "Compra finalizada com sucesso.");
+		// Na mesma transação da compra; os sistemas interessados recebem o evento pelo relay da outbox
+		metricas.outbox.record(() -> outboxService.registrarCompraFinalizada(carrinhoId, clienteId,
+				pagamento.transacaoId(), custoTotal));
 
-		return compraDTO;
+		return metricas.registrar(new CheckoutOutcome.Sucesso(pagamento.transacaoId()), tipoCliente);
 	}
 
-	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho) {
-		if (carrinho == null || carrinho.getItens().isEmpty()) {
-			throw new IllegalArgumentException("Carrinho de compras vazio ou nulo.");
+	/**
+	 * Finaliza vários carrinhos com uma reserva e uma autorização de pagamento em lote. Cada carrinho
+	 * pago é concluído na própria transação e cada posição da resposta é o resultado do pedido na mesma posição.
+	 */
+	public List<CompraDTO> finalizarCompraEmLote(List<PedidoCheckoutDTO> pedidos) {
+		CompraDTO[] resultados = new CompraDTO[pedidos.size()];
+		Map<Long, Integer> posicaoPorCarrinho = new HashMap<>();
+		Map<Long, Long> clientePorCarrinho = new LinkedHashMap<>();
+		for (int i = 0; i < pedidos.size(); i++) {
+			PedidoCheckoutDTO pedido = pedidos.get(i);
+			if (pedido == null || pedido.carrinhoId() == null || pedido.clienteId() == null) {
+				resultados[i] = falha(new IllegalArgumentException("Parâmetros inválidos."));
+			} else if (posicaoPorCarrinho.putIfAbsent(pedido.carrinhoId(), i) != null) {
+				resultados[i] = falha(new IllegalArgumentException("Carrinho repetido no lote."));
+			} else {
+				clientePorCarrinho.put(pedido.carrinhoId(), pedido.clienteId());
+			}
+		}
+		if (clientePorCarrinho.isEmpty()) {
+			return Arrays.asList(resultados);
+		}
+
+		Map<Long, CartSnapshot> snapshots = carrinhoService.buscarParaCheckoutEmLote(clientePorCarrinho,
+				(carrinhoId, erro) -> resultados[posicaoPorCarrinho.get(carrinhoId)] = falha(erro));
+
+		Map<Long, BigDecimal> custos = new LinkedHashMap<>();
+		List<ItensEstoqueDTO> itens = new ArrayList<>(snapshots.size());
+		for (Map.Entry<Long, CartSnapshot> entrada : snapshots.entrySet()) {
+			Long carrinhoId = entrada.getKey();
+			CartSnapshot snapshot = entrada.getValue();
+			try {
+				TipoCliente tipoCliente = clienteService.buscarTipo(clientePorCarrinho.get(carrinhoId));
+				custos.put(carrinhoId, motorPrecificacao.calcularCustoTotal(snapshot, tipoCliente));
+				itens.add(new ItensEstoqueDTO(snapshot.produtosIds(), snapshot.produtosQuantidades()));
+			} catch (RuntimeException e) {
+				resultados[posicaoPorCarrinho.get(carrinhoId)] = falha(e);
+			}
+		}
+		if (custos.isEmpty()) {
+			return Arrays.asList(resultados);
+		}
+
+		List<ReservaEstoqueDTO> reservas;
+		try {
+			reservas = estoqueExternal.reservarEmLote(itens);
+		} catch (RuntimeException e) {
+			for (Long carrinhoId : custos.keySet()) {
+				resultados[posicaoPorCarrinho.get(carrinhoId)] = falha(e);
+			}
+			return Arrays.asList(resultados);
+		}
+
+		List<Long> aPagar = new ArrayList<>(custos.size());
+		Map<Long, ReservaEstoqueDTO> reservaPorCarrinho = new HashMap<>();
+		List<SolicitacaoPagamentoDTO> solicitacoes = new ArrayList<>(custos.size());
+		int posicaoReserva = 0;
+		for (Map.Entry<Long, BigDecimal> entrada : custos.entrySet()) {
+			Long carrinhoId = entrada.getKey();
+			ReservaEstoqueDTO reserva = reservas.get(posicaoReserva++);
+			if (!reserva.reservado()) {
+				resultados[posicaoPorCarrinho.get(carrinhoId)] =
+						new CheckoutOutcome.SemEstoque(reserva.idsProdutosIndisponiveis()).compra();
+				continue;
+			}
+			CompraDTO recusa = confirmarVersao(carrinhoId, snapshots.get(carrinhoId));
+			if (recusa != null) {
+				estoqueExternal.liberarReserva(reserva);
+				resultados[posicaoPorCarrinho.get(carrinhoId)] = recusa;
+			} else {
+				aPagar.add(carrinhoId);
+				reservaPorCarrinho.put(carrinhoId, reserva);
+				solicitacoes.add(new SolicitacaoPagamentoDTO(clientePorCarrinho.get(carrinhoId),
+						entrada.getValue().doubleValue()));
+			}
+		}
+		if (aPagar.isEmpty()) {
+			return Arrays.asList(resultados);
+		}
+
+		List<PagamentoDTO> pagamentos;
+		try {
+			pagamentos = pagamentoExternal.autorizarPagamentosEmLote(solicitacoes);
+		} catch (RuntimeException e) {
+			for (Long carrinhoId : aPagar) {
+				estoqueExternal.liberarReserva(reservaPorCarrinho.get(carrinhoId));
+				resultados[posicaoPorCarrinho.get(carrinhoId)] = falha(e);
+			}
+			return Arrays.asList(resultados);
 		}
 
-		// Calcula o custo total dos itens no carrinho
-		BigDecimal totalItens = carrinho.getItens().stream()
-				.map(item -> item.getProduto().getPreco().multiply(BigDecimal.valueOf(item.getQuantidade())))
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		for (int i = 0; i < aPagar.size(); i++) {
+			Long carrinhoId = aPagar.get(i);
+			Long clienteId = clientePorCarrinho.get(carrinhoId);
+			PagamentoDTO pagamento = pagamentos.get(i);
+			ReservaEstoqueDTO reserva = reservaPorCarrinho.get(carrinhoId);
+			try {
+				resultados[posicaoPorCarrinho.get(carrinhoId)] = transacao.execute(status -> concluirPago(carrinhoId,
+						clienteId, snapshots.get(carrinhoId), reserva, pagamento, custos.get(carrinhoId)));
+			} catch (RuntimeException e) {
+				resultados[posicaoPorCarrinho.get(carrinhoId)] = falha(e);
+			}
+		}
+		return Arrays.asList(resultados);
+	}
 
-		// Aplica desconto nos itens, se aplicável
-		if (totalItens.compareTo(BigDecimal.valueOf(500)) > 0 && totalItens.compareTo(BigDecimal.valueOf(1000)) <= 0) {
-			totalItens = totalItens.multiply(BigDecimal.valueOf(0.9)); // 10% de desconto
-		} else if (totalItens.compareTo(BigDecimal.valueOf(1000)) > 0) {
-			totalItens = totalItens.multiply(BigDecimal.valueOf(0.8)); // 20% de desconto
+	// Avanço da versão, confirmação da reserva e outbox de um carrinho do lote já pago, na
+	// transação dele; um rollback depois da autorização cancela o pagamento
+	private CompraDTO concluirPago(Long carrinhoId, Long clienteId, CartSnapshot snapshot, ReservaEstoqueDTO reserva,
+			PagamentoDTO pagamento, BigDecimal custoTotal) {
+		if (!pagamento.autorizado()) {
+			estoqueExternal.liberarReserva(reserva);
+			return new CheckoutOutcome.PagamentoRecusado().compra();
 		}
+		compensacaoService.cancelarSeDesfeita(clienteId, pagamento.transacaoId());
 
-		// Calcula o peso total dos itens
-		BigDecimal pesoTotal = carrinho.getItens().stream()
-				.map(item -> BigDecimal.valueOf(item.getProduto().getPeso()) // Converte o peso para BigDecimal
-						.multiply(BigDecimal.valueOf(item.getQuantidade()))) // Multiplica pelo número de itens
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		boolean confirmado;
+		try {
+			confirmado = avancarVersao(carrinhoId, clienteId, snapshot, pagamento);
+		} catch (RuntimeException e) {
+			estoqueExternal.liberarReserva(reserva);
+			throw e;
+		}
+		if (!confirmado) {
+			estoqueExternal.liberarReserva(reserva);
+			return new CheckoutOutcome.CarrinhoAlterado().compra();
+		}
 
-		// Calcula o custo do frete com base no peso total
-		BigDecimal frete;
-		if (pesoTotal.compareTo(BigDecimal.valueOf(5)) <= 0) {
-			frete = BigDecimal.ZERO;
-		} else if (pesoTotal.compareTo(BigDecimal.valueOf(10)) <= 0) {
-			frete = pesoTotal.multiply(BigDecimal.valueOf(2));
-		} else if (pesoTotal.compareTo(BigDecimal.valueOf(50)) <= 0) {
-			frete = pesoTotal.multiply(BigDecimal.valueOf(4));
-		} else {
-			frete = pesoTotal.multiply(BigDecimal.valueOf(7));
+		if (!estoqueExternal.confirmarReserva(reserva).sucesso()) {
+			compensacaoService.enfileirarCancelamento(clienteId, pagamento.transacaoId());
+			return new CheckoutOutcome.FalhaBaixa(pagamento.transacaoId()).compra();
 		}
+		outboxService.registrarCompraFinalizada(carrinhoId, clienteId, pagamento.transacaoId(), custoTotal);
+		return new CheckoutOutcome.Sucesso(pagamento.transacaoId()).compra();
+	}
 
-		// Aplica descontos no frete com base no tipo de cliente
-		TipoCliente tipoCliente = carrinho.getCliente().getTipo();
-		if (tipoCliente == TipoCliente.OURO) {
-			frete = BigDecimal.ZERO;
-		} else if (tipoCliente == TipoCliente.PRATA) {
-			frete = frete.multiply(BigDecimal.valueOf(0.5)); // 50% de desconto
+	// Confere a versão de um carrinho do lote antes do pagamento; devolve a recusa, ou null se ele não mudou
+	private CompraDTO confirmarVersao(Long carrinhoId, CartSnapshot snapshot) {
+		try {
+			return carrinhoService.carrinhoAlteradoDesde(carrinhoId, snapshot.getVersaoCarrinho())
+					? new CheckoutOutcome.CarrinhoAlterado().compra()
+					: null;
+		} catch (RuntimeException e) {
+			return falha(e);
 		}
+	}
+
+	// Depois do pagamento autorizado; se o carrinho mudou nesse meio tempo, o pagamento é cancelado
+	// pela fila de compensação
+	private boolean avancarVersao(Long carrinhoId, Long clienteId, CartSnapshot snapshot, PagamentoDTO pagamento) {
+		boolean confirmado = carrinhoService.avancarVersao(carrinhoId, snapshot.getVersaoCarrinho());
+		if (!confirmado) {
+			compensacaoService.enfileirarCancelamento(clienteId, pagamento.transacaoId());
+		}
+		return confirmado;
+	}
 
-		// Soma o custo dos itens com o frete
-		return totalItens.add(frete);
+	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho) {
+		return motorPrecificacao.calcularCustoTotal(carrinho);
+	}
+
+	/**
+	 * Custo total de um carrinho gravado pelos totais mantidos na linha do carrinho: uma
+	 * consulta, sem ler itens nem produtos, qualquer que seja o tamanho do carrinho.
+	 */
+	public BigDecimal calcularCustoTotal(Long carrinhoId, Long clienteId) {
+		TotaisCarrinhoDTO totais = carrinhoService.buscarTotais(carrinhoId, clienteId);
+		if (totais.quantidadeItens() == 0) {
+			throw new IllegalArgumentException("Carrinho de compras vazio ou nulo.");
+		}
+		return motorPrecificacao.calcularCustoTotal(totais.subtotal(), totais.pesoTotal(),
+				clienteService.buscarTipo(clienteId));
+	}
+
+	private void liberarSeReservada(ReservaEstoqueDTO reserva) {
+		if (reserva.reservado()) {
+			estoqueExternal.liberarReserva(reserva);
+		}
+	}
+
+	// Mesmo mapeamento de mensagens do CompraController para a finalização individual
+	private static CompraDTO falha(RuntimeException e) {
+		if (e instanceof IllegalArgumentException || e instanceof IllegalStateException
+				|| e instanceof DependenciaIndisponivelException) {
+			return new CompraDTO(false, null, e.getMessage());
+		}
+		return new CompraDTO(false, null, "Erro ao processar compra.");
+	}
+
+	// Repassa a exceção original da etapa paralela, sem o embrulho do CompletableFuture
+	private static <T> T aguardar(CompletableFuture<T> etapa) {
+		try {
+			return etapa.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException causa) {
+				throw causa;
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Finalização de compra interrompida.", e);
+		}
 	}
 }
@@ -0,0 +1,92 @@
+package ecommerce.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Eventos do Java Flight Recorder para as etapas de {@link CompraService#finalizarCompra}, usados
+ * em try-with-resources: o evento é gravado no {@code close()}.
+ */
+public final class EventosCheckout {
+
+	public static final String SUCESSO = "sucesso";
+	public static final String ERRO = "erro";
+	public static final String SEM_ESTOQUE = "sem_estoque";
+	public static final String RECUSADO = "recusado";
+	public static final String FALHA = "falha";
+
+	private EventosCheckout() {
+	}
+
+	@Category({ "E-commerce", "Checkout" })
+	@StackTrace(false)
+	public abstract static class Etapa extends Event implements AutoCloseable {
+
+		@Label("Carrinho")
+		long carrinhoId;
+
+		@Label("Itens")
+		int itens;
+
+		@Label("Resultado")
+		String resultado = ERRO;
+
+		public static <E extends Etapa> E iniciar(E evento, Long carrinhoId, int itens) {
+			evento.carrinhoId = carrinhoId == null ? 0 : carrinhoId;
+			evento.itens = itens;
+			evento.begin();
+			return evento;
+		}
+
+		public void concluir(String resultado) {
+			this.resultado = resultado;
+		}
+
+		public void concluir(int itens, String resultado) {
+			this.itens = itens;
+			this.resultado = resultado;
+		}
+
+		@Override
+		public void close() {
+			end();
+			if (shouldCommit()) {
+				commit();
+			}
+		}
+	}
+
+	@Name("ecommerce.checkout.CarregarCarrinho")
+	@Label("Carregar Carrinho")
+	@Description("Leitura do carrinho para a finalização de compra")
+	public static final class CarregarCarrinho extends Etapa {
+	}
+
+	@Name("ecommerce.checkout.ReservarEstoque")
+	@Label("Reservar Estoque")
+	@Description("Verificação e reserva dos itens no estoque")
+	public static final class ReservarEstoque extends Etapa {
+	}
+
+	@Name("ecommerce.checkout.Precificar")
+	@Label("Precificar")
+	@Description("Cálculo do custo total do carrinho")
+	public static final class Precificar extends Etapa {
+	}
+
+	@Name("ecommerce.checkout.AutorizarPagamento")
+	@Label("Autorizar Pagamento")
+	@Description("Autorização do pagamento no provedor")
+	public static final class AutorizarPagamento extends Etapa {
+	}
+
+	@Name("ecommerce.checkout.BaixarEstoque")
+	@Label("Baixar Estoque")
+	@Description("Confirmação da reserva e baixa dos itens no estoque")
+	public static final class BaixarEstoque extends Etapa {
+	}
+}
@@ -0,0 +1,84 @@
+package ecommerce.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import ecommerce.dto.DespejoJfrDTO;
+import ecommerce.dto.SituacaoGravacaoJfrDTO;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Gravação contínua do Java Flight Recorder com os {@link EventosCheckout}; {@link #despejar()}
+ * copia o conteúdo atual para um arquivo sem parar a gravação.
+ */
+public class GravacaoJfr implements AutoCloseable {
+
+	static final String NOME = "ecommerce-continua";
+
+	private static final List<Class<? extends Event>> EVENTOS = List.of(EventosCheckout.CarregarCarrinho.class,
+			EventosCheckout.ReservarEstoque.class, EventosCheckout.Precificar.class,
+			EventosCheckout.AutorizarPagamento.class, EventosCheckout.BaixarEstoque.class);
+
+	private static final DateTimeFormatter FORMATO_ARQUIVO = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+	private final Recording gravacao;
+	private final Path diretorio;
+
+	public GravacaoJfr(String perfil, Duration limiar, Duration idadeMaxima, long tamanhoMaximo, Path diretorio) {
+		if (limiar.isNegative() || idadeMaxima.isNegative() || tamanhoMaximo < 0) {
+			throw new IllegalArgumentException("Limiar, idade máxima e tamanho máximo não podem ser negativos.");
+		}
+		try {
+			this.gravacao = new Recording(Configuration.getConfiguration(perfil));
+		} catch (IOException | ParseException e) {
+			throw new IllegalArgumentException("Perfil de gravação JFR inválido: " + perfil, e);
+		}
+		this.gravacao.setName(NOME);
+		this.gravacao.setToDisk(true);
+		this.gravacao.setMaxAge(idadeMaxima);
+		this.gravacao.setMaxSize(tamanhoMaximo);
+		for (Class<? extends Event> evento : EVENTOS) {
+			this.gravacao.enable(evento).withThreshold(limiar);
+		}
+		this.diretorio = diretorio;
+	}
+
+	public void iniciar() {
+		gravacao.start();
+	}
+
+	/** Grava o conteúdo atual da gravação em um novo arquivo; a gravação continua. */
+	public synchronized DespejoJfrDTO despejar() {
+		if (gravacao.getState() != RecordingState.RUNNING) {
+			throw new IllegalStateException("Gravação JFR não está em andamento.");
+		}
+		try {
+			Files.createDirectories(diretorio);
+			Path arquivo = diretorio.resolve("checkout-" + LocalDateTime.now().format(FORMATO_ARQUIVO) + ".jfr");
+			gravacao.dump(arquivo);
+			return new DespejoJfrDTO(arquivo.toAbsolutePath().toString(), Files.size(arquivo));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Falha ao gravar o arquivo JFR.", e);
+		}
+	}
+
+	public SituacaoGravacaoJfrDTO situacao() {
+		return new SituacaoGravacaoJfrDTO(gravacao.getName(), gravacao.getState().name(), gravacao.getStartTime(),
+				gravacao.getMaxAge().toSeconds(), gravacao.getMaxSize());
+	}
+
+	@Override
+	public void close() {
+		gravacao.close();
+	}
+}
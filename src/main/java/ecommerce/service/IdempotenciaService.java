@@ -0,0 +1,140 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.ChaveIdempotencia;
+import ecommerce.repository.ChaveIdempotenciaRepository;
+
+/**
+ * Garante que uma finalização de compra enviada de novo com a mesma chave de idempotência
+ * não rode outra vez.
+ */
+@Service
+public class IdempotenciaService {
+
+	private static final String ERRO_ARGUMENTO = "IllegalArgumentException";
+	private static final String ERRO_ESTADO = "IllegalStateException";
+
+	private final ChaveIdempotenciaRepository repository;
+	private final Cache<String, Execucao> execucoes;
+	private final Duration ttl;
+	private final boolean persistente;
+
+	@Autowired
+	public IdempotenciaService(ChaveIdempotenciaRepository repository,
+							   @Value("${ecommerce.idempotencia.tamanho-maximo:100000}") long tamanhoMaximo,
+							   @Value("${ecommerce.idempotencia.ttl:24h}") Duration ttl,
+							   @Value("${ecommerce.idempotencia.persistente:false}") boolean persistente) {
+		this.repository = repository;
+		this.execucoes = Caffeine.newBuilder()
+				.maximumSize(tamanhoMaximo)
+				.expireAfterWrite(ttl)
+				.build();
+		this.ttl = ttl;
+		this.persistente = persistente;
+	}
+
+	/**
+	 * Executa a finalização uma única vez por chave. Pedidos repetidos recebem o resultado da
+	 * primeira execução.
+	 */
+	public CompraDTO executar(String chave, Long carrinhoId, Long clienteId, Supplier<CompraDTO> finalizacao) {
+		if (chave == null || chave.isBlank() || chave.length() > ChaveIdempotencia.TAMANHO_CHAVE) {
+			throw new IllegalArgumentException("Chave de idempotência inválida.");
+		}
+		Execucao nova = new Execucao(carrinhoId, clienteId);
+		Execucao execucao = execucoes.get(chave, k -> persistente ? restaurar(k, nova) : nova);
+		if (execucao != nova) {
+			return execucao.resultado(carrinhoId, clienteId);
+		}
+
+		CompraDTO compra;
+		try {
+			compra = finalizacao.get();
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			nova.futuro.completeExceptionally(e);
+			gravar(chave, nova, new CompraDTO(false, null, e.getMessage()), e.getClass().getSimpleName());
+			throw e;
+		} catch (RuntimeException e) {
+			execucoes.asMap().remove(chave, nova);
+			nova.futuro.completeExceptionally(e);
+			throw e;
+		}
+		nova.futuro.complete(compra);
+		gravar(chave, nova, compra, null);
+		return compra;
+	}
+
+	@Scheduled(fixedDelayString = "${ecommerce.idempotencia.limpeza-ms:60000}")
+	public void removerExpiradas() {
+		if (persistente) {
+			repository.removerExpiradas(Instant.now());
+		}
+	}
+
+	// Resultado gravado antes de um reinício; sem ele, a execução nova fica com a chave
+	private Execucao restaurar(String chave, Execucao nova) {
+		ChaveIdempotencia gravada = repository.findById(chave)
+				.filter(c -> c.getExpiraEm().isAfter(Instant.now()))
+				.orElse(null);
+		if (gravada == null) {
+			return nova;
+		}
+		Execucao restaurada = new Execucao(gravada.getCarrinhoId(), gravada.getClienteId());
+		if (ERRO_ARGUMENTO.equals(gravada.getErro())) {
+			restaurada.futuro.completeExceptionally(new IllegalArgumentException(gravada.getMensagem()));
+		} else if (ERRO_ESTADO.equals(gravada.getErro())) {
+			restaurada.futuro.completeExceptionally(new IllegalStateException(gravada.getMensagem()));
+		} else {
+			restaurada.futuro.complete(new CompraDTO(gravada.getSucesso(), gravada.getTransacaoPagamentoId(),
+					gravada.getMensagem()));
+		}
+		return restaurada;
+	}
+
+	// Chamado depois de concluir a execução em memória: se a gravação falhar, os pedidos
+	// repetidos nesta instância ainda recebem o resultado
+	private void gravar(String chave, Execucao execucao, CompraDTO compra, String erro) {
+		if (persistente) {
+			repository.save(new ChaveIdempotencia(chave, execucao.carrinhoId, execucao.clienteId, compra.sucesso(),
+					compra.transacaoPagamentoId(), compra.mensagem(), erro, Instant.now().plus(ttl)));
+		}
+	}
+
+	private static final class Execucao {
+
+		private final Long carrinhoId;
+		private final Long clienteId;
+		private final CompletableFuture<CompraDTO> futuro = new CompletableFuture<>();
+
+		private Execucao(Long carrinhoId, Long clienteId) {
+			this.carrinhoId = carrinhoId;
+			this.clienteId = clienteId;
+		}
+
+		private CompraDTO resultado(Long carrinhoId, Long clienteId) {
+			if (!Objects.equals(this.carrinhoId, carrinhoId) || !Objects.equals(this.clienteId, clienteId)) {
+				throw new IllegalArgumentException("Chave de idempotência já usada em outra compra.");
+			}
+			try {
+				return futuro.join();
+			} catch (CompletionException e) {
+				throw (RuntimeException) e.getCause();
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package ecommerce.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import ecommerce.entity.TipoCliente;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Métricas da finalização de compra: um timer por etapa ({@code checkout.etapa}) e contadores
+ * de resultado por tipo de cliente ({@code checkout.resultado}), registrados na criação.
+ */
+@Component
+public class MetricasCheckout {
+
+	public enum Resultado {
+		SUCESSO, SEM_ESTOQUE, PAGAMENTO_RECUSADO, CARRINHO_ALTERADO, FALHA_BAIXA
+	}
+
+	private static final TipoCliente[] TIPOS = TipoCliente.values();
+
+	final Timer tipoCliente;
+	final Timer carrinho;
+	final Timer reserva;
+	final Timer precificacao;
+	final Timer pagamento;
+	final Timer baixa;
+	final Timer outbox;
+	final Counter baixasIndefinidas;
+
+	private final Counter[][] resultados = new Counter[Resultado.values().length][TIPOS.length];
+
+	@Autowired
+	public MetricasCheckout(MeterRegistry meterRegistry) {
+		this.tipoCliente = etapa(meterRegistry, "tipo_cliente");
+		this.carrinho = etapa(meterRegistry, "carrinho");
+		this.reserva = etapa(meterRegistry, "estoque_reserva");
+		this.precificacao = etapa(meterRegistry, "precificacao");
+		this.pagamento = etapa(meterRegistry, "pagamento");
+		this.baixa = etapa(meterRegistry, "estoque_baixa");
+		this.outbox = etapa(meterRegistry, "outbox");
+		this.baixasIndefinidas = Counter.builder("checkout.baixa.indefinida")
+				.description("Confirmações de reserva sem resposta, mantidas para conciliação com o estoque")
+				.register(meterRegistry);
+		for (Resultado resultado : Resultado.values()) {
+			for (TipoCliente tipo : TIPOS) {
+				resultados[resultado.ordinal()][tipo.ordinal()] = Counter.builder("checkout.resultado")
+						.description("Finalizações de compra por resultado e tipo de cliente")
+						.tag("resultado", resultado.name().toLowerCase())
+						.tag("tipo_cliente", tipo.name())
+						.register(meterRegistry);
+			}
+		}
+	}
+
+	public void registrar(Resultado resultado, TipoCliente tipoCliente) {
+		resultados[resultado.ordinal()][tipoCliente.ordinal()].increment();
+	}
+
+	/** Conta o resultado da compra e o devolve, para uso direto no {@code return}. */
+	public CheckoutOutcome registrar(CheckoutOutcome resultado, TipoCliente tipoCliente) {
+		registrar(resultado(resultado), tipoCliente);
+		return resultado;
+	}
+
+	private static Resultado resultado(CheckoutOutcome resultado) {
+		if (resultado instanceof CheckoutOutcome.Sucesso) {
+			return Resultado.SUCESSO;
+		} else if (resultado instanceof CheckoutOutcome.SemEstoque) {
+			return Resultado.SEM_ESTOQUE;
+		} else if (resultado instanceof CheckoutOutcome.PagamentoRecusado) {
+			return Resultado.PAGAMENTO_RECUSADO;
+		} else if (resultado instanceof CheckoutOutcome.CarrinhoAlterado) {
+			return Resultado.CARRINHO_ALTERADO;
+		}
+		return Resultado.FALHA_BAIXA;
+	}
+
+	private static Timer etapa(MeterRegistry meterRegistry, String etapa) {
+		return Timer.builder("checkout.etapa")
+				.description("Duração de cada etapa da finalização de compra")
+				.tag("etapa", etapa)
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+	}
+}
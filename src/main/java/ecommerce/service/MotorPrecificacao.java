@@ -0,0 +1,46 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Calcula o custo total de um carrinho: desconto por valor dos itens, frete por peso
+ * e desconto de frete por tipo de cliente. Só o preço unitário é arredondado, para o centavo.
+ */
+public interface MotorPrecificacao {
+
+	BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho);
+
+	/** Calcula o custo a partir do subtotal e do peso já acumulados no retrato do carrinho. */
+	default BigDecimal calcularCustoTotal(CartSnapshot snapshot, TipoCliente tipoCliente) {
+		if (snapshot == null || snapshot.tamanho() == 0) {
+			throw new IllegalArgumentException("Carrinho de compras vazio ou nulo.");
+		}
+
+		return calcularCustoTotal(snapshot.getSubtotalCentavos(), snapshot.getPesoTotal(), tipoCliente);
+	}
+
+	/** Como {@link #calcularCustoTotal(BigDecimal, long, TipoCliente)}, com o subtotal em centavos. */
+	default BigDecimal calcularCustoTotal(long subtotalCentavos, long pesoTotal, TipoCliente tipoCliente) {
+		return calcularCustoTotal(BigDecimal.valueOf(subtotalCentavos, 2), pesoTotal, tipoCliente);
+	}
+
+	/**
+	 * Calcula o custo a partir do subtotal (R$) e do peso total (kg) dos itens, sem olhar os
+	 * itens; o chamador garante que o carrinho não está vazio.
+	 */
+	BigDecimal calcularCustoTotal(BigDecimal subtotal, long pesoTotal, TipoCliente tipoCliente);
+
+	/** Preço unitário arredondado para o centavo; um preço sem fração de centavo volta como está. */
+	static BigDecimal precoUnitario(BigDecimal preco) {
+		return preco.scale() > 2 ? preco.setScale(2, RoundingMode.HALF_UP) : preco;
+	}
+
+	/** {@link #precoUnitario} em centavos. */
+	static long centavos(BigDecimal preco) {
+		return precoUnitario(preco).movePointRight(2).longValueExact();
+	}
+}
@@ -0,0 +1,79 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Motor de precificação original, todo em {@link BigDecimal}.
+ */
+@Service
+@ConditionalOnProperty(name = "ecommerce.precificacao.motor", havingValue = "bigdecimal", matchIfMissing = true)
+public class MotorPrecificacaoBigDecimal implements MotorPrecificacao {
+
+	@Override
+	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho) {
+		if (carrinho == null || carrinho.getItens().isEmpty()) {
+			throw new IllegalArgumentException("Carrinho de compras vazio ou nulo.");
+		}
+
+		// Calcula o custo total dos itens no carrinho
+		BigDecimal totalItens = carrinho.getItens().stream()
+				.map(item -> MotorPrecificacao.precoUnitario(item.getProduto().getPreco())
+						.multiply(BigDecimal.valueOf(item.getQuantidade())))
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+
+		// Aplica desconto nos itens, se aplicável
+		totalItens = aplicarDescontoItens(totalItens);
+
+		// Calcula o peso total dos itens
+		BigDecimal pesoTotal = carrinho.getItens().stream()
+				.map(item -> BigDecimal.valueOf(item.getProduto().getPeso()) // Converte o peso para BigDecimal
+						.multiply(BigDecimal.valueOf(item.getQuantidade()))) // Multiplica pelo número de itens
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+
+		return totalComFrete(totalItens, pesoTotal, carrinho.getCliente().getTipo());
+	}
+
+	@Override
+	public BigDecimal calcularCustoTotal(BigDecimal subtotal, long pesoTotal, TipoCliente tipoCliente) {
+		return totalComFrete(aplicarDescontoItens(subtotal), BigDecimal.valueOf(pesoTotal), tipoCliente);
+	}
+
+	private BigDecimal aplicarDescontoItens(BigDecimal totalItens) {
+		if (totalItens.compareTo(BigDecimal.valueOf(500)) > 0 && totalItens.compareTo(BigDecimal.valueOf(1000)) <= 0) {
+			return totalItens.multiply(BigDecimal.valueOf(0.9)); // 10% de desconto
+		} else if (totalItens.compareTo(BigDecimal.valueOf(1000)) > 0) {
+			return totalItens.multiply(BigDecimal.valueOf(0.8)); // 20% de desconto
+		}
+		return totalItens;
+	}
+
+	private BigDecimal totalComFrete(BigDecimal totalItens, BigDecimal pesoTotal, TipoCliente tipoCliente) {
+		// Calcula o custo do frete com base no peso total
+		BigDecimal frete;
+		if (pesoTotal.compareTo(BigDecimal.valueOf(5)) <= 0) {
+			frete = BigDecimal.ZERO;
+		} else if (pesoTotal.compareTo(BigDecimal.valueOf(10)) <= 0) {
+			frete = pesoTotal.multiply(BigDecimal.valueOf(2));
+		} else if (pesoTotal.compareTo(BigDecimal.valueOf(50)) <= 0) {
+			frete = pesoTotal.multiply(BigDecimal.valueOf(4));
+		} else {
+			frete = pesoTotal.multiply(BigDecimal.valueOf(7));
+		}
+
+		// Aplica descontos no frete com base no tipo de cliente
+		if (tipoCliente == TipoCliente.OURO) {
+			frete = BigDecimal.ZERO;
+		} else if (tipoCliente == TipoCliente.PRATA) {
+			frete = frete.multiply(BigDecimal.valueOf(0.5)); // 50% de desconto
+		}
+
+		// Soma o custo dos itens com o frete
+		return totalItens.add(frete);
+	}
+}
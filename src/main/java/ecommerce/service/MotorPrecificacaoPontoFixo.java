@@ -0,0 +1,102 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Motor de precificação em ponto fixo: soma preços em centavos e pesos em kg como
+ * {@code long}, numa única passada pelos itens.
+ */
+@Service
+@ConditionalOnProperty(name = "ecommerce.precificacao.motor", havingValue = "ponto-fixo")
+public class MotorPrecificacaoPontoFixo implements MotorPrecificacao {
+
+	private static final int ESCALA_MILESIMOS = 3;
+	private static final long MILESIMOS_POR_REAL = 1_000L;
+
+	private static final long LIMITE_DESCONTO_10_CENTAVOS = 500_00L;
+	private static final long LIMITE_DESCONTO_20_CENTAVOS = 1000_00L;
+
+	@Override
+	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho) {
+		if (carrinho == null || carrinho.getItens().isEmpty()) {
+			throw new IllegalArgumentException("Carrinho de compras vazio ou nulo.");
+		}
+
+		List<ItemCompra> itens = carrinho.getItens();
+		long subtotalCentavos = 0L;
+		long pesoTotal = 0L;
+		for (int i = 0; i < itens.size(); i++) {
+			ItemCompra item = itens.get(i);
+			Produto produto = item.getProduto();
+			long quantidade = item.getQuantidade();
+			subtotalCentavos = Math.addExact(subtotalCentavos,
+					Math.multiplyExact(MotorPrecificacao.centavos(produto.getPreco()), quantidade));
+			pesoTotal = Math.addExact(pesoTotal, Math.multiplyExact((long) produto.getPeso(), quantidade));
+		}
+
+		long custoMilesimos = Math.addExact(totalItensMilesimos(subtotalCentavos),
+				freteMilesimos(pesoTotal, carrinho.getCliente().getTipo()));
+		return emReais(custoMilesimos, ESCALA_MILESIMOS);
+	}
+
+	@Override
+	public BigDecimal calcularCustoTotal(BigDecimal subtotal, long pesoTotal, TipoCliente tipoCliente) {
+		return calcularCustoTotal(MotorPrecificacao.centavos(subtotal), pesoTotal, tipoCliente);
+	}
+
+	@Override
+	public BigDecimal calcularCustoTotal(long subtotalCentavos, long pesoTotal, TipoCliente tipoCliente) {
+		long custoMilesimos = Math.addExact(totalItensMilesimos(subtotalCentavos),
+				freteMilesimos(pesoTotal, tipoCliente));
+		return emReais(custoMilesimos, ESCALA_MILESIMOS);
+	}
+
+	/**
+	 * Converte centavos em milésimos aplicando o desconto por valor: 1 centavo vale 10
+	 * milésimos, então 10% de desconto é multiplicar por 9 e 20% é multiplicar por 8.
+	 */
+	static long totalItensMilesimos(long subtotalCentavos) {
+		if (subtotalCentavos > LIMITE_DESCONTO_20_CENTAVOS) {
+			return Math.multiplyExact(subtotalCentavos, 8L);
+		}
+		if (subtotalCentavos > LIMITE_DESCONTO_10_CENTAVOS) {
+			return Math.multiplyExact(subtotalCentavos, 9L);
+		}
+		return Math.multiplyExact(subtotalCentavos, 10L);
+	}
+
+	static long freteMilesimos(long pesoTotal, TipoCliente tipoCliente) {
+		if (tipoCliente == TipoCliente.OURO) {
+			return 0L;
+		}
+
+		long frete;
+		if (pesoTotal <= 5) {
+			frete = 0L;
+		} else if (pesoTotal <= 10) {
+			frete = Math.multiplyExact(pesoTotal, 2 * MILESIMOS_POR_REAL);
+		} else if (pesoTotal <= 50) {
+			frete = Math.multiplyExact(pesoTotal, 4 * MILESIMOS_POR_REAL);
+		} else {
+			frete = Math.multiplyExact(pesoTotal, 7 * MILESIMOS_POR_REAL);
+		}
+
+		// Frete em milésimos é sempre múltiplo de 1000, então a metade é exata
+		return tipoCliente == TipoCliente.PRATA ? frete / 2 : frete;
+	}
+
+	/** Valor em escala fixa como reais, sem zeros à direita e com no mínimo 2 casas. */
+	static BigDecimal emReais(long valor, int escala) {
+		BigDecimal reais = BigDecimal.valueOf(valor, escala).stripTrailingZeros();
+		return reais.scale() < 2 ? reais.setScale(2) : reais;
+	}
+}
@@ -0,0 +1,106 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Motor de precificação com as regras lidas de {@code ecommerce.precificacao.regras} e
+ * recompiladas a cada {@code POST /actuator/refresh}.
+ */
+@Service
+@ConditionalOnProperty(name = "ecommerce.precificacao.motor", havingValue = "regras")
+public class MotorPrecificacaoRegras implements MotorPrecificacao {
+
+	static final String PREFIXO = "ecommerce.precificacao.regras";
+
+	private final Environment environment;
+	private volatile RegrasPrecificacao regras;
+
+	@Autowired
+	public MotorPrecificacaoRegras(Environment environment) {
+		this.environment = environment;
+		this.regras = RegrasPrecificacao.compilar(ler(environment));
+	}
+
+	/** Motor com regras fixas, sem recarga pela configuração. */
+	public MotorPrecificacaoRegras(RegrasPrecificacao.Config config) {
+		this.environment = null;
+		this.regras = RegrasPrecificacao.compilar(config);
+	}
+
+	@Override
+	public BigDecimal calcularCustoTotal(CarrinhoDeCompras carrinho) {
+		if (carrinho == null || carrinho.getItens().isEmpty()) {
+			throw new IllegalArgumentException("Carrinho de compras vazio ou nulo.");
+		}
+
+		List<ItemCompra> itens = carrinho.getItens();
+		long subtotalCentavos = 0L;
+		long pesoTotal = 0L;
+		for (int i = 0; i < itens.size(); i++) {
+			ItemCompra item = itens.get(i);
+			Produto produto = item.getProduto();
+			long quantidade = item.getQuantidade();
+			subtotalCentavos = Math.addExact(subtotalCentavos,
+					Math.multiplyExact(MotorPrecificacao.centavos(produto.getPreco()), quantidade));
+			pesoTotal = Math.addExact(pesoTotal, Math.multiplyExact((long) produto.getPeso(), quantidade));
+		}
+
+		return calcular(regras, subtotalCentavos, pesoTotal, carrinho.getCliente().getTipo());
+	}
+
+	@Override
+	public BigDecimal calcularCustoTotal(BigDecimal subtotal, long pesoTotal, TipoCliente tipoCliente) {
+		return calcular(regras, MotorPrecificacao.centavos(subtotal), pesoTotal, tipoCliente);
+	}
+
+	@Override
+	public BigDecimal calcularCustoTotal(long subtotalCentavos, long pesoTotal, TipoCliente tipoCliente) {
+		return calcular(regras, subtotalCentavos, pesoTotal, tipoCliente);
+	}
+
+	/** Troca as regras em uso; se a configuração for inválida, lança e mantém as atuais. */
+	public void atualizar(RegrasPrecificacao.Config config) {
+		this.regras = RegrasPrecificacao.compilar(config);
+	}
+
+	public RegrasPrecificacao.Config regras() {
+		return regras.config();
+	}
+
+	@EventListener
+	public void aoMudarConfiguracao(EnvironmentChangeEvent evento) {
+		if (environment != null && evento.getKeys().stream().anyMatch(chave -> chave.startsWith(PREFIXO))) {
+			atualizar(ler(environment));
+		}
+	}
+
+	private static BigDecimal calcular(RegrasPrecificacao regras, long subtotalCentavos, long pesoTotal,
+			TipoCliente tipoCliente) {
+		long custo = Math.addExact(regras.totalItens(subtotalCentavos), regras.frete(pesoTotal, tipoCliente));
+		return MotorPrecificacaoPontoFixo.emReais(custo, RegrasPrecificacao.ESCALA_RESULTADO);
+	}
+
+	private static RegrasPrecificacao.Config ler(Environment environment) {
+		RegrasPrecificacao.Config padrao = RegrasPrecificacao.padrao();
+		return Binder.get(environment).bind(PREFIXO, RegrasPrecificacao.Config.class)
+				.map(config -> new RegrasPrecificacao.Config(
+						config.descontos() == null ? padrao.descontos() : config.descontos(),
+						config.frete() == null ? padrao.frete() : config.frete(),
+						config.fatorFrete() == null ? padrao.fatorFrete() : config.fatorFrete()))
+				.orElse(padrao);
+	}
+}
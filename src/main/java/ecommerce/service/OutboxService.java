@@ -0,0 +1,47 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ecommerce.dto.CompraFinalizadaDTO;
+import ecommerce.entity.EventoOutbox;
+import ecommerce.repository.EventoOutboxRepository;
+import jakarta.transaction.Transactional;
+
+/**
+ * Grava eventos de compra na tabela de outbox. Roda na transação de quem chama: o evento
+ * só existe se a compra for confirmada, e a entrega fica com o {@link RelayOutbox}.
+ */
+@Service
+public class OutboxService {
+
+	public static final String COMPRA_FINALIZADA = "CompraFinalizada";
+
+	private final EventoOutboxRepository repository;
+	private final ObjectMapper objectMapper;
+
+	@Autowired
+	public OutboxService(EventoOutboxRepository repository, ObjectMapper objectMapper) {
+		this.repository = repository;
+		this.objectMapper = objectMapper;
+	}
+
+	@Transactional(Transactional.TxType.MANDATORY)
+	public void registrarCompraFinalizada(Long carrinhoId, Long clienteId, Long transacaoPagamentoId,
+										  BigDecimal custoTotal) {
+		Instant agora = Instant.now();
+		CompraFinalizadaDTO evento = new CompraFinalizadaDTO(carrinhoId, clienteId, transacaoPagamentoId,
+				custoTotal, agora);
+		try {
+			repository.save(new EventoOutbox(COMPRA_FINALIZADA, objectMapper.writeValueAsString(evento), agora));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Erro ao serializar evento de compra.", e);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package ecommerce.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ecommerce.entity.Produto;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Invalida o {@link CatalogoProdutoService} quando um produto é salvo ou removido pelo
+ * repositório. A invalidação é repetida após o commit, para que uma leitura concorrente
+ * feita antes do commit não deixe o valor antigo no cache.
+ */
+@Component
+public class ProdutoCacheListener {
+
+	// Resolvido sob demanda: o listener é criado junto com o EntityManagerFactory
+	private final ObjectProvider<CatalogoProdutoService> catalogo;
+
+	public ProdutoCacheListener(ObjectProvider<CatalogoProdutoService> catalogo) {
+		this.catalogo = catalogo;
+	}
+
+	@PostPersist
+	@PostUpdate
+	@PostRemove
+	public void produtoAlterado(Produto produto) {
+		Long produtoId = produto.getId();
+		catalogo.ifAvailable(c -> c.invalidar(produtoId));
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					catalogo.ifAvailable(c -> c.invalidar(produtoId));
+				}
+			});
+		}
+	}
+}
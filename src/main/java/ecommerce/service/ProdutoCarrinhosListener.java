@@ -0,0 +1,38 @@
+package ecommerce.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import ecommerce.entity.Produto;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Recalcula os totais dos carrinhos que contêm um produto quando o preço ou o peso dele pode
+ * ter mudado. O recálculo roda depois do commit, em transação própria; alterações feitas fora
+ * de transação ou que falhem no recálculo ficam para a {@link VerificacaoTotaisCarrinho}.
+ */
+@Component
+public class ProdutoCarrinhosListener {
+
+	// Resolvido sob demanda: o listener é criado junto com o EntityManagerFactory
+	private final ObjectProvider<CarrinhoDeComprasService> carrinhos;
+
+	public ProdutoCarrinhosListener(ObjectProvider<CarrinhoDeComprasService> carrinhos) {
+		this.carrinhos = carrinhos;
+	}
+
+	@PostUpdate
+	public void produtoAlterado(Produto produto) {
+		Long produtoId = produto.getId();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					carrinhos.ifAvailable(c -> c.recalcularTotaisComProduto(produtoId));
+				}
+			});
+		}
+	}
+}
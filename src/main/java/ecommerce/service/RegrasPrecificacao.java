@@ -0,0 +1,160 @@
+package ecommerce.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import ecommerce.entity.TipoCliente;
+
+/**
+ * Regras de precificação compiladas em arrays de {@code long} em escala fixa, procurados por
+ * busca binária. Instâncias são imutáveis.
+ */
+public final class RegrasPrecificacao {
+
+	static final int ESCALA_RESULTADO = 6;
+	private static final long UNIDADE_FATOR = 10_000L;
+
+	// Desconto: acima de limitesDescontoCentavos[i - 1] (e até limitesDescontoCentavos[i]) vale fatorItens[i]
+	private final long[] limitesDescontoCentavos;
+	private final long[] fatorItens;
+
+	// Frete: até limitesPesoKg[i] kg vale freteKgCentavos[i]; acima do último, o último valor
+	private final long[] limitesPesoKg;
+	private final long[] freteKgCentavos;
+
+	private final long[] fatorFretePorTipo;
+
+	private final Config config;
+
+	private RegrasPrecificacao(Config config) {
+		List<Desconto> descontos = config.descontos() == null ? List.of() : config.descontos();
+		this.limitesDescontoCentavos = new long[descontos.size()];
+		this.fatorItens = new long[descontos.size() + 1];
+		this.fatorItens[0] = UNIDADE_FATOR;
+		for (int i = 0; i < descontos.size(); i++) {
+			Desconto desconto = descontos.get(i);
+			if (desconto == null || desconto.acimaDe() == null || desconto.percentual() == null) {
+				throw new IllegalArgumentException("Desconto " + i + " sem limite ou percentual.");
+			}
+			limitesDescontoCentavos[i] = escalar(desconto.acimaDe(), 2, "limite do desconto " + i);
+			long percentual = escalar(desconto.percentual(), 2, "percentual do desconto " + i);
+			if (percentual < 0 || percentual > 100_00) {
+				throw new IllegalArgumentException("Percentual do desconto " + i + " fora de 0 a 100.");
+			}
+			fatorItens[i + 1] = UNIDADE_FATOR - percentual;
+		}
+		exigirCrescente(limitesDescontoCentavos, "Limites de desconto");
+
+		List<FaixaFrete> faixas = config.frete();
+		if (faixas == null || faixas.isEmpty()) {
+			throw new IllegalArgumentException("É preciso ao menos uma faixa de frete.");
+		}
+		this.limitesPesoKg = new long[faixas.size() - 1];
+		this.freteKgCentavos = new long[faixas.size()];
+		for (int i = 0; i < faixas.size(); i++) {
+			FaixaFrete faixa = faixas.get(i);
+			boolean ultima = i == faixas.size() - 1;
+			if (faixa == null || faixa.porKg() == null || (faixa.ateKg() == null) != ultima) {
+				throw new IllegalArgumentException(
+						"Faixa de frete " + i + " inválida: todas têm valor por kg e só a última fica sem limite.");
+			}
+			freteKgCentavos[i] = escalar(faixa.porKg(), 2, "valor por kg da faixa de frete " + i);
+			if (!ultima) {
+				limitesPesoKg[i] = faixa.ateKg();
+			}
+		}
+		exigirCrescente(limitesPesoKg, "Limites de peso do frete");
+
+		this.fatorFretePorTipo = new long[TipoCliente.values().length];
+		EnumMap<TipoCliente, BigDecimal> fatores = new EnumMap<>(TipoCliente.class);
+		if (config.fatorFrete() != null) {
+			fatores.putAll(config.fatorFrete());
+		}
+		for (TipoCliente tipo : TipoCliente.values()) {
+			BigDecimal fator = fatores.get(tipo);
+			if (fator == null) {
+				throw new IllegalArgumentException("Fator de frete do tipo " + tipo + " não configurado.");
+			}
+			if (fator.signum() < 0) {
+				throw new IllegalArgumentException("Fator de frete do tipo " + tipo + " negativo.");
+			}
+			fatorFretePorTipo[tipo.ordinal()] = escalar(fator, 4, "fator de frete do tipo " + tipo);
+		}
+
+		this.config = config;
+	}
+
+	/** Valida e compila a configuração; lança {@link IllegalArgumentException} se ela for inválida. */
+	public static RegrasPrecificacao compilar(Config config) {
+		return new RegrasPrecificacao(config);
+	}
+
+	/** As regras de sempre: 10% acima de R$ 500, 20% acima de R$ 1000, frete 0/2/4/7 por kg, OURO isento, PRATA 50%. */
+	public static Config padrao() {
+		return new Config(
+				List.of(new Desconto(BigDecimal.valueOf(500), BigDecimal.valueOf(10)),
+						new Desconto(BigDecimal.valueOf(1000), BigDecimal.valueOf(20))),
+				List.of(new FaixaFrete(5L, BigDecimal.ZERO), new FaixaFrete(10L, BigDecimal.valueOf(2)),
+						new FaixaFrete(50L, BigDecimal.valueOf(4)), new FaixaFrete(null, BigDecimal.valueOf(7))),
+				Map.of(TipoCliente.BRONZE, BigDecimal.ONE, TipoCliente.PRATA, new BigDecimal("0.5"),
+						TipoCliente.OURO, BigDecimal.ZERO));
+	}
+
+	/** Subtotal com o desconto por valor, em milionésimos de real. */
+	long totalItens(long subtotalCentavos) {
+		return Math.multiplyExact(subtotalCentavos, fatorItens[faixa(limitesDescontoCentavos, subtotalCentavos)]);
+	}
+
+	/** Frete com o fator do tipo de cliente, em milionésimos de real; sem tipo, o frete é integral. */
+	long frete(long pesoKg, TipoCliente tipoCliente) {
+		return Math.multiplyExact(Math.multiplyExact(pesoKg, freteKgCentavos[faixa(limitesPesoKg, pesoKg)]),
+				tipoCliente == null ? UNIDADE_FATOR : fatorFretePorTipo[tipoCliente.ordinal()]);
+	}
+
+	public Config config() {
+		return config;
+	}
+
+	/**
+	 * Quantos limites ficam abaixo de {@code valor}: um valor igual a um limite fica na faixa que
+	 * termina nele, como no "acima de" do desconto e no "até" do frete.
+	 */
+	private static int faixa(long[] limites, long valor) {
+		int posicao = Arrays.binarySearch(limites, valor);
+		return posicao >= 0 ? posicao : -posicao - 1;
+	}
+
+	private static long escalar(BigDecimal valor, int casas, String campo) {
+		try {
+			return valor.movePointRight(casas).longValueExact();
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException(
+					"O " + campo + " aceita no máximo " + casas + " casas decimais: " + valor, e);
+		}
+	}
+
+	private static void exigirCrescente(long[] limites, String nome) {
+		for (int i = 0; i < limites.length; i++) {
+			if (limites[i] < 0 || i > 0 && limites[i] <= limites[i - 1]) {
+				throw new IllegalArgumentException(nome + " devem ser positivos e crescentes.");
+			}
+		}
+	}
+
+	/**
+	 * Regras como vêm da configuração ({@code ecommerce.precificacao.regras}). Os descontos valem
+	 * para subtotais acima de {@code acimaDe}; cada faixa de frete vale até {@code ateKg}, e a
+	 * última, sem limite, vale para qualquer peso acima da anterior.
+	 */
+	public record Config(List<Desconto> descontos, List<FaixaFrete> frete, Map<TipoCliente, BigDecimal> fatorFrete) {
+	}
+
+	public record Desconto(BigDecimal acimaDe, BigDecimal percentual) {
+	}
+
+	public record FaixaFrete(Long ateKg, BigDecimal porKg) {
+	}
+}
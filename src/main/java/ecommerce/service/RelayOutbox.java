@@ -0,0 +1,97 @@
+package ecommerce.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.EventoOutboxDTO;
+import ecommerce.entity.EventoOutbox;
+import ecommerce.external.IPublicadorEventos;
+import ecommerce.repository.EventoOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Entrega os eventos da outbox ao {@link IPublicadorEventos} em lotes reivindicados por um prazo,
+ * para que vários relays não entreguem o mesmo lote (entrega ao menos uma vez).
+ */
+@Service
+public class RelayOutbox {
+
+	private final EventoOutboxRepository repository;
+	private final IPublicadorEventos publicador;
+
+	private final String relayId = UUID.randomUUID().toString();
+	private final int tamanhoLote;
+	private final int eventosPorCiclo;
+	private final Duration reivindicacao;
+
+	private final Counter publicados;
+	private final Timer tempoLote;
+
+	@Autowired
+	public RelayOutbox(EventoOutboxRepository repository, IPublicadorEventos publicador, MeterRegistry meterRegistry,
+					   @Value("${ecommerce.outbox.lote:100}") int tamanhoLote,
+					   @Value("${ecommerce.outbox.eventos-por-segundo:1000}") int eventosPorSegundo,
+					   @Value("${ecommerce.outbox.intervalo-ms:100}") long intervaloMs,
+					   @Value("${ecommerce.outbox.reivindicacao:30s}") Duration reivindicacao) {
+		if (tamanhoLote <= 0 || eventosPorSegundo <= 0 || intervaloMs <= 0) {
+			throw new IllegalArgumentException("Lote, taxa e intervalo da outbox devem ser positivos.");
+		}
+		this.repository = repository;
+		this.publicador = publicador;
+		this.tamanhoLote = tamanhoLote;
+		this.eventosPorCiclo = (int) Math.max(1, Math.min(Integer.MAX_VALUE, eventosPorSegundo * intervaloMs / 1000));
+		this.reivindicacao = reivindicacao;
+		this.publicados = Counter.builder("outbox.eventos.publicados").register(meterRegistry);
+		this.tempoLote = Timer.builder("outbox.relay.lote").register(meterRegistry);
+	}
+
+	@Scheduled(fixedDelayString = "${ecommerce.outbox.intervalo-ms:100}")
+	public void entregar() {
+		entregarCiclo();
+	}
+
+	/** Executa um ciclo de entrega; retorna quantos eventos foram publicados. */
+	public int entregarCiclo() {
+		int entregues = 0;
+		while (entregues < eventosPorCiclo) {
+			int limite = Math.min(tamanhoLote, eventosPorCiclo - entregues);
+			int publicadosNoLote = tempoLote.record(() -> entregarLote(limite));
+			if (publicadosNoLote == 0) {
+				break;
+			}
+			entregues += publicadosNoLote;
+		}
+		return entregues;
+	}
+
+	private int entregarLote(int limite) {
+		Instant agora = Instant.now();
+		List<Long> candidatos = repository.findIdsDisponiveis(agora, PageRequest.of(0, limite));
+		if (candidatos.isEmpty() || repository.reivindicar(candidatos, relayId, agora.plus(reivindicacao), agora) == 0) {
+			return 0;
+		}
+
+		List<EventoOutbox> reivindicados = repository.findByReivindicadoPorAndIdInOrderById(relayId, candidatos);
+		List<EventoOutboxDTO> eventos = new ArrayList<>(reivindicados.size());
+		List<Long> ids = new ArrayList<>(reivindicados.size());
+		for (EventoOutbox evento : reivindicados) {
+			eventos.add(new EventoOutboxDTO(evento.getId(), evento.getTipo(), evento.getPayload(), evento.getCriadoEm()));
+			ids.add(evento.getId());
+		}
+		publicador.publicar(eventos);
+		repository.deleteAllByIdInBatch(ids);
+		publicados.increment(ids.size());
+		return ids.size();
+	}
+}
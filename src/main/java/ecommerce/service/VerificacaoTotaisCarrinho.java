@@ -0,0 +1,70 @@
+package ecommerce.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import ecommerce.dto.VerificacaoTotaisDTO;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Confere os totais desnormalizados dos carrinhos (subtotal, peso e número de itens) contra os
+ * itens e corrige os divergentes.
+ */
+@Service
+public class VerificacaoTotaisCarrinho {
+
+	private final CarrinhoDeComprasRepository repository;
+	private final int tamanhoLote;
+
+	private final Counter verificados;
+	private final Counter reparados;
+
+	@Autowired
+	public VerificacaoTotaisCarrinho(CarrinhoDeComprasRepository repository, MeterRegistry meterRegistry,
+									 @Value("${ecommerce.carrinho.verificacao.lote:500}") int tamanhoLote) {
+		if (tamanhoLote <= 0) {
+			throw new IllegalArgumentException("Lote da verificação de totais deve ser positivo.");
+		}
+		this.repository = repository;
+		this.tamanhoLote = tamanhoLote;
+		this.verificados = Counter.builder("carrinho.totais.verificados").register(meterRegistry);
+		this.reparados = Counter.builder("carrinho.totais.reparados").register(meterRegistry);
+	}
+
+	@Scheduled(fixedDelayString = "${ecommerce.carrinho.verificacao.intervalo-ms:600000}")
+	public void verificar() {
+		verificarCiclo();
+	}
+
+	/** Percorre todos os carrinhos uma vez; retorna quantos tiveram os totais corrigidos. */
+	public int verificarCiclo() {
+		int corrigidos = 0;
+		long aPartirDe = 0L;
+		List<VerificacaoTotaisDTO> lote;
+		do {
+			lote = repository.findVerificacaoTotais(aPartirDe, PageRequest.of(0, tamanhoLote));
+			List<Long> divergentes = new ArrayList<>();
+			for (VerificacaoTotaisDTO carrinho : lote) {
+				if (carrinho.divergente()) {
+					divergentes.add(carrinho.carrinhoId());
+				}
+				aPartirDe = carrinho.carrinhoId();
+			}
+			verificados.increment(lote.size());
+			if (!divergentes.isEmpty()) {
+				int corrigidosNoLote = repository.recalcularTotais(divergentes);
+				reparados.increment(corrigidosNoLote);
+				corrigidos += corrigidosNoLote;
+			}
+		} while (lote.size() == tamanhoLote);
+		return corrigidos;
+	}
+}
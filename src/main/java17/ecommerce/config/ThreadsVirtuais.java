@@ -0,0 +1,35 @@
+package ecommerce.config;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Versão para Java 17, sem threads virtuais. A versão com a API do Java 21 fica em
+ * {@code src/main/java21} e entra no lugar desta com o perfil Maven {@code java21}.
+ */
+public final class ThreadsVirtuais {
+
+	private ThreadsVirtuais() {
+	}
+
+	public static boolean suportadas() {
+		return false;
+	}
+
+	/** Executor que cria uma thread virtual por tarefa, sem limite de threads. */
+	public static ExecutorService novoExecutorPorTarefa() {
+		throw naoSuportadas();
+	}
+
+	/** Como {@link #novoExecutorPorTarefa()}, com as threads nomeadas {@code prefixo0}, {@code prefixo1}... */
+	public static ExecutorService novoExecutorPorTarefa(String prefixo) {
+		throw naoSuportadas();
+	}
+
+	public static boolean ehVirtual(Thread thread) {
+		return false;
+	}
+
+	private static IllegalStateException naoSuportadas() {
+		return new IllegalStateException("Threads virtuais exigem o build com o perfil Maven java21.");
+	}
+}
@@ -0,0 +1,32 @@
+package ecommerce.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Versão para Java 21, compilada só com o perfil Maven {@code java21} no lugar da versão de
+ * {@code src/main/java17}.
+ */
+public final class ThreadsVirtuais {
+
+	private ThreadsVirtuais() {
+	}
+
+	public static boolean suportadas() {
+		return true;
+	}
+
+	/** Executor que cria uma thread virtual por tarefa, sem limite de threads. */
+	public static ExecutorService novoExecutorPorTarefa() {
+		return Executors.newVirtualThreadPerTaskExecutor();
+	}
+
+	/** Como {@link #novoExecutorPorTarefa()}, com as threads nomeadas {@code prefixo0}, {@code prefixo1}... */
+	public static ExecutorService novoExecutorPorTarefa(String prefixo) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefixo, 0).factory());
+	}
+
+	public static boolean ehVirtual(Thread thread) {
+		return thread.isVirtual();
+	}
+}
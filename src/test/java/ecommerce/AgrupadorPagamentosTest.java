@@ -0,0 +1,259 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ecommerce.config.PagamentoEmLoteConfig;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.fake.PagamentoSimulado;
+import ecommerce.external.lote.AgrupadorPagamentos;
+import ecommerce.external.resiliencia.DependenciaIndisponivelException;
+import ecommerce.external.resiliencia.Resiliencia;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class AgrupadorPagamentosTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PagamentoEmLoteRegistrado pagamento = new PagamentoEmLoteRegistrado();
+    private final List<List<Long>> atrasadosCancelados = new CopyOnWriteArrayList<>();
+    private final BiConsumer<Long, Long> cancelarAtrasado =
+            (clienteId, transacaoId) -> atrasadosCancelados.add(List.of(clienteId, transacaoId));
+    private AgrupadorPagamentos agrupador;
+
+    @AfterEach
+    void tearDown() {
+        if (agrupador != null) {
+            agrupador.close();
+        }
+    }
+
+    @Test
+    void autorizarPagamento_ChamadasConcorrentes_SeguemEmLotesECadaUmRecebeOSeu() throws Exception {
+        agrupador = new AgrupadorPagamentos(pagamento, meterRegistry, 10, Duration.ofMillis(200), Duration.ofSeconds(5), 2, 100, cancelarAtrasado);
+        int chamadas = 30;
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(chamadas);
+        try {
+            List<Future<PagamentoDTO>> respostas = new ArrayList<>();
+            for (int i = 0; i < chamadas; i++) {
+                long clienteId = i;
+                respostas.add(executor.submit(() -> {
+                    largada.await();
+                    return agrupador.autorizarPagamento(clienteId, 10.0 * clienteId);
+                }));
+            }
+            largada.countDown();
+
+            for (int i = 0; i < chamadas; i++) {
+                // O simulado devolve o id do cliente como transação
+                assertEquals(new PagamentoDTO(true, (long) i), respostas.get(i).get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(pagamento.lotes.size() < chamadas);
+        assertTrue(pagamento.lotes.stream().allMatch(lote -> lote.size() <= 10));
+        assertEquals(chamadas, pagamento.lotes.stream().mapToInt(List::size).sum());
+        DistributionSummary preenchimento = meterRegistry.get("pagamento.lote.preenchimento").summary();
+        assertEquals(pagamento.lotes.size(), preenchimento.count());
+        assertTrue(preenchimento.max() <= 1.0);
+        assertEquals(chamadas, meterRegistry.get("pagamento.lote.espera").timer().count());
+    }
+
+    @Test
+    void autorizarPagamento_ChamadaSozinha_SegueAoFimDaEspera() {
+        agrupador = new AgrupadorPagamentos(pagamento, meterRegistry, 50, Duration.ofMillis(20), Duration.ofSeconds(5), 1, 100, cancelarAtrasado);
+
+        PagamentoDTO resposta = agrupador.autorizarPagamento(7L, 100.0);
+
+        assertEquals(new PagamentoDTO(true, 7L), resposta);
+        assertEquals(List.of(List.of(new SolicitacaoPagamentoDTO(7L, 100.0))), pagamento.lotes);
+        Timer espera = meterRegistry.get("pagamento.lote.espera").timer();
+        assertTrue(espera.totalTime(TimeUnit.MILLISECONDS) >= 15);
+        assertEquals(0.02, meterRegistry.get("pagamento.lote.preenchimento").summary().max(), 1e-9);
+    }
+
+    @Test
+    void autorizarPagamento_FalhaNoLote_RepassaAExcecao() {
+        IPagamentoExternal comFalha = new PagamentoSimulado() {
+            @Override
+            public List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+                throw new IllegalStateException("Gateway indisponível");
+            }
+        };
+        agrupador = new AgrupadorPagamentos(comFalha, meterRegistry, 5, Duration.ofMillis(1), Duration.ofSeconds(5), 1, 100, cancelarAtrasado);
+
+        Exception exception = assertThrows(IllegalStateException.class, () -> agrupador.autorizarPagamento(1L, 10.0));
+
+        assertEquals("Gateway indisponível", exception.getMessage());
+    }
+
+    @Test
+    void autorizarPagamento_LoteSemResposta_FalhaNoTempoLimite() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        IPagamentoExternal travado = new PagamentoSimulado() {
+            @Override
+            public List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+                try {
+                    liberar.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.autorizarPagamentosEmLote(solicitacoes);
+            }
+        };
+        agrupador = new AgrupadorPagamentos(travado, meterRegistry, 5, Duration.ofMillis(1), Duration.ofMillis(100), 2, 100, cancelarAtrasado);
+        try {
+            DependenciaIndisponivelException exception = assertThrows(DependenciaIndisponivelException.class,
+                    () -> agrupador.autorizarPagamento(1L, 10.0));
+            assertEquals("Serviço de pagamento indisponível: tempo limite de 100 ms do lote excedido.",
+                    exception.getMessage());
+
+            ExecutionException assincrona = assertThrows(ExecutionException.class,
+                    () -> agrupador.autorizarPagamentoAsync(2L, 10.0).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(DependenciaIndisponivelException.class, assincrona.getCause());
+        } finally {
+            liberar.countDown();
+        }
+    }
+
+    @Test
+    void autorizarPagamento_LoteAutorizaDepoisDoTempoLimite_CancelaOPagamento() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        CountDownLatch respondido = new CountDownLatch(2);
+        IPagamentoExternal lento = new PagamentoSimulado() {
+            @Override
+            public List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+                try {
+                    liberar.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                List<PagamentoDTO> pagamentos = new ArrayList<>();
+                for (SolicitacaoPagamentoDTO solicitacao : solicitacoes) {
+                    pagamentos.add(new PagamentoDTO(true, solicitacao.clienteId() * 100));
+                }
+                respondido.countDown();
+                return pagamentos;
+            }
+        };
+        agrupador = new AgrupadorPagamentos(lento, meterRegistry, 1, Duration.ZERO, Duration.ofMillis(100), 2, 100,
+                cancelarAtrasado);
+
+        assertThrows(DependenciaIndisponivelException.class, () -> agrupador.autorizarPagamento(1L, 10.0));
+        ExecutionException assincrona = assertThrows(ExecutionException.class,
+                () -> agrupador.autorizarPagamentoAsync(2L, 10.0).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DependenciaIndisponivelException.class, assincrona.getCause());
+        assertTrue(atrasadosCancelados.isEmpty());
+
+        liberar.countDown();
+
+        assertTrue(respondido.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 500 && atrasadosCancelados.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(List.of(1L, 100L), List.of(2L, 200L)),
+                atrasadosCancelados.stream().sorted((a, b) -> Long.compare(a.get(0), b.get(0))).toList());
+    }
+
+    @Test
+    void autorizarPagamento_RespostaComTamanhoDiferente_Falha() {
+        IPagamentoExternal incompleto = new PagamentoSimulado() {
+            @Override
+            public List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+                return List.of();
+            }
+        };
+        agrupador = new AgrupadorPagamentos(incompleto, meterRegistry, 5, Duration.ofMillis(1), Duration.ofSeconds(5), 1, 100, cancelarAtrasado);
+
+        assertThrows(IllegalStateException.class, () -> agrupador.autorizarPagamento(1L, 10.0));
+    }
+
+    @Test
+    void cancelarPagamento_RepassaDireto() {
+        agrupador = new AgrupadorPagamentos(pagamento, meterRegistry, 5, Duration.ofMillis(1), Duration.ofSeconds(5), 1, 100, cancelarAtrasado);
+
+        agrupador.cancelarPagamento(1L, 99L);
+
+        assertEquals(List.of(99L), pagamento.cancelados);
+    }
+
+    @Test
+    void close_ChamadaDepoisDeEncerrar_AutorizaSemLote() {
+        agrupador = new AgrupadorPagamentos(pagamento, meterRegistry, 5, Duration.ofMillis(1), Duration.ofSeconds(5), 1, 100, cancelarAtrasado);
+        agrupador.close();
+
+        assertEquals(new PagamentoDTO(true, 3L), agrupador.autorizarPagamento(3L, 10.0));
+        assertTrue(pagamento.lotes.isEmpty());
+    }
+
+    @Test
+    void agrupadorPagamentos_TempoLimiteNaoCobreOEnvio_NaoSobe() {
+        try (Resiliencia resiliencia = new Resiliencia("pagamento", CircuitBreaker.ofDefaults("pagamento"),
+                Bulkhead.ofDefaults("pagamento"), Duration.ofSeconds(5), meterRegistry)) {
+            assertThrows(IllegalStateException.class, () -> new PagamentoEmLoteConfig().agrupadorPagamentos(pagamento,
+                    resiliencia, meterRegistry, 50, Duration.ofMillis(2), Duration.ofSeconds(5), 4, 100, null));
+        }
+    }
+
+    // Autoriza tudo, usando o id do cliente como transação, e guarda os lotes recebidos
+    private static class PagamentoEmLoteRegistrado implements IPagamentoExternal {
+
+        final List<List<SolicitacaoPagamentoDTO>> lotes = new CopyOnWriteArrayList<>();
+        final List<Long> cancelados = new CopyOnWriteArrayList<>();
+
+        @Override
+        public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+            return new PagamentoDTO(true, clienteId);
+        }
+
+        @Override
+        public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+            cancelados.add(pagamentoTransacaoId);
+        }
+
+        @Override
+        public List<PagamentoDTO> autorizarPagamentosEmLote(List<SolicitacaoPagamentoDTO> solicitacoes) {
+            lotes.add(List.copyOf(solicitacoes));
+            return IPagamentoExternal.super.autorizarPagamentosEmLote(solicitacoes);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = "ecommerce.pagamento.lote.habilitado=true")
+    class ModoLote {
+
+        @Autowired
+        private IPagamentoExternal pagamentoExternal;
+
+        @Test
+        void pagamentoExternal_UsaAgrupadorNaFrenteDoSimulado() {
+            assertInstanceOf(AgrupadorPagamentos.class, pagamentoExternal);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import ecommerce.entity.TipoCliente;
+import ecommerce.service.CacheTipoCliente;
+
+class CacheTipoClienteTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    @Test
+    void guardarEObter() {
+        CacheTipoCliente cache = new CacheTipoCliente(10, TTL);
+
+        cache.guardar(1L, TipoCliente.OURO);
+        cache.guardar(2L, TipoCliente.BRONZE);
+        cache.guardar(1L, TipoCliente.PRATA);
+
+        assertEquals(TipoCliente.PRATA, cache.obter(1L));
+        assertEquals(TipoCliente.BRONZE, cache.obter(2L));
+        assertNull(cache.obter(3L));
+        assertEquals(2, cache.tamanho());
+    }
+
+    @Test
+    void invalidar() {
+        CacheTipoCliente cache = new CacheTipoCliente(10, TTL);
+        cache.guardar(1L, TipoCliente.OURO);
+
+        cache.invalidar(1L);
+        cache.invalidar(99L);
+
+        assertNull(cache.obter(1L));
+        assertEquals(0, cache.tamanho());
+    }
+
+    @Test
+    void obter_EntradaVencida_DevolveNull() throws InterruptedException {
+        CacheTipoCliente cache = new CacheTipoCliente(10, Duration.ofMillis(50));
+        cache.guardar(1L, TipoCliente.OURO);
+
+        Thread.sleep(100);
+
+        assertNull(cache.obter(1L));
+        cache.guardar(1L, TipoCliente.PRATA);
+        assertEquals(TipoCliente.PRATA, cache.obter(1L));
+    }
+
+    @Test
+    void guardar_InvalidadoDepoisDeLerAGeracao_Descarta() {
+        CacheTipoCliente cache = new CacheTipoCliente(10, TTL);
+        long geracao = cache.geracao(1L);
+
+        cache.invalidar(1L);
+
+        assertFalse(cache.guardar(1L, TipoCliente.OURO, geracao));
+        assertNull(cache.obter(1L));
+        assertTrue(cache.guardar(1L, TipoCliente.PRATA, cache.geracao(1L)));
+        assertEquals(TipoCliente.PRATA, cache.obter(1L));
+    }
+
+    @Test
+    void guardar_AtingeTamanhoMaximo_RemoveEntradas() {
+        CacheTipoCliente cache = new CacheTipoCliente(4, TTL);
+
+        for (long id = 1; id <= 100; id++) {
+            cache.guardar(id, TipoCliente.BRONZE);
+        }
+
+        assertEquals(4, cache.tamanho());
+        assertEquals(TipoCliente.BRONZE, cache.obter(100L));
+    }
+
+    @Test
+    void operacoesAleatorias_MesmoResultadoQueHashMap() {
+        CacheTipoCliente cache = new CacheTipoCliente(1000, TTL);
+        Map<Long, TipoCliente> esperado = new HashMap<>();
+        Random random = new Random(42);
+        TipoCliente[] tipos = TipoCliente.values();
+
+        // Chaves limitadas a 500 para nunca atingir o tamanho máximo e forçar colisões e remoções
+        for (int i = 0; i < 50_000; i++) {
+            long id = random.nextInt(500) - 250L;
+            if (random.nextInt(3) == 0) {
+                cache.invalidar(id);
+                esperado.remove(id);
+            } else {
+                TipoCliente tipo = tipos[random.nextInt(tipos.length)];
+                cache.guardar(id, tipo);
+                esperado.put(id, tipo);
+            }
+        }
+
+        assertEquals(esperado.size(), cache.tamanho());
+        for (long id = -250; id < 250; id++) {
+            assertEquals(esperado.get(id), cache.obter(id));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompraAssincronaService;
+import ecommerce.service.CompraService;
+import ecommerce.service.VerificacaoTotaisCarrinho;
+
+/**
+ * Alterações simultâneas de carrinhos com controle otimista: conflitos no mesmo carrinho são
+ * refeitos, carrinhos diferentes não se esperam e a compra não cobra um carrinho que mudou
+ * depois de precificado.
+ */
+@SpringBootTest(properties = {
+        "ecommerce.carrinho.tentativas=50",
+        "ecommerce.carrinho.verificacao.intervalo-ms=3600000",
+        "ecommerce.outbox.intervalo-ms=3600000"
+})
+class CarrinhoConcorrenciaTest {
+
+    @Autowired
+    private CarrinhoDeComprasService carrinhoService;
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private CompraAssincronaService compraAssincronaService;
+
+    @Autowired
+    private VerificacaoTotaisCarrinho verificacao;
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasRepository carrinhoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean(answer = Answers.CALLS_REAL_METHODS)
+    private IEstoqueExternal estoqueExternal;
+
+    @MockBean(answer = Answers.CALLS_REAL_METHODS)
+    private IPagamentoExternal pagamentoExternal;
+
+    private Cliente cliente;
+    private Produto produto;
+    private CarrinhoDeCompras carrinho;
+
+    @BeforeEach
+    void setUp() {
+        cliente = clienteRepository.save(new Cliente(null, "Cliente Teste", "Endereço", TipoCliente.BRONZE));
+        produto = produtoRepository.save(new Produto(null, "Livro", "Descrição", BigDecimal.TEN, 1, TipoProduto.LIVRO));
+        carrinho = novoCarrinho();
+
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+        when(estoqueExternal.darBaixa(anyList(), anyList()))
+                .thenReturn(new EstoqueBaixaDTO(true));
+    }
+
+    @Test
+    void alteracoesSimultaneasDoMesmoCarrinho_NenhumaSePerde() throws Exception {
+        int threads = 8;
+        int alteracoesPorThread = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tarefas.add(executor.submit(() -> {
+                    for (int i = 0; i < alteracoesPorThread; i++) {
+                        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), produto.getId(), 1);
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Todas as somas de quantidade chegam ao mesmo item, sem item duplicado
+        CarrinhoDeCompras atual = carrinhoRepository.findComItensByIdAndClienteId(carrinho.getId(), cliente.getId())
+                .orElseThrow();
+        assertEquals(1, atual.getItens().size());
+        assertEquals(threads * alteracoesPorThread, atual.getItens().get(0).getQuantidade());
+        assertEquals(0, BigDecimal.valueOf(threads * alteracoesPorThread * 10L).compareTo(atual.getSubtotal()));
+        assertEquals(0, verificacao.verificarCiclo());
+    }
+
+    @Test
+    void alteracaoDeOutroCarrinho_NaoEsperaATransacaoEmAndamento() throws Exception {
+        CarrinhoDeCompras outro = novoCarrinho();
+        CountDownLatch gravado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+
+        // Uma transação grava a alteração de um carrinho e fica aberta, segurando a linha
+        CompletableFuture<Void> emAndamento = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), produto.getId(), 1);
+            carrinhoRepository.flush();
+            gravado.countDown();
+            try {
+                liberar.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            assertTrue(gravado.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<?> alteracao = CompletableFuture.runAsync(
+                    () -> carrinhoService.adicionarItem(outro.getId(), cliente.getId(), produto.getId(), 2));
+
+            alteracao.get(2, TimeUnit.SECONDS);
+            assertEquals(2, carrinhoService.buscarTotais(outro.getId(), cliente.getId()).pesoTotal());
+        } finally {
+            liberar.countDown();
+            emAndamento.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void finalizarCompra_CarrinhoAlteradoDepoisDaPrecificacao_NaoCobra() {
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), produto.getId(), 1);
+        // Enquanto o estoque responde, o cliente adiciona mais um item em outra aba
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList())).thenAnswer(invocation -> {
+            carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), produto.getId(), 1);
+            return new DisponibilidadeDTO(true, List.of());
+        });
+
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        assertEquals(new CheckoutOutcome.CarrinhoAlterado(), resultado);
+        verify(estoqueExternal).liberarReserva(any());
+        verify(pagamentoExternal, never()).autorizarPagamento(anyLong(), anyDouble());
+
+        // Com o carrinho parado, a nova tentativa cobra os dois itens
+        reset(estoqueExternal);
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        when(estoqueExternal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+        assertTrue(compraService.finalizarCompra(carrinho.getId(), cliente.getId()).sucesso());
+        verify(pagamentoExternal).autorizarPagamento(cliente.getId(), 20.0);
+    }
+
+    @Test
+    void finalizarCompraAssincrona_CarrinhoAlteradoDepoisDaPrecificacao_NaoCobra() throws Exception {
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), produto.getId(), 1);
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList())).thenAnswer(invocation -> {
+            carrinhoService.removerItem(carrinho.getId(), cliente.getId(), produto.getId());
+            return new DisponibilidadeDTO(true, List.of());
+        });
+
+        CheckoutOutcome resultado = compraAssincronaService.finalizarCompra(carrinho.getId(), cliente.getId())
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(new CheckoutOutcome.CarrinhoAlterado(), resultado);
+        verify(estoqueExternal, timeout(2_000)).liberarReserva(any());
+        verify(pagamentoExternal, never()).autorizarPagamento(anyLong(), anyDouble());
+    }
+
+    @Test
+    void finalizarCompra_PagamentoRecusado_NaoAvancaAVersao() {
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), produto.getId(), 1);
+        long versaoAntes = carrinhoRepository.findById(carrinho.getId()).orElseThrow().getVersao();
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(false, null));
+
+        assertEquals(new CheckoutOutcome.PagamentoRecusado(),
+                compraService.finalizarCompra(carrinho.getId(), cliente.getId()));
+
+        assertEquals(versaoAntes, carrinhoRepository.findById(carrinho.getId()).orElseThrow().getVersao());
+        // A nova tentativa, com outro cartão, não recebe 409
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 12345L));
+        assertTrue(compraService.finalizarCompra(carrinho.getId(), cliente.getId()).sucesso());
+    }
+
+    @Test
+    void finalizarCompra_CarrinhoAlteradoDuranteOPagamento_CancelaOPagamento() {
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), produto.getId(), 1);
+        // O cliente muda o carrinho em outra aba enquanto o provedor autoriza
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(),
+                    produto.getId(), 1)).join();
+            return new PagamentoDTO(true, 12345L);
+        });
+
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        assertEquals(new CheckoutOutcome.CarrinhoAlterado(), resultado);
+        verify(estoqueExternal).liberarReserva(any());
+        verify(estoqueExternal, never()).darBaixa(anyList(), anyList());
+        verify(pagamentoExternal, timeout(5_000)).cancelarPagamento(cliente.getId(), 12345L);
+        assertEquals(2, carrinhoService.buscarTotais(carrinho.getId(), cliente.getId()).pesoTotal());
+    }
+
+    @Test
+    void alteracaoDepoisDaCompra_UsaAVersaoAvancadaPeloCheckout() {
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), produto.getId(), 1);
+        long versaoAntes = carrinhoRepository.findById(carrinho.getId()).orElseThrow().getVersao();
+
+        assertTrue(compraService.finalizarCompra(carrinho.getId(), cliente.getId()).sucesso());
+
+        assertEquals(versaoAntes + 1, carrinhoRepository.findById(carrinho.getId()).orElseThrow().getVersao());
+        carrinhoService.atualizarQuantidade(carrinho.getId(), cliente.getId(), produto.getId(), 3);
+        assertEquals(3, carrinhoService.buscarTotais(carrinho.getId(), cliente.getId()).pesoTotal());
+    }
+
+    private CarrinhoDeCompras novoCarrinho() {
+        return carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, new ArrayList<ItemCompra>(), LocalDate.now()));
+    }
+}
@@ -1,66 +1,209 @@
 package ecommerce;
 
+import ecommerce.dto.ItemCheckoutDTO;
+import ecommerce.dto.ItemCheckoutLoteDTO;
+import ecommerce.dto.ProdutoPrecoPesoDTO;
+import ecommerce.dto.TotaisCarrinhoDTO;
 import ecommerce.entity.CarrinhoDeCompras;
-import ecommerce.entity.Cliente;
+import ecommerce.entity.Produto;
 import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ProdutoRepository;
 import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CartSnapshot;
+import ecommerce.service.CatalogoProdutoService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class CarrinhoDeComprasServiceTest {
 
-    @InjectMocks
     private CarrinhoDeComprasService carrinhoService;
 
     @Mock
     private CarrinhoDeComprasRepository carrinhoRepository;
 
+    @Mock
+    private CatalogoProdutoService catalogo;
+
+    @Mock
+    private ProdutoRepository produtoRepository;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        carrinhoService = new CarrinhoDeComprasService(carrinhoRepository, catalogo, produtoRepository,
+                TransactionOperations.withoutTransaction(), 3);
     }
 
     @Test
-    void buscarPorCarrinhoIdEClienteId_CarrinhoExistente() {
+    void buscarParaCheckout_CarrinhoExistente() {
         // Arrange
-        Long carrinhoId = 1L;
-        Cliente cliente = new Cliente(1L, "Cliente Teste", "", null);
-        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(carrinhoId, cliente , null , null);
+        List<ItemCheckoutDTO> itens = Arrays.asList(
+                new ItemCheckoutDTO(1L, 3L, 0L),
+                new ItemCheckoutDTO(2L, 1L, 0L));
 
-        when(carrinhoRepository.findByIdAndCliente(carrinhoId, cliente)).thenReturn(Optional.of(carrinho));
+        when(carrinhoRepository.findItensCheckout(1L, 1L)).thenReturn(itens);
+        when(catalogo.buscarPrecosEPesos(Set.of(1L, 2L))).thenReturn(Map.of(
+                1L, new ProdutoPrecoPesoDTO(1L, BigDecimal.valueOf(100), 2),
+                2L, new ProdutoPrecoPesoDTO(2L, BigDecimal.valueOf(50), 1)));
 
         // Act
-        CarrinhoDeCompras resultado = carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+        CartSnapshot snapshot = carrinhoService.buscarParaCheckout(1L, 1L);
 
         // Assert
-        assertNotNull(resultado);
-        assertEquals(carrinhoId, resultado.getId());
-        assertEquals(cliente, resultado.getCliente());
-        verify(carrinhoRepository, times(1)).findByIdAndCliente(carrinhoId, cliente);
+        assertEquals(Arrays.asList(1L, 2L), snapshot.produtosIds());
+        assertEquals(Arrays.asList(3L, 1L), snapshot.produtosQuantidades());
+        assertEquals(35000L, snapshot.getSubtotalCentavos());
+        assertEquals(7L, snapshot.getPesoTotal());
+        verify(carrinhoRepository, times(1)).findItensCheckout(1L, 1L);
+        verify(catalogo, times(1)).buscarPrecosEPesos(Set.of(1L, 2L));
     }
 
     @Test
-    void buscarPorCarrinhoIdEClienteId_CarrinhoNaoExistente() {
+    void buscarParaCheckout_CarrinhoVazio() {
         // Arrange
-        Long carrinhoId = 1L;
-        Cliente cliente = new Cliente(1L, "Cliente Teste", "", null);
+        when(carrinhoRepository.findItensCheckout(1L, 1L))
+                .thenReturn(Collections.singletonList(new ItemCheckoutDTO(null, null, 0L)));
+
+        // Act
+        CartSnapshot snapshot = carrinhoService.buscarParaCheckout(1L, 1L);
 
-        when(carrinhoRepository.findByIdAndCliente(carrinhoId, cliente)).thenReturn(Optional.empty());
+        // Assert
+        assertEquals(0, snapshot.tamanho());
+        verify(catalogo, never()).buscarPrecosEPesos(anyCollection());
+    }
+
+    @Test
+    void buscarParaCheckout_ProdutoForaDoCatalogo() {
+        // Arrange
+        when(carrinhoRepository.findItensCheckout(1L, 1L))
+                .thenReturn(Collections.singletonList(new ItemCheckoutDTO(9L, 1L, 0L)));
+        when(catalogo.buscarPrecosEPesos(Set.of(9L))).thenReturn(Map.of());
 
         // Act & Assert
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
-            carrinhoService.buscarPorCarrinhoIdEClienteId(carrinhoId, cliente);
+            carrinhoService.buscarParaCheckout(1L, 1L);
+        });
+
+        assertEquals("Produto não encontrado: 9", exception.getMessage());
+    }
+
+    @Test
+    void buscarParaCheckout_CarrinhoNaoExistenteOuDeOutroCliente() {
+        // Arrange
+        when(carrinhoRepository.findItensCheckout(1L, 2L)).thenReturn(Collections.emptyList());
+
+        // Act & Assert
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            carrinhoService.buscarParaCheckout(1L, 2L);
         });
 
         assertEquals("Carrinho não encontrado.", exception.getMessage());
-        verify(carrinhoRepository, times(1)).findByIdAndCliente(carrinhoId, cliente);
+    }
+
+    @Test
+    void buscarParaCheckoutEmLote_UmaConsultaEFalhasPorCarrinho() {
+        // Arrange
+        Map<Long, Long> clientePorCarrinho = new LinkedHashMap<>();
+        clientePorCarrinho.put(10L, 1L);
+        clientePorCarrinho.put(20L, 2L);
+        clientePorCarrinho.put(30L, 3L);
+        clientePorCarrinho.put(40L, 4L);
+        clientePorCarrinho.put(50L, 5L);
+        when(carrinhoRepository.findItensCheckoutEmLote(clientePorCarrinho.keySet())).thenReturn(Arrays.asList(
+                new ItemCheckoutLoteDTO(10L, 1L, 1L, 2L, 0L),
+                new ItemCheckoutLoteDTO(20L, 9L, 1L, 1L, 0L),
+                new ItemCheckoutLoteDTO(30L, 3L, 7L, 1L, 0L),
+                new ItemCheckoutLoteDTO(10L, 1L, 2L, 1L, 0L),
+                new ItemCheckoutLoteDTO(40L, 4L, null, null, 0L)));
+        when(catalogo.buscarPrecosEPesos(Set.of(1L, 2L, 7L))).thenReturn(Map.of(
+                1L, new ProdutoPrecoPesoDTO(1L, BigDecimal.valueOf(100), 2),
+                2L, new ProdutoPrecoPesoDTO(2L, BigDecimal.valueOf(50), 1)));
+        Map<Long, String> falhas = new HashMap<>();
+
+        // Act
+        Map<Long, CartSnapshot> snapshots = carrinhoService.buscarParaCheckoutEmLote(clientePorCarrinho,
+                (carrinhoId, erro) -> falhas.put(carrinhoId, erro.getMessage()));
+
+        // Assert
+        assertEquals(Set.of(10L, 40L), snapshots.keySet());
+        assertEquals(Arrays.asList(1L, 2L), snapshots.get(10L).produtosIds());
+        assertEquals(25000L, snapshots.get(10L).getSubtotalCentavos());
+        assertEquals(0, snapshots.get(40L).tamanho());
+        assertEquals(Map.of(
+                20L, "Carrinho não encontrado.",
+                30L, "Produto não encontrado: 7",
+                50L, "Carrinho não encontrado."), falhas);
+        verify(carrinhoRepository, times(1)).findItensCheckoutEmLote(clientePorCarrinho.keySet());
+        verify(catalogo, times(1)).buscarPrecosEPesos(anyCollection());
+    }
+
+    @Test
+    void adicionarItem_ConflitoDeVersao_RefazComOCarrinhoRelido() {
+        Produto produto = new Produto(5L, "Produto", "", BigDecimal.valueOf(20), 2, null);
+        when(produtoRepository.findById(5L)).thenReturn(Optional.of(produto));
+        when(carrinhoRepository.findComItensByIdAndClienteId(1L, 1L))
+                .thenThrow(new ObjectOptimisticLockingFailureException(CarrinhoDeCompras.class, 1L))
+                .thenReturn(Optional.of(new CarrinhoDeCompras(1L, null, new ArrayList<>(), null)));
+
+        TotaisCarrinhoDTO totais = carrinhoService.adicionarItem(1L, 1L, 5L, 3);
+
+        assertEquals(BigDecimal.valueOf(60), totais.subtotal());
+        assertEquals(6, totais.pesoTotal());
+        verify(carrinhoRepository, times(2)).findComItensByIdAndClienteId(1L, 1L);
+    }
+
+    @Test
+    void adicionarItem_ConflitoPersistente_DesisteDepoisDasTentativas() {
+        when(carrinhoRepository.findComItensByIdAndClienteId(1L, 1L))
+                .thenThrow(new ObjectOptimisticLockingFailureException(CarrinhoDeCompras.class, 1L));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> carrinhoService.adicionarItem(1L, 1L, 5L, 1));
+
+        verify(carrinhoRepository, times(3)).findComItensByIdAndClienteId(1L, 1L);
+    }
+
+    @Test
+    void carrinhoAlteradoDesde_SoLeAVersao() {
+        when(carrinhoRepository.findVersao(1L)).thenReturn(Optional.of(4L));
+        when(carrinhoRepository.findVersao(2L)).thenReturn(Optional.empty());
+
+        assertFalse(carrinhoService.carrinhoAlteradoDesde(1L, 4L));
+        assertTrue(carrinhoService.carrinhoAlteradoDesde(1L, 3L));
+        assertTrue(carrinhoService.carrinhoAlteradoDesde(2L, 4L));
+        assertFalse(carrinhoService.carrinhoAlteradoDesde(1L, null));
+        verify(carrinhoRepository, never()).avancarVersao(anyLong(), anyLong());
+    }
+
+    @Test
+    void avancarVersao_SoAvancaNaVersaoLida() {
+        when(carrinhoRepository.avancarVersao(1L, 4L)).thenReturn(1);
+        when(carrinhoRepository.avancarVersao(1L, 3L)).thenReturn(0);
+
+        assertTrue(carrinhoService.avancarVersao(1L, 4L));
+        assertFalse(carrinhoService.avancarVersao(1L, 3L));
+        assertTrue(carrinhoService.avancarVersao(1L, null));
+        verify(carrinhoRepository, times(2)).avancarVersao(eq(1L), anyLong());
     }
 }
@@ -0,0 +1,70 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoProduto;
+import ecommerce.service.CartSnapshot;
+
+class CartSnapshotTest {
+
+    @Test
+    void de_AcumulaIdsQuantidadesSubtotalEPeso() {
+        Produto produto1 = new Produto(1L, "Produto A", "Descrição A", new BigDecimal("100.50"), 2, TipoProduto.LIVRO);
+        Produto produto2 = new Produto(2L, "Produto B", "Descrição B", BigDecimal.valueOf(200), 3, TipoProduto.LIVRO);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null,
+                Arrays.asList(new ItemCompra(null, produto1, 5L), new ItemCompra(null, produto2, 10L)), null);
+
+        CartSnapshot snapshot = CartSnapshot.de(carrinho);
+
+        assertEquals(2, snapshot.tamanho());
+        assertEquals(Arrays.asList(1L, 2L), snapshot.produtosIds());
+        assertEquals(Arrays.asList(5L, 10L), snapshot.produtosQuantidades());
+        assertEquals(2L, snapshot.produtoId(1));
+        assertEquals(10L, snapshot.quantidade(1));
+        assertEquals(250250L, snapshot.getSubtotalCentavos());
+        assertEquals(40L, snapshot.getPesoTotal());
+    }
+
+    @Test
+    void de_CarrinhoVazio() {
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null, Collections.emptyList(), null);
+
+        CartSnapshot snapshot = CartSnapshot.de(carrinho);
+
+        assertEquals(0, snapshot.tamanho());
+        assertEquals(0L, snapshot.getSubtotalCentavos());
+        assertEquals(0L, snapshot.getPesoTotal());
+    }
+
+    @Test
+    void de_ProdutoSemId_LancaExcecao() {
+        Produto produto = new Produto(null, "Produto Sem ID", "Descrição", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null,
+                Collections.singletonList(new ItemCompra(null, produto, 1L)), null);
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> CartSnapshot.de(carrinho));
+
+        assertEquals("Produto sem ID no carrinho.", exception.getMessage());
+    }
+
+    @Test
+    void produtosIds_VisaoSomenteLeitura() {
+        Produto produto = new Produto(1L, "Produto A", "Descrição", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, null,
+                Collections.singletonList(new ItemCompra(null, produto, 1L)), null);
+
+        List<Long> ids = CartSnapshot.de(carrinho).produtosIds();
+
+        assertThrows(UnsupportedOperationException.class, () -> ids.set(0, 2L));
+    }
+}
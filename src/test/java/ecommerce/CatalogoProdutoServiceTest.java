@@ -0,0 +1,85 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import ecommerce.dto.ProdutoPrecoPesoDTO;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.service.CatalogoProdutoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CatalogoProdutoServiceTest {
+
+    @Mock
+    private ProdutoRepository produtoRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogoProdutoService catalogo;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        catalogo = new CatalogoProdutoService(produtoRepository, meterRegistry, 100, Duration.ofMinutes(10));
+
+        when(produtoRepository.findPrecoPesoByIdIn(anyCollection())).thenAnswer(invocation -> {
+            return invocation.<Collection<Long>>getArgument(0).stream()
+                    .map(id -> new ProdutoPrecoPesoDTO(id, BigDecimal.valueOf(id * 10), id.intValue()))
+                    .toList();
+        });
+    }
+
+    @Test
+    void buscarPrecosEPesos_CarregaFaltantesEmUmaConsulta() {
+        Map<Long, ProdutoPrecoPesoDTO> produtos = catalogo.buscarPrecosEPesos(List.of(1L, 2L, 3L));
+
+        assertEquals(3, produtos.size());
+        assertEquals(BigDecimal.valueOf(20), produtos.get(2L).preco());
+        assertEquals(3, produtos.get(3L).peso());
+        verify(produtoRepository, times(1)).findPrecoPesoByIdIn(Set.of(1L, 2L, 3L));
+    }
+
+    @Test
+    void buscarPrecosEPesos_SegundaBuscaVemDoCache() {
+        catalogo.buscarPrecosEPesos(List.of(1L, 2L));
+        catalogo.buscarPrecosEPesos(List.of(1L, 2L, 3L));
+
+        verify(produtoRepository, times(1)).findPrecoPesoByIdIn(Set.of(1L, 2L));
+        verify(produtoRepository, times(1)).findPrecoPesoByIdIn(Set.of(3L));
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "catalogoProdutos").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(3.0, meterRegistry.get("cache.gets").tag("cache", "catalogoProdutos").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void invalidar_RecarregaProduto() {
+        catalogo.buscarPrecosEPesos(List.of(1L));
+        catalogo.invalidar(1L);
+        catalogo.buscarPrecosEPesos(List.of(1L));
+
+        verify(produtoRepository, times(2)).findPrecoPesoByIdIn(Set.of(1L));
+    }
+
+    @Test
+    void buscarPrecosEPesos_ProdutoInexistenteNaoEntraNoCache() {
+        when(produtoRepository.findPrecoPesoByIdIn(Set.of(99L))).thenReturn(List.of());
+
+        Map<Long, ProdutoPrecoPesoDTO> produtos = catalogo.buscarPrecosEPesos(List.of(99L));
+
+        assertTrue(produtos.isEmpty());
+    }
+}
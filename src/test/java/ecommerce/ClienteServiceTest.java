@@ -3,12 +3,17 @@ package ecommerce;
 import ecommerce.entity.Cliente;
 import ecommerce.entity.TipoCliente;
 import ecommerce.repository.ClienteRepository;
+import ecommerce.service.CacheTipoCliente;
 import ecommerce.service.ClienteService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
 
 import java.util.Optional;
 
@@ -23,6 +28,9 @@ class ClienteServiceTest {
     @Mock
     private ClienteRepository clienteRepository;
 
+    @Mock
+    private CacheTipoCliente cacheTipo;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -86,4 +94,112 @@ class ClienteServiceTest {
         assertEquals("Cliente não encontrado", exception.getMessage());
         verify(clienteRepository, times(1)).findById(clienteId);
     }
+
+    @Test
+    void criarCliente_InvalidaTipoEmCache() {
+        // Arrange
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.PRATA);
+        when(clienteRepository.save(cliente)).thenReturn(cliente);
+
+        // Act
+        clienteService.criarCliente(cliente);
+
+        // Assert
+        verify(cacheTipo, times(1)).invalidar(1L);
+    }
+
+    @Test
+    void criarCliente_EmTransacao_InvalidaDeNovoAposOCommit() {
+        // Arrange
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.PRATA);
+        when(clienteRepository.save(cliente)).thenReturn(cliente);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            clienteService.criarCliente(cliente);
+            verify(cacheTipo, times(1)).invalidar(1L);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assert
+        verify(cacheTipo, times(2)).invalidar(1L);
+    }
+
+    @Test
+    void buscarTipo_EmCache_NaoConsultaRepositorio() {
+        // Arrange
+        when(cacheTipo.obter(1L)).thenReturn(TipoCliente.OURO);
+
+        // Act
+        TipoCliente tipo = clienteService.buscarTipo(1L);
+
+        // Assert
+        assertEquals(TipoCliente.OURO, tipo);
+        verifyNoInteractions(clienteRepository);
+    }
+
+    @Test
+    void buscarTipo_ForaDoCache_ConsultaEGuarda() {
+        // Arrange
+        when(cacheTipo.geracao(1L)).thenReturn(7L);
+        when(clienteRepository.findTipoById(1L)).thenReturn(Optional.of(TipoCliente.PRATA));
+
+        // Act
+        TipoCliente tipo = clienteService.buscarTipo(1L);
+
+        // Assert
+        assertEquals(TipoCliente.PRATA, tipo);
+        verify(cacheTipo, times(1)).guardar(1L, TipoCliente.PRATA, 7L);
+        verify(clienteRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void buscarTipo_ClienteAlteradoDuranteALeitura_NaoGuardaOTipoAntigo() {
+        // Arrange
+        CacheTipoCliente cache = new CacheTipoCliente(10, Duration.ofMinutes(5));
+        ClienteService service = new ClienteService(clienteRepository, cache);
+        // Outra thread altera o cliente enquanto este lê o tipo antigo do banco
+        when(clienteRepository.findTipoById(1L)).thenAnswer(invocacao -> {
+            cache.invalidar(1L);
+            return Optional.of(TipoCliente.BRONZE);
+        });
+
+        // Act
+        TipoCliente tipo = service.buscarTipo(1L);
+
+        // Assert
+        assertEquals(TipoCliente.BRONZE, tipo);
+        assertNull(cache.obter(1L));
+    }
+
+    @Test
+    void buscarTipo_ClienteSemTipo_PagaOFreteCheioComoBronze() {
+        // Arrange
+        when(cacheTipo.geracao(1L)).thenReturn(7L);
+        when(clienteRepository.findTipoById(1L)).thenReturn(Optional.empty());
+        when(clienteRepository.existsById(1L)).thenReturn(true);
+
+        // Act
+        TipoCliente tipo = clienteService.buscarTipo(1L);
+
+        // Assert
+        assertEquals(TipoCliente.BRONZE, tipo);
+        verify(cacheTipo, times(1)).guardar(1L, TipoCliente.BRONZE, 7L);
+    }
+
+    @Test
+    void buscarTipo_ClienteNaoExistente() {
+        // Arrange
+        when(clienteRepository.findTipoById(1L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            clienteService.buscarTipo(1L);
+        });
+
+        assertEquals("Cliente não encontrado", exception.getMessage());
+        verify(cacheTipo, never()).guardar(anyLong(), any(), anyLong());
+    }
 }
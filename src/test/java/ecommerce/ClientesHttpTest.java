@@ -0,0 +1,196 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import feign.Client;
+import feign.hc5.ApacheHttp5Client;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.ItensEstoqueDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+import ecommerce.external.http.EstoqueHttp;
+import ecommerce.external.http.JsonHttpAssincrono;
+import ecommerce.external.http.PagamentoHttp;
+import ecommerce.external.local.ServidorStubHttp;
+
+// Estoque e pagamento pelos clientes Feign, contra o servidor stub local
+@SpringBootTest(properties = {
+        "ecommerce.estoque.modo=http",
+        "ecommerce.pagamento.modo=http",
+        "ecommerce.stub.habilitado=true"
+})
+class ClientesHttpTest {
+
+    private static final int PORTA = portaLivre();
+
+    @DynamicPropertySource
+    static void portas(DynamicPropertyRegistry registry) {
+        registry.add("ecommerce.stub.porta", () -> PORTA);
+        registry.add("ecommerce.estoque.url", () -> "http://localhost:" + PORTA);
+        registry.add("ecommerce.pagamento.url", () -> "http://localhost:" + PORTA);
+    }
+
+    @Autowired
+    private EstoqueHttp estoqueHttp;
+
+    @Autowired
+    private PagamentoHttp pagamentoHttp;
+
+    @Autowired
+    private ServidorStubHttp servidor;
+
+    @Autowired
+    private Client feignClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void feign_UsaClienteComPoolDeConexoes() {
+        assertInstanceOf(ApacheHttp5Client.class, feignClient);
+    }
+
+    @Test
+    void estoque_VerificaEDaBaixaPorHttp() {
+        DisponibilidadeDTO disponibilidade = estoqueHttp.verificarDisponibilidade(List.of(1L, 2L), List.of(3L, 1L));
+
+        assertTrue(disponibilidade.disponivel());
+        assertTrue(disponibilidade.idsProdutosIndisponiveis().isEmpty());
+        assertTrue(estoqueHttp.darBaixa(List.of(1L, 2L), List.of(3L, 1L)).sucesso());
+    }
+
+    @Test
+    void estoque_ReservaConfirmaELiberaPorHttp() {
+        int ativasAntes = servidor.reservasAtivas();
+
+        ReservaEstoqueDTO confirmada = estoqueHttp.reservar(List.of(1L, 2L), List.of(3L, 1L));
+        ReservaEstoqueDTO liberada = estoqueHttp.reservar(List.of(1L), List.of(1L));
+
+        assertTrue(confirmada.reservado());
+        assertNotNull(confirmada.reservaId());
+        assertEquals(List.of(1L, 2L), confirmada.produtosIds());
+        assertEquals(ativasAntes + 2, servidor.reservasAtivas());
+        assertTrue(estoqueHttp.confirmarReserva(confirmada).sucesso());
+        estoqueHttp.liberarReserva(liberada);
+        assertEquals(ativasAntes, servidor.reservasAtivas());
+        // Já confirmada ou liberada, a reserva não pode ser confirmada de novo
+        assertFalse(estoqueHttp.confirmarReserva(confirmada).sucesso());
+        assertFalse(estoqueHttp.confirmarReserva(liberada).sucesso());
+    }
+
+    @Test
+    void estoque_ReservaEmLoteComUmaChamada() {
+        long requisicoesAntes = servidor.requisicoes();
+
+        List<ReservaEstoqueDTO> reservas = estoqueHttp.reservarEmLote(List.of(
+                new ItensEstoqueDTO(List.of(1L), List.of(2L)), new ItensEstoqueDTO(List.of(2L, 3L), List.of(1L, 1L))));
+
+        assertEquals(requisicoesAntes + 1, servidor.requisicoes());
+        assertEquals(2, reservas.size());
+        assertTrue(reservas.stream().allMatch(ReservaEstoqueDTO::reservado));
+        assertNotEquals(reservas.get(0).reservaId(), reservas.get(1).reservaId());
+        assertEquals(List.of(2L, 3L), reservas.get(1).produtosIds());
+        reservas.forEach(estoqueHttp::liberarReserva);
+    }
+
+    @Test
+    void pagamento_AutorizaECancelaPorHttp() {
+        PagamentoDTO pagamento = pagamentoHttp.autorizarPagamento(1L, 100.0);
+
+        assertTrue(pagamento.autorizado());
+        assertNotNull(pagamento.transacaoId());
+        assertDoesNotThrow(() -> pagamentoHttp.cancelarPagamento(1L, pagamento.transacaoId()));
+    }
+
+    @Test
+    void versoesAssincronas_ReservamAutorizamEDaoBaixaPorHttp() throws Exception {
+        ReservaEstoqueDTO reserva = estoqueHttp.reservarAsync(List.of(1L, 2L), List.of(3L, 1L)).get(5, TimeUnit.SECONDS);
+        assertTrue(reserva.reservado());
+        assertNotNull(reserva.reservaId());
+        assertEquals(List.of(1L, 2L), reserva.produtosIds());
+
+        PagamentoDTO pagamento = pagamentoHttp.autorizarPagamentoAsync(1L, 100.0).get(5, TimeUnit.SECONDS);
+        assertTrue(pagamento.autorizado());
+        assertNotNull(pagamento.transacaoId());
+
+        assertTrue(estoqueHttp.confirmarReservaAsync(reserva).get(5, TimeUnit.SECONDS).sucesso());
+        assertFalse(estoqueHttp.confirmarReservaAsync(reserva).get(5, TimeUnit.SECONDS).sucesso());
+    }
+
+    @Test
+    void pagamento_CancelaPeloIdDaSolicitacao() {
+        PagamentoDTO pagamento = pagamentoHttp.autorizarPagamento(new SolicitacaoPagamentoDTO(1L, 100.0, "s-1"));
+
+        assertTrue(pagamento.autorizado());
+        assertDoesNotThrow(() -> pagamentoHttp.cancelarSolicitacao(1L, "s-1"));
+    }
+
+    @Test
+    void httpAssincrono_ServidorLento_AbortaNoTempoDeResposta() throws Exception {
+        try (ServidorStubHttp lento = new ServidorStubHttp(objectMapper, 0, Duration.ofSeconds(2), 1, 1024);
+             JsonHttpAssincrono http = new JsonHttpAssincrono(objectMapper, 1, Duration.ofSeconds(1))) {
+            lento.iniciar();
+
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> http.post(
+                    "http://localhost:" + lento.porta() + "/pagamentos/autorizacoes",
+                    new SolicitacaoPagamentoDTO(1L, 10.0), PagamentoDTO.class, Duration.ofMillis(100))
+                    .get(1, TimeUnit.SECONDS));
+
+            assertInstanceOf(HttpTimeoutException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    void pagamento_LoteGrandeVemComprimido() {
+        List<SolicitacaoPagamentoDTO> solicitacoes = new ArrayList<>();
+        for (long i = 0; i < 200; i++) {
+            solicitacoes.add(new SolicitacaoPagamentoDTO(i, 10.0));
+        }
+        long comprimidasAntes = servidor.respostasComprimidas();
+
+        List<PagamentoDTO> pagamentos = pagamentoHttp.autorizarPagamentosEmLote(solicitacoes);
+
+        assertEquals(200, pagamentos.size());
+        assertTrue(pagamentos.stream().allMatch(PagamentoDTO::autorizado));
+        assertEquals(comprimidasAntes + 1, servidor.respostasComprimidas());
+    }
+
+    @Test
+    void chamadasSequenciais_ReaproveitamAConexao() {
+        int conexoesAntes = servidor.conexoes();
+
+        for (int i = 0; i < 50; i++) {
+            estoqueHttp.verificarDisponibilidade(List.of(1L), List.of(1L));
+        }
+
+        // Keep-alive: no máximo uma conexão nova para as 50 chamadas
+        assertTrue(servidor.conexoes() - conexoesAntes <= 1);
+    }
+
+    private static int portaLivre() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
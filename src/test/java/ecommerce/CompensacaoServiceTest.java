@@ -0,0 +1,165 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ecommerce.controller.CompensacoesEndpoint;
+import ecommerce.dto.SituacaoCompensacoesDTO;
+import ecommerce.entity.CompensacaoPendente;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CompensacaoPendenteRepository;
+import ecommerce.service.CompensacaoService;
+
+// A varredura agendada fica desligada na prática; os testes chamam processarPendentes direto
+@SpringBootTest(properties = "ecommerce.compensacao.intervalo-ms=3600000")
+class CompensacaoServiceTest {
+
+    @Autowired
+    private CompensacaoService compensacaoService;
+
+    @Autowired
+    private CompensacaoPendenteRepository repository;
+
+    @Autowired
+    private CompensacoesEndpoint endpoint;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private IPagamentoExternal pagamentoExternal;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void enfileirarCancelamento_ConfirmadoComATransacaoDaCompra() {
+        transactionTemplate.executeWithoutResult(status -> compensacaoService.enfileirarCancelamento(1L, 12345L));
+
+        List<CompensacaoPendente> pendentes = repository.findAll();
+        assertEquals(1, pendentes.size());
+        assertEquals(12345L, pendentes.get(0).getTransacaoId());
+        assertEquals(0, pendentes.get(0).getTentativas());
+    }
+
+    @Test
+    void cancelarSeDesfeita_RollbackDaCompra_EnfileiraDepoisDoRollback() throws InterruptedException {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            compensacaoService.cancelarSeDesfeita(1L, 12345L);
+            compensacaoService.enfileirarCancelamento(1L, 12345L);
+            throw new IllegalStateException("Erro ao gravar a compra.");
+        }));
+
+        // A entrada gravada na transação desfeita some; a do rollback aparece uma vez só
+        verify(pagamentoExternal, never()).cancelarPagamento(anyLong(), anyLong());
+        esperarPendentes();
+        List<CompensacaoPendente> pendentes = repository.findAll();
+        assertEquals(1, pendentes.size());
+        assertEquals(12345L, pendentes.get(0).getTransacaoId());
+    }
+
+    @Test
+    void cancelarSeDesfeita_CompraConfirmada_NaoEnfileira() {
+        transactionTemplate.executeWithoutResult(status -> compensacaoService.cancelarSeDesfeita(1L, 12345L));
+
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void processarPendentes_CancelamentoComSucesso_RemoveDaFila() {
+        compensacaoService.enfileirarCancelamento(1L, 111L);
+        compensacaoService.enfileirarCancelamento(2L, 222L);
+
+        compensacaoService.processarPendentes();
+
+        verify(pagamentoExternal).cancelarPagamento(1L, 111L);
+        verify(pagamentoExternal).cancelarPagamento(2L, 222L);
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void enfileirarCancelamentoDaSolicitacao_CompraDesfeita_CancelaPeloIdDaSolicitacao() throws InterruptedException {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            compensacaoService.enfileirarCancelamentoDaSolicitacao(1L, "s-1");
+            throw new IllegalStateException("Pagamento sem resposta.");
+        }));
+        esperarPendentes();
+
+        compensacaoService.processarPendentes();
+
+        verify(pagamentoExternal).cancelarSolicitacao(1L, "s-1");
+        verify(pagamentoExternal, never()).cancelarPagamento(anyLong(), any());
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void processarPendentes_Falha_AdiaComEsperaExponencial() {
+        doThrow(new IllegalStateException("Provedor indisponível"))
+                .when(pagamentoExternal).cancelarPagamento(anyLong(), anyLong());
+        compensacaoService.enfileirarCancelamento(1L, 111L);
+        Instant antes = Instant.now();
+
+        compensacaoService.processarPendentes();
+        // Ainda não venceu: a segunda varredura não tenta de novo
+        compensacaoService.processarPendentes();
+
+        verify(pagamentoExternal, times(1)).cancelarPagamento(1L, 111L);
+        CompensacaoPendente pendente = repository.findAll().get(0);
+        assertEquals(1, pendente.getTentativas());
+        assertEquals("Provedor indisponível", pendente.getUltimoErro());
+        assertFalse(pendente.getProximaTentativa().isBefore(antes.plusSeconds(1)));
+
+        doNothing().when(pagamentoExternal).cancelarPagamento(anyLong(), anyLong());
+        pendente.setProximaTentativa(Instant.now());
+        repository.save(pendente);
+
+        compensacaoService.processarPendentes();
+
+        verify(pagamentoExternal, times(2)).cancelarPagamento(1L, 111L);
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void atrasoApos_DobraAteOAtrasoMaximo() {
+        assertEquals(Duration.ofSeconds(1), compensacaoService.atrasoApos(1));
+        assertEquals(Duration.ofSeconds(2), compensacaoService.atrasoApos(2));
+        assertEquals(Duration.ofSeconds(4), compensacaoService.atrasoApos(3));
+        assertEquals(Duration.ofSeconds(256), compensacaoService.atrasoApos(9));
+        assertEquals(Duration.ofMinutes(5), compensacaoService.atrasoApos(10));
+        assertEquals(Duration.ofMinutes(5), compensacaoService.atrasoApos(1_000));
+    }
+
+    @Test
+    void situacao_ProfundidadeEIdadeDaMaisAntiga() throws InterruptedException {
+        assertEquals(new SituacaoCompensacoesDTO(0L, null), endpoint.situacao());
+
+        compensacaoService.enfileirarCancelamento(1L, 111L);
+        Thread.sleep(20);
+        compensacaoService.enfileirarCancelamento(2L, 222L);
+
+        SituacaoCompensacoesDTO situacao = endpoint.situacao();
+        assertEquals(2L, situacao.profundidade());
+        assertTrue(situacao.idadeMaisAntigaMs() >= 20);
+    }
+
+    // O cancelamento de uma compra desfeita é gravado pelo executorCompensacao, depois do rollback
+    private void esperarPendentes() throws InterruptedException {
+        for (int i = 0; i < 500 && repository.count() == 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
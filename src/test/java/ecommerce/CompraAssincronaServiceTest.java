@@ -0,0 +1,304 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.benchmark.CheckoutFixture;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.resiliencia.DependenciaIndisponivelException;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompensacaoService;
+import ecommerce.service.CompraAssincronaService;
+import ecommerce.service.MetricasCheckout;
+import ecommerce.service.OutboxService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CompraAssincronaServiceTest {
+
+    private static final PagamentoDTO AUTORIZADO = new PagamentoDTO(true, 12345L);
+
+    private final Cliente cliente = CheckoutFixture.cliente(1L, TipoCliente.BRONZE);
+    private final CarrinhoDeCompras carrinho = CheckoutFixture.carrinho(7L, cliente, 3, CheckoutFixture.FaixaFrete.ATE_5KG);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CompensacaoService compensacaoService = mock(CompensacaoService.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final AtomicInteger liberacoes = new AtomicInteger();
+
+    private ExecutorService executorJpa;
+    private ProvedorLento provedor;
+
+    @BeforeEach
+    void setUp() {
+        executorJpa = Executors.newFixedThreadPool(2);
+        provedor = new ProvedorLento();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorJpa.shutdownNow();
+        provedor.close();
+    }
+
+    @Test
+    void finalizarCompra_Sucesso_RegistraAOutboxEContaOResultado() throws Exception {
+        CompraAssincronaService service = service(estoque(true, true), CheckoutFixture.pagamentoAutorizado(), executorJpa);
+
+        CheckoutOutcome resultado = service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(new CheckoutOutcome.Sucesso(12345L), resultado);
+        verify(outboxService).registrarCompraFinalizada(eq(7L), eq(1L), eq(12345L), any());
+        verify(compensacaoService).cancelarSeDesfeita(1L, 12345L);
+        verifyNoMoreInteractions(compensacaoService);
+        assertEquals(1, meterRegistry.get("checkout.resultado").tags("resultado", "sucesso", "tipo_cliente", "BRONZE")
+                .counter().count());
+        assertEquals(1, meterRegistry.get("checkout.etapa").tag("etapa", "pagamento").timer().count());
+    }
+
+    @Test
+    void finalizarCompra_SemEstoque_NaoChamaOPagamento() throws Exception {
+        IPagamentoExternal pagamento = mock(IPagamentoExternal.class);
+        CompraAssincronaService service = service(estoque(false, true), pagamento, executorJpa);
+
+        CheckoutOutcome resultado = service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS);
+
+        assertInstanceOf(CheckoutOutcome.SemEstoque.class, resultado);
+        verifyNoInteractions(pagamento);
+    }
+
+    @Test
+    void finalizarCompra_PagamentoRecusado_LiberaAReserva() throws Exception {
+        CompraAssincronaService service = service(estoque(true, true), CheckoutFixture.pagamentoRecusado(), executorJpa);
+
+        CheckoutOutcome resultado = service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(new CheckoutOutcome.PagamentoRecusado(), resultado);
+        assertEquals(1, liberacoes.get());
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void finalizarCompra_PagamentoIndisponivel_LiberaAReservaERepassaAExcecao() {
+        IPagamentoExternal pagamento = spy(CheckoutFixture.pagamentoAutorizado());
+        doThrow(new DependenciaIndisponivelException("pagamento", "circuito aberto", null))
+                .when(pagamento).autorizarPagamento(anyLong(), anyDouble());
+        CompraAssincronaService service = service(estoque(true, true), pagamento, executorJpa);
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(DependenciaIndisponivelException.class, exception.getCause());
+        assertEquals(1, liberacoes.get());
+    }
+
+    @Test
+    void finalizarCompra_FalhaAoLiberarAReserva_MantemOResultado() throws Exception {
+        IEstoqueExternal estoque = CheckoutFixture.estoque(true, true, () -> {
+            throw new IllegalStateException("Estoque fora do ar");
+        });
+        CompraAssincronaService service = service(estoque, CheckoutFixture.pagamentoRecusado(), executorJpa);
+
+        CheckoutOutcome resultado = service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(new CheckoutOutcome.PagamentoRecusado(), resultado);
+    }
+
+    @Test
+    void finalizarCompra_FalhaNaBaixa_EnfileiraOCancelamento() throws Exception {
+        CompraAssincronaService service = service(estoque(true, false), CheckoutFixture.pagamentoAutorizado(), executorJpa);
+
+        CheckoutOutcome resultado = service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(new CheckoutOutcome.FalhaBaixa(12345L), resultado);
+        verify(compensacaoService).enfileirarCancelamento(1L, 12345L);
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void finalizarCompra_ConfirmacaoSemResposta_MantemOPagamentoParaConciliacao() throws Exception {
+        IEstoqueExternal estoque = estoqueComConfirmacao(CompletableFuture.failedFuture(
+                new DependenciaIndisponivelException("estoque", "tempo limite de 2000 ms excedido", new TimeoutException())));
+        CompraAssincronaService service = service(estoque, CheckoutFixture.pagamentoAutorizado(), executorJpa);
+
+        CheckoutOutcome resultado = service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(new CheckoutOutcome.Sucesso(12345L), resultado);
+        verify(compensacaoService, never()).enfileirarCancelamento(anyLong(), anyLong());
+        verify(outboxService).registrarCompraFinalizada(eq(7L), eq(1L), eq(12345L), any());
+        assertEquals(1, meterRegistry.get("checkout.baixa.indefinida").counter().count());
+    }
+
+    @Test
+    void finalizarCompra_EstoqueRecusaAConfirmacao_CancelaOPagamento() {
+        IEstoqueExternal estoque = estoqueComConfirmacao(CompletableFuture.failedFuture(
+                new DependenciaIndisponivelException("estoque", "circuito aberto", null)));
+        CompraAssincronaService service = service(estoque, CheckoutFixture.pagamentoAutorizado(), executorJpa);
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(DependenciaIndisponivelException.class, exception.getCause());
+        verify(compensacaoService).enfileirarCancelamento(1L, 12345L);
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void finalizarCompra_CarrinhoAlteradoDuranteOPagamento_LiberaAReservaSemBaixar() throws Exception {
+        AtomicInteger conferencias = new AtomicInteger();
+        // Inalterado na conferência antes do pagamento, alterado na seguinte
+        CarrinhoDeComprasService carrinhoService = CheckoutFixture.carrinhoService(carrinho,
+                () -> conferencias.incrementAndGet() > 1, () -> true);
+        IEstoqueExternal estoque = spy(estoque(true, true));
+        CompraAssincronaService service = service(carrinhoService, estoque, CheckoutFixture.pagamentoAutorizado(),
+                executorJpa);
+
+        CheckoutOutcome resultado = service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(new CheckoutOutcome.CarrinhoAlterado(), resultado);
+        verify(compensacaoService).enfileirarCancelamento(1L, 12345L);
+        verify(estoque, never()).confirmarReservaAsync(any());
+        assertEquals(1, liberacoes.get());
+    }
+
+    @Test
+    void finalizarCompra_CarrinhoAlteradoDuranteABaixa_CancelaOPagamentoSemOutbox() throws Exception {
+        CarrinhoDeComprasService carrinhoService = CheckoutFixture.carrinhoService(carrinho, () -> false, () -> false);
+        CompraAssincronaService service = service(carrinhoService, estoque(true, true),
+                CheckoutFixture.pagamentoAutorizado(), executorJpa);
+
+        CheckoutOutcome resultado = service.finalizarCompra(7L, 1L).get(5, TimeUnit.SECONDS);
+
+        assertEquals(new CheckoutOutcome.CarrinhoAlterado(), resultado);
+        verify(compensacaoService).enfileirarCancelamento(1L, 12345L);
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void finalizarCompra_FilaDoBancoCheia_RejeitaSemBloquear() {
+        ThreadPoolExecutor lotado = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        CompletableFuture<Void> liberar = new CompletableFuture<>();
+        try {
+            lotado.execute(liberar::join);
+            lotado.execute(() -> { });
+            CompraAssincronaService service = service(estoque(true, true), CheckoutFixture.pagamentoAutorizado(), lotado);
+
+            CompletableFuture<CheckoutOutcome> futuro = service.finalizarCompra(7L, 1L);
+
+            ExecutionException exception = assertThrows(ExecutionException.class, futuro::get);
+            assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        } finally {
+            liberar.complete(null);
+            lotado.shutdown();
+        }
+    }
+
+    @Test
+    void finalizarCompra_MilharesDeComprasComPagamentoLento_PoucasThreads() throws Exception {
+        int compras = 2000;
+        long latenciaMs = 200;
+        CompraAssincronaService service = service(estoque(true, true), provedor.pagamento(latenciaMs), executorJpa);
+
+        long inicio = System.nanoTime();
+        List<CompletableFuture<CheckoutOutcome>> futuros = new ArrayList<>(compras);
+        for (int i = 0; i < compras; i++) {
+            futuros.add(service.finalizarCompra(7L, 1L));
+        }
+        CompletableFuture.allOf(futuros.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        long duracaoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        for (CompletableFuture<CheckoutOutcome> futuro : futuros) {
+            assertTrue(futuro.join().sucesso());
+        }
+        // Com as 2 threads do banco e 1 do provedor bloqueando a cada pagamento, seriam 200 s
+        assertTrue(duracaoMs < 20_000, "Levou " + duracaoMs + " ms");
+        assertTrue(provedor.maximoEmAndamento() > 100, "Máximo em andamento: " + provedor.maximoEmAndamento());
+    }
+
+    private CompraAssincronaService service(IEstoqueExternal estoque, IPagamentoExternal pagamento, Executor executor) {
+        return service(CheckoutFixture.carrinhoService(carrinho), estoque, pagamento, executor);
+    }
+
+    private CompraAssincronaService service(CarrinhoDeComprasService carrinhoService, IEstoqueExternal estoque,
+                                            IPagamentoExternal pagamento, Executor executor) {
+        return new CompraAssincronaService(carrinhoService, CheckoutFixture.clienteService(cliente), estoque, pagamento,
+                CheckoutFixture.motorPrecificacao("bigdecimal"), compensacaoService, outboxService,
+                new MetricasCheckout(meterRegistry), executor, Runnable::run, TransactionOperations.withoutTransaction());
+    }
+
+    private IEstoqueExternal estoque(boolean disponivel, boolean baixa) {
+        return CheckoutFixture.estoque(disponivel, baixa, liberacoes::incrementAndGet);
+    }
+
+    private IEstoqueExternal estoqueComConfirmacao(CompletableFuture<EstoqueBaixaDTO> confirmacao) {
+        IEstoqueExternal estoque = spy(estoque(true, true));
+        doReturn(confirmacao).when(estoque).confirmarReservaAsync(any());
+        return estoque;
+    }
+
+    // Provedor de pagamento lento que responde por um único agendador, sem thread por requisição
+    private static class ProvedorLento implements AutoCloseable {
+
+        private final ExecutorService agendador = Executors.newSingleThreadExecutor();
+        private final AtomicInteger emAndamento = new AtomicInteger();
+        private final AtomicInteger maximo = new AtomicInteger();
+
+        IPagamentoExternal pagamento(long latenciaMs) {
+            Executor atrasado = CompletableFuture.delayedExecutor(latenciaMs, TimeUnit.MILLISECONDS, agendador);
+            return new IPagamentoExternal() {
+                @Override
+                public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(Long clienteId, Double custoTotal) {
+                    maximo.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+                    return CompletableFuture.supplyAsync(() -> {
+                        emAndamento.decrementAndGet();
+                        return AUTORIZADO;
+                    }, atrasado);
+                }
+
+                @Override
+                public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+                }
+            };
+        }
+
+        int maximoEmAndamento() {
+            return maximo.get();
+        }
+
+        @Override
+        public void close() {
+            agendador.shutdownNow();
+        }
+    }
+}
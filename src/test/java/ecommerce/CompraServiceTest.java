@@ -5,28 +5,53 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 import ecommerce.dto.CompraDTO;
 import ecommerce.dto.DisponibilidadeDTO;
 import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ItensEstoqueDTO;
 import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.PedidoCheckoutDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
 import ecommerce.entity.*;
 import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CartSnapshot;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompensacaoService;
 import ecommerce.service.CompraService;
+import ecommerce.service.MetricasCheckout;
+import ecommerce.service.MotorPrecificacaoBigDecimal;
+import ecommerce.service.OutboxService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.Answers;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import ecommerce.service.ClienteService;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
 
 import ecommerce.external.IEstoqueExternal;
 import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.local.EstoqueEmMemoria;
+import ecommerce.external.resiliencia.DependenciaIndisponivelException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 class CompraServiceTest {
 
@@ -38,16 +63,33 @@ class CompraServiceTest {
     @Mock
     private ClienteService clienteService;
 
-    @Mock
+    // Reserva, confirmação e liberação usam as implementações padrão da interface, que
+    // delegam para verificarDisponibilidade e darBaixa, a não ser que o teste as sobrescreva.
+    // O mesmo vale para a autorização em lote do pagamento, que delega para autorizarPagamento.
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private IEstoqueExternal estoqueExternal;
 
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private IPagamentoExternal pagamentoExternal;
 
+    @Mock
+    private CompensacaoService compensacaoService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MetricasCheckout metricas;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal);
+        meterRegistry = new SimpleMeterRegistry();
+        metricas = new MetricasCheckout(meterRegistry);
+        when(carrinhoService.avancarVersao(any(), any())).thenReturn(true);
+        compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+                new MotorPrecificacaoBigDecimal(), compensacaoService, outboxService,
+                metricas, Runnable::run, TransactionOperations.withoutTransaction());
     }
 
     @Test
@@ -390,9 +432,7 @@ class CompraServiceTest {
         Produto produto = new Produto(1L, "Produto Teste", "", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO );
         ItemCompra item = new ItemCompra(null, produto, 1L);
         carrinho.setItens(Collections.singletonList(item));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenReturn(new DisponibilidadeDTO(true , null));
         when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
@@ -401,14 +441,41 @@ class CompraServiceTest {
                 .thenReturn(new EstoqueBaixaDTO(true));
 
         // Act
-        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId()).compra();
 
         // Assert
         assertTrue(compra.sucesso());
         assertEquals("Compra finalizada com sucesso.", compra.mensagem());
         assertEquals(12345L, compra.transacaoPagamentoId()); // Valida explicitamente o ID da transação
-        verify(clienteService, times(1)).buscarPorId(cliente.getId());
-        verify(carrinhoService, times(1)).buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente);
+        verify(clienteService, times(1)).buscarTipo(cliente.getId());
+        verify(clienteService, never()).buscarPorId(anyLong());
+        verify(carrinhoService, times(1)).buscarParaCheckout(carrinho.getId(), cliente.getId());
+        verify(outboxService, times(1)).registrarCompraFinalizada(carrinho.getId(), cliente.getId(), 12345L,
+                new BigDecimal("100.00"));
+    }
+
+    @Test
+    void finalizarCompra_Sucesso_RegistraCadaEtapaEOResultadoPorTipoDeCliente() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.OURO);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, null, null);
+        Produto produto = new Produto(1L, "Produto Teste", "", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
+        carrinho.setItens(Collections.singletonList(new ItemCompra(null, produto, 1L)));
+        quandoBuscarParaCheckout(carrinho);
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, null));
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+        when(estoqueExternal.darBaixa(anyList(), anyList()))
+                .thenReturn(new EstoqueBaixaDTO(true));
+
+        compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        for (String etapa : List.of("tipo_cliente", "carrinho", "estoque_reserva", "precificacao", "pagamento",
+                "estoque_baixa", "outbox")) {
+            assertEquals(1, meterRegistry.get("checkout.etapa").tag("etapa", etapa).timer().count(), etapa);
+        }
+        assertEquals(1, resultados("sucesso", TipoCliente.OURO));
+        assertEquals(0, resultados("sucesso", TipoCliente.BRONZE));
     }
 
     @Test
@@ -418,25 +485,40 @@ class CompraServiceTest {
         Produto produto = new Produto(1L, "Produto Teste", "Descrição", BigDecimal.valueOf(100), 5, TipoProduto.LIVRO);
         ItemCompra item = new ItemCompra(null, produto, 1L);
         carrinho.setItens(Collections.singletonList(item));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
 
         List<Long> produtosIndisponiveis = Collections.singletonList(produto.getId());
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenReturn(new DisponibilidadeDTO(false, produtosIndisponiveis));
 
-        Exception exception = assertThrows(IllegalStateException.class, () -> {
-            compraService.finalizarCompra(carrinho.getId(), cliente.getId());
-        });
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
 
-        assertEquals("Itens fora de estoque.", exception.getMessage());
+        assertEquals(new CheckoutOutcome.SemEstoque(produtosIndisponiveis), resultado);
+        assertEquals("Itens fora de estoque.", resultado.compra().mensagem());
 
         verify(pagamentoExternal, never()).autorizarPagamento(anyLong(), anyDouble());
+        assertEquals(1, resultados("sem_estoque", TipoCliente.BRONZE));
         verify(pagamentoExternal, never()).cancelarPagamento(anyLong(), anyLong());
         verify(estoqueExternal, never()).darBaixa(anyList(), anyList());
     }
 
+    @Test
+    void finalizarCompra_EstoqueRecusaSemInformarIds_ResultadoSemEstoqueComListaVazia() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, null, null);
+        Produto produto = new Produto(1L, "Produto Teste", "Descrição", BigDecimal.valueOf(100), 5, TipoProduto.LIVRO);
+        carrinho.setItens(Collections.singletonList(new ItemCompra(null, produto, 1L)));
+        quandoBuscarParaCheckout(carrinho);
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(false, null));
+
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        assertEquals(new CheckoutOutcome.SemEstoque(List.of()), resultado);
+        assertFalse(resultado.sucesso());
+        assertEquals(new CompraDTO(false, null, "Itens fora de estoque."), resultado.compra());
+    }
+
     @Test
     void finalizarCompra_FalhaNoPagamento() {
         Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
@@ -444,21 +526,19 @@ class CompraServiceTest {
         Produto produto = new Produto(1L, "Produto Teste", "Descrição", BigDecimal.valueOf(100), 5, TipoProduto.LIVRO);
         ItemCompra item = new ItemCompra(null, produto, 1L);
         carrinho.setItens(Collections.singletonList(item));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenReturn(new DisponibilidadeDTO(true, Collections.emptyList()));
         when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
                 .thenReturn(new PagamentoDTO(false, null)); // Pagamento não autorizado
 
-        Exception exception = assertThrows(IllegalStateException.class, () -> {
-            compraService.finalizarCompra(carrinho.getId(), cliente.getId());
-        });
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
 
-        assertEquals("Pagamento não autorizado.", exception.getMessage());
+        assertInstanceOf(CheckoutOutcome.PagamentoRecusado.class, resultado);
+        assertEquals("Pagamento não autorizado.", resultado.compra().mensagem());
         verify(pagamentoExternal, never()).cancelarPagamento(anyLong(), anyLong());
         verify(estoqueExternal, never()).darBaixa(anyList(), anyList());
+        assertEquals(1, resultados("pagamento_recusado", TipoCliente.BRONZE));
     }
 
     @Test
@@ -468,9 +548,7 @@ class CompraServiceTest {
         Produto produto = new Produto(1L, "Produto Teste", "Descrição", BigDecimal.valueOf(100), 5, TipoProduto.LIVRO);
         ItemCompra item = new ItemCompra(null, produto, 1L);
         carrinho.setItens(Collections.singletonList(item));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenReturn(new DisponibilidadeDTO(true, Collections.emptyList()));
         when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
@@ -478,12 +556,38 @@ class CompraServiceTest {
         when(estoqueExternal.darBaixa(anyList(), anyList()))
                 .thenReturn(new EstoqueBaixaDTO(false)); // Falha na baixa de estoque
 
-        Exception exception = assertThrows(IllegalStateException.class, () -> {
-            compraService.finalizarCompra(carrinho.getId(), cliente.getId());
-        });
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
 
-        assertEquals("Erro ao dar baixa no estoque.", exception.getMessage());
-        verify(pagamentoExternal, times(1)).cancelarPagamento(cliente.getId(), 12345L);
+        assertInstanceOf(CheckoutOutcome.FalhaBaixa.class, resultado);
+        assertEquals("Erro ao dar baixa no estoque.", resultado.compra().mensagem());
+        verify(compensacaoService, times(1)).enfileirarCancelamento(cliente.getId(), 12345L);
+        verify(outboxService, never()).registrarCompraFinalizada(anyLong(), anyLong(), anyLong(), any());
+        verify(pagamentoExternal, never()).cancelarPagamento(anyLong(), anyLong());
+        assertEquals(1, resultados("falha_baixa", TipoCliente.BRONZE));
+        assertEquals(0, resultados("sucesso", TipoCliente.BRONZE));
+    }
+
+    @Test
+    void finalizarCompra_EstoqueIndisponivelNaBaixa_CancelaPagamentoNoRollback() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, null, null);
+        Produto produto = new Produto(1L, "Produto Teste", "Descrição", BigDecimal.valueOf(100), 5, TipoProduto.LIVRO);
+        carrinho.setItens(Collections.singletonList(new ItemCompra(null, produto, 1L)));
+        quandoBuscarParaCheckout(carrinho);
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, Collections.emptyList()));
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+        when(estoqueExternal.darBaixa(anyList(), anyList()))
+                .thenThrow(new DependenciaIndisponivelException("estoque", "circuito aberto", null));
+
+        assertThrows(DependenciaIndisponivelException.class,
+                () -> compraService.finalizarCompra(carrinho.getId(), cliente.getId()));
+
+        // A exceção desfaz a transação da compra, e o cancelamento é enfileirado depois do rollback
+        verify(compensacaoService, times(1)).cancelarSeDesfeita(cliente.getId(), 12345L);
+        verify(compensacaoService, never()).enfileirarCancelamento(anyLong(), anyLong());
+        verify(outboxService, never()).registrarCompraFinalizada(anyLong(), anyLong(), anyLong(), any());
     }
 
     @Test
@@ -497,18 +601,15 @@ class CompraServiceTest {
         ItemCompra item2 = new ItemCompra(null, produto2, 1L);
 
         carrinho.setItens(Arrays.asList(item1, item2));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
 
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenReturn(new DisponibilidadeDTO(false, Arrays.asList(produto2.getId())));
 
-        Exception exception = assertThrows(IllegalStateException.class, () -> {
-            compraService.finalizarCompra(carrinho.getId(), cliente.getId());
-        });
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
 
-        assertEquals("Itens fora de estoque.", exception.getMessage());
+        assertInstanceOf(CheckoutOutcome.SemEstoque.class, resultado);
+        assertEquals("Itens fora de estoque.", resultado.compra().mensagem());
     }
 
     @Test
@@ -524,9 +625,7 @@ class CompraServiceTest {
         ItemCompra item3 = new ItemCompra(null, produto3, 1L);
 
         carrinho.setItens(Arrays.asList(item1, item2, item3));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenReturn(new DisponibilidadeDTO(true, Collections.emptyList()));
         when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
@@ -534,7 +633,7 @@ class CompraServiceTest {
         when(estoqueExternal.darBaixa(anyList(), anyList()))
                 .thenReturn(new EstoqueBaixaDTO(true));
 
-        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId()).compra();
 
         assertTrue(compra.sucesso());
         assertEquals(12345L, compra.transacaoPagamentoId());
@@ -548,9 +647,7 @@ class CompraServiceTest {
         Produto produto = new Produto(null, "Produto Sem ID", "Descrição", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
         ItemCompra item = new ItemCompra(null, produto, 1L);
         carrinho.setItens(Collections.singletonList(item));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenThrow(new IllegalArgumentException("Produto sem ID no carrinho.")); // Simula o erro corretamente
 
@@ -568,9 +665,7 @@ class CompraServiceTest {
         Produto produto = new Produto(1L, "Produto A", "Descrição", BigDecimal.valueOf(250.75), 2, TipoProduto.LIVRO);
         ItemCompra item = new ItemCompra(null, produto, 2L);
         carrinho.setItens(Collections.singletonList(item));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenReturn(new DisponibilidadeDTO(true, Collections.emptyList()));
         when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
@@ -593,9 +688,7 @@ class CompraServiceTest {
         ItemCompra item1 = new ItemCompra(null, produto1, 5L); // Quantidade = 5
         ItemCompra item2 = new ItemCompra(null, produto2, 10L); // Quantidade = 10
         carrinho.setItens(Arrays.asList(item1, item2));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenAnswer(invocation -> {
                     List<Long> quantidades = invocation.getArgument(1);
@@ -607,7 +700,7 @@ class CompraServiceTest {
         when(estoqueExternal.darBaixa(anyList(), anyList()))
                 .thenReturn(new EstoqueBaixaDTO(true));
 
-        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId()).compra();
 
         assertTrue(compra.sucesso());
         assertEquals("Compra finalizada com sucesso.", compra.mensagem());
@@ -624,9 +717,7 @@ class CompraServiceTest {
         ItemCompra item1 = new ItemCompra(null, produto1, 5L);
         ItemCompra item2 = new ItemCompra(null, produto2, 10L);
         carrinho.setItens(Arrays.asList(item1, item2));
-
-        when(clienteService.buscarPorId(cliente.getId())).thenReturn(cliente);
-        when(carrinhoService.buscarPorCarrinhoIdEClienteId(carrinho.getId(), cliente)).thenReturn(carrinho);
+        quandoBuscarParaCheckout(carrinho);
         when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
                 .thenAnswer(invocation -> {
                     List<Long> ids = invocation.getArgument(0);
@@ -638,10 +729,454 @@ class CompraServiceTest {
         when(estoqueExternal.darBaixa(anyList(), anyList()))
                 .thenReturn(new EstoqueBaixaDTO(true));
 
-        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId()).compra();
 
         assertTrue(compra.sucesso());
         assertEquals("Compra finalizada com sucesso.", compra.mensagem());
     }
 
+    @Test
+    void finalizarCompra_FalhaNaPrecificacao_NaoEsperaEstoque() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+                    new MotorPrecificacaoBigDecimal(), compensacaoService, outboxService,
+                    metricas, executor, TransactionOperations.withoutTransaction());
+            Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+            CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, Collections.emptyList(), null);
+            quandoBuscarParaCheckout(carrinho);
+            when(estoqueExternal.verificarDisponibilidade(anyList(), anyList())).thenAnswer(invocation -> {
+                Thread.sleep(5_000);
+                return new DisponibilidadeDTO(true, Collections.emptyList());
+            });
+
+            Exception exception = assertTimeoutPreemptively(Duration.ofSeconds(2), () -> assertThrows(
+                    IllegalArgumentException.class, () -> compraService.finalizarCompra(carrinho.getId(), cliente.getId())));
+
+            assertEquals("Carrinho de compras vazio ou nulo.", exception.getMessage());
+            verify(pagamentoExternal, never()).autorizarPagamento(anyLong(), anyDouble());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void finalizarCompra_EstoqueEmOutraThread_PagamentoSoDepoisDaConfirmacao() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+                    new MotorPrecificacaoBigDecimal(), compensacaoService, outboxService,
+                    metricas, executor, TransactionOperations.withoutTransaction());
+            Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+            CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, null, null);
+            Produto produto = new Produto(1L, "Produto Teste", "", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
+            carrinho.setItens(Collections.singletonList(new ItemCompra(null, produto, 1L)));
+            quandoBuscarParaCheckout(carrinho);
+
+            Thread chamadora = Thread.currentThread();
+            AtomicBoolean estoqueConfirmado = new AtomicBoolean();
+            when(estoqueExternal.verificarDisponibilidade(anyList(), anyList())).thenAnswer(invocation -> {
+                assertNotSame(chamadora, Thread.currentThread());
+                Thread.sleep(100);
+                estoqueConfirmado.set(true);
+                return new DisponibilidadeDTO(false, Collections.singletonList(1L));
+            });
+
+            CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+            assertInstanceOf(CheckoutOutcome.SemEstoque.class, resultado);
+            assertEquals("Itens fora de estoque.", resultado.compra().mensagem());
+            assertTrue(estoqueConfirmado.get());
+            verify(pagamentoExternal, never()).autorizarPagamento(anyLong(), anyDouble());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void finalizarCompra_ReservaUmaVezEConfirmaDepoisDoPagamento() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, null, null);
+        Produto produto = new Produto(1L, "Produto Teste", "", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
+        carrinho.setItens(Collections.singletonList(new ItemCompra(null, produto, 3L)));
+        quandoBuscarParaCheckout(carrinho);
+        ReservaEstoqueDTO reserva = reservaConcedida(List.of(1L), List.of(3L));
+        doReturn(reserva).when(estoqueExternal).reservar(anyList(), anyList());
+        doReturn(new EstoqueBaixaDTO(true)).when(estoqueExternal).confirmarReserva(reserva);
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+
+        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId()).compra();
+
+        assertTrue(compra.sucesso());
+        InOrder ordem = inOrder(estoqueExternal, pagamentoExternal);
+        ordem.verify(estoqueExternal).reservar(List.of(1L), List.of(3L));
+        ordem.verify(pagamentoExternal).autorizarPagamento(eq(1L), anyDouble());
+        ordem.verify(estoqueExternal).confirmarReserva(reserva);
+        verify(estoqueExternal, never()).verificarDisponibilidade(anyList(), anyList());
+        verify(estoqueExternal, never()).darBaixa(anyList(), anyList());
+        verify(estoqueExternal, never()).liberarReserva(any());
+    }
+
+    @Test
+    void finalizarCompra_PagamentoNaoAutorizado_LiberaReserva() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, null, null);
+        Produto produto = new Produto(1L, "Produto Teste", "", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
+        carrinho.setItens(Collections.singletonList(new ItemCompra(null, produto, 1L)));
+        quandoBuscarParaCheckout(carrinho);
+        ReservaEstoqueDTO reserva = reservaConcedida(List.of(1L), List.of(1L));
+        doReturn(reserva).when(estoqueExternal).reservar(anyList(), anyList());
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(false, null));
+
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        assertInstanceOf(CheckoutOutcome.PagamentoRecusado.class, resultado);
+        assertEquals("Pagamento não autorizado.", resultado.compra().mensagem());
+        verify(estoqueExternal, times(1)).liberarReserva(reserva);
+        verify(estoqueExternal, never()).confirmarReserva(any());
+    }
+
+    @Test
+    void finalizarCompra_ErroNoPagamento_LiberaReserva() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, null, null);
+        Produto produto = new Produto(1L, "Produto Teste", "", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
+        carrinho.setItens(Collections.singletonList(new ItemCompra(null, produto, 1L)));
+        quandoBuscarParaCheckout(carrinho);
+        ReservaEstoqueDTO reserva = reservaConcedida(List.of(1L), List.of(1L));
+        doReturn(reserva).when(estoqueExternal).reservar(anyList(), anyList());
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenThrow(new RuntimeException("Gateway indisponível"));
+
+        assertThrows(RuntimeException.class, () -> compraService.finalizarCompra(carrinho.getId(), cliente.getId()));
+
+        verify(estoqueExternal, times(1)).liberarReserva(reserva);
+    }
+
+    @Test
+    void finalizarCompra_ReservaExpiradaNaConfirmacao_CancelaPagamento() {
+        Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, null, null);
+        Produto produto = new Produto(1L, "Produto Teste", "", BigDecimal.valueOf(100), 2, TipoProduto.LIVRO);
+        carrinho.setItens(Collections.singletonList(new ItemCompra(null, produto, 1L)));
+        quandoBuscarParaCheckout(carrinho);
+        ReservaEstoqueDTO reserva = reservaConcedida(List.of(1L), List.of(1L));
+        doReturn(reserva).when(estoqueExternal).reservar(anyList(), anyList());
+        doReturn(new EstoqueBaixaDTO(false)).when(estoqueExternal).confirmarReserva(reserva);
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        assertInstanceOf(CheckoutOutcome.FalhaBaixa.class, resultado);
+        assertEquals("Erro ao dar baixa no estoque.", resultado.compra().mensagem());
+        verify(compensacaoService, times(1)).enfileirarCancelamento(1L, 12345L);
+    }
+
+    @Test
+    void finalizarCompraEmLote_UmaReservaEmLoteEConfirmacaoPorCarrinho() {
+        Cliente cliente1 = new Cliente(1L, "Cliente A", "", TipoCliente.BRONZE);
+        Cliente cliente2 = new Cliente(2L, "Cliente B", "", TipoCliente.OURO);
+        Produto produto1 = new Produto(1L, "Produto A", "", BigDecimal.valueOf(100), 1, TipoProduto.LIVRO);
+        Produto produto2 = new Produto(2L, "Produto B", "", BigDecimal.valueOf(50), 1, TipoProduto.LIVRO);
+        CarrinhoDeCompras carrinho1 = new CarrinhoDeCompras(10L, cliente1,
+                Arrays.asList(new ItemCompra(null, produto1, 2L), new ItemCompra(null, produto2, 1L)), null);
+        CarrinhoDeCompras carrinho2 = new CarrinhoDeCompras(20L, cliente2,
+                Collections.singletonList(new ItemCompra(null, produto1, 3L)), null);
+        quandoBuscarParaCheckoutEmLote(carrinho1, carrinho2);
+        ReservaEstoqueDTO reserva1 = reservaConcedida("r-10", Arrays.asList(1L, 2L), Arrays.asList(2L, 1L));
+        ReservaEstoqueDTO reserva2 = reservaConcedida("r-20", List.of(1L), List.of(3L));
+        doReturn(List.of(reserva1, reserva2)).when(estoqueExternal).reservarEmLote(anyList());
+        doReturn(new EstoqueBaixaDTO(true)).when(estoqueExternal).confirmarReserva(any());
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 111L), new PagamentoDTO(true, 222L));
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(Arrays.asList(
+                new PedidoCheckoutDTO(10L, 1L), new PedidoCheckoutDTO(20L, 2L)));
+
+        assertEquals(Arrays.asList(
+                new CompraDTO(true, 111L, "Compra finalizada com sucesso."),
+                new CompraDTO(true, 222L, "Compra finalizada com sucesso.")), compras);
+        verify(estoqueExternal, times(1)).reservarEmLote(Arrays.asList(
+                new ItensEstoqueDTO(Arrays.asList(1L, 2L), Arrays.asList(2L, 1L)),
+                new ItensEstoqueDTO(List.of(1L), List.of(3L))));
+        verify(pagamentoExternal, times(1)).autorizarPagamentosEmLote(Arrays.asList(
+                new SolicitacaoPagamentoDTO(1L, 250.0), new SolicitacaoPagamentoDTO(2L, 300.0)));
+        verify(estoqueExternal).confirmarReserva(reserva1);
+        verify(estoqueExternal).confirmarReserva(reserva2);
+        verify(estoqueExternal, never()).verificarDisponibilidade(anyList(), anyList());
+        verify(estoqueExternal, never()).darBaixa(anyList(), anyList());
+        verify(compensacaoService).cancelarSeDesfeita(1L, 111L);
+        verify(compensacaoService).cancelarSeDesfeita(2L, 222L);
+        verify(outboxService).registrarCompraFinalizada(10L, 1L, 111L, new BigDecimal("250.00"));
+        verify(outboxService).registrarCompraFinalizada(20L, 2L, 222L, new BigDecimal("300.00"));
+    }
+
+    @Test
+    void finalizarCompraEmLote_FalhasIndependentesPorCarrinho() {
+        Cliente cliente1 = new Cliente(1L, "Cliente A", "", TipoCliente.BRONZE);
+        Cliente cliente2 = new Cliente(2L, "Cliente B", "", TipoCliente.BRONZE);
+        Cliente cliente3 = new Cliente(3L, "Cliente C", "", TipoCliente.BRONZE);
+        Produto produto1 = new Produto(1L, "Produto A", "", BigDecimal.valueOf(100), 1, TipoProduto.LIVRO);
+        Produto produto2 = new Produto(2L, "Produto B", "", BigDecimal.valueOf(50), 1, TipoProduto.LIVRO);
+        CarrinhoDeCompras semEstoque = new CarrinhoDeCompras(10L, cliente1,
+                Collections.singletonList(new ItemCompra(null, produto2, 1L)), null);
+        CarrinhoDeCompras pagamentoRecusado = new CarrinhoDeCompras(20L, cliente2,
+                Collections.singletonList(new ItemCompra(null, produto1, 1L)), null);
+        CarrinhoDeCompras aprovado = new CarrinhoDeCompras(30L, cliente3,
+                Collections.singletonList(new ItemCompra(null, produto1, 1L)), null);
+        quandoBuscarParaCheckoutEmLote(semEstoque, pagamentoRecusado, aprovado);
+        ReservaEstoqueDTO reservaRecusada = reservaConcedida("r-20", List.of(1L), List.of(1L));
+        ReservaEstoqueDTO reservaAprovada = reservaConcedida("r-30", List.of(1L), List.of(1L));
+        doReturn(List.of(new ReservaEstoqueDTO(null, false, List.of(2L), List.of(2L), List.of(1L), null),
+                reservaRecusada, reservaAprovada)).when(estoqueExternal).reservarEmLote(anyList());
+        doReturn(new EstoqueBaixaDTO(true)).when(estoqueExternal).confirmarReserva(any());
+        when(pagamentoExternal.autorizarPagamento(eq(2L), anyDouble())).thenReturn(new PagamentoDTO(false, null));
+        when(pagamentoExternal.autorizarPagamento(eq(3L), anyDouble())).thenReturn(new PagamentoDTO(true, 333L));
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(Arrays.asList(
+                new PedidoCheckoutDTO(10L, 1L),
+                new PedidoCheckoutDTO(99L, 1L),
+                new PedidoCheckoutDTO(20L, 2L),
+                new PedidoCheckoutDTO(30L, 3L),
+                new PedidoCheckoutDTO(30L, 3L),
+                new PedidoCheckoutDTO(null, 3L)));
+
+        assertEquals(Arrays.asList(
+                new CompraDTO(false, null, "Itens fora de estoque."),
+                new CompraDTO(false, null, "Carrinho não encontrado."),
+                new CompraDTO(false, null, "Pagamento não autorizado."),
+                new CompraDTO(true, 333L, "Compra finalizada com sucesso."),
+                new CompraDTO(false, null, "Carrinho repetido no lote."),
+                new CompraDTO(false, null, "Parâmetros inválidos.")), compras);
+        verify(estoqueExternal, times(1)).reservarEmLote(anyList());
+        verify(pagamentoExternal, never()).autorizarPagamento(eq(1L), anyDouble());
+        verify(estoqueExternal).liberarReserva(reservaRecusada);
+        verify(estoqueExternal, times(1)).confirmarReserva(any());
+        verify(estoqueExternal).confirmarReserva(reservaAprovada);
+    }
+
+    @Test
+    void finalizarCompraEmLote_CadaCarrinhoPagoEmTransacaoPropria() {
+        AtomicInteger transacoes = new AtomicInteger();
+        compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+                new MotorPrecificacaoBigDecimal(), compensacaoService, outboxService, metricas, Runnable::run,
+                new TransactionOperations() {
+                    @Override
+                    public <T> T execute(TransactionCallback<T> acao) {
+                        transacoes.incrementAndGet();
+                        return acao.doInTransaction(null);
+                    }
+                });
+        Cliente cliente1 = new Cliente(1L, "Cliente A", "", TipoCliente.BRONZE);
+        Cliente cliente2 = new Cliente(2L, "Cliente B", "", TipoCliente.BRONZE);
+        Produto produto = new Produto(1L, "Produto A", "", BigDecimal.valueOf(100), 1, TipoProduto.LIVRO);
+        quandoBuscarParaCheckoutEmLote(
+                new CarrinhoDeCompras(10L, cliente1, Collections.singletonList(new ItemCompra(null, produto, 1L)), null),
+                new CarrinhoDeCompras(20L, cliente2, Collections.singletonList(new ItemCompra(null, produto, 1L)), null));
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, Collections.emptyList()));
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 111L), new PagamentoDTO(true, 222L));
+        when(estoqueExternal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(true));
+        doThrow(new IllegalStateException("Falha ao gravar a outbox")).when(outboxService)
+                .registrarCompraFinalizada(eq(10L), anyLong(), anyLong(), any());
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(Arrays.asList(
+                new PedidoCheckoutDTO(10L, 1L), new PedidoCheckoutDTO(20L, 2L)));
+
+        assertEquals(Arrays.asList(
+                new CompraDTO(false, null, "Falha ao gravar a outbox"),
+                new CompraDTO(true, 222L, "Compra finalizada com sucesso.")), compras);
+        assertEquals(2, transacoes.get());
+    }
+
+    @Test
+    void finalizarCompraEmLote_CarrinhoAlteradoAntesDoPagamento_LiberaAReservaSemCobrar() {
+        Cliente cliente = new Cliente(1L, "Cliente A", "", TipoCliente.BRONZE);
+        Produto produto = new Produto(1L, "Produto A", "", BigDecimal.valueOf(100), 1, TipoProduto.LIVRO);
+        quandoBuscarParaCheckoutEmLote(
+                new CarrinhoDeCompras(10L, cliente, Collections.singletonList(new ItemCompra(null, produto, 1L)), null));
+        ReservaEstoqueDTO reserva = reservaConcedida("r-10", List.of(1L), List.of(1L));
+        doReturn(List.of(reserva)).when(estoqueExternal).reservarEmLote(anyList());
+        when(carrinhoService.carrinhoAlteradoDesde(eq(10L), any())).thenReturn(true);
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(List.of(new PedidoCheckoutDTO(10L, 1L)));
+
+        assertEquals(List.of(new CheckoutOutcome.CarrinhoAlterado().compra()), compras);
+        verify(estoqueExternal).liberarReserva(reserva);
+        verify(pagamentoExternal, never()).autorizarPagamentosEmLote(anyList());
+        verify(estoqueExternal, never()).confirmarReserva(any());
+    }
+
+    @Test
+    void finalizarCompraEmLote_CarrinhoAlteradoDuranteOPagamento_CancelaOPagamentoELiberaAReserva() {
+        Cliente cliente1 = new Cliente(1L, "Cliente A", "", TipoCliente.BRONZE);
+        Cliente cliente2 = new Cliente(2L, "Cliente B", "", TipoCliente.BRONZE);
+        Produto produto = new Produto(1L, "Produto A", "", BigDecimal.valueOf(100), 1, TipoProduto.LIVRO);
+        quandoBuscarParaCheckoutEmLote(
+                new CarrinhoDeCompras(10L, cliente1, Collections.singletonList(new ItemCompra(null, produto, 1L)), null),
+                new CarrinhoDeCompras(20L, cliente2, Collections.singletonList(new ItemCompra(null, produto, 1L)), null));
+        ReservaEstoqueDTO reserva1 = reservaConcedida("r-10", List.of(1L), List.of(1L));
+        ReservaEstoqueDTO reserva2 = reservaConcedida("r-20", List.of(1L), List.of(1L));
+        doReturn(List.of(reserva1, reserva2)).when(estoqueExternal).reservarEmLote(anyList());
+        doReturn(new EstoqueBaixaDTO(true)).when(estoqueExternal).confirmarReserva(any());
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 111L), new PagamentoDTO(true, 222L));
+        when(carrinhoService.avancarVersao(eq(10L), any())).thenReturn(false);
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(Arrays.asList(
+                new PedidoCheckoutDTO(10L, 1L), new PedidoCheckoutDTO(20L, 2L)));
+
+        assertEquals(Arrays.asList(
+                new CheckoutOutcome.CarrinhoAlterado().compra(),
+                new CompraDTO(true, 222L, "Compra finalizada com sucesso.")), compras);
+        verify(compensacaoService).enfileirarCancelamento(1L, 111L);
+        verify(estoqueExternal).liberarReserva(reserva1);
+        verify(estoqueExternal, never()).confirmarReserva(reserva1);
+        verify(outboxService, never()).registrarCompraFinalizada(eq(10L), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void finalizarCompraEmLote_ReservaNaoConfirmada_CancelaOPagamento() {
+        Cliente cliente = new Cliente(1L, "Cliente A", "", TipoCliente.BRONZE);
+        Produto produto = new Produto(1L, "Produto A", "", BigDecimal.valueOf(100), 1, TipoProduto.LIVRO);
+        quandoBuscarParaCheckoutEmLote(
+                new CarrinhoDeCompras(10L, cliente, Collections.singletonList(new ItemCompra(null, produto, 1L)), null));
+        ReservaEstoqueDTO reserva = reservaConcedida("r-10", List.of(1L), List.of(1L));
+        doReturn(List.of(reserva)).when(estoqueExternal).reservarEmLote(anyList());
+        doReturn(new EstoqueBaixaDTO(false)).when(estoqueExternal).confirmarReserva(reserva);
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 111L));
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(List.of(new PedidoCheckoutDTO(10L, 1L)));
+
+        assertEquals(List.of(new CheckoutOutcome.FalhaBaixa(111L).compra()), compras);
+        verify(compensacaoService).enfileirarCancelamento(1L, 111L);
+        verify(outboxService, never()).registrarCompraFinalizada(anyLong(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void finalizarCompraEmLote_FalhaNoPagamento_LiberaAsReservas() {
+        Cliente cliente1 = new Cliente(1L, "Cliente A", "", TipoCliente.BRONZE);
+        Cliente cliente2 = new Cliente(2L, "Cliente B", "", TipoCliente.BRONZE);
+        Produto produto = new Produto(1L, "Produto A", "", BigDecimal.valueOf(100), 1, TipoProduto.LIVRO);
+        quandoBuscarParaCheckoutEmLote(
+                new CarrinhoDeCompras(10L, cliente1, Collections.singletonList(new ItemCompra(null, produto, 1L)), null),
+                new CarrinhoDeCompras(20L, cliente2, Collections.singletonList(new ItemCompra(null, produto, 1L)), null));
+        ReservaEstoqueDTO reserva1 = reservaConcedida("r-10", List.of(1L), List.of(1L));
+        ReservaEstoqueDTO reserva2 = reservaConcedida("r-20", List.of(1L), List.of(1L));
+        doReturn(List.of(reserva1, reserva2)).when(estoqueExternal).reservarEmLote(anyList());
+        doThrow(new DependenciaIndisponivelException("pagamento", "circuito aberto", null))
+                .when(pagamentoExternal).autorizarPagamentosEmLote(anyList());
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(Arrays.asList(
+                new PedidoCheckoutDTO(10L, 1L), new PedidoCheckoutDTO(20L, 2L)));
+
+        assertEquals(Arrays.asList(
+                new CompraDTO(false, null, "Serviço de pagamento indisponível: circuito aberto."),
+                new CompraDTO(false, null, "Serviço de pagamento indisponível: circuito aberto.")), compras);
+        verify(estoqueExternal).liberarReserva(reserva1);
+        verify(estoqueExternal).liberarReserva(reserva2);
+        verify(estoqueExternal, never()).confirmarReserva(any());
+    }
+
+    @Test
+    void finalizarCompraEmLote_EstoqueEmMemoria_CadaCarrinhoReservaSoOQueCabe() {
+        EstoqueEmMemoria estoque = new EstoqueEmMemoria(10, 0, Duration.ofSeconds(30));
+        estoque.definirSaldo(1L, 3);
+        compraService = new CompraService(carrinhoService, clienteService, estoque, pagamentoExternal,
+                new MotorPrecificacaoBigDecimal(), compensacaoService, outboxService, metricas, Runnable::run,
+                TransactionOperations.withoutTransaction());
+        Cliente cliente1 = new Cliente(1L, "Cliente A", "", TipoCliente.BRONZE);
+        Cliente cliente2 = new Cliente(2L, "Cliente B", "", TipoCliente.BRONZE);
+        Produto produto = new Produto(1L, "Produto A", "", BigDecimal.valueOf(100), 1, TipoProduto.LIVRO);
+        quandoBuscarParaCheckoutEmLote(
+                new CarrinhoDeCompras(10L, cliente1, Collections.singletonList(new ItemCompra(null, produto, 2L)), null),
+                new CarrinhoDeCompras(20L, cliente2, Collections.singletonList(new ItemCompra(null, produto, 2L)), null));
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble())).thenReturn(new PagamentoDTO(true, 111L));
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(Arrays.asList(
+                new PedidoCheckoutDTO(10L, 1L), new PedidoCheckoutDTO(20L, 2L)));
+
+        // A soma não cabe, mas o primeiro carrinho cabe sozinho e fica com o saldo
+        assertEquals(Arrays.asList(
+                new CompraDTO(true, 111L, "Compra finalizada com sucesso."),
+                new CompraDTO(false, null, "Itens fora de estoque.")), compras);
+        assertEquals(1, estoque.saldo(1L));
+        assertEquals(0, estoque.reservasAtivas());
+        verify(pagamentoExternal, times(1)).autorizarPagamento(anyLong(), anyDouble());
+    }
+
+    // O retrato é montado a cada chamada, como faz a consulta de checkout
+    private void quandoBuscarParaCheckout(CarrinhoDeCompras carrinho) {
+        Cliente cliente = carrinho.getCliente();
+        when(clienteService.buscarTipo(cliente.getId())).thenReturn(cliente.getTipo());
+        when(carrinhoService.buscarParaCheckout(carrinho.getId(), cliente.getId()))
+                .thenAnswer(invocation -> CartSnapshot.de(carrinho));
+    }
+
+    private double resultados(String resultado, TipoCliente tipoCliente) {
+        return meterRegistry.get("checkout.resultado").tag("resultado", resultado)
+                .tag("tipo_cliente", tipoCliente.name()).counter().count();
+    }
+
+    @Test
+    void finalizarCompra_FalhaNaPrecificacao_LiberaReservaQuandoChegar() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            compraService = new CompraService(carrinhoService, clienteService, estoqueExternal, pagamentoExternal,
+                    new MotorPrecificacaoBigDecimal(), compensacaoService, outboxService,
+                    metricas, executor, TransactionOperations.withoutTransaction());
+            Cliente cliente = new Cliente(1L, "Cliente Teste", "", TipoCliente.BRONZE);
+            CarrinhoDeCompras carrinho = new CarrinhoDeCompras(1L, cliente, Collections.emptyList(), null);
+            quandoBuscarParaCheckout(carrinho);
+            ReservaEstoqueDTO reserva = reservaConcedida(List.of(), List.of());
+            doAnswer(invocation -> {
+                Thread.sleep(100);
+                return reserva;
+            }).when(estoqueExternal).reservar(anyList(), anyList());
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> compraService.finalizarCompra(carrinho.getId(), cliente.getId()));
+
+            verify(estoqueExternal, timeout(2_000)).liberarReserva(reserva);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ReservaEstoqueDTO reservaConcedida(List<Long> produtosIds, List<Long> produtosQuantidades) {
+        return reservaConcedida("r-1", produtosIds, produtosQuantidades);
+    }
+
+    private static ReservaEstoqueDTO reservaConcedida(String reservaId, List<Long> produtosIds,
+                                                      List<Long> produtosQuantidades) {
+        return new ReservaEstoqueDTO(reservaId, true, List.of(), produtosIds, produtosQuantidades, null);
+    }
+
+    // Carrinhos não informados aqui são tratados como inexistentes, como faz a consulta em lote
+    private void quandoBuscarParaCheckoutEmLote(CarrinhoDeCompras... carrinhos) {
+        Map<Long, CarrinhoDeCompras> porId = new LinkedHashMap<>();
+        for (CarrinhoDeCompras carrinho : carrinhos) {
+            porId.put(carrinho.getId(), carrinho);
+            Cliente cliente = carrinho.getCliente();
+            when(clienteService.buscarTipo(cliente.getId())).thenReturn(cliente.getTipo());
+        }
+        when(carrinhoService.buscarParaCheckoutEmLote(anyMap(), any())).thenAnswer(invocation -> {
+            Map<Long, Long> clientePorCarrinho = invocation.getArgument(0);
+            BiConsumer<Long, RuntimeException> aoFalhar = invocation.getArgument(1);
+            Map<Long, CartSnapshot> snapshots = new LinkedHashMap<>();
+            clientePorCarrinho.forEach((carrinhoId, clienteId) -> {
+                CarrinhoDeCompras carrinho = porId.get(carrinhoId);
+                if (carrinho == null || !carrinho.getCliente().getId().equals(clienteId)) {
+                    aoFalhar.accept(carrinhoId, new IllegalArgumentException("Carrinho não encontrado."));
+                } else {
+                    snapshots.put(carrinhoId, CartSnapshot.de(carrinho));
+                }
+            });
+            return snapshots;
+        });
+    }
 }
@@ -1,10 +1,21 @@
 package ecommerce;
 
+import ecommerce.controller.CarrinhoController;
+import ecommerce.controller.CompraAssincronaController;
 import ecommerce.controller.CompraController;
+import ecommerce.dto.CarrinhoDTO;
 import ecommerce.dto.CompraDTO;
+import ecommerce.dto.PedidoCheckoutDTO;
+import ecommerce.dto.TotaisCarrinhoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
 import ecommerce.entity.Cliente;
 import ecommerce.entity.TipoCliente;
+import ecommerce.external.resiliencia.DependenciaIndisponivelException;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompraAssincronaService;
 import ecommerce.service.CompraService;
+import ecommerce.service.IdempotenciaService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -12,8 +23,15 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
@@ -37,9 +55,9 @@ public class ControllerTest {
         Long carrinhoId = 1L;
         CompraDTO compraDTO = new CompraDTO(true, 12345L, "Compra finalizada com sucesso.");
 
-        when(compraService.finalizarCompra(carrinhoId, clienteId)).thenReturn(compraDTO);
+        when(compraService.finalizarCompra(carrinhoId, clienteId)).thenReturn(new CheckoutOutcome.Sucesso(12345L));
 
-        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(carrinhoId, clienteId);
+        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(carrinhoId, clienteId, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(compraDTO, response.getBody());
@@ -53,9 +71,9 @@ public class ControllerTest {
         Long carrinhoId = 1L;
 
         when(compraService.finalizarCompra(carrinhoId, clienteId))
-                .thenThrow(new IllegalStateException("Itens fora de estoque."));
+                .thenReturn(new CheckoutOutcome.SemEstoque(List.of(3L)));
 
-        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(carrinhoId, clienteId);
+        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(carrinhoId, clienteId, null);
 
         assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
         assertEquals("Itens fora de estoque.", Objects.requireNonNull(response.getBody()).mensagem() );
@@ -69,9 +87,9 @@ public class ControllerTest {
         Long carrinhoId = 1L;
 
         when(compraService.finalizarCompra(carrinhoId, clienteId))
-                .thenThrow(new IllegalStateException("Pagamento não autorizado."));
+                .thenReturn(new CheckoutOutcome.PagamentoRecusado());
 
-        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(carrinhoId, clienteId);
+        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(carrinhoId, clienteId, null);
 
         assertEquals(HttpStatus.CONFLICT , response.getStatusCode());
         assertEquals("Pagamento não autorizado.", Objects.requireNonNull(response.getBody()).mensagem());
@@ -79,14 +97,203 @@ public class ControllerTest {
         verify(compraService, times(1)).finalizarCompra(carrinhoId, clienteId);
     }
 
+    @Test
+    void finalizarCompraFalhaNaBaixa() {
+        when(compraService.finalizarCompra(1L, 1L)).thenReturn(new CheckoutOutcome.FalhaBaixa(12345L));
+
+        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(1L, 1L, null);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals(new CompraDTO(false, null, "Erro ao dar baixa no estoque."), response.getBody());
+    }
+
+    @Test
+    void finalizarCompraErroDeEstadoLancado() {
+        when(compraService.finalizarCompra(1L, 1L)).thenThrow(new IllegalStateException("Carrinho em uso."));
+
+        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(1L, 1L, null);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("Carrinho em uso.", Objects.requireNonNull(response.getBody()).mensagem());
+    }
+
+    @Test
+    void finalizarCompraServicoExternoIndisponivel() {
+        Long clienteId = 1L;
+        Long carrinhoId = 1L;
+
+        when(compraService.finalizarCompra(carrinhoId, clienteId))
+                .thenThrow(new DependenciaIndisponivelException("pagamento", "circuito aberto", null));
+
+        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(carrinhoId, clienteId, null);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("Serviço de pagamento indisponível: circuito aberto.",
+                Objects.requireNonNull(response.getBody()).mensagem());
+    }
+
     @Test
     void finalizarCompraParametrosInvalidos() {
 
-        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(null, null);
+        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(null, null, null);
 
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
         assertEquals("Parâmetros inválidos.", Objects.requireNonNull(response.getBody()).mensagem());
 
         verify(compraService, never()).finalizarCompra(anyLong(), anyLong());
     }
+
+    @Test
+    void finalizarCompraEmLoteSucesso() {
+        List<PedidoCheckoutDTO> pedidos = List.of(new PedidoCheckoutDTO(1L, 1L), new PedidoCheckoutDTO(2L, 2L));
+        List<CompraDTO> compras = List.of(
+                new CompraDTO(true, 12345L, "Compra finalizada com sucesso."),
+                new CompraDTO(false, null, "Itens fora de estoque."));
+
+        when(compraService.finalizarCompraEmLote(pedidos)).thenReturn(compras);
+
+        ResponseEntity<List<CompraDTO>> response = compraController.finalizarCompraEmLote(pedidos);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(compras, response.getBody());
+    }
+
+    @Test
+    void finalizarCompraEmLoteVazio() {
+
+        ResponseEntity<List<CompraDTO>> response = compraController.finalizarCompraEmLote(Collections.emptyList());
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+
+        verify(compraService, never()).finalizarCompraEmLote(anyList());
+    }
+
+    @Test
+    void finalizarCompraMesmaChaveIdempotencia_ExecutaUmaVez() {
+        CompraController controller = new CompraController(compraService,
+                new IdempotenciaService(null, 100, Duration.ofMinutes(1), false));
+        when(compraService.finalizarCompra(1L, 1L)).thenReturn(new CheckoutOutcome.Sucesso(12345L));
+
+        ResponseEntity<CompraDTO> primeira = controller.finalizarCompra(1L, 1L, "chave-1");
+        ResponseEntity<CompraDTO> repetida = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        assertEquals(HttpStatus.OK, repetida.getStatusCode());
+        assertEquals(primeira.getBody(), repetida.getBody());
+        verify(compraService, times(1)).finalizarCompra(1L, 1L);
+    }
+
+    @Test
+    void finalizarCompraMesmaChaveIdempotencia_RepeteErroDeNegocio() {
+        CompraController controller = new CompraController(compraService,
+                new IdempotenciaService(null, 100, Duration.ofMinutes(1), false));
+        when(compraService.finalizarCompra(1L, 1L)).thenReturn(new CheckoutOutcome.PagamentoRecusado());
+
+        controller.finalizarCompra(1L, 1L, "chave-1");
+        ResponseEntity<CompraDTO> repetida = controller.finalizarCompra(1L, 1L, "chave-1");
+
+        assertEquals(HttpStatus.CONFLICT, repetida.getStatusCode());
+        assertEquals("Pagamento não autorizado.", Objects.requireNonNull(repetida.getBody()).mensagem());
+        verify(compraService, times(1)).finalizarCompra(1L, 1L);
+    }
+
+    @Test
+    void finalizarCompraChaveIdempotenciaDeOutraCompra() {
+        CompraController controller = new CompraController(compraService,
+                new IdempotenciaService(null, 100, Duration.ofMinutes(1), false));
+        when(compraService.finalizarCompra(1L, 1L)).thenReturn(new CheckoutOutcome.Sucesso(12345L));
+
+        controller.finalizarCompra(1L, 1L, "chave-1");
+        ResponseEntity<CompraDTO> response = controller.finalizarCompra(2L, 1L, "chave-1");
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Chave de idempotência já usada em outra compra.",
+                Objects.requireNonNull(response.getBody()).mensagem());
+        verify(compraService, never()).finalizarCompra(2L, 1L);
+    }
+
+    @Test
+    void finalizarCompraAssincrona_RecusaDeNegocio_Conflito() {
+        CompraAssincronaService assincrono = mock(CompraAssincronaService.class);
+        when(assincrono.finalizarCompra(1L, 1L))
+                .thenReturn(CompletableFuture.completedFuture(new CheckoutOutcome.PagamentoRecusado()));
+
+        ResponseEntity<CompraDTO> response = new CompraAssincronaController(assincrono)
+                .finalizarCompra(1L, 1L, null).join();
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("Pagamento não autorizado.", Objects.requireNonNull(response.getBody()).mensagem());
+    }
+
+    @Test
+    void finalizarCompraAssincrona_FalhasNoFuturo_MesmasRespostasDoSincrono() {
+        CompraAssincronaService assincrono = mock(CompraAssincronaService.class);
+        CompraAssincronaController controller = new CompraAssincronaController(assincrono);
+        // Falhas encadeadas chegam embrulhadas em CompletionException
+        when(assincrono.finalizarCompra(1L, 1L)).thenReturn(CompletableFuture.completedFuture(null)
+                .thenApply(nada -> { throw new DependenciaIndisponivelException("pagamento", "circuito aberto", null); }));
+        when(assincrono.finalizarCompra(2L, 1L))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Erro no estoque")));
+        when(assincrono.finalizarCompra(3L, 1L))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException()));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, controller.finalizarCompra(1L, 1L, null).join().getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, controller.finalizarCompra(2L, 1L, null).join().getStatusCode());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, controller.finalizarCompra(3L, 1L, null).join().getStatusCode());
+    }
+
+    @Test
+    void finalizarCompraAssincrona_ComChaveIdempotencia_BadRequest() {
+        CompraAssincronaService assincrono = mock(CompraAssincronaService.class);
+
+        ResponseEntity<CompraDTO> response = new CompraAssincronaController(assincrono)
+                .finalizarCompra(1L, 1L, "chave-1").join();
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(assincrono);
+    }
+
+    @Test
+    void finalizarCompra_CarrinhoAlterado_Conflito() {
+        when(compraService.finalizarCompra(1L, 1L)).thenReturn(new CheckoutOutcome.CarrinhoAlterado());
+
+        ResponseEntity<CompraDTO> response = compraController.finalizarCompra(1L, 1L, null);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals("Carrinho alterado durante a finalização.", Objects.requireNonNull(response.getBody()).mensagem());
+    }
+
+    @Test
+    void alterarCarrinho_DevolveOsNovosTotais() {
+        CarrinhoDeComprasService carrinhoService = mock(CarrinhoDeComprasService.class);
+        CarrinhoController controller = new CarrinhoController(carrinhoService);
+        TotaisCarrinhoDTO totais = new TotaisCarrinhoDTO(BigDecimal.valueOf(30), 3, 1);
+        when(carrinhoService.adicionarItem(1L, 2L, 5L, 3)).thenReturn(totais);
+        when(carrinhoService.atualizarQuantidade(1L, 2L, 5L, 3)).thenReturn(totais);
+        when(carrinhoService.removerItem(1L, 2L, 5L)).thenReturn(new TotaisCarrinhoDTO(BigDecimal.ZERO, 0, 0));
+
+        ResponseEntity<CarrinhoDTO> response = controller.adicionarItem(1L, 2L, 5L, 3);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(totais, Objects.requireNonNull(response.getBody()).totais());
+        assertEquals(totais, controller.atualizarQuantidade(1L, 5L, 2L, 3).getBody().totais());
+        assertEquals(0, controller.removerItem(1L, 5L, 2L).getBody().totais().quantidadeItens());
+    }
+
+    @Test
+    void alterarCarrinho_Falhas() {
+        CarrinhoDeComprasService carrinhoService = mock(CarrinhoDeComprasService.class);
+        CarrinhoController controller = new CarrinhoController(carrinhoService);
+        when(carrinhoService.adicionarItem(1L, 2L, 5L, 0))
+                .thenThrow(new IllegalArgumentException("Quantidade deve ser positiva."));
+        when(carrinhoService.removerItem(1L, 2L, 5L))
+                .thenThrow(new ObjectOptimisticLockingFailureException(CarrinhoDeCompras.class, 1L));
+        when(carrinhoService.atualizarQuantidade(1L, 2L, 5L, 1)).thenThrow(new RuntimeException("banco fora do ar"));
+
+        ResponseEntity<CarrinhoDTO> response = controller.adicionarItem(1L, 2L, 5L, 0);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Quantidade deve ser positiva.", Objects.requireNonNull(response.getBody()).mensagem());
+        assertEquals(HttpStatus.CONFLICT, controller.removerItem(1L, 5L, 2L).getStatusCode());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, controller.atualizarQuantidade(1L, 5L, 2L, 1).getStatusCode());
+    }
 }
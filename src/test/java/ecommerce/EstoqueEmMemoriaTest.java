@@ -0,0 +1,298 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.local.EstoqueEmMemoria;
+import ecommerce.external.resiliencia.EstoqueResiliente;
+
+class EstoqueEmMemoriaTest {
+
+    private EstoqueEmMemoria estoque;
+
+    @BeforeEach
+    void setUp() {
+        estoque = new EstoqueEmMemoria(100, 0, Duration.ofMinutes(1));
+        estoque.definirSaldo(1L, 10L);
+        estoque.definirSaldo(2L, 5L);
+        estoque.definirSaldo(3L, 0L);
+    }
+
+    @Test
+    void verificarDisponibilidade_InformaExatamenteOsIdsIndisponiveis() {
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(
+                Arrays.asList(3L, 1L, 2L, 500L), Arrays.asList(1L, 10L, 6L, 1L));
+
+        assertFalse(disponibilidade.disponivel());
+        assertEquals(Arrays.asList(500L, 2L, 3L), disponibilidade.idsProdutosIndisponiveis());
+    }
+
+    @Test
+    void verificarDisponibilidade_SomaIdsRepetidos() {
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(
+                Arrays.asList(2L, 1L, 2L), Arrays.asList(3L, 1L, 3L));
+
+        assertEquals(new DisponibilidadeDTO(false, List.of(2L)), disponibilidade);
+    }
+
+    @Test
+    void verificarDisponibilidade_Disponivel() {
+        DisponibilidadeDTO disponibilidade = estoque.verificarDisponibilidade(
+                Arrays.asList(1L, 2L), Arrays.asList(10L, 5L));
+
+        assertEquals(new DisponibilidadeDTO(true, List.of()), disponibilidade);
+    }
+
+    @Test
+    void darBaixa_RetiraTodosOsItens() {
+        EstoqueBaixaDTO baixa = estoque.darBaixa(Arrays.asList(1L, 2L, 1L), Arrays.asList(3L, 5L, 2L));
+
+        assertTrue(baixa.sucesso());
+        assertEquals(5L, estoque.saldo(1L));
+        assertEquals(0L, estoque.saldo(2L));
+    }
+
+    @Test
+    void darBaixa_ItemSemSaldo_DevolveOsJaRetirados() {
+        EstoqueBaixaDTO baixa = estoque.darBaixa(Arrays.asList(1L, 2L, 3L), Arrays.asList(4L, 2L, 1L));
+
+        assertFalse(baixa.sucesso());
+        assertEquals(10L, estoque.saldo(1L));
+        assertEquals(5L, estoque.saldo(2L));
+        assertEquals(0L, estoque.saldo(3L));
+    }
+
+    @Test
+    void darBaixa_ProdutoForaDaCapacidade_Falha() {
+        EstoqueBaixaDTO baixa = estoque.darBaixa(Arrays.asList(1L, 100L), Arrays.asList(1L, 1L));
+
+        assertFalse(baixa.sucesso());
+        assertEquals(10L, estoque.saldo(1L));
+    }
+
+    @Test
+    void darBaixa_QuantidadeNegativa_LancarExcecao() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            estoque.darBaixa(List.of(1L), List.of(-1L));
+        });
+
+        assertEquals("Quantidade inválida para o produto: 1", exception.getMessage());
+    }
+
+    @Test
+    void darBaixa_ListasDeTamanhosDiferentes_LancarExcecao() {
+        assertThrows(IllegalArgumentException.class, () -> estoque.darBaixa(List.of(1L, 2L), List.of(1L)));
+    }
+
+    @Test
+    void repor_SomaAoSaldo() {
+        estoque.repor(3L, 7L);
+
+        assertEquals(7L, estoque.saldo(3L));
+    }
+
+    @Test
+    void quantidadeInicial_AplicadaATodosOsProdutos() {
+        EstoqueEmMemoria cheio = new EstoqueEmMemoria(10, 50, Duration.ofMinutes(1));
+
+        assertEquals(50L, cheio.saldo(0L));
+        assertEquals(50L, cheio.saldo(9L));
+    }
+
+    @Test
+    void reservar_SeparaOsItensAteAConfirmacao() {
+        ReservaEstoqueDTO reserva = estoque.reservar(Arrays.asList(1L, 2L), Arrays.asList(4L, 5L));
+
+        assertTrue(reserva.reservado());
+        assertNotNull(reserva.reservaId());
+        assertNotNull(reserva.expiraEm());
+        assertEquals(6L, estoque.saldo(1L));
+        assertEquals(0L, estoque.saldo(2L));
+        assertFalse(estoque.verificarDisponibilidade(List.of(2L), List.of(1L)).disponivel());
+
+        assertTrue(estoque.confirmarReserva(reserva).sucesso());
+        assertEquals(6L, estoque.saldo(1L));
+        assertEquals(0, estoque.reservasAtivas());
+        // Uma reserva só pode ser confirmada uma vez
+        assertFalse(estoque.confirmarReserva(reserva).sucesso());
+    }
+
+    @Test
+    void reservar_SemSaldo_InformaIdsENaoSepara() {
+        ReservaEstoqueDTO reserva = estoque.reservar(Arrays.asList(1L, 3L), Arrays.asList(2L, 1L));
+
+        assertFalse(reserva.reservado());
+        assertNull(reserva.reservaId());
+        assertEquals(List.of(3L), reserva.idsProdutosIndisponiveis());
+        assertEquals(10L, estoque.saldo(1L));
+        assertEquals(0, estoque.reservasAtivas());
+    }
+
+    @Test
+    void liberarReserva_DevolveOsItens() {
+        ReservaEstoqueDTO reserva = estoque.reservar(List.of(1L), List.of(7L));
+
+        estoque.liberarReserva(reserva);
+        estoque.liberarReserva(reserva);
+
+        assertEquals(10L, estoque.saldo(1L));
+        assertFalse(estoque.confirmarReserva(reserva).sucesso());
+    }
+
+    @Test
+    void liberarExpiradas_DevolveReservasVencidas() throws InterruptedException {
+        EstoqueEmMemoria curto = new EstoqueEmMemoria(10, 5, Duration.ofMillis(20));
+        ReservaEstoqueDTO reserva = curto.reservar(List.of(1L), List.of(5L));
+        assertEquals(0L, curto.saldo(1L));
+
+        Thread.sleep(50);
+        curto.liberarExpiradas();
+
+        assertEquals(5L, curto.saldo(1L));
+        assertEquals(0, curto.reservasAtivas());
+        assertFalse(curto.confirmarReserva(reserva).sucesso());
+    }
+
+    @Test
+    void confirmarReserva_ExpiradaAntesDaVarredura_FalhaEDevolve() throws InterruptedException {
+        EstoqueEmMemoria curto = new EstoqueEmMemoria(10, 5, Duration.ofMillis(20));
+        ReservaEstoqueDTO reserva = curto.reservar(List.of(1L), List.of(5L));
+
+        Thread.sleep(50);
+
+        assertFalse(curto.confirmarReserva(reserva).sucesso());
+        assertEquals(5L, curto.saldo(1L));
+    }
+
+    @Test
+    void reservar_ConcorrenteComLiberacoes_SaldoVoltaAoInicial() throws Exception {
+        EstoqueEmMemoria concorrido = new EstoqueEmMemoria(2, 100, Duration.ofMinutes(1));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tarefas.add(executor.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        ReservaEstoqueDTO reserva = concorrido.reservar(List.of(0L, 1L), List.of(3L, 2L));
+                        if (reserva.reservado()) {
+                            assertTrue(concorrido.saldo(0L) >= 0);
+                            concorrido.liberarReserva(reserva);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(100L, concorrido.saldo(0L));
+        assertEquals(100L, concorrido.saldo(1L));
+        assertEquals(0, concorrido.reservasAtivas());
+    }
+
+    @Test
+    void darBaixa_MilharesDeBaixasConcorrentes_SaldoNuncaNegativo() throws Exception {
+        int produtos = 4;
+        long saldoInicial = 2_000L;
+        int threads = 16;
+        int baixasPorThread = 2_000;
+        EstoqueEmMemoria concorrido = new EstoqueEmMemoria(produtos, saldoInicial, Duration.ofMinutes(1));
+        AtomicLongArray vendidos = new AtomicLongArray(produtos);
+        AtomicBoolean negativoObservado = new AtomicBoolean();
+        AtomicBoolean terminou = new AtomicBoolean();
+        CountDownLatch largada = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            Future<?> observador = executor.submit(() -> {
+                while (!terminou.get()) {
+                    for (long id = 0; id < produtos; id++) {
+                        if (concorrido.saldo(id) < 0) {
+                            negativoObservado.set(true);
+                        }
+                    }
+                }
+            });
+            List<Future<?>> compradores = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                compradores.add(executor.submit(() -> {
+                    largada.await();
+                    ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                    for (int i = 0; i < baixasPorThread; i++) {
+                        // Dois produtos sobrepostos por pedido, às vezes o mesmo id duas vezes
+                        List<Long> ids = List.of((long) aleatorio.nextInt(produtos), (long) aleatorio.nextInt(produtos));
+                        List<Long> quantidades = List.of(1L + aleatorio.nextInt(3), 1L + aleatorio.nextInt(3));
+                        if (concorrido.darBaixa(ids, quantidades).sucesso()) {
+                            for (int k = 0; k < ids.size(); k++) {
+                                vendidos.addAndGet(ids.get(k).intValue(), quantidades.get(k));
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            largada.countDown();
+            for (Future<?> comprador : compradores) {
+                comprador.get(60, TimeUnit.SECONDS);
+            }
+            terminou.set(true);
+            observador.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertFalse(negativoObservado.get());
+        long totalVendido = 0;
+        for (int id = 0; id < produtos; id++) {
+            long saldo = concorrido.saldo(id);
+            assertTrue(saldo >= 0);
+            assertEquals(saldoInicial - vendidos.get(id), saldo);
+            totalVendido += vendidos.get(id);
+        }
+        // A demanda total é maior que o estoque: parte das baixas precisa ter sido recusada
+        assertTrue(totalVendido > 0 && totalVendido <= produtos * saldoInicial);
+    }
+
+    @Nested
+    @SpringBootTest(properties = "ecommerce.estoque.modo=memoria")
+    class ModoMemoria {
+
+        // O bean principal é o decorador de resiliência; a lista traz também a implementação
+        @Autowired
+        private List<IEstoqueExternal> estoques;
+
+        @Test
+        void estoqueExternal_UsaEstoqueEmMemoria() {
+            assertEquals(2, estoques.size());
+            assertTrue(estoques.stream().anyMatch(EstoqueEmMemoria.class::isInstance));
+            assertTrue(estoques.stream().anyMatch(EstoqueResiliente.class::isInstance));
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.util.AopTestUtils;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.PedidoCheckoutDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.CompensacaoPendenteRepository;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompensacaoService;
+import ecommerce.service.CompraAssincronaService;
+import ecommerce.service.CompraService;
+import ecommerce.service.OutboxService;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Conta as instruções SQL emitidas por uma finalização de compra contra o H2, para que
+ * o N+1 em itens/produtos não volte sem ser percebido.
+ */
+// Relay da outbox e varredura de compensações parados para que suas consultas não entrem nas
+// estatísticas do checkout; o teste de compensação dispara a varredura à mão
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "ecommerce.outbox.intervalo-ms=3600000",
+        "ecommerce.compensacao.intervalo-ms=3600000"
+})
+class FinalizarCompraConsultasTest {
+
+    private static final int QUANTIDADE_ITENS = 5;
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private CompraAssincronaService compraAssincronaService;
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private ClienteService clienteService;
+
+    @Autowired
+    private CompensacaoService compensacaoService;
+
+    @Autowired
+    private CompensacaoPendenteRepository compensacaoRepository;
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasRepository carrinhoRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean(answer = Answers.CALLS_REAL_METHODS)
+    private IEstoqueExternal estoqueExternal;
+
+    @MockBean(answer = Answers.CALLS_REAL_METHODS)
+    private IPagamentoExternal pagamentoExternal;
+
+    @SpyBean
+    private OutboxService outboxService;
+
+    private Cliente cliente;
+    private CarrinhoDeCompras carrinho;
+    private List<Long> produtosIds;
+
+    @BeforeEach
+    void setUp() {
+        cliente = clienteRepository.save(new Cliente(null, "Cliente Teste", "Endereço", TipoCliente.BRONZE));
+
+        List<ItemCompra> itens = new ArrayList<>();
+        produtosIds = new ArrayList<>();
+        for (int i = 0; i < QUANTIDADE_ITENS; i++) {
+            Produto produto = produtoRepository.save(
+                    new Produto(null, "Produto " + i, "Descrição " + i, BigDecimal.valueOf(10), 1, TipoProduto.LIVRO));
+            itens.add(new ItemCompra(null, produto, 1L));
+            produtosIds.add(produto.getId());
+        }
+        carrinho = carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now()));
+
+        when(estoqueExternal.verificarDisponibilidade(anyList(), anyList()))
+                .thenReturn(new DisponibilidadeDTO(true, List.of()));
+        when(pagamentoExternal.autorizarPagamento(anyLong(), anyDouble()))
+                .thenReturn(new PagamentoDTO(true, 12345L));
+        when(estoqueExternal.darBaixa(anyList(), anyList()))
+                .thenReturn(new EstoqueBaixaDTO(true));
+    }
+
+    @Test
+    void finalizarCompra_CatalogoFrio_ConsultaItensEProdutosSemEntidadesGerenciadas() {
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+
+        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId()).compra();
+
+        assertTrue(compra.sucesso());
+        // Tipo do cliente, projeção dos itens e preço e peso dos produtos, todos fora de cache,
+        // mais a leitura da versão do carrinho antes do pagamento, o avanço dela depois e o
+        // insert do evento na outbox
+        assertEquals(6, estatisticas.getPrepareStatementCount());
+        assertEquals(0, estatisticas.getEntityLoadCount());
+    }
+
+    @Test
+    void finalizarCompraAssincrona_MesmasConsultasComAOutboxEmTransacao() throws Exception {
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+
+        CompraDTO compra = compraAssincronaService.finalizarCompra(carrinho.getId(), cliente.getId())
+                .get(5, TimeUnit.SECONDS).compra();
+
+        assertTrue(compra.sucesso());
+        // As seis do checkout síncrono e uma segunda leitura da versão depois do pagamento, porque
+        // o avanço só acontece depois da baixa, na transação da outbox
+        assertEquals(7, estatisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    void finalizarCompra_CatalogoQuente_UmaConsulta() {
+        compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+
+        CompraDTO compra = compraService.finalizarCompra(carrinho.getId(), cliente.getId()).compra();
+
+        assertTrue(compra.sucesso());
+        // Tipo do cliente, preço e peso vêm dos caches; só a projeção dos itens, a leitura e o
+        // avanço da versão do carrinho e o insert do evento na outbox vão ao banco
+        assertEquals(4, estatisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    void finalizarCompra_ProdutoSalvo_InvalidaCatalogo() {
+        compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        Produto produto = produtoRepository.findById(produtosIds.get(0)).orElseThrow();
+        produto.setPreco(BigDecimal.valueOf(60));
+        produtoRepository.save(produto);
+
+        compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        // 4 itens a R$ 10 + 1 item a R$ 60 = R$ 100; peso 5 kg, sem frete
+        verify(pagamentoExternal).autorizarPagamento(cliente.getId(), 100.0);
+    }
+
+    @Test
+    void finalizarCompra_ClienteAtualizado_InvalidaTipo() {
+        Produto produto = produtoRepository.findById(produtosIds.get(0)).orElseThrow();
+        produto.setPeso(20);
+        produtoRepository.save(produto);
+
+        compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        cliente.setTipo(TipoCliente.OURO);
+        clienteService.criarCliente(cliente);
+
+        compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        // BRONZE: 5 itens de R$ 10 + frete de 24 kg * 4 = R$ 146; depois OURO, sem frete: R$ 50
+        verify(pagamentoExternal).autorizarPagamento(cliente.getId(), 146.0);
+        verify(pagamentoExternal).autorizarPagamento(cliente.getId(), 50.0);
+    }
+
+    @Test
+    void finalizarCompra_ClienteSemTipo_PagaOFreteCheio() {
+        Cliente semTipo = clienteRepository.save(new Cliente(null, "Cliente Sem Tipo", "Endereço", null));
+        Produto produto = produtoRepository.save(
+                new Produto(null, "Produto Pesado", "Descrição", BigDecimal.valueOf(10), 10, TipoProduto.LIVRO));
+        CarrinhoDeCompras carrinhoSemTipo = carrinhoRepository.save(new CarrinhoDeCompras(null, semTipo,
+                new ArrayList<>(List.of(new ItemCompra(null, produto, 1L))), LocalDate.now()));
+
+        CompraDTO compra = compraService.finalizarCompra(carrinhoSemTipo.getId(), semTipo.getId()).compra();
+
+        assertTrue(compra.sucesso());
+        // R$ 10 + frete de 10 kg * 2, sem o desconto de PRATA nem a isenção de OURO
+        verify(pagamentoExternal).autorizarPagamento(semTipo.getId(), 30.0);
+    }
+
+    @Test
+    void finalizarCompra_CarrinhoDeOutroCliente() {
+        Cliente outroCliente = clienteRepository.save(new Cliente(null, "Outro Cliente", "Endereço", TipoCliente.OURO));
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            compraService.finalizarCompra(carrinho.getId(), outroCliente.getId());
+        });
+
+        assertEquals("Carrinho não encontrado.", exception.getMessage());
+        verify(pagamentoExternal, never()).autorizarPagamento(anyLong(), anyDouble());
+    }
+
+    @Test
+    void finalizarCompraEmLote_UmaConsultaDeItensParaTodosOsCarrinhos() {
+        Cliente outroCliente = clienteRepository.save(new Cliente(null, "Outro Cliente", "Endereço", TipoCliente.OURO));
+        Produto produto = produtoRepository.findById(produtosIds.get(0)).orElseThrow();
+        CarrinhoDeCompras outroCarrinho = carrinhoRepository.save(new CarrinhoDeCompras(null, outroCliente,
+                new ArrayList<>(List.of(new ItemCompra(null, produto, 2L))), LocalDate.now()));
+        compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+        compraService.finalizarCompra(outroCarrinho.getId(), outroCliente.getId());
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+        clearInvocations(estoqueExternal);
+
+        List<CompraDTO> compras = compraService.finalizarCompraEmLote(List.of(
+                new PedidoCheckoutDTO(carrinho.getId(), cliente.getId()),
+                new PedidoCheckoutDTO(outroCarrinho.getId(), outroCliente.getId()),
+                new PedidoCheckoutDTO(carrinho.getId() + 1000, cliente.getId())));
+
+        assertTrue(compras.get(0).sucesso());
+        assertTrue(compras.get(1).sucesso());
+        assertEquals("Carrinho não encontrado.", compras.get(2).mensagem());
+        // Com os caches quentes, os três carrinhos saem de uma única consulta de itens; os
+        // outros statements são a leitura e o avanço da versão e o evento na outbox de cada compra
+        assertEquals(7, estatisticas.getPrepareStatementCount());
+        verify(estoqueExternal, times(1)).reservarEmLote(anyList());
+    }
+
+    @Test
+    void finalizarCompra_FalhaNaBaixa_CancelaPagamentoForaDaRequisicao() {
+        when(estoqueExternal.darBaixa(anyList(), anyList())).thenReturn(new EstoqueBaixaDTO(false));
+        List<String> threadsDoCancelamento = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> threadsDoCancelamento.add(Thread.currentThread().getName()))
+                .when(pagamentoExternal).cancelarPagamento(anyLong(), anyLong());
+
+        CheckoutOutcome resultado = compraService.finalizarCompra(carrinho.getId(), cliente.getId());
+
+        assertEquals(new CheckoutOutcome.FalhaBaixa(12345L), resultado);
+        compensacaoService.processarPendentes();
+        verify(pagamentoExternal, timeout(5_000)).cancelarPagamento(cliente.getId(), 12345L);
+        assertTrue(threadsDoCancelamento.get(0).startsWith("compensacao-"));
+    }
+
+    @Test
+    void finalizarCompra_FalhaAoGravarAOutbox_DesfazACompraECancelaOPagamento() throws InterruptedException {
+        // Stub direto no espião, sem passar pelo proxy transacional do bean
+        OutboxService espiao = AopTestUtils.getUltimateTargetObject(outboxService);
+        doThrow(new IllegalStateException("Erro ao serializar evento de compra."))
+                .when(espiao).registrarCompraFinalizada(anyLong(), anyLong(), anyLong(), any());
+        compensacaoRepository.deleteAll();
+        long versao = carrinhoRepository.findVersao(carrinho.getId()).orElseThrow();
+
+        assertThrows(IllegalStateException.class,
+                () -> compraService.finalizarCompra(carrinho.getId(), cliente.getId()));
+
+        // O avanço da versão foi desfeito com a compra, e o cancelamento entra na fila depois do rollback
+        assertEquals(versao, carrinhoRepository.findVersao(carrinho.getId()).orElseThrow());
+        for (int i = 0; i < 500 && compensacaoRepository.count() == 0; i++) {
+            Thread.sleep(10);
+        }
+        compensacaoService.processarPendentes();
+        verify(pagamentoExternal, timeout(5_000)).cancelarPagamento(cliente.getId(), 12345L);
+    }
+
+    @Test
+    void finalizarCompraAssincrona_FalhaAoGravarAOutbox_DesfazOAvancoECancelaOPagamento() throws Exception {
+        OutboxService espiao = AopTestUtils.getUltimateTargetObject(outboxService);
+        doThrow(new IllegalStateException("Erro ao serializar evento de compra."))
+                .when(espiao).registrarCompraFinalizada(anyLong(), anyLong(), anyLong(), any());
+        compensacaoRepository.deleteAll();
+        long versao = carrinhoRepository.findVersao(carrinho.getId()).orElseThrow();
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> compraAssincronaService.finalizarCompra(carrinho.getId(), cliente.getId()).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals(versao, carrinhoRepository.findVersao(carrinho.getId()).orElseThrow());
+        for (int i = 0; i < 500 && compensacaoRepository.count() == 0; i++) {
+            Thread.sleep(10);
+        }
+        compensacaoService.processarPendentes();
+        verify(pagamentoExternal, timeout(5_000)).cancelarPagamento(cliente.getId(), 12345L);
+    }
+}
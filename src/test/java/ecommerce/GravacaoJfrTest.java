@@ -0,0 +1,168 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.benchmark.CheckoutFixture;
+import ecommerce.dto.DespejoJfrDTO;
+import ecommerce.dto.SituacaoGravacaoJfrDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompraService;
+import ecommerce.service.EventosCheckout;
+import ecommerce.service.GravacaoJfr;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class GravacaoJfrTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void finalizarCompra_GravaUmEventoPorEtapaComCarrinhoItensEResultado() throws IOException {
+        CompraService compraService = compraService(CheckoutFixture.estoqueDisponivel());
+
+        List<RecordedEvent> eventos = gravar(() -> compraService.finalizarCompra(7L, 1L));
+
+        Map<String, RecordedEvent> porNome = eventos.stream()
+                .collect(Collectors.toMap(e -> e.getEventType().getName(), Function.identity()));
+        assertEquals(List.of("AutorizarPagamento", "BaixarEstoque", "CarregarCarrinho", "Precificar", "ReservarEstoque"),
+                porNome.keySet().stream().map(nome -> nome.substring("ecommerce.checkout.".length())).sorted().toList());
+        for (RecordedEvent evento : eventos) {
+            assertEquals(7L, evento.getLong("carrinhoId"));
+            assertEquals(3, evento.getInt("itens"));
+            assertEquals(EventosCheckout.SUCESSO, evento.getString("resultado"));
+        }
+    }
+
+    @Test
+    void finalizarCompra_SemEstoque_ParaNaReservaComOResultadoDaEtapa() throws IOException {
+        CompraService compraService = compraService(CheckoutFixture.estoqueIndisponivel());
+
+        List<RecordedEvent> eventos = gravar(() -> assertInstanceOf(CheckoutOutcome.SemEstoque.class,
+                compraService.finalizarCompra(7L, 1L)));
+
+        RecordedEvent reserva = eventos.stream()
+                .filter(e -> e.getEventType().getName().equals("ecommerce.checkout.ReservarEstoque"))
+                .findFirst().orElseThrow();
+        assertEquals(EventosCheckout.SEM_ESTOQUE, reserva.getString("resultado"));
+        assertTrue(eventos.stream().noneMatch(e -> e.getEventType().getName().equals("ecommerce.checkout.AutorizarPagamento")));
+    }
+
+    @Test
+    void despejar_GravaArquivoSemPararAGravacao() throws IOException {
+        try (GravacaoJfr gravacao = new GravacaoJfr("default", Duration.ZERO, Duration.ofMinutes(5),
+                64 * 1024 * 1024, diretorio)) {
+            gravacao.iniciar();
+            compraService(CheckoutFixture.estoqueDisponivel()).finalizarCompra(7L, 1L);
+
+            DespejoJfrDTO despejo = gravacao.despejar();
+
+            Path arquivo = Path.of(despejo.arquivo());
+            assertEquals(diretorio.toAbsolutePath(), arquivo.getParent());
+            assertEquals(Files.size(arquivo), despejo.bytes());
+            assertTrue(RecordingFile.readAllEvents(arquivo).stream()
+                    .anyMatch(e -> e.getEventType().getName().equals("ecommerce.checkout.Precificar")));
+            assertEquals("RUNNING", gravacao.situacao().estado());
+        }
+    }
+
+    @Test
+    void construtor_PerfilInexistente_Falha() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new GravacaoJfr("inexistente", Duration.ZERO, Duration.ofMinutes(5), 0, diretorio));
+    }
+
+    private List<RecordedEvent> gravar(Runnable acao) throws IOException {
+        Path arquivo = diretorio.resolve("teste.jfr");
+        try (Recording gravacao = new Recording()) {
+            for (String evento : List.of("CarregarCarrinho", "ReservarEstoque", "Precificar", "AutorizarPagamento",
+                    "BaixarEstoque")) {
+                gravacao.enable("ecommerce.checkout." + evento).withThreshold(Duration.ZERO);
+            }
+            gravacao.start();
+            acao.run();
+            gravacao.stop();
+            gravacao.dump(arquivo);
+        }
+        // Outras gravações ativas na JVM somam eventos do JDK; só os do checkout interessam
+        return RecordingFile.readAllEvents(arquivo).stream()
+                .filter(e -> e.getEventType().getName().startsWith("ecommerce.checkout."))
+                .toList();
+    }
+
+    private static CompraService compraService(IEstoqueExternal estoque) {
+        Cliente cliente = CheckoutFixture.cliente(1L, TipoCliente.BRONZE);
+        CarrinhoDeCompras carrinho = CheckoutFixture.carrinho(7L, cliente, 3, CheckoutFixture.FaixaFrete.ATE_5KG);
+        IPagamentoExternal pagamento = CheckoutFixture.pagamentoAutorizado();
+        return new CompraService(CheckoutFixture.carrinhoService(carrinho), CheckoutFixture.clienteService(cliente),
+                estoque, pagamento, CheckoutFixture.motorPrecificacao("bigdecimal"),
+                CheckoutFixture.compensacaoService(pagamento), CheckoutFixture.outboxService(),
+                CheckoutFixture.metricas(), Runnable::run, TransactionOperations.withoutTransaction());
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+    class EndpointPadrao {
+
+        @Autowired
+        private TestRestTemplate restTemplate;
+
+        @Test
+        void actuatorJfr_ForaDoPerfilGestao_NaoFicaExposto() {
+            ResponseEntity<String> resposta = restTemplate.postForEntity("/actuator/jfr", null, String.class);
+
+            assertEquals(HttpStatus.NOT_FOUND, resposta.getStatusCode());
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "ecommerce.jfr.diretorio=${java.io.tmpdir}/ecommerce-jfr-teste",
+            "management.endpoints.web.exposure.include=jfr"
+    })
+    class Endpoint {
+
+        @Autowired
+        private TestRestTemplate restTemplate;
+
+        @Test
+        void actuatorJfr_MostraASituacaoEDespejaEmArquivo() throws IOException {
+            SituacaoGravacaoJfrDTO situacao = restTemplate.getForObject("/actuator/jfr", SituacaoGravacaoJfrDTO.class);
+            assertEquals("ecommerce-continua", situacao.nome());
+            assertEquals("RUNNING", situacao.estado());
+
+            ResponseEntity<DespejoJfrDTO> resposta = restTemplate.postForEntity("/actuator/jfr", null,
+                    DespejoJfrDTO.class);
+
+            assertEquals(HttpStatus.OK, resposta.getStatusCode());
+            Path arquivo = Path.of(resposta.getBody().arquivo());
+            assertTrue(Files.size(arquivo) > 0);
+            Files.delete(arquivo);
+        }
+    }
+}
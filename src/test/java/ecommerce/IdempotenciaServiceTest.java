@@ -0,0 +1,166 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.ChaveIdempotencia;
+import ecommerce.repository.ChaveIdempotenciaRepository;
+import ecommerce.service.IdempotenciaService;
+
+class IdempotenciaServiceTest {
+
+    private static final CompraDTO COMPRA = new CompraDTO(true, 12345L, "Compra finalizada com sucesso.");
+
+    private final IdempotenciaService idempotenciaService =
+            new IdempotenciaService(null, 100, Duration.ofMinutes(1), false);
+
+    @Test
+    void executar_PedidosSimultaneos_EsperamAMesmaExecucao() throws Exception {
+        AtomicInteger execucoes = new AtomicInteger();
+        CountDownLatch emAndamento = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<CompraDTO> primeira = executor.submit(() -> idempotenciaService.executar("chave", 1L, 1L, () -> {
+                execucoes.incrementAndGet();
+                emAndamento.countDown();
+                aguardar(liberar);
+                return COMPRA;
+            }));
+            assertTrue(emAndamento.await(5, TimeUnit.SECONDS));
+            Future<CompraDTO> segunda = executor.submit(() -> idempotenciaService.executar("chave", 1L, 1L, () -> {
+                execucoes.incrementAndGet();
+                return new CompraDTO(true, 999L, "Executou de novo.");
+            }));
+            Future<CompraDTO> terceira = executor.submit(() -> idempotenciaService.executar("chave", 1L, 1L, () -> {
+                execucoes.incrementAndGet();
+                return new CompraDTO(true, 999L, "Executou de novo.");
+            }));
+
+            // As repetidas ficam presas na execução em andamento
+            Thread.sleep(100);
+            assertFalse(segunda.isDone());
+            liberar.countDown();
+
+            assertEquals(COMPRA, primeira.get(5, TimeUnit.SECONDS));
+            assertEquals(COMPRA, segunda.get(5, TimeUnit.SECONDS));
+            assertEquals(COMPRA, terceira.get(5, TimeUnit.SECONDS));
+            assertEquals(1, execucoes.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void executar_ErroInesperado_LiberaAChave() {
+        AtomicInteger execucoes = new AtomicInteger();
+
+        assertThrows(RuntimeException.class, () -> idempotenciaService.executar("chave", 1L, 1L, () -> {
+            execucoes.incrementAndGet();
+            throw new RuntimeException("Banco indisponível");
+        }));
+        CompraDTO compra = idempotenciaService.executar("chave", 1L, 1L, () -> {
+            execucoes.incrementAndGet();
+            return COMPRA;
+        });
+
+        assertEquals(COMPRA, compra);
+        assertEquals(2, execucoes.get());
+    }
+
+    @Test
+    void executar_ChaveExpirada_ExecutaDeNovo() throws InterruptedException {
+        IdempotenciaService comTtlCurto = new IdempotenciaService(null, 100, Duration.ofMillis(50), false);
+        AtomicInteger execucoes = new AtomicInteger();
+
+        comTtlCurto.executar("chave", 1L, 1L, () -> {
+            execucoes.incrementAndGet();
+            return COMPRA;
+        });
+        Thread.sleep(100);
+        comTtlCurto.executar("chave", 1L, 1L, () -> {
+            execucoes.incrementAndGet();
+            return COMPRA;
+        });
+
+        assertEquals(2, execucoes.get());
+    }
+
+    @Test
+    void executar_ChaveInvalida() {
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> idempotenciaService.executar(" ", 1L, 1L, () -> COMPRA));
+
+        assertEquals("Chave de idempotência inválida.", exception.getMessage());
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotenciaService.executar("x".repeat(256), 1L, 1L, () -> COMPRA));
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = "ecommerce.idempotencia.persistente=true")
+    class ModoPersistente {
+
+        @Autowired
+        private ChaveIdempotenciaRepository repository;
+
+        @BeforeEach
+        void setUp() {
+            repository.deleteAll();
+        }
+
+        @Test
+        void executar_ResultadoSobreviveAoReinicio() {
+            new IdempotenciaService(repository, 100, Duration.ofMinutes(1), true)
+                    .executar("chave", 1L, 1L, () -> COMPRA);
+            assertThrows(IllegalStateException.class, () -> new IdempotenciaService(repository, 100,
+                    Duration.ofMinutes(1), true).executar("erro", 1L, 1L, () -> {
+                        throw new IllegalStateException("Itens fora de estoque.");
+                    }));
+
+            // Nova instância, com o cache em memória vazio
+            IdempotenciaService reiniciado = new IdempotenciaService(repository, 100, Duration.ofMinutes(1), true);
+
+            assertEquals(COMPRA, reiniciado.executar("chave", 1L, 1L, () -> {
+                throw new AssertionError("Não deveria executar de novo");
+            }));
+            Exception exception = assertThrows(IllegalStateException.class,
+                    () -> reiniciado.executar("erro", 1L, 1L, () -> COMPRA));
+            assertEquals("Itens fora de estoque.", exception.getMessage());
+        }
+
+        @Test
+        void removerExpiradas_ApagaSoAsVencidas() {
+            Instant agora = Instant.now();
+            repository.save(new ChaveIdempotencia("vencida", 1L, 1L, true, 1L, "ok", null, agora.minusSeconds(1)));
+            repository.save(new ChaveIdempotencia("valida", 1L, 1L, true, 2L, "ok", null, agora.plusSeconds(60)));
+
+            new IdempotenciaService(repository, 100, Duration.ofMinutes(1), true).removerExpiradas();
+
+            assertFalse(repository.existsById("vencida"));
+            assertTrue(repository.existsById("valida"));
+        }
+    }
+}
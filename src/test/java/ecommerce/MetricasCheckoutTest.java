@@ -0,0 +1,42 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+// Timers por etapa e contadores de resultado publicados no actuator e no formato do Prometheus.
+// Testes do Spring desligam os exportadores de métricas; @AutoConfigureObservability os religa.
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MetricasCheckoutTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void prometheus_PublicaHistogramaPorEtapaEResultadoPorTipoDeCliente() {
+        ResponseEntity<String> resposta = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, resposta.getStatusCode());
+        String corpo = resposta.getBody();
+        assertTrue(corpo.contains("checkout_etapa_seconds_bucket{etapa=\"pagamento\""));
+        assertTrue(corpo.contains("checkout_etapa_seconds_bucket{etapa=\"estoque_reserva\""));
+        assertTrue(corpo.contains("checkout_resultado_total{resultado=\"sem_estoque\",tipo_cliente=\"OURO\""));
+    }
+
+    @Test
+    void metrics_ListaAsMetricasDoCheckout() {
+        ResponseEntity<String> resposta = restTemplate.getForEntity("/actuator/metrics/checkout.etapa", String.class);
+
+        assertEquals(HttpStatus.OK, resposta.getStatusCode());
+        assertTrue(resposta.getBody().contains("\"etapa\""));
+        assertEquals(HttpStatus.OK,
+                restTemplate.getForEntity("/actuator/metrics/checkout.resultado", String.class).getStatusCode());
+    }
+}
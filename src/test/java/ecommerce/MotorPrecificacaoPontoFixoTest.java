@@ -0,0 +1,197 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import ecommerce.dto.ItemCheckoutDTO;
+import ecommerce.dto.ProdutoPrecoPesoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoCliente;
+import ecommerce.service.CartSnapshot;
+import ecommerce.service.MotorPrecificacao;
+import ecommerce.service.MotorPrecificacaoBigDecimal;
+import ecommerce.service.MotorPrecificacaoPontoFixo;
+import ecommerce.service.MotorPrecificacaoRegras;
+import ecommerce.service.RegrasPrecificacao;
+
+class MotorPrecificacaoPontoFixoTest {
+
+    private final MotorPrecificacaoPontoFixo motorPontoFixo = new MotorPrecificacaoPontoFixo();
+    private final MotorPrecificacaoBigDecimal motorBigDecimal = new MotorPrecificacaoBigDecimal();
+    private final MotorPrecificacaoRegras motorRegras = new MotorPrecificacaoRegras(RegrasPrecificacao.padrao());
+
+    @ParameterizedTest
+    @CsvSource({
+            // preco, peso, quantidade, tipoCliente
+            "100.00, 2, 1, BRONZE",
+            "500.00, 5, 1, BRONZE",   // Exatamente 500, sem desconto
+            "500.01, 5, 1, BRONZE",   // Acima de 500, 10% de desconto
+            "999.99, 10, 1, PRATA",
+            "1000.00, 10, 1, PRATA",  // Exatamente 1000, 10% de desconto
+            "1000.01, 11, 1, PRATA",  // Acima de 1000, 20% de desconto
+            "250.75, 2, 2, BRONZE",
+            "10.00, 6, 1, PRATA",     // Frete PRATA com 50% de desconto
+            "10.00, 49, 1, BRONZE",
+            "10.00, 50, 1, BRONZE",
+            "10.00, 51, 1, BRONZE",
+            "10.00, 51, 3, PRATA",
+            "1200.00, 80, 1, OURO",   // OURO isento de frete
+            "0.01, 1, 1000, BRONZE"
+    })
+    void calcularCustoTotal_MesmoValorQueMotorBigDecimal(BigDecimal preco, int peso, long quantidade, TipoCliente tipoCliente) {
+        CarrinhoDeCompras carrinho = carrinho(tipoCliente, new ItemCompra(null, produto(1L, preco, peso), quantidade));
+
+        BigDecimal esperado = motorBigDecimal.calcularCustoTotal(carrinho);
+        BigDecimal custoTotal = motorPontoFixo.calcularCustoTotal(carrinho);
+
+        assertEquals(0, custoTotal.compareTo(esperado), () -> "esperado " + esperado + " mas foi " + custoTotal);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            // preco1, quantidade1, preco2, quantidade2, peso, tipoCliente
+            "600.00, 1, 0.99, 7, 2, BRONZE",
+            "999.99, 1, 0.01, 1, 10, PRATA",
+            "1000.01, 2, 250.75, 3, 51, PRATA",
+            "1200.00, 1, 10.00, 1, 80, OURO",
+            "0.005, 1, 0.005, 1, 1, BRONZE",  // Meio centavo em cada item
+            "10.004, 3, 10.005, 3, 2, BRONZE",
+            "333.335, 2, 0.0049, 100, 6, PRATA",
+            "500.005, 1, 0.005, 1, 3, BRONZE"
+    })
+    void calcularCustoTotal_SnapshotIgualAoCarrinhoEmTodosOsMotores(BigDecimal preco1, long quantidade1,
+            BigDecimal preco2, long quantidade2, int peso, TipoCliente tipoCliente) {
+        CarrinhoDeCompras carrinho = carrinho(tipoCliente,
+                new ItemCompra(null, produto(1L, preco1, peso), quantidade1),
+                new ItemCompra(null, produto(2L, preco2, 0), quantidade2));
+        CartSnapshot doCarrinho = CartSnapshot.de(carrinho);
+        CartSnapshot daConsulta = CartSnapshot.de(
+                List.of(new ItemCheckoutDTO(1L, quantidade1, 0L), new ItemCheckoutDTO(2L, quantidade2, 0L)),
+                Map.of(1L, new ProdutoPrecoPesoDTO(1L, preco1, peso), 2L, new ProdutoPrecoPesoDTO(2L, preco2, 0)));
+
+        BigDecimal esperado = motorBigDecimal.calcularCustoTotal(carrinho);
+        for (MotorPrecificacao motor : List.of(motorBigDecimal, motorPontoFixo, motorRegras)) {
+            assertIgual(esperado, motor.calcularCustoTotal(carrinho));
+            assertIgual(esperado, motor.calcularCustoTotal(doCarrinho, tipoCliente));
+            assertIgual(esperado, motor.calcularCustoTotal(daConsulta, tipoCliente));
+        }
+        assertEquals(motorPontoFixo.calcularCustoTotal(carrinho), motorPontoFixo.calcularCustoTotal(doCarrinho, tipoCliente));
+    }
+
+    @Test
+    void calcularCustoTotal_DoisItensDeMeioCentavo_ArredondaCadaPrecoUnitario() {
+        CarrinhoDeCompras carrinho = carrinho(TipoCliente.BRONZE,
+                new ItemCompra(null, produto(1L, new BigDecimal("0.005"), 0), 1L),
+                new ItemCompra(null, produto(2L, new BigDecimal("0.005"), 0), 1L));
+
+        // Cada preço vira 0.01 antes da soma, não 0.005 + 0.005 = 0.01 depois dela
+        assertIgual(new BigDecimal("0.02"), motorBigDecimal.calcularCustoTotal(carrinho));
+        assertIgual(new BigDecimal("0.02"), motorPontoFixo.calcularCustoTotal(carrinho));
+        assertIgual(new BigDecimal("0.02"), motorRegras.calcularCustoTotal(carrinho));
+        assertIgual(new BigDecimal("0.02"), motorPontoFixo.calcularCustoTotal(CartSnapshot.de(carrinho), TipoCliente.BRONZE));
+        assertIgual(new BigDecimal("0.02"), carrinho.getSubtotal());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "100.00, 2, 1, BRONZE",
+            "500.01, 5, 1, BRONZE",
+            "1000.01, 11, 1, PRATA",
+            "0.99, 0, 7, PRATA",
+            "1200.00, 80, 1, OURO",
+            "10.005, 1, 1, BRONZE"
+    })
+    void calcularCustoTotal_MesmoResultadoQueMotorRegras(BigDecimal preco, int peso, long quantidade, TipoCliente tipoCliente) {
+        CarrinhoDeCompras carrinho = carrinho(tipoCliente, new ItemCompra(null, produto(1L, preco, peso), quantidade));
+
+        // Mesma escala, não só o mesmo valor, para os motores serem intercambiáveis
+        assertEquals(motorRegras.calcularCustoTotal(carrinho), motorPontoFixo.calcularCustoTotal(carrinho));
+    }
+
+    @Test
+    void calcularCustoTotal_VariosItens_UmaPassada() {
+        CarrinhoDeCompras carrinho = carrinho(TipoCliente.PRATA,
+                new ItemCompra(null, produto(1L, BigDecimal.valueOf(300), 3), 2L),
+                new ItemCompra(null, produto(2L, new BigDecimal("199.90"), 4), 3L),
+                new ItemCompra(null, produto(3L, new BigDecimal("0.99"), 0), 7L));
+
+        BigDecimal custoTotal = motorPontoFixo.calcularCustoTotal(carrinho);
+
+        // Itens: 600 + 599.70 + 6.93 = 1206.63 -> 20% de desconto = 965.304
+        // Peso: 6 + 12 = 18 kg -> frete 72, PRATA paga 36
+        assertEquals(0, custoTotal.compareTo(new BigDecimal("1001.304")));
+        assertEquals(0, custoTotal.compareTo(motorBigDecimal.calcularCustoTotal(carrinho)));
+    }
+
+    @Test
+    void calcularCustoTotal_CarrinhoVazio() {
+        CarrinhoDeCompras carrinho = carrinho(TipoCliente.BRONZE);
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            motorPontoFixo.calcularCustoTotal(carrinho);
+        });
+
+        assertEquals("Carrinho de compras vazio ou nulo.", exception.getMessage());
+    }
+
+    @Test
+    void calcularCustoTotal_CarrinhoNulo() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            motorPontoFixo.calcularCustoTotal(null);
+        });
+
+        assertEquals("Carrinho de compras vazio ou nulo.", exception.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "10.005, 10.01",
+            "10.004, 10.00",
+            "10.0049, 10.00",
+            "0.005, 0.01"
+    })
+    void calcularCustoTotal_PrecoComFracaoDeCentavo_ArredondaParaOCentavo(BigDecimal preco, BigDecimal esperado) {
+        CarrinhoDeCompras carrinho = carrinho(TipoCliente.BRONZE,
+                new ItemCompra(null, produto(1L, preco, 1), 1L));
+
+        assertEquals(esperado, motorPontoFixo.calcularCustoTotal(carrinho));
+        assertIgual(esperado, motorBigDecimal.calcularCustoTotal(carrinho));
+    }
+
+    @Test
+    void calcularCustoTotal_PrecoComZerosAlemDosCentavos() {
+        CarrinhoDeCompras carrinho = carrinho(TipoCliente.BRONZE,
+                new ItemCompra(null, produto(1L, new BigDecimal("10.5000"), 1), 2L));
+
+        assertEquals(new BigDecimal("21.00"), motorPontoFixo.calcularCustoTotal(carrinho));
+    }
+
+    private static void assertIgual(BigDecimal esperado, BigDecimal valor) {
+        assertEquals(0, valor.compareTo(esperado), () -> "esperado " + esperado + " mas foi " + valor);
+    }
+
+    private static CarrinhoDeCompras carrinho(TipoCliente tipoCliente, ItemCompra... itens) {
+        Cliente cliente = new Cliente();
+        cliente.setTipo(tipoCliente);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setCliente(cliente);
+        carrinho.setItens(itens.length == 0 ? Collections.emptyList() : Arrays.asList(itens));
+        return carrinho;
+    }
+
+    private static Produto produto(Long id, BigDecimal preco, int peso) {
+        return new Produto(id, "Produto " + id, "Descrição", preco, peso, null);
+    }
+}
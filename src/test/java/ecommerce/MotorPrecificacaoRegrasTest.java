@@ -0,0 +1,240 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoCliente;
+import ecommerce.service.CartSnapshot;
+import ecommerce.service.MotorPrecificacao;
+import ecommerce.service.MotorPrecificacaoBigDecimal;
+import ecommerce.service.MotorPrecificacaoRegras;
+import ecommerce.service.RegrasPrecificacao;
+
+class MotorPrecificacaoRegrasTest {
+
+    private final MotorPrecificacaoRegras motorRegras = new MotorPrecificacaoRegras(RegrasPrecificacao.padrao());
+    private final MotorPrecificacaoBigDecimal motorBigDecimal = new MotorPrecificacaoBigDecimal();
+
+    @ParameterizedTest
+    @CsvSource({
+            // preco, peso, quantidade, tipoCliente
+            "100.00, 2, 1, BRONZE",
+            "500.00, 5, 1, BRONZE",   // Exatamente 500, sem desconto
+            "500.01, 5, 1, BRONZE",   // Acima de 500, 10% de desconto
+            "999.99, 10, 1, PRATA",
+            "1000.00, 10, 1, PRATA",  // Exatamente 1000, 10% de desconto
+            "1000.01, 11, 1, PRATA",  // Acima de 1000, 20% de desconto
+            "250.75, 2, 2, BRONZE",
+            "10.00, 6, 1, PRATA",     // Frete PRATA com 50% de desconto
+            "10.00, 49, 1, BRONZE",
+            "10.00, 50, 1, BRONZE",
+            "10.00, 51, 1, BRONZE",
+            "10.00, 51, 3, PRATA",
+            "1200.00, 80, 1, OURO",   // OURO isento de frete
+            "0.01, 1, 1000, BRONZE",
+            "0.01, 0, 1, PRATA"
+    })
+    void regrasPadrao_MesmoValorQueMotorBigDecimal(BigDecimal preco, int peso, long quantidade, TipoCliente tipoCliente) {
+        CarrinhoDeCompras carrinho = carrinho(tipoCliente, new ItemCompra(null, produto(preco, peso), quantidade));
+
+        BigDecimal esperado = motorBigDecimal.calcularCustoTotal(carrinho);
+
+        assertIgual(esperado, motorRegras.calcularCustoTotal(carrinho));
+        assertIgual(esperado, motorRegras.calcularCustoTotal(CartSnapshot.de(carrinho), tipoCliente));
+    }
+
+    @Test
+    void regrasPadrao_ValorInteiroComDuasCasas() {
+        CarrinhoDeCompras carrinho = carrinho(TipoCliente.OURO, new ItemCompra(null, produto(BigDecimal.valueOf(350), 1), 1L));
+
+        assertEquals(new BigDecimal("350.00"), motorRegras.calcularCustoTotal(carrinho));
+    }
+
+    @Test
+    void regrasConfiguradas_TresFaixasDeDescontoEFreteProprio() {
+        MotorPrecificacaoRegras motor = new MotorPrecificacaoRegras(new RegrasPrecificacao.Config(
+                List.of(desconto("100", "5"), desconto("500", "12.5"), desconto("2000", "30")),
+                List.of(faixa(2L, "1.50"), faixa(null, "3")),
+                Map.of(TipoCliente.BRONZE, BigDecimal.ONE, TipoCliente.PRATA, new BigDecimal("0.25"),
+                        TipoCliente.OURO, new BigDecimal("0.1"))));
+
+        // 600 -> 12,5% = 525; 4 kg * 3 = 12, PRATA paga 3
+        assertIgual(new BigDecimal("528"), motor.calcularCustoTotal(carrinho(TipoCliente.PRATA,
+                new ItemCompra(null, produto(BigDecimal.valueOf(300), 2), 2L))));
+        // 100 não passa do primeiro limite; 2 kg * 1,50 = 3, OURO paga 0,30
+        assertIgual(new BigDecimal("100.30"), motor.calcularCustoTotal(carrinho(TipoCliente.OURO,
+                new ItemCompra(null, produto(BigDecimal.valueOf(100), 2), 1L))));
+        // 2500 -> 30% = 1750; sem peso, sem frete
+        assertIgual(new BigDecimal("1750"), motor.calcularCustoTotal(carrinho(TipoCliente.BRONZE,
+                new ItemCompra(null, produto(BigDecimal.valueOf(2500), 0), 1L))));
+    }
+
+    @Test
+    void compilar_ConfiguracaoInvalida_Falha() {
+        RegrasPrecificacao.Config padrao = RegrasPrecificacao.padrao();
+
+        assertThrows(IllegalArgumentException.class, () -> RegrasPrecificacao.compilar(new RegrasPrecificacao.Config(
+                List.of(desconto("1000", "20"), desconto("500", "10")), padrao.frete(), padrao.fatorFrete())));
+        assertThrows(IllegalArgumentException.class, () -> RegrasPrecificacao.compilar(new RegrasPrecificacao.Config(
+                List.of(desconto("500", "10.001")), padrao.frete(), padrao.fatorFrete())));
+        assertThrows(IllegalArgumentException.class, () -> RegrasPrecificacao.compilar(new RegrasPrecificacao.Config(
+                padrao.descontos(), List.of(faixa(5L, "0"), faixa(10L, "2")), padrao.fatorFrete())));
+        assertThrows(IllegalArgumentException.class, () -> RegrasPrecificacao.compilar(new RegrasPrecificacao.Config(
+                padrao.descontos(), padrao.frete(), Map.of(TipoCliente.OURO, BigDecimal.ZERO))));
+    }
+
+    @Test
+    void atualizar_ConfiguracaoInvalida_MantemAsRegrasEmUso() {
+        MotorPrecificacaoRegras motor = new MotorPrecificacaoRegras(RegrasPrecificacao.padrao());
+
+        assertThrows(IllegalArgumentException.class, () -> motor.atualizar(new RegrasPrecificacao.Config(
+                List.of(desconto("500", "150")), null, null)));
+
+        assertEquals(RegrasPrecificacao.padrao(), motor.regras());
+    }
+
+    @Test
+    void atualizar_DuranteCalculos_CadaResultadoVemDeUmaUnicaVersao() throws Exception {
+        MotorPrecificacaoRegras motor = new MotorPrecificacaoRegras(RegrasPrecificacao.padrao());
+        RegrasPrecificacao.Config padrao = RegrasPrecificacao.padrao();
+        RegrasPrecificacao.Config semDescontoComFreteAlto = new RegrasPrecificacao.Config(
+                List.of(), List.of(faixa(null, "10")), padrao.fatorFrete());
+        CartSnapshot snapshot = CartSnapshot.de(carrinho(TipoCliente.BRONZE,
+                new ItemCompra(null, produto(BigDecimal.valueOf(600), 20), 1L)));
+        // Padrão: 540 + 80 de frete; nova versão: 600 + 200. Misturar daria 740 ou 680
+        Set<BigDecimal> validos = Set.of(new BigDecimal("620.00"), new BigDecimal("800.00"));
+        AtomicBoolean parar = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> calculos = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                calculos.add(executor.submit(() -> {
+                    int invalidos = 0;
+                    while (!parar.get()) {
+                        if (!validos.contains(motor.calcularCustoTotal(snapshot, TipoCliente.BRONZE))) {
+                            invalidos++;
+                        }
+                    }
+                    return invalidos;
+                }));
+            }
+            for (int i = 0; i < 2_000; i++) {
+                motor.atualizar(i % 2 == 0 ? semDescontoComFreteAlto : padrao);
+            }
+            parar.set(true);
+            for (Future<Integer> calculo : calculos) {
+                assertEquals(0, calculo.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertIgual(BigDecimal esperado, BigDecimal custoTotal) {
+        assertEquals(0, custoTotal.compareTo(esperado), () -> "esperado " + esperado + " mas foi " + custoTotal);
+    }
+
+    private static RegrasPrecificacao.Desconto desconto(String acimaDe, String percentual) {
+        return new RegrasPrecificacao.Desconto(new BigDecimal(acimaDe), new BigDecimal(percentual));
+    }
+
+    private static RegrasPrecificacao.FaixaFrete faixa(Long ateKg, String porKg) {
+        return new RegrasPrecificacao.FaixaFrete(ateKg, new BigDecimal(porKg));
+    }
+
+    private static CarrinhoDeCompras carrinho(TipoCliente tipoCliente, ItemCompra... itens) {
+        Cliente cliente = new Cliente();
+        cliente.setTipo(tipoCliente);
+        CarrinhoDeCompras carrinho = new CarrinhoDeCompras();
+        carrinho.setCliente(cliente);
+        carrinho.setItens(Arrays.asList(itens));
+        return carrinho;
+    }
+
+    private static Produto produto(BigDecimal preco, int peso) {
+        return new Produto(1L, "Produto", "Descrição", preco, peso, null);
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "ecommerce.precificacao.motor=regras",
+            "ecommerce.precificacao.regras.descontos[0].acima-de=100",
+            "ecommerce.precificacao.regras.descontos[0].percentual=50"
+    })
+    class Configuracao {
+
+        @Autowired
+        private MotorPrecificacao motor;
+
+        @Autowired
+        private ConfigurableEnvironment environment;
+
+        @Autowired
+        private ApplicationEventPublisher eventos;
+
+        @Test
+        void regrasDaConfiguracao_RecarregadasQuandoAPropriedadeMuda() {
+            CarrinhoDeCompras carrinho = carrinho(TipoCliente.BRONZE,
+                    new ItemCompra(null, produto(BigDecimal.valueOf(200), 6), 1L));
+            assertInstanceOf(MotorPrecificacaoRegras.class, motor);
+            // Desconto configurado (50%) com o frete padrão: 100 + 6 kg * 2
+            assertIgual(new BigDecimal("112"), motor.calcularCustoTotal(carrinho));
+
+            // Listas indexadas vêm inteiras de uma única fonte de propriedades
+            String chave = "ecommerce.precificacao.regras.descontos[0].percentual";
+            environment.getPropertySources().addFirst(new MapPropertySource("teste",
+                    Map.of("ecommerce.precificacao.regras.descontos[0].acima-de", "100", chave, "25")));
+            try {
+                eventos.publishEvent(new EnvironmentChangeEvent(Set.of(chave)));
+
+                assertIgual(new BigDecimal("162"), motor.calcularCustoTotal(carrinho));
+            } finally {
+                environment.getPropertySources().remove("teste");
+                eventos.publishEvent(new EnvironmentChangeEvent(Set.of(chave)));
+            }
+        }
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+    class EndpointPadrao {
+
+        @Autowired
+        private TestRestTemplate restTemplate;
+
+        @Test
+        void actuatorRefresh_ForaDoPerfilGestao_NaoFicaExposto() {
+            ResponseEntity<String> resposta = restTemplate.postForEntity("/actuator/refresh", null, String.class);
+
+            assertEquals(HttpStatus.NOT_FOUND, resposta.getStatusCode());
+        }
+    }
+}
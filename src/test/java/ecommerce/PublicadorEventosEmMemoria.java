@@ -0,0 +1,23 @@
+package ecommerce;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import ecommerce.dto.EventoOutboxDTO;
+import ecommerce.external.IPublicadorEventos;
+
+/** Guarda os eventos publicados em memória para os testes conferirem o que o relay entregou. */
+class PublicadorEventosEmMemoria implements IPublicadorEventos {
+
+    private final ConcurrentLinkedQueue<EventoOutboxDTO> publicados = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void publicar(List<EventoOutboxDTO> eventos) {
+        publicados.addAll(eventos);
+    }
+
+    List<EventoOutboxDTO> publicados() {
+        return new ArrayList<>(publicados);
+    }
+}
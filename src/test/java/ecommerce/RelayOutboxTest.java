@@ -0,0 +1,155 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ecommerce.dto.EventoOutboxDTO;
+import ecommerce.entity.EventoOutbox;
+import ecommerce.external.IPublicadorEventos;
+import ecommerce.external.local.PublicadorEventosLog;
+import ecommerce.repository.EventoOutboxRepository;
+import ecommerce.service.OutboxService;
+import ecommerce.service.RelayOutbox;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// O relay agendado fica desligado na prática; os testes chamam entregarCiclo direto
+@SpringBootTest(properties = "ecommerce.outbox.intervalo-ms=3600000")
+class RelayOutboxTest {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private EventoOutboxRepository repository;
+
+    private final PublicadorEventosEmMemoria publicador = new PublicadorEventosEmMemoria();
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void publicador_SemPropriedade_UsaOLog() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(PublicadorEventosLog.class)
+                .run(contexto -> assertInstanceOf(PublicadorEventosLog.class, contexto.getBean(IPublicadorEventos.class)));
+    }
+
+    @Test
+    void registrarCompraFinalizada_RollbackDaCompra_NaoDeixaEvento() {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            outboxService.registrarCompraFinalizada(1L, 2L, 12345L, new BigDecimal("100"));
+            throw new IllegalStateException("Erro ao dar baixa no estoque.");
+        }));
+
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void registrarCompraFinalizada_ForaDeTransacao_Rejeita() {
+        assertThrows(RuntimeException.class,
+                () -> outboxService.registrarCompraFinalizada(1L, 2L, 12345L, new BigDecimal("100")));
+        assertEquals(0, repository.count());
+    }
+
+    @Test
+    void entregarCiclo_PublicaEmOrdemEApagaEntregues() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.registrarCompraFinalizada(10L, 1L, 111L, new BigDecimal("250"));
+            outboxService.registrarCompraFinalizada(20L, 2L, 222L, new BigDecimal("300"));
+        });
+        RelayOutbox relay = new RelayOutbox(repository, publicador, meterRegistry, 100, 1000, 100,
+                Duration.ofSeconds(30));
+        double publicadosAntes = meterRegistry.counter("outbox.eventos.publicados").count();
+
+        assertEquals(2, relay.entregarCiclo());
+
+        List<EventoOutboxDTO> eventos = publicador.publicados();
+        assertEquals(2, eventos.size());
+        assertTrue(eventos.get(0).id() < eventos.get(1).id());
+        JsonNode primeiro = objectMapper.readTree(eventos.get(0).payload());
+        assertEquals(OutboxService.COMPRA_FINALIZADA, eventos.get(0).tipo());
+        assertEquals(10L, primeiro.get("carrinhoId").asLong());
+        assertEquals(111L, primeiro.get("transacaoPagamentoId").asLong());
+        assertEquals(0, new BigDecimal("250").compareTo(primeiro.get("custoTotal").decimalValue()));
+        assertEquals(0, repository.count());
+        assertEquals(publicadosAntes + 2, meterRegistry.counter("outbox.eventos.publicados").count());
+    }
+
+    @Test
+    void entregarCiclo_LimitaEventosPorCicloPelaTaxa() {
+        List<Long> ids = gravarEventos(60);
+        // 1000 eventos/s em ciclos de 25 ms: 25 eventos por ciclo, em lotes de 10
+        RelayOutbox relay = new RelayOutbox(repository, publicador, new SimpleMeterRegistry(), 10, 1000, 25,
+                Duration.ofSeconds(30));
+
+        assertEquals(25, relay.entregarCiclo());
+        assertEquals(ids.subList(0, 25), idsPublicados());
+        assertEquals(35, repository.count());
+
+        assertEquals(25, relay.entregarCiclo());
+        assertEquals(10, relay.entregarCiclo());
+        assertEquals(0, relay.entregarCiclo());
+        assertEquals(ids, idsPublicados());
+    }
+
+    @Test
+    void entregarCiclo_LoteReivindicadoPorOutroRelay_NaoEntregaDeNovo() throws InterruptedException {
+        List<Long> ids = gravarEventos(3);
+        RelayOutbox relayComFalha = new RelayOutbox(repository, eventos -> {
+            throw new IllegalStateException("Broker indisponível");
+        }, new SimpleMeterRegistry(), 100, 1000, 100, Duration.ofMillis(200));
+        RelayOutbox relay = new RelayOutbox(repository, publicador, new SimpleMeterRegistry(), 100, 1000, 100,
+                Duration.ofSeconds(30));
+
+        assertThrows(IllegalStateException.class, relayComFalha::entregarCiclo);
+
+        // Reivindicados pelo relay que falhou: ficam na tabela e ninguém mais os entrega
+        assertEquals(3, repository.count());
+        assertEquals(0, relay.entregarCiclo());
+
+        // Vencida a reivindicação, voltam a ser entregues
+        Thread.sleep(300);
+        assertEquals(3, relay.entregarCiclo());
+        assertEquals(ids, idsPublicados());
+        assertEquals(0, repository.count());
+    }
+
+    private List<Long> gravarEventos(int quantidade) {
+        Instant agora = Instant.now();
+        return IntStream.range(0, quantidade)
+                .mapToObj(i -> repository.save(new EventoOutbox(OutboxService.COMPRA_FINALIZADA, "{}", agora)).getId())
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> idsPublicados() {
+        return publicador.publicados().stream().map(EventoOutboxDTO::id).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,353 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.dto.SolicitacaoPagamentoDTO;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.external.resiliencia.DependenciaIndisponivelException;
+import ecommerce.external.resiliencia.EstoqueResiliente;
+import ecommerce.external.resiliencia.PagamentoResiliente;
+import ecommerce.external.resiliencia.Resiliencia;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ResilienciaTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Resiliencia resiliencia;
+
+    @AfterEach
+    void tearDown() {
+        if (resiliencia != null) {
+            resiliencia.close();
+        }
+    }
+
+    @Test
+    void executar_TaxaDeFalhasAcimaDoLimite_AbreOCircuitoERecusaNaHora() {
+        resiliencia = criar(Duration.ZERO, 10, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalStateException.class, () -> resiliencia.executar(() -> {
+                throw new IllegalStateException("Provedor fora do ar");
+            }));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, resiliencia.getCircuitBreaker().getState());
+        DependenciaIndisponivelException exception = assertThrows(DependenciaIndisponivelException.class,
+                () -> resiliencia.executar(() -> fail("Não deveria chamar o serviço")));
+        assertEquals("Serviço de teste indisponível: circuito aberto.", exception.getMessage());
+        assertEquals(1, rejeicoes("circuito_aberto"));
+        assertEquals(1, meterRegistry.get("resiliencia.transicoes")
+                .tags("dependencia", "teste", "de", "CLOSED", "para", "OPEN").counter().count());
+    }
+
+    @Test
+    void executar_MeioAbertoComSucesso_FechaOCircuito() throws InterruptedException {
+        resiliencia = criar(Duration.ZERO, 10, Duration.ofMillis(50));
+        resiliencia.getCircuitBreaker().transitionToOpenState();
+
+        Thread.sleep(100);
+        for (int i = 0; i < 2; i++) {
+            assertEquals("ok", resiliencia.executar(() -> "ok"));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, resiliencia.getCircuitBreaker().getState());
+    }
+
+    @Test
+    void executar_BulkheadCheio_RecusaSemEsperar() throws Exception {
+        resiliencia = criar(Duration.ZERO, 1, Duration.ofMinutes(1));
+        CountDownLatch emAndamento = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> ocupando = executor.submit(() -> resiliencia.executar(() -> {
+                emAndamento.countDown();
+                aguardar(liberar);
+                return "ok";
+            }));
+            assertTrue(emAndamento.await(5, TimeUnit.SECONDS));
+
+            assertThrows(DependenciaIndisponivelException.class, () -> resiliencia.executar(() -> "segunda"));
+            assertEquals(1, rejeicoes("bulkhead_cheio"));
+
+            liberar.countDown();
+            assertEquals("ok", ocupando.get(5, TimeUnit.SECONDS));
+            assertEquals("terceira", resiliencia.executar(() -> "terceira"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void executar_TempoLimiteEsgotado_FalhaESeguraOBulkheadAteAChamadaTerminar() throws InterruptedException {
+        resiliencia = criar(Duration.ofMillis(50), 1, Duration.ofMinutes(1));
+        CountDownLatch terminou = new CountDownLatch(1);
+
+        DependenciaIndisponivelException exception = assertThrows(DependenciaIndisponivelException.class,
+                () -> resiliencia.executar(() -> {
+                    try {
+                        // Ignora a interrupção, como um cliente HTTP travado
+                        long fim = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+                        while (System.nanoTime() < fim) {
+                            Thread.onSpinWait();
+                        }
+                        return "tarde";
+                    } finally {
+                        terminou.countDown();
+                    }
+                }));
+
+        assertEquals("Serviço de teste indisponível: tempo limite de 50 ms excedido.", exception.getMessage());
+        assertEquals(1, rejeicoes("tempo_limite"));
+        assertEquals(1, resiliencia.getCircuitBreaker().getMetrics().getNumberOfFailedCalls());
+        assertEquals(0, resiliencia.getBulkhead().getMetrics().getAvailableConcurrentCalls());
+        assertTrue(terminou.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(1, resiliencia.getBulkhead().getMetrics().getAvailableConcurrentCalls());
+    }
+
+    @Test
+    void executar_ComTempoLimite_RepassaAExcecaoDoServico() {
+        resiliencia = criar(Duration.ofSeconds(1), 10, Duration.ofMinutes(1));
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> resiliencia.executar(() -> {
+            throw new IllegalArgumentException("Cliente inválido");
+        }));
+
+        assertEquals("Cliente inválido", exception.getMessage());
+        assertEquals(10, resiliencia.getBulkhead().getMetrics().getAvailableConcurrentCalls());
+    }
+
+    @Test
+    void executarAsync_TempoLimiteEsgotado_CompletaComFalhaSemEsperarESeguraOBulkheadAteAChamadaTerminar() throws Exception {
+        resiliencia = criar(Duration.ofMillis(50), 1, Duration.ofMinutes(1));
+        CompletableFuture<String> nuncaResponde = new CompletableFuture<>();
+
+        CompletableFuture<String> futuro = resiliencia.executarAsync(() -> nuncaResponde);
+
+        assertEquals(0, resiliencia.getBulkhead().getMetrics().getAvailableConcurrentCalls());
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> futuro.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(DependenciaIndisponivelException.class, exception.getCause());
+        assertFalse(nuncaResponde.isDone());
+        assertEquals(1, rejeicoes("tempo_limite"));
+        // A chamada continua em andamento e segue contando no limite de chamadas simultâneas
+        assertEquals(0, resiliencia.getBulkhead().getMetrics().getAvailableConcurrentCalls());
+
+        nuncaResponde.complete("tarde");
+
+        assertEquals(1, resiliencia.getBulkhead().getMetrics().getAvailableConcurrentCalls());
+    }
+
+    @Test
+    void executarAsync_BulkheadCheio_RecusaAteOFuturoCompletar() throws Exception {
+        resiliencia = criar(Duration.ZERO, 1, Duration.ofMinutes(1));
+        CompletableFuture<String> resposta = new CompletableFuture<>();
+        CompletableFuture<String> ocupando = resiliencia.executarAsync(() -> resposta);
+
+        CompletableFuture<String> recusada = resiliencia.executarAsync(() -> CompletableFuture.completedFuture("segunda"));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, recusada::get);
+        assertInstanceOf(DependenciaIndisponivelException.class, exception.getCause());
+        assertEquals(1, rejeicoes("bulkhead_cheio"));
+        resposta.complete("ok");
+        assertEquals("ok", ocupando.get());
+        assertEquals("terceira", resiliencia.executarAsync(() -> CompletableFuture.completedFuture("terceira")).get());
+    }
+
+    @Test
+    void executarAsync_FalhasDoServico_AbremOCircuito() {
+        resiliencia = criar(Duration.ZERO, 10, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<String> futuro = resiliencia.executarAsync(
+                    () -> CompletableFuture.failedFuture(new IllegalStateException("Provedor fora do ar")));
+            ExecutionException exception = assertThrows(ExecutionException.class, futuro::get);
+            assertInstanceOf(IllegalStateException.class, exception.getCause());
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, resiliencia.getCircuitBreaker().getState());
+        assertTrue(resiliencia.executarAsync(() -> fail("Não deveria chamar o serviço")).isCompletedExceptionally());
+        assertEquals(1, rejeicoes("circuito_aberto"));
+    }
+
+    @Test
+    void liberarReserva_FalhaDoEstoque_NaoSobeParaQuemChamou() {
+        resiliencia = criar(Duration.ofSeconds(1), 10, Duration.ofMinutes(1));
+        IEstoqueExternal estoque = mock(IEstoqueExternal.class);
+        ReservaEstoqueDTO reserva = new ReservaEstoqueDTO("r-1", true, List.of(), List.of(1L), List.of(1L), null);
+        doThrow(new IllegalStateException("Resposta inválida do estoque")).when(estoque).liberarReserva(reserva);
+
+        assertDoesNotThrow(() -> new EstoqueResiliente(estoque, resiliencia).liberarReserva(reserva));
+
+        verify(estoque).liberarReserva(reserva);
+        assertEquals(1, resiliencia.getCircuitBreaker().getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    void autorizarPagamento_TempoLimiteEsgotado_CancelaPeloIdDaSolicitacao() {
+        resiliencia = criar(Duration.ofMillis(50), 10, Duration.ofMinutes(1));
+        CountDownLatch liberar = new CountDownLatch(1);
+        List<SolicitacaoPagamentoDTO> recebidas = new CopyOnWriteArrayList<>();
+        List<String> canceladas = new CopyOnWriteArrayList<>();
+        IPagamentoExternal lento = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(SolicitacaoPagamentoDTO solicitacao) {
+                recebidas.add(solicitacao);
+                aguardar(liberar);
+                return new PagamentoDTO(true, 1L);
+            }
+
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+            }
+        };
+        PagamentoResiliente pagamento = new PagamentoResiliente(lento, resiliencia,
+                (clienteId, solicitacaoId) -> canceladas.add(clienteId + ":" + solicitacaoId));
+        try {
+            assertThrows(DependenciaIndisponivelException.class, () -> pagamento.autorizarPagamento(7L, 10.0));
+        } finally {
+            liberar.countDown();
+        }
+
+        assertEquals(1, recebidas.size());
+        assertNotNull(recebidas.get(0).solicitacaoId());
+        assertEquals(List.of("7:" + recebidas.get(0).solicitacaoId()), canceladas);
+    }
+
+    @Test
+    void autorizarPagamentoAsync_TempoLimiteEsgotado_CancelaPeloIdDaSolicitacao() {
+        resiliencia = criar(Duration.ofMillis(50), 10, Duration.ofMinutes(1));
+        List<SolicitacaoPagamentoDTO> recebidas = new CopyOnWriteArrayList<>();
+        List<String> canceladas = new CopyOnWriteArrayList<>();
+        IPagamentoExternal semResposta = new IPagamentoExternal() {
+            @Override
+            public CompletableFuture<PagamentoDTO> autorizarPagamentoAsync(SolicitacaoPagamentoDTO solicitacao) {
+                recebidas.add(solicitacao);
+                return new CompletableFuture<>();
+            }
+
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+            }
+        };
+        PagamentoResiliente pagamento = new PagamentoResiliente(semResposta, resiliencia,
+                (clienteId, solicitacaoId) -> canceladas.add(clienteId + ":" + solicitacaoId));
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> pagamento.autorizarPagamentoAsync(7L, 10.0).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(DependenciaIndisponivelException.class, exception.getCause());
+        assertEquals(List.of("7:" + recebidas.get(0).solicitacaoId()), canceladas);
+    }
+
+    @Test
+    void autorizarPagamento_FalhaComResposta_NaoCancela() {
+        resiliencia = criar(Duration.ofSeconds(1), 10, Duration.ofMinutes(1));
+        List<String> canceladas = new CopyOnWriteArrayList<>();
+        IPagamentoExternal recusando = new IPagamentoExternal() {
+            @Override
+            public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+                throw new IllegalStateException("Cartão inválido");
+            }
+
+            @Override
+            public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+            }
+        };
+        PagamentoResiliente pagamento = new PagamentoResiliente(recusando, resiliencia,
+                (clienteId, solicitacaoId) -> canceladas.add(solicitacaoId));
+
+        assertThrows(IllegalStateException.class, () -> pagamento.autorizarPagamento(7L, 10.0));
+
+        assertTrue(canceladas.isEmpty());
+    }
+
+    private Resiliencia criar(Duration tempoLimite, int chamadasSimultaneas, Duration esperaAberto) {
+        CircuitBreaker circuitBreaker = CircuitBreaker.of("teste", CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(esperaAberto)
+                .permittedNumberOfCallsInHalfOpenState(2)
+                .build());
+        Bulkhead bulkhead = Bulkhead.of("teste", BulkheadConfig.custom()
+                .maxConcurrentCalls(chamadasSimultaneas)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        return new Resiliencia("teste", circuitBreaker, bulkhead, tempoLimite, meterRegistry);
+    }
+
+    private double rejeicoes(String motivo) {
+        return meterRegistry.get("resiliencia.rejeicoes").tags("dependencia", "teste", "motivo", motivo)
+                .counter().count();
+    }
+
+    private static void aguardar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Nested
+    @SpringBootTest
+    class Configuracao {
+
+        @Autowired
+        private IEstoqueExternal estoqueExternal;
+
+        @Autowired
+        private IPagamentoExternal pagamentoExternal;
+
+        @Autowired
+        private MeterRegistry meterRegistry;
+
+        @Test
+        void servicosExternos_PassamPelaResiliencia() {
+            assertInstanceOf(EstoqueResiliente.class, estoqueExternal);
+            assertInstanceOf(PagamentoResiliente.class, pagamentoExternal);
+            assertNotNull(meterRegistry.find("resilience4j.circuitbreaker.state").tag("name", "estoque").gauge());
+            assertNotNull(meterRegistry.find("resilience4j.bulkhead.available.concurrent.calls")
+                    .tag("name", "pagamento").gauge());
+        }
+    }
+}
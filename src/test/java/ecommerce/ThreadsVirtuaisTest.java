@@ -0,0 +1,92 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIf;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import ecommerce.config.ThreadsVirtuais;
+import ecommerce.dto.CompraDTO;
+import ecommerce.external.resiliencia.Resiliencia;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompraService;
+
+class ThreadsVirtuaisTest {
+
+    // Fora do perfil java21, compilado com a versão de src/main/java17
+    @Test
+    @DisabledIf("ecommerce.config.ThreadsVirtuais#suportadas")
+    void novoExecutorPorTarefa_SemOPerfilJava21_LancaExcecao() {
+        assertFalse(ThreadsVirtuais.suportadas());
+        assertThrows(IllegalStateException.class, ThreadsVirtuais::novoExecutorPorTarefa);
+        assertThrows(IllegalStateException.class, () -> ThreadsVirtuais.novoExecutorPorTarefa("checkout-"));
+        assertFalse(ThreadsVirtuais.ehVirtual(Thread.currentThread()));
+    }
+
+    // Só com o perfil java21 (mvn -Pjava21 test, em um JDK 21)
+    @Nested
+    @EnabledIf("ecommerce.config.ThreadsVirtuais#suportadas")
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = "ecommerce.threads.virtuais.habilitado=true")
+    class ModoThreadsVirtuais {
+
+        @Autowired
+        private TestRestTemplate restTemplate;
+
+        @MockBean
+        private CompraService compraService;
+
+        @Autowired
+        @Qualifier("executorCheckout")
+        private Executor executorCheckout;
+
+        @Autowired
+        @Qualifier("resilienciaEstoque")
+        private Resiliencia resilienciaEstoque;
+
+        @Autowired
+        @Qualifier("resilienciaPagamento")
+        private Resiliencia resilienciaPagamento;
+
+        @Test
+        void finalizarCompra_RodaEmThreadVirtual() {
+            AtomicReference<Thread> threadDaRequisicao = new AtomicReference<>();
+            when(compraService.finalizarCompra(1L, 1L)).thenAnswer(invocation -> {
+                threadDaRequisicao.set(Thread.currentThread());
+                return new CheckoutOutcome.Sucesso(12345L);
+            });
+
+            ResponseEntity<CompraDTO> resposta = restTemplate.postForEntity("/finalizar?carrinhoId=1&clienteId=1",
+                    null, CompraDTO.class);
+
+            assertEquals(HttpStatus.OK, resposta.getStatusCode());
+            assertTrue(ThreadsVirtuais.ehVirtual(threadDaRequisicao.get()));
+        }
+
+        @Test
+        void chamadasAoEstoqueEAoPagamento_RodamEmThreadVirtual() throws Exception {
+            Thread reserva = CompletableFuture.supplyAsync(Thread::currentThread, executorCheckout).get(5, TimeUnit.SECONDS);
+            Thread estoque = resilienciaEstoque.executar(Thread::currentThread);
+            Thread pagamento = resilienciaPagamento.executar(Thread::currentThread);
+
+            assertTrue(ThreadsVirtuais.ehVirtual(reserva));
+            assertTrue(ThreadsVirtuais.ehVirtual(estoque));
+            assertTrue(ThreadsVirtuais.ehVirtual(pagamento));
+        }
+    }
+}
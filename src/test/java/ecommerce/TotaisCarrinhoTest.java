@@ -0,0 +1,196 @@
+package ecommerce;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import ecommerce.dto.TotaisCarrinhoDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.repository.CarrinhoDeComprasRepository;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.repository.ProdutoRepository;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CompraService;
+import ecommerce.service.VerificacaoTotaisCarrinho;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Totais desnormalizados do carrinho: mantidos pelas alterações de itens, usados na
+ * precificação sem ler os itens, recalculados quando um produto muda e corrigidos pela
+ * verificação quando divergem.
+ */
+// Relay da outbox e varredura de compensações parados para que suas consultas não entrem nas estatísticas
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "ecommerce.outbox.intervalo-ms=3600000",
+        "ecommerce.compensacao.intervalo-ms=3600000",
+        "ecommerce.carrinho.verificacao.intervalo-ms=3600000",
+        "ecommerce.carrinho.verificacao.lote=2"
+})
+class TotaisCarrinhoTest {
+
+    @Autowired
+    private CarrinhoDeComprasService carrinhoService;
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private VerificacaoTotaisCarrinho verificacao;
+
+    @Autowired
+    private ClienteRepository clienteRepository;
+
+    @Autowired
+    private ProdutoRepository produtoRepository;
+
+    @Autowired
+    private CarrinhoDeComprasRepository carrinhoRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Cliente cliente;
+    private Produto livro;
+    private Produto eletronico;
+    private CarrinhoDeCompras carrinho;
+
+    @BeforeEach
+    void setUp() {
+        cliente = clienteRepository.save(new Cliente(null, "Cliente Teste", "Endereço", TipoCliente.BRONZE));
+        livro = produtoRepository.save(new Produto(null, "Livro", "Descrição", new BigDecimal("10.50"), 1, TipoProduto.LIVRO));
+        eletronico = produtoRepository.save(
+                new Produto(null, "Fone", "Descrição", new BigDecimal("200.00"), 3, TipoProduto.ELETRONICO));
+        carrinho = carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, new ArrayList<>(), LocalDate.now()));
+    }
+
+    @Test
+    void alteracoesDeItens_MantemOsTotaisGravados() {
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), livro.getId(), 2);
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), eletronico.getId(), 1);
+        TotaisCarrinhoDTO totais = carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), livro.getId(), 1);
+
+        assertTotais(new BigDecimal("231.50"), 6, 2, totais);
+        assertTotais(new BigDecimal("231.50"), 6, 2, carrinhoService.buscarTotais(carrinho.getId(), cliente.getId()));
+
+        totais = carrinhoService.atualizarQuantidade(carrinho.getId(), cliente.getId(), eletronico.getId(), 4);
+        assertTotais(new BigDecimal("831.50"), 15, 2, totais);
+
+        carrinhoService.atualizarQuantidade(carrinho.getId(), cliente.getId(), livro.getId(), 0);
+        assertTotais(new BigDecimal("800.00"), 12, 1, carrinhoService.buscarTotais(carrinho.getId(), cliente.getId()));
+
+        carrinhoService.removerItem(carrinho.getId(), cliente.getId(), eletronico.getId());
+        assertTotais(BigDecimal.ZERO, 0, 0, carrinhoService.buscarTotais(carrinho.getId(), cliente.getId()));
+        assertEquals(0, verificacao.verificarCiclo());
+    }
+
+    @Test
+    void alteracoesDeItens_ParametrosInvalidos() {
+        Cliente outroCliente = clienteRepository.save(new Cliente(null, "Outro", "Endereço", TipoCliente.OURO));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), livro.getId(), 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), livro.getId() + 1000, 1));
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> carrinhoService.adicionarItem(carrinho.getId(), outroCliente.getId(), livro.getId(), 1));
+        assertEquals("Carrinho não encontrado.", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class,
+                () -> carrinhoService.removerItem(carrinho.getId(), cliente.getId(), livro.getId()));
+        assertEquals("Produto não está no carrinho.", exception.getMessage());
+    }
+
+    @Test
+    void calcularCustoTotal_UmaConsultaQualquerQueSejaOTamanhoDoCarrinho() {
+        List<ItemCompra> itens = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Produto produto = produtoRepository.save(
+                    new Produto(null, "Produto " + i, "Descrição", BigDecimal.TEN, 1, TipoProduto.LIVRO));
+            itens.add(new ItemCompra(null, produto, 1L));
+        }
+        CarrinhoDeCompras grande = carrinhoRepository.save(new CarrinhoDeCompras(null, cliente, itens, LocalDate.now()));
+        compraService.calcularCustoTotal(grande.getId(), cliente.getId());
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+
+        BigDecimal custo = compraService.calcularCustoTotal(grande.getId(), cliente.getId());
+
+        // 50 itens de R$ 10 = R$ 500, sem desconto; 50 kg a R$ 4
+        assertEquals(0, new BigDecimal("700").compareTo(custo));
+        // Tipo do cliente no cache; só a linha do carrinho vai ao banco
+        assertEquals(1, estatisticas.getPrepareStatementCount());
+        assertEquals(0, estatisticas.getEntityLoadCount());
+    }
+
+    @Test
+    void calcularCustoTotal_CarrinhoVazio() {
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> compraService.calcularCustoTotal(carrinho.getId(), cliente.getId()));
+
+        assertEquals("Carrinho de compras vazio ou nulo.", exception.getMessage());
+    }
+
+    @Test
+    void produtoAlterado_RecalculaOsCarrinhosQueOContem() {
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), livro.getId(), 3);
+        carrinhoService.adicionarItem(carrinho.getId(), cliente.getId(), eletronico.getId(), 1);
+
+        Produto produto = produtoRepository.findById(livro.getId()).orElseThrow();
+        produto.setPreco(new BigDecimal("20.00"));
+        produto.setPeso(2);
+        produtoRepository.save(produto);
+
+        assertTotais(new BigDecimal("260.00"), 9, 2, carrinhoService.buscarTotais(carrinho.getId(), cliente.getId()));
+    }
+
+    @Test
+    void verificarCiclo_CorrigeSoOsCarrinhosDivergentes() {
+        List<CarrinhoDeCompras> carrinhos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            carrinhos.add(carrinhoRepository.save(new CarrinhoDeCompras(null, cliente,
+                    new ArrayList<>(List.of(new ItemCompra(null, livro, i + 1L))), LocalDate.now())));
+        }
+        verificacao.verificarCiclo();
+        double reparadosAntes = meterRegistry.get("carrinho.totais.reparados").counter().count();
+        // Divergências criadas por fora das operações do carrinho, direto no banco
+        jdbcTemplate.update("update carrinho_de_compras set subtotal = 1 where id = ?", carrinhos.get(1).getId());
+        jdbcTemplate.update("update item_compra set quantidade = 10 where carrinho_id = ?", carrinhos.get(4).getId());
+
+        int reparados = verificacao.verificarCiclo();
+
+        assertEquals(2, reparados);
+        assertEquals(reparadosAntes + 2, meterRegistry.get("carrinho.totais.reparados").counter().count());
+        assertTotais(new BigDecimal("21.00"), 2, 1, carrinhoService.buscarTotais(carrinhos.get(1).getId(), cliente.getId()));
+        assertTotais(new BigDecimal("105.00"), 10, 1, carrinhoService.buscarTotais(carrinhos.get(4).getId(), cliente.getId()));
+        assertEquals(0, verificacao.verificarCiclo());
+    }
+
+    private static void assertTotais(BigDecimal subtotal, long pesoTotal, int quantidadeItens, TotaisCarrinhoDTO totais) {
+        assertEquals(0, subtotal.compareTo(totais.subtotal()), () -> "subtotal " + totais.subtotal());
+        assertEquals(pesoTotal, totais.pesoTotal());
+        assertEquals(quantidadeItens, totais.quantidadeItens());
+    }
+}
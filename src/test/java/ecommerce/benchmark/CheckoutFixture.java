@@ -0,0 +1,273 @@
+package ecommerce.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import ecommerce.dto.DisponibilidadeDTO;
+import ecommerce.dto.EstoqueBaixaDTO;
+import ecommerce.dto.PagamentoDTO;
+import ecommerce.dto.ReservaEstoqueDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.ItemCompra;
+import ecommerce.entity.Produto;
+import ecommerce.entity.TipoCliente;
+import ecommerce.entity.TipoProduto;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.service.CarrinhoDeComprasService;
+import ecommerce.service.CartSnapshot;
+import ecommerce.service.ClienteService;
+import ecommerce.service.CompensacaoService;
+import ecommerce.service.MetricasCheckout;
+import ecommerce.service.MotorPrecificacao;
+import ecommerce.service.MotorPrecificacaoBigDecimal;
+import ecommerce.service.MotorPrecificacaoPontoFixo;
+import ecommerce.service.MotorPrecificacaoRegras;
+import ecommerce.service.OutboxService;
+import ecommerce.service.RegrasPrecificacao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Monta carrinhos e dependências em memória para os benchmarks, sem banco de dados
+ * nem chamadas remotas.
+ */
+public final class CheckoutFixture {
+
+	/** Faixas de frete de calcularCustoTotal, representadas pelo peso total do carrinho em kg. */
+	public enum FaixaFrete {
+		ATE_5KG(3), ATE_10KG(8), ATE_50KG(30), ACIMA_50KG(80);
+
+		private final int pesoTotal;
+
+		FaixaFrete(int pesoTotal) {
+			this.pesoTotal = pesoTotal;
+		}
+
+		public int getPesoTotal() {
+			return pesoTotal;
+		}
+	}
+
+	private CheckoutFixture() {
+	}
+
+	/**
+	 * Cria um carrinho com {@code tamanho} itens de R$ 10,00 cada, cujo peso total cai
+	 * na faixa de frete informada. O resto da divisão do peso fica no primeiro item.
+	 */
+	public static CarrinhoDeCompras carrinho(long carrinhoId, Cliente cliente, int tamanho, FaixaFrete faixa) {
+		int pesoBase = faixa.getPesoTotal() / tamanho;
+		int resto = faixa.getPesoTotal() % tamanho;
+
+		List<ItemCompra> itens = new ArrayList<>(tamanho);
+		for (int i = 0; i < tamanho; i++) {
+			int peso = i == 0 ? pesoBase + resto : pesoBase;
+			Produto produto = new Produto((long) i + 1, "Produto " + i, "Descrição " + i, BigDecimal.valueOf(10),
+					peso, TipoProduto.LIVRO);
+			itens.add(new ItemCompra((long) i + 1, produto, 1L));
+		}
+		return new CarrinhoDeCompras(carrinhoId, cliente, itens, null);
+	}
+
+	public static Cliente cliente(long clienteId, TipoCliente tipo) {
+		return new Cliente(clienteId, "Cliente " + clienteId, "Endereço", tipo);
+	}
+
+	/** Motor de precificação pelo mesmo nome usado em {@code ecommerce.precificacao.motor}. */
+	public static MotorPrecificacao motorPrecificacao(String motor) {
+		switch (motor) {
+		case "bigdecimal":
+			return new MotorPrecificacaoBigDecimal();
+		case "ponto-fixo":
+			return new MotorPrecificacaoPontoFixo();
+		case "regras":
+			return new MotorPrecificacaoRegras(RegrasPrecificacao.padrao());
+		default:
+			throw new IllegalArgumentException("Motor de precificação desconhecido: " + motor);
+		}
+	}
+
+	/** ClienteService que devolve sempre o mesmo cliente, sem repositório nem cache. */
+	public static ClienteService clienteService(Cliente cliente) {
+		return new ClienteService(null, null) {
+			@Override
+			public Cliente buscarPorId(Long clienteId) {
+				return cliente;
+			}
+
+			@Override
+			public TipoCliente buscarTipo(Long clienteId) {
+				return cliente.getTipo();
+			}
+		};
+	}
+
+	/**
+	 * CarrinhoDeComprasService que devolve sempre o mesmo carrinho, sem repositório. O
+	 * retrato de checkout é remontado a cada chamada, como acontece com a consulta real, e o
+	 * carrinho nunca muda durante a compra.
+	 */
+	public static CarrinhoDeComprasService carrinhoService(CarrinhoDeCompras carrinho) {
+		return carrinhoService(carrinho, () -> false, () -> true);
+	}
+
+	/** Como {@link #carrinhoService(CarrinhoDeCompras)}, com as respostas da conferência e do avanço da versão. */
+	public static CarrinhoDeComprasService carrinhoService(CarrinhoDeCompras carrinho, BooleanSupplier alterado,
+			BooleanSupplier avancar) {
+		return new CarrinhoDeComprasService(null, null, null, null, 1) {
+			@Override
+			public CartSnapshot buscarParaCheckout(Long carrinhoId, Long clienteId) {
+				return CartSnapshot.de(carrinho);
+			}
+
+			@Override
+			public boolean carrinhoAlteradoDesde(Long carrinhoId, Long versao) {
+				return alterado.getAsBoolean();
+			}
+
+			@Override
+			public boolean avancarVersao(Long carrinhoId, Long versao) {
+				return avancar.getAsBoolean();
+			}
+		};
+	}
+
+	/**
+	 * CompensacaoService sem banco que cancela o pagamento na hora; os benchmarks só
+	 * exercitam o caminho de sucesso, em que nada é enfileirado.
+	 */
+	public static CompensacaoService compensacaoService(IPagamentoExternal pagamentoExternal) {
+		return new CompensacaoService(null, pagamentoExternal, Runnable::run, Duration.ofSeconds(1),
+				Duration.ofMinutes(5), 100) {
+			@Override
+			public void enfileirarCancelamento(Long clienteId, Long transacaoId) {
+				pagamentoExternal.cancelarPagamento(clienteId, transacaoId);
+			}
+		};
+	}
+
+	/** OutboxService sem banco que descarta os eventos. */
+	public static OutboxService outboxService() {
+		return new OutboxService(null, null) {
+			@Override
+			public void registrarCompraFinalizada(Long carrinhoId, Long clienteId, Long transacaoPagamentoId,
+												  BigDecimal custoTotal) {
+			}
+		};
+	}
+
+	public static MetricasCheckout metricas() {
+		return new MetricasCheckout(new SimpleMeterRegistry());
+	}
+
+	/** Estoque em processo que sempre tem os itens disponíveis e confirma a baixa. */
+	public static IEstoqueExternal estoqueDisponivel() {
+		return estoque(true, true, () -> {
+		});
+	}
+
+	/** Estoque em processo sem nenhum dos itens, como numa promoção esgotada. */
+	public static IEstoqueExternal estoqueIndisponivel() {
+		return estoque(false, false, () -> {
+		});
+	}
+
+	/** Estoque em processo com disponibilidade e baixa fixas, que avisa {@code aoLiberar} a cada reserva liberada. */
+	public static IEstoqueExternal estoque(boolean disponivel, boolean baixa, Runnable aoLiberar) {
+		EstoqueBaixaDTO resultadoBaixa = new EstoqueBaixaDTO(baixa);
+		return new IEstoqueExternal() {
+			@Override
+			public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+				return resultadoBaixa;
+			}
+
+			@Override
+			public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+				return new DisponibilidadeDTO(disponivel, disponivel ? List.of() : produtosIds);
+			}
+
+			@Override
+			public void liberarReserva(ReservaEstoqueDTO reserva) {
+				aoLiberar.run();
+			}
+		};
+	}
+
+	/** Estoque sempre disponível que bloqueia a thread pelo tempo informado em cada chamada. */
+	public static IEstoqueExternal estoqueComLatencia(long latenciaMs) {
+		IEstoqueExternal estoque = estoqueDisponivel();
+		return new IEstoqueExternal() {
+			@Override
+			public EstoqueBaixaDTO darBaixa(List<Long> produtosIds, List<Long> produtosQuantidades) {
+				esperar(latenciaMs);
+				return estoque.darBaixa(produtosIds, produtosQuantidades);
+			}
+
+			@Override
+			public DisponibilidadeDTO verificarDisponibilidade(List<Long> produtosIds, List<Long> produtosQuantidades) {
+				esperar(latenciaMs);
+				return estoque.verificarDisponibilidade(produtosIds, produtosQuantidades);
+			}
+		};
+	}
+
+	/** Pagamento sempre autorizado que bloqueia a thread pelo tempo informado em cada chamada. */
+	public static IPagamentoExternal pagamentoComLatencia(long latenciaMs) {
+		IPagamentoExternal pagamento = pagamentoAutorizado();
+		return new IPagamentoExternal() {
+			@Override
+			public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+				esperar(latenciaMs);
+				return pagamento.autorizarPagamento(clienteId, custoTotal);
+			}
+
+			@Override
+			public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+				esperar(latenciaMs);
+			}
+		};
+	}
+
+	/** Pagamento em processo que recusa toda compra. */
+	public static IPagamentoExternal pagamentoRecusado() {
+		PagamentoDTO recusado = new PagamentoDTO(false, null);
+		return new IPagamentoExternal() {
+			@Override
+			public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+				return recusado;
+			}
+
+			@Override
+			public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+			}
+		};
+	}
+
+	/** Pagamento em processo que autoriza toda compra com a mesma transação. */
+	public static IPagamentoExternal pagamentoAutorizado() {
+		PagamentoDTO autorizado = new PagamentoDTO(true, 12345L);
+		return new IPagamentoExternal() {
+			@Override
+			public PagamentoDTO autorizarPagamento(Long clienteId, Double custoTotal) {
+				return autorizado;
+			}
+
+			@Override
+			public void cancelarPagamento(Long clienteId, Long pagamentoTransacaoId) {
+			}
+		};
+	}
+
+	private static void esperar(long latenciaMs) {
+		try {
+			Thread.sleep(latenciaMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package ecommerce.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompraService;
+
+/**
+ * Benchmarks do caminho de precificação e da finalização de compra.
+ *
+ * <p>Executar com {@code mvn -Pjmh test-compile exec:exec}, que já liga os modos
+ * throughput e tempo médio e o profiler de GC (taxa de alocação).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompraServiceBenchmark {
+
+	@Param({ "1", "10", "100", "10000" })
+	private int tamanhoCarrinho;
+
+	@Param({ "BRONZE", "PRATA", "OURO" })
+	private TipoCliente tipoCliente;
+
+	@Param({ "ATE_5KG", "ATE_10KG", "ATE_50KG", "ACIMA_50KG" })
+	private CheckoutFixture.FaixaFrete faixaFrete;
+
+	@Param({ "bigdecimal", "ponto-fixo", "regras" })
+	private String motor;
+
+	private CarrinhoDeCompras carrinho;
+	private CompraService compraService;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Cliente cliente = CheckoutFixture.cliente(1L, tipoCliente);
+		carrinho = CheckoutFixture.carrinho(1L, cliente, tamanhoCarrinho, faixaFrete);
+		IPagamentoExternal pagamento = CheckoutFixture.pagamentoAutorizado();
+		compraService = new CompraService(CheckoutFixture.carrinhoService(carrinho),
+				CheckoutFixture.clienteService(cliente), CheckoutFixture.estoqueDisponivel(),
+				pagamento, CheckoutFixture.motorPrecificacao(motor),
+				CheckoutFixture.compensacaoService(pagamento), CheckoutFixture.outboxService(), CheckoutFixture.metricas(),
+				Runnable::run, TransactionOperations.withoutTransaction());
+	}
+
+	@Benchmark
+	public BigDecimal calcularCustoTotal() {
+		return compraService.calcularCustoTotal(carrinho);
+	}
+
+	@Benchmark
+	public CheckoutOutcome finalizarCompra() {
+		return compraService.finalizarCompra(carrinho.getId(), carrinho.getCliente().getId());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opcoes = new OptionsBuilder()
+				.include(CompraServiceBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.build();
+		new Runner(opcoes).run();
+	}
+}
@@ -0,0 +1,71 @@
+package ecommerce.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.controller.CompraController;
+import ecommerce.dto.CompraDTO;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.IEstoqueExternal;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.service.CompraService;
+import ecommerce.service.IdempotenciaService;
+
+/**
+ * Custo da finalização de compra recusada, do controller ao serviço, como numa promoção em que a
+ * maioria das compras não passa: {@code sem_estoque} para na reserva e {@code pagamento_recusado}
+ * para na autorização. Todas as dependências estão em memória, então o resultado mostra só o
+ * custo do caminho de falha em CPU e alocação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FalhaCheckoutBenchmark {
+
+	@Param({ "sem_estoque", "pagamento_recusado" })
+	private String falha;
+
+	private CompraController compraController;
+	private CarrinhoDeCompras carrinho;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Cliente cliente = CheckoutFixture.cliente(1L, TipoCliente.PRATA);
+		carrinho = CheckoutFixture.carrinho(1L, cliente, 10, CheckoutFixture.FaixaFrete.ATE_10KG);
+		boolean semEstoque = "sem_estoque".equals(falha);
+		IEstoqueExternal estoque = semEstoque ? CheckoutFixture.estoqueIndisponivel() : CheckoutFixture.estoqueDisponivel();
+		IPagamentoExternal pagamento = semEstoque ? CheckoutFixture.pagamentoAutorizado() : CheckoutFixture.pagamentoRecusado();
+		CompraService compraService = new CompraService(CheckoutFixture.carrinhoService(carrinho),
+				CheckoutFixture.clienteService(cliente), estoque, pagamento,
+				CheckoutFixture.motorPrecificacao("bigdecimal"), CheckoutFixture.compensacaoService(pagamento),
+				CheckoutFixture.outboxService(), CheckoutFixture.metricas(), Runnable::run,
+				TransactionOperations.withoutTransaction());
+		compraController = new CompraController(compraService,
+				new IdempotenciaService(null, 1, Duration.ofMinutes(1), false));
+	}
+
+	@Benchmark
+	public ResponseEntity<CompraDTO> finalizarCompraRecusada() {
+		return compraController.finalizarCompra(carrinho.getId(), 1L, null);
+	}
+}
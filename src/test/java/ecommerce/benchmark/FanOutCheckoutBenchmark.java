@@ -0,0 +1,80 @@
+package ecommerce.benchmark;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompraService;
+
+/**
+ * Latência ponta a ponta (p50/p99 via modo SampleTime) da finalização de compra com a
+ * verificação de estoque em paralelo à precificação, contra o fluxo sequencial obtido
+ * com um executor que roda a tarefa na própria thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutCheckoutBenchmark {
+
+	@Param({ "sequencial", "paralelo" })
+	private String modo;
+
+	@Param({ "100", "10000" })
+	private int tamanhoCarrinho;
+
+	@Param({ "1" })
+	private long latenciaEstoqueMs;
+
+	private ExecutorService pool;
+	private CompraService compraService;
+	private CarrinhoDeCompras carrinho;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		pool = Executors.newFixedThreadPool(4);
+		Executor executor = "paralelo".equals(modo) ? pool : Runnable::run;
+
+		Cliente cliente = CheckoutFixture.cliente(1L, TipoCliente.PRATA);
+		carrinho = CheckoutFixture.carrinho(1L, cliente, tamanhoCarrinho, CheckoutFixture.FaixaFrete.ATE_50KG);
+		IPagamentoExternal pagamento = CheckoutFixture.pagamentoAutorizado();
+		compraService = new CompraService(CheckoutFixture.carrinhoService(carrinho),
+				CheckoutFixture.clienteService(cliente), CheckoutFixture.estoqueComLatencia(latenciaEstoqueMs),
+				pagamento, CheckoutFixture.motorPrecificacao("bigdecimal"),
+				CheckoutFixture.compensacaoService(pagamento), CheckoutFixture.outboxService(), CheckoutFixture.metricas(),
+				executor, TransactionOperations.withoutTransaction());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Benchmark
+	public CheckoutOutcome finalizarCompra() {
+		return compraService.finalizarCompra(carrinho.getId(), 1L);
+	}
+}
@@ -0,0 +1,91 @@
+package ecommerce.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.CompraApplication;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.http.EstoqueHttp;
+import ecommerce.external.http.PagamentoHttp;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompraService;
+
+/**
+ * Vazão da finalização de compra com estoque e pagamento chamados de verdade por HTTP, pelos
+ * clientes Feign com pool de conexões, contra o {@link ecommerce.external.local.ServidorStubHttp}
+ * local com {@code latenciaMs} por requisição. Cada compra faz três requisições (verificação,
+ * autorização e baixa). Roda sem rede externa.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(32)
+@Fork(1)
+public class RedeCheckoutBenchmark {
+
+	@Param({ "0", "5" })
+	private long latenciaMs;
+
+	private ConfigurableApplicationContext contexto;
+	private CompraService compraService;
+	private CarrinhoDeCompras carrinho;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		int porta;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			porta = socket.getLocalPort();
+		}
+		String url = "http://localhost:" + porta;
+		contexto = new SpringApplicationBuilder(CompraApplication.class)
+				.web(WebApplicationType.NONE)
+				// Argumentos de linha de comando, para valer por cima do application.properties
+				.run("--ecommerce.estoque.modo=http", "--ecommerce.pagamento.modo=http",
+						"--ecommerce.stub.habilitado=true", "--ecommerce.stub.porta=" + porta,
+						"--ecommerce.stub.latencia=" + latenciaMs + "ms",
+						"--ecommerce.estoque.url=" + url, "--ecommerce.pagamento.url=" + url);
+
+		Cliente cliente = CheckoutFixture.cliente(1L, TipoCliente.BRONZE);
+		carrinho = CheckoutFixture.carrinho(1L, cliente, 10, CheckoutFixture.FaixaFrete.ATE_10KG);
+		PagamentoHttp pagamento = contexto.getBean(PagamentoHttp.class);
+		compraService = new CompraService(CheckoutFixture.carrinhoService(carrinho),
+				CheckoutFixture.clienteService(cliente), contexto.getBean(EstoqueHttp.class),
+				pagamento, CheckoutFixture.motorPrecificacao("bigdecimal"),
+				CheckoutFixture.compensacaoService(pagamento), CheckoutFixture.outboxService(), CheckoutFixture.metricas(),
+				Runnable::run, TransactionOperations.withoutTransaction());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		contexto.close();
+	}
+
+	@Benchmark
+	public CheckoutOutcome finalizarCompra() {
+		return compraService.finalizarCompra(carrinho.getId(), 1L);
+	}
+}
@@ -0,0 +1,97 @@
+package ecommerce.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.support.TransactionOperations;
+
+import ecommerce.config.ThreadsVirtuais;
+import ecommerce.entity.CarrinhoDeCompras;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
+import ecommerce.external.IPagamentoExternal;
+import ecommerce.service.CheckoutOutcome;
+import ecommerce.service.CompraService;
+
+/**
+ * Compara o modo de threads de plataforma (pool de 200, o máximo padrão do Tomcat) com o
+ * modo de threads virtuais, disparando uma rajada de finalizações de compra cujas chamadas
+ * de estoque e pagamento bloqueiam por {@code latenciaMs}. Cada operação é a rajada
+ * inteira; o modo {@code virtual} exige o perfil {@code java21} ({@code mvn -Pjava21,jmh ...}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadsVirtuaisBenchmark {
+
+	private static final int THREADS_PLATAFORMA = 200;
+
+	@Param({ "plataforma", "virtual" })
+	private String modo;
+
+	@Param({ "2000" })
+	private int comprasSimultaneas;
+
+	@Param({ "20" })
+	private long latenciaMs;
+
+	private ExecutorService executor;
+	private CompraService compraService;
+	private CarrinhoDeCompras carrinho;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		executor = "virtual".equals(modo) ? ThreadsVirtuais.novoExecutorPorTarefa()
+				: Executors.newFixedThreadPool(THREADS_PLATAFORMA);
+
+		Cliente cliente = CheckoutFixture.cliente(1L, TipoCliente.BRONZE);
+		carrinho = CheckoutFixture.carrinho(1L, cliente, 10, CheckoutFixture.FaixaFrete.ATE_10KG);
+		IPagamentoExternal pagamento = CheckoutFixture.pagamentoComLatencia(latenciaMs);
+		compraService = new CompraService(CheckoutFixture.carrinhoService(carrinho),
+				CheckoutFixture.clienteService(cliente), CheckoutFixture.estoqueComLatencia(latenciaMs),
+				pagamento, CheckoutFixture.motorPrecificacao("bigdecimal"),
+				CheckoutFixture.compensacaoService(pagamento), CheckoutFixture.outboxService(), CheckoutFixture.metricas(),
+				Runnable::run, TransactionOperations.withoutTransaction());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public int rajadaDeCompras() throws InterruptedException, ExecutionException {
+		List<Future<CheckoutOutcome>> compras = new ArrayList<>(comprasSimultaneas);
+		for (int i = 0; i < comprasSimultaneas; i++) {
+			compras.add(executor.submit(() -> compraService.finalizarCompra(carrinho.getId(), 1L)));
+		}
+		int sucessos = 0;
+		for (Future<CheckoutOutcome> compra : compras) {
+			if (compra.get().sucesso()) {
+				sucessos++;
+			}
+		}
+		return sucessos;
+	}
+}
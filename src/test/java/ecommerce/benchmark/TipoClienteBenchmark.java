@@ -0,0 +1,86 @@
+package ecommerce.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import ecommerce.CompraApplication;
+import ecommerce.entity.Cliente;
+import ecommerce.entity.TipoCliente;
+import ecommerce.repository.ClienteRepository;
+import ecommerce.service.ClienteService;
+
+/**
+ * Custo por finalização de compra para obter o tipo do cliente: carregando a entidade
+ * pelo repositório, como antes, ou pelo cache de tipos. Sobe a aplicação com o H2 em
+ * memória, sem servidor web.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TipoClienteBenchmark {
+
+	@Param({ "1000" })
+	private int quantidadeClientes;
+
+	private ConfigurableApplicationContext contexto;
+	private ClienteService clienteService;
+	private long primeiroId;
+	private long proximo;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		contexto = new SpringApplicationBuilder(CompraApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties("logging.level.root=WARN")
+				.run();
+		clienteService = contexto.getBean(ClienteService.class);
+		ClienteRepository repository = contexto.getBean(ClienteRepository.class);
+
+		TipoCliente[] tipos = TipoCliente.values();
+		primeiroId = Long.MAX_VALUE;
+		for (int i = 0; i < quantidadeClientes; i++) {
+			Cliente cliente = repository.save(new Cliente(null, "Cliente " + i, "Endereço", tipos[i % tipos.length]));
+			primeiroId = Math.min(primeiroId, cliente.getId());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		contexto.close();
+	}
+
+	@Benchmark
+	public TipoCliente carregandoCliente() {
+		return clienteService.buscarPorId(proximoId()).getTipo();
+	}
+
+	@Benchmark
+	public TipoCliente cacheDeTipo() {
+		return clienteService.buscarTipo(proximoId());
+	}
+
+	private long proximoId() {
+		long id = primeiroId + proximo;
+		proximo = (proximo + 1) % quantidadeClientes;
+		return id;
+	}
+}